@@ -0,0 +1,514 @@
+package net.ligreto;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.DataSourceException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.parser.nodes.DataSourceNode;
+
+/**
+ * The pool of the physical connections to the single data source.
+ *
+ * The connections handed out by the pool are the proxies of the physical connections. Closing
+ * the proxy returns the physical connection into the pool, so the executors could close
+ * the connections as they did before. The physical connections are opened and initialized
+ * by the {@link ConnectionFactory}, so the init SQL statements of the data source are executed
+ * only once per physical connection. The connections idle longer than the idle timeout
+ * are closed when the pool is accessed; there is no separate thread evicting them.
+ * The request for the connection waits at most the wait timeout when the maximal number
+ * of connections is in use, so the job needing more connections at once than the pool
+ * allows fails instead of waiting forever.
+ *
+ * The connection returned into the pool is rolled back and its auto-commit mode, transaction
+ * isolation level and read-only mode are restored to the state after its initialization.
+ * The session state changed by the SQL statements (the current schema, session settings
+ * or temporary tables) could not be reset portably and it is visible to the next user
+ * of the connection, so the pooling has to be enabled explicitly for the data source.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class ConnectionPool {
+
+	/** The factory opening and initializing the physical connections. */
+	public static interface ConnectionFactory {
+		/**
+		 * Opens the new physical connection and initializes it.
+		 *
+		 * @return the initialized connection
+		 * @throws LigretoException if the connection could not be opened or initialized
+		 * @throws ClassNotFoundException if the driver class was not found
+		 * @throws SQLException if any database access error occurred
+		 */
+		public Connection createConnection() throws LigretoException, ClassNotFoundException, SQLException;
+	}
+
+	/** The physical connection kept in the pool. */
+	protected static class PooledConnection {
+		/** The physical connection. */
+		protected Connection connection;
+
+		/** The time when the connection was returned into the pool. */
+		protected long idleSince;
+
+		/** The transaction isolation level of the initialized connection. */
+		protected int transactionIsolation;
+
+		/** The read-only mode of the initialized connection. */
+		protected boolean readOnly;
+
+		/**
+		 * @param connection the physical connection
+		 * @throws SQLException if the state of the connection could not be obtained
+		 */
+		protected PooledConnection(Connection connection) throws SQLException {
+			this.connection = connection;
+			transactionIsolation = connection.getTransactionIsolation();
+			readOnly = connection.isReadOnly();
+		}
+	}
+
+	/** The handler of the connection proxy returning the physical connection into the pool on close. */
+	protected class ConnectionHandler implements InvocationHandler {
+		/** The pooled connection or null if the proxy was already closed. */
+		protected PooledConnection pooledConnection;
+
+		/**
+		 * @param pooledConnection the pooled connection handed out
+		 */
+		protected ConnectionHandler(PooledConnection pooledConnection) {
+			this.pooledConnection = pooledConnection;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name) && method.getParameterTypes().length == 0) {
+				if (pooledConnection != null) {
+					release(pooledConnection);
+					pooledConnection = null;
+				}
+				return null;
+			} else if ("isClosed".equals(name) && method.getParameterTypes().length == 0) {
+				return pooledConnection == null || pooledConnection.connection.isClosed();
+			} else if ("equals".equals(name) && method.getParameterTypes().length == 1) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name) && method.getParameterTypes().length == 0) {
+				return System.identityHashCode(proxy);
+			} else if ("toString".equals(name) && method.getParameterTypes().length == 0) {
+				return "Pooled connection to \"" + dataSourceDescription + "\"";
+			}
+			if (pooledConnection == null) {
+				throw new SQLException("The connection is closed.");
+			}
+			try {
+				return method.invoke(pooledConnection.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(ConnectionPool.class);
+
+	/** The description of the data source used in the log messages. */
+	protected String dataSourceDescription;
+
+	/** The factory opening the physical connections. */
+	protected ConnectionFactory factory;
+
+	/** The number of connections opened when the pool is first used. */
+	protected int minSize;
+
+	/** The maximal number of physical connections; 0 means unlimited. */
+	protected int maxSize;
+
+	/** The time in milliseconds after which the idle connections are closed. */
+	protected long idleTimeout;
+
+	/** The time in milliseconds to wait for the free connection; 0 means forever. */
+	protected long waitTimeout;
+
+	/** The query validating the connection before it is reused or null. */
+	protected String validationQuery;
+
+	/** The idle connections; the most recently used connection is first. */
+	protected LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+
+	/** The number of open physical connections. */
+	protected int openConnections = 0;
+
+	/** Indicates whether the minimal number of connections was opened already. */
+	protected boolean filled = false;
+
+	/** Indicates whether the pool was closed. */
+	protected boolean closed = false;
+
+	/** The number of connections requested. */
+	protected long requests = 0;
+
+	/** The number of requests served by the reused connection. */
+	protected long reuses = 0;
+
+	/** The number of physical connections opened. */
+	protected long created = 0;
+
+	/** The number of connections closed after the idle timeout. */
+	protected long expired = 0;
+
+	/** The number of connections closed since they failed the validation. */
+	protected long invalid = 0;
+
+	/** The number of requests which had to wait for the free connection. */
+	protected long waits = 0;
+
+	/** The number of requests which failed after the wait timeout. */
+	protected long timeouts = 0;
+
+	/** The highest number of physical connections open at once. */
+	protected int peakConnections = 0;
+
+	/**
+	 * Creates the pool of the connections to the specified data source.
+	 *
+	 * @param dataSourceNode the data source with the pool configuration
+	 * @param dataSourceDescription the description of the data source used in the log messages
+	 * @param factory the factory opening the physical connections
+	 */
+	public ConnectionPool(DataSourceNode dataSourceNode, String dataSourceDescription, ConnectionFactory factory) {
+		this.dataSourceDescription = dataSourceDescription;
+		this.factory = factory;
+		minSize = dataSourceNode.getPoolMinSize();
+		maxSize = dataSourceNode.getPoolMaxSize();
+		idleTimeout = dataSourceNode.getPoolIdleTimeout() * 1000L;
+		waitTimeout = dataSourceNode.getPoolWaitTimeout() * 1000L;
+		validationQuery = dataSourceNode.getPoolValidationQuery();
+	}
+
+	/**
+	 * Returns the connection from the pool or opens the new physical connection. The method waits
+	 * for the free connection if the maximal number of connections is open already.
+	 *
+	 * @return the connection which returns into the pool when closed
+	 * @throws DataSourceException if no connection was freed within the wait timeout
+	 * @throws LigretoException if the connection could not be opened or initialized
+	 * @throws ClassNotFoundException if the driver class was not found
+	 * @throws SQLException if any database access error occurred
+	 */
+	public Connection getConnection() throws LigretoException, ClassNotFoundException, SQLException {
+		fill();
+		PooledConnection pooledConnection = null;
+		while (pooledConnection == null) {
+			PooledConnection candidate = null;
+			synchronized (this) {
+				if (closed) {
+					throw new DataSourceException("The connection pool of \"" + dataSourceDescription + "\" data source is closed.");
+				}
+				expire();
+				if (!idleConnections.isEmpty()) {
+					candidate = idleConnections.removeFirst();
+				} else if (maxSize > 0 && openConnections >= maxSize) {
+					waits++;
+					log.debug("Waiting for the free connection to \"" + dataSourceDescription + "\" data source.");
+					long deadline = System.currentTimeMillis() + waitTimeout;
+					try {
+						while (idleConnections.isEmpty() && openConnections >= maxSize && !closed) {
+							if (waitTimeout <= 0) {
+								wait();
+								continue;
+							}
+							long remaining = deadline - System.currentTimeMillis();
+							if (remaining <= 0) {
+								timeouts++;
+								throw new DataSourceException(
+									"No connection to \"" + dataSourceDescription + "\" data source was freed within "
+									+ waitTimeout / 1000 + " seconds; all " + maxSize + " connections allowed by the pool max are in use."
+									+ " The job needs more connections at once, increase the pool max."
+								);
+							}
+							wait(remaining);
+						}
+					} catch (InterruptedException e) {
+						throw new LigretoException("Execution interrupted.", e);
+					}
+					continue;
+				} else {
+					openConnections++;
+				}
+			}
+			if (candidate != null) {
+				if (validate(candidate)) {
+					pooledConnection = candidate;
+					synchronized (this) {
+						reuses++;
+					}
+				} else {
+					discard(candidate);
+				}
+			} else {
+				pooledConnection = open();
+			}
+		}
+		synchronized (this) {
+			requests++;
+		}
+		return (Connection) Proxy.newProxyInstance(
+			Connection.class.getClassLoader(),
+			new Class<?>[] { Connection.class },
+			new ConnectionHandler(pooledConnection)
+		);
+	}
+
+	/**
+	 * Opens the minimal number of connections when the pool is used for the first time.
+	 *
+	 * @throws LigretoException if the connection could not be opened or initialized
+	 * @throws ClassNotFoundException if the driver class was not found
+	 * @throws SQLException if any database access error occurred
+	 */
+	protected void fill() throws LigretoException, ClassNotFoundException, SQLException {
+		int count;
+		synchronized (this) {
+			if (filled) {
+				return;
+			}
+			filled = true;
+			count = minSize - openConnections;
+			if (maxSize > 0 && count > maxSize - openConnections) {
+				count = maxSize - openConnections;
+			}
+			if (count <= 0) {
+				return;
+			}
+			openConnections += count;
+		}
+		for (int i=0; i < count; i++) {
+			PooledConnection pooledConnection;
+			try {
+				pooledConnection = open();
+			} catch (LigretoException e) {
+				discardReserved(count - i - 1);
+				throw e;
+			} catch (ClassNotFoundException e) {
+				discardReserved(count - i - 1);
+				throw e;
+			} catch (SQLException e) {
+				discardReserved(count - i - 1);
+				throw e;
+			} catch (RuntimeException e) {
+				discardReserved(count - i - 1);
+				throw e;
+			}
+			release(pooledConnection);
+		}
+	}
+
+	/**
+	 * Opens the new physical connection. The slot for the connection has to be already reserved
+	 * in the number of the open connections and it is freed if the connection could not be opened.
+	 *
+	 * @return the new pooled connection
+	 * @throws LigretoException if the connection could not be opened or initialized
+	 * @throws ClassNotFoundException if the driver class was not found
+	 * @throws SQLException if any database access error occurred
+	 */
+	protected PooledConnection open() throws LigretoException, ClassNotFoundException, SQLException {
+		boolean success = false;
+		try {
+			PooledConnection pooledConnection = new PooledConnection(factory.createConnection());
+			synchronized (this) {
+				created++;
+				if (openConnections > peakConnections) {
+					peakConnections = openConnections;
+				}
+			}
+			success = true;
+			return pooledConnection;
+		} finally {
+			if (!success) {
+				discardReserved(1);
+			}
+		}
+	}
+
+	/**
+	 * Frees the slots reserved for the connections that were not opened.
+	 *
+	 * @param count the number of slots to free
+	 */
+	protected synchronized void discardReserved(int count) {
+		openConnections -= count;
+		notifyAll();
+	}
+
+	/**
+	 * Verifies that the idle connection could be reused.
+	 *
+	 * @param pooledConnection the connection to verify
+	 * @return true if the connection is usable
+	 */
+	protected boolean validate(PooledConnection pooledConnection) {
+		try {
+			if (pooledConnection.connection.isClosed()) {
+				return false;
+			}
+			if (validationQuery != null) {
+				Statement stm = pooledConnection.connection.createStatement();
+				try {
+					stm.execute(validationQuery);
+				} finally {
+					stm.close();
+				}
+			}
+			return true;
+		} catch (SQLException e) {
+			log.debug("The connection to \"" + dataSourceDescription + "\" data source failed the validation.", e);
+			synchronized (this) {
+				invalid++;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the physical connection into the pool. The connection is discarded if its transaction
+	 * could not be finished or its state could not be reset.
+	 *
+	 * @param pooledConnection the connection to be returned
+	 */
+	protected void release(PooledConnection pooledConnection) {
+		try {
+			Connection connection = pooledConnection.connection;
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			if (connection.getTransactionIsolation() != pooledConnection.transactionIsolation) {
+				connection.setTransactionIsolation(pooledConnection.transactionIsolation);
+			}
+			if (connection.isReadOnly() != pooledConnection.readOnly) {
+				connection.setReadOnly(pooledConnection.readOnly);
+			}
+			connection.clearWarnings();
+		} catch (SQLException e) {
+			log.debug("The connection to \"" + dataSourceDescription + "\" data source could not be reset.", e);
+			discard(pooledConnection);
+			return;
+		}
+		boolean keep;
+		synchronized (this) {
+			keep = !closed;
+			if (keep) {
+				pooledConnection.idleSince = System.currentTimeMillis();
+				idleConnections.addFirst(pooledConnection);
+				notifyAll();
+			}
+		}
+		if (!keep) {
+			discard(pooledConnection);
+		}
+	}
+
+	/**
+	 * Closes the physical connection and frees its slot in the pool.
+	 *
+	 * @param pooledConnection the connection to be closed
+	 */
+	protected void discard(PooledConnection pooledConnection) {
+		try {
+			pooledConnection.connection.close();
+		} catch (SQLException e) {
+			log.debug("Failed to close the connection to \"" + dataSourceDescription + "\" data source.", e);
+		}
+		discardReserved(1);
+	}
+
+	/**
+	 * Closes the connections idle longer than the idle timeout, but keeps the minimal number
+	 * of connections open. The least recently used connections are at the end of the list.
+	 * The method has to be called while holding the lock of the pool.
+	 */
+	protected void expire() {
+		if (idleTimeout <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		while (!idleConnections.isEmpty() && openConnections > minSize
+				&& now - idleConnections.getLast().idleSince > idleTimeout) {
+			PooledConnection pooledConnection = idleConnections.removeLast();
+			expired++;
+			try {
+				pooledConnection.connection.close();
+			} catch (SQLException e) {
+				log.debug("Failed to close the connection to \"" + dataSourceDescription + "\" data source.", e);
+			}
+			openConnections--;
+		}
+	}
+
+	/**
+	 * Closes all the idle connections. The connections still in use are closed when they are returned.
+	 */
+	public void close() {
+		LinkedList<PooledConnection> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = idleConnections;
+			idleConnections = new LinkedList<PooledConnection>();
+			notifyAll();
+		}
+		for (PooledConnection pooledConnection : toClose) {
+			discard(pooledConnection);
+		}
+	}
+
+	/**
+	 * @return the number of connections requested from the pool
+	 */
+	public synchronized long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of physical connections opened by the pool
+	 */
+	public synchronized long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the number of requests served by the reused connection
+	 */
+	public synchronized long getReuses() {
+		return reuses;
+	}
+
+	/**
+	 * @return the number of requests which failed since no connection was freed within the wait timeout
+	 */
+	public synchronized long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Logs the reuse statistics of the pool.
+	 *
+	 * @param log the log to use
+	 */
+	public synchronized void info(Log log) {
+		log.info("Connection pool of \"" + dataSourceDescription + "\" data source: " + requests + " requests; "
+			+ created + " physical connections opened; " + reuses + " reused ("
+			+ (requests > 0 ? Math.round(100.0 * reuses / requests) : 0) + "%); peak " + peakConnections
+			+ " open; " + expired + " expired; " + invalid + " failed validation; " + waits + " waits; " + timeouts + " timed out");
+	}
+}
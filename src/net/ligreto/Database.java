@@ -6,7 +6,8 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
@@ -15,13 +16,16 @@ import org.apache.commons.logging.LogFactory;
 import net.ligreto.exceptions.DataSourceException;
 import net.ligreto.exceptions.DataSourceInitException;
 import net.ligreto.exceptions.DataSourceNotDefinedException;
+import net.ligreto.exceptions.LigretoException;
 import net.ligreto.parser.nodes.DataSourceNode;
 import net.ligreto.parser.nodes.LigretoNode;
 import net.ligreto.parser.nodes.SqlNode;
 
 /**
- * The class providing the interface to database connections. There is only one instance of every database available for
- * the execution thread. There is a static map holding all the references
+ * The class providing the interface to database connections. The instance is created for each execution
+ * run and it is available from {@link ExecutionContext}. It could be used by several threads at once.
+ * The connections to the data sources with pooling enabled are taken from the {@link ConnectionPool}
+ * of the data source, which is closed by {@link #close()} at the end of the run.
  * 
  * @author Julius Stroffek
  *
@@ -59,49 +63,19 @@ public class Database {
 	/** The logger instance for the class. */
 	private Log log = LogFactory.getLog(Database.class);
 
-	protected static Hashtable<Long, Database> instanceMap = new Hashtable<Long, Database>();
+	/** The ligreto node defining the data sources. */
+	protected LigretoNode ligretoNode;
+	
+	/** The connection pools of the data sources by the data source name. */
+	protected Map<String, ConnectionPool> pools = new HashMap<String, ConnectionPool>();
 	
-	public static Database getInstance() {
-		synchronized (Database.class) {
-			Database instance = instanceMap.get(Thread.currentThread().getId());
-			if (instance == null) {
-				instance = new Database();
-				instanceMap.put(Thread.currentThread().getId(), instance);
-			}
-			
-			return instance;
-		}
-	}
-
-	public static Database getInstance(LigretoNode aLigretoNode) {
-		Database instance = getInstance();
-		instance.setLigretoNode(aLigretoNode);
-		return instance;
-	}
-
 	/**
-	 * Releases the current thread local instance.
+	 * Creates the database for the data sources defined by the specified ligreto node.
+	 * 
+	 * @param ligretoNode the ligreto node defining the data sources
 	 */
-	public static void dropInstance() {
-		synchronized (Database.class) {
-			instanceMap.remove(Thread.currentThread().getId());
-		}
-	}
-	
-	LigretoNode ligretoNode = null;
-	
-	public Database() {
-	}
-	
-	@Override
-	public void finalize() {
-		synchronized (Database.class) {
-			instanceMap.remove(Thread.currentThread().getId());
-		}
-	}
-
-	public void setLigretoNode(LigretoNode aLigretoNode) {
-		ligretoNode = aLigretoNode;
+	public Database(LigretoNode ligretoNode) {
+		this.ligretoNode = ligretoNode;
 	}
 	
 	public DataSourceNode getDataSourceNode(String name) throws DataSourceNotDefinedException {
@@ -124,39 +98,97 @@ public class Database {
 	}
 	
 	public Connection getConnection(String name) throws DataSourceException, ClassNotFoundException, SQLException {
-		DataSourceNode node = null;
-		Connection cnn = null;
-		String sourceDecription = null;
 		if (ligretoNode != null && ligretoNode.getConnectionResolver() != null) {
 			try {
-				node = ligretoNode.getConnectionResolver().getDataSourceNode(name);
-				cnn = ligretoNode.getConnectionResolver().getConnection(name);
-				sourceDecription = node.getDescription() + " (" + node.getName() + ")";
+				DataSourceNode node = ligretoNode.getConnectionResolver().getDataSourceNode(name);
+				Connection cnn = ligretoNode.getConnectionResolver().getConnection(name);
+				if (cnn != null && node != null) {
+					initConnection(node, node.getDescription() + " (" + node.getName() + ")", cnn);
+					log.info("Connected.");
+					return cnn;
+				}
 			} catch (DataSourceNotDefinedException e) {
 				// Just ignore it as we will try more options
 			}
 		}
 		
-		if (cnn == null || node == null) {
-			node = ligretoNode.getDataSourceNode(name);
-			if (node == null) {
-				throw new DataSourceNotDefinedException("Data source \"" + name + "\" was not defined.");
+		final DataSourceNode node = ligretoNode.getDataSourceNode(name);
+		if (node == null) {
+			throw new DataSourceNotDefinedException("Data source \"" + name + "\" was not defined.");
+		}
+		final String sourceDecription = node.getDescription() + " (" + node.getName() + ")";
+		if (!node.isPoolEnabled()) {
+			return openConnection(node, sourceDecription);
+		}
+		
+		ConnectionPool pool;
+		synchronized (pools) {
+			pool = pools.get(name);
+			if (pool == null) {
+				pool = new ConnectionPool(node, sourceDecription, new ConnectionPool.ConnectionFactory() {
+					public Connection createConnection() throws LigretoException, ClassNotFoundException, SQLException {
+						return openConnection(node, sourceDecription);
+					}
+				});
+				pools.put(name, pool);
 			}
+		}
+		try {
+			return pool.getConnection();
+		} catch (DataSourceException e) {
+			throw e;
+		} catch (LigretoException e) {
+			throw new DataSourceException("Could not get the connection to data source: " + sourceDecription, e);
+		}
+	}
 	
-			sourceDecription = node.getDescription() + " (" + node.getName() + ")";
-			String uri = ligretoNode.substituteParams(node.getUri());
-			log.info("Connecting to \"" + sourceDecription + "\" data source with uri: " + uri);
-			
-			Class.forName(ligretoNode.substituteParams(node.getDriverClass()));
-			
+	/**
+	 * Opens the new physical connection to the data source and initializes it by the SQL queries
+	 * of the data source.
+	 * 
+	 * @param node the data source
+	 * @param sourceDecription the description of the data source used in the log messages
+	 * @return the initialized connection
+	 * @throws DataSourceException if the connection could not be opened or initialized
+	 * @throws ClassNotFoundException if the driver class was not found
+	 */
+	protected Connection openConnection(DataSourceNode node, String sourceDecription) throws DataSourceException, ClassNotFoundException {
+		String uri = ligretoNode.substituteParams(node.getUri());
+		log.info("Connecting to \"" + sourceDecription + "\" data source with uri: " + uri);
+		
+		Class.forName(ligretoNode.substituteParams(node.getDriverClass()));
+		
+		Connection cnn;
+		try {
+			Properties params = ligretoNode.substitueParams(node.getParameters());
+			cnn = DriverManager.getConnection(uri, params);
+		} catch (SQLException e) {
+			throw new DataSourceException("Could not connect to data source: " + sourceDecription, e);
+		}
+		
+		try {
+			initConnection(node, sourceDecription, cnn);
+		} catch (DataSourceInitException e) {
 			try {
-				Properties params = ligretoNode.substitueParams(node.getParameters());
-				cnn = DriverManager.getConnection(uri, params);
-			} catch (SQLException e) {
-				throw new DataSourceException("Could not connect to data source: " + sourceDecription, e);
+				cnn.close();
+			} catch (SQLException closeException) {
+				log.debug("Failed to close the connection.", closeException);
 			}
+			throw e;
 		}
-		
+		log.info("Connected.");
+		return cnn;
+	}
+	
+	/**
+	 * Initializes the connection by the SQL queries of the data source.
+	 * 
+	 * @param node the data source
+	 * @param sourceDecription the description of the data source used in the log messages
+	 * @param cnn the connection to initialize
+	 * @throws DataSourceInitException if any of the SQL queries failed
+	 */
+	protected void initConnection(DataSourceNode node, String sourceDecription, Connection cnn) throws DataSourceInitException {
 		// Initialize the connection with the given SQL queries
 		try {
 			Statement stm = null;
@@ -207,9 +239,20 @@ public class Database {
 		} catch (Exception e) {
 			throw new DataSourceInitException("Failed to initialize the connection by custom SQL statements.", e);
 		}
-		
-		log.info("Connected.");
-		return cnn;
+	}
+	
+	/**
+	 * Closes the connection pools and logs their statistics. The connections still in use
+	 * are closed when they are returned into the pool.
+	 */
+	public void close() {
+		synchronized (pools) {
+			for (ConnectionPool pool : pools.values()) {
+				pool.close();
+				pool.info(log);
+			}
+			pools.clear();
+		}
 	}
 
 	public static void close(Connection cnn, Statement stm, ResultSet rs) throws SQLException {
@@ -218,7 +261,7 @@ public class Database {
 		if (stm != null)
 			stm.close();
 		if (cnn != null)
-			cnn.close();
+			close(cnn);
 	}
 	
 	public static void close(Connection cnn, Statement stm, CallableStatement cstm, ResultSet rs) throws SQLException {
@@ -229,6 +272,20 @@ public class Database {
 		if (cstm != null)
 			cstm.close();
 		if (cnn != null)
-			cnn.close();
+			close(cnn);
+	}
+	
+	/**
+	 * Closes the connection. The transaction not committed yet is rolled back first
+	 * as it is done when the connection is returned into the pool.
+	 * 
+	 * @param cnn the connection to be closed
+	 * @throws SQLException if the connection could not be closed
+	 */
+	protected static void close(Connection cnn) throws SQLException {
+		if (!cnn.isClosed() && !cnn.getAutoCommit()) {
+			cnn.rollback();
+		}
+		cnn.close();
 	}
 }
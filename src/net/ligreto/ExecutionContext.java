@@ -0,0 +1,93 @@
+package net.ligreto;
+
+import net.ligreto.executor.PtpStateStore;
+import net.ligreto.parser.nodes.LigretoNode;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The context of the single ligreto execution run. It carries the objects shared by all
+ * the executors of the run, so they do not need to be looked up by the executing thread.
+ *
+ * The context is created by {@link net.ligreto.executor.LigretoExecutor} and passed
+ * to the executors explicitly. The database and the parameters could be shared by all
+ * the threads of the run. The comparator is used only by the thread executing the run;
+ * the worker threads have to create their own copies by
+ * {@link LigretoComparator#LigretoComparator(LigretoComparator)}.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class ExecutionContext {
+
+	/** The ligreto node being executed. */
+	protected LigretoNode ligretoNode;
+
+	/** The ligreto global parameters. */
+	protected LigretoParameters ligretoParameters;
+
+	/** The database providing the connections to the data sources. */
+	protected Database database;
+
+	/** The comparator with the default settings. */
+	protected LigretoComparator comparator;
+
+	/** The store of the PTP transfer state created when it is needed for the first time. */
+	protected PtpStateStore ptpStateStore = null;
+
+	/**
+	 * Creates the context for the execution of the specified ligreto node.
+	 *
+	 * @param ligretoNode the ligreto node to be executed
+	 */
+	public ExecutionContext(LigretoNode ligretoNode) {
+		this.ligretoNode = ligretoNode;
+		this.ligretoParameters = ligretoNode.getLigretoParameters();
+		this.database = new Database(ligretoNode);
+		this.comparator = new LigretoComparator(ligretoParameters);
+	}
+
+	/**
+	 * @return the ligreto node being executed
+	 */
+	public LigretoNode getLigretoNode() {
+		return ligretoNode;
+	}
+
+	/**
+	 * @return the ligreto global parameters
+	 */
+	public LigretoParameters getLigretoParameters() {
+		return ligretoParameters;
+	}
+
+	/**
+	 * @return the database providing the connections to the data sources
+	 */
+	public Database getDatabase() {
+		return database;
+	}
+
+	/**
+	 * @return the comparator with the default settings to be used by the thread executing the run
+	 */
+	public LigretoComparator getComparator() {
+		return comparator;
+	}
+
+	/**
+	 * @return the store of the PTP transfer state kept between the runs
+	 */
+	public synchronized PtpStateStore getPtpStateStore() {
+		if (ptpStateStore == null) {
+			ptpStateStore = new PtpStateStore(ligretoParameters.getPtpStateFile());
+		}
+		return ptpStateStore;
+	}
+
+	/**
+	 * Releases the resources of the run, which closes the pooled database connections.
+	 */
+	public void close() {
+		database.close();
+	}
+}
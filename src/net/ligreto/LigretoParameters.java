@@ -40,6 +40,34 @@ public class LigretoParameters {
 	/** The number of rows to fetch at once from the server in the result set. */
 	protected int fetchSize = 1000;
 	
+	/**
+	 * The amount of memory in kilobytes used to sort the rows of a single data source
+	 * by the internal sort. The rows not fitting into the memory are spilled into
+	 * temporary files. The parameter value is in megabytes unless it ends with 'k'.
+	 */
+	protected int sortBufferSize = 128 * 1024;
+	
+	/** The number of threads used to sort the rows of a single data source by the internal sort. */
+	protected int sortThreads = Runtime.getRuntime().availableProcessors();
+	
+	/** The maximal number of spilled runs merged at once by the internal sort. */
+	protected int sortFanIn = 64;
+	
+	/** The number of rows fetched in advance from each data source by the background thread; 0 disables the prefetching. */
+	protected int prefetchSize = 0;
+	
+	/** The number of rows queued for each layout processed by its own thread; 0 processes the layouts by the join thread. */
+	protected int layoutQueueSize = 0;
+	
+	/** The number of rows kept in memory by each partition of the partitioned join before they are spilled into the temporary file. */
+	protected int partitionBufferSize = 4096;
+	
+	/** The number of rows between the rows checked for the collation errors if the collation is sampled. */
+	protected int collationSampleInterval = 1000;
+	
+	/** Indicates whether the collation keys of the string key columns should be computed once per row. */
+	protected boolean collationKeys = false;
+	
 	/** Indicates whether we should use strict type checking. */
 	protected boolean strictTypes = true;
 	
@@ -77,6 +105,9 @@ public class LigretoParameters {
 	/** Specifies the format for date type for xlsx jdbc driver (using sqlsheet project). */
 	protected String xlsxJdbcDateFormat = "mm/dd/yyyy";
 	
+	/** The file storing the state of the PTP transfers between the runs, like the watermarks of the incremental transfers. */
+	protected String ptpStateFile = "ligreto-ptp.properties";
+	
 	/** E-mail address of the sender of outgoing e-mail. */
 	protected String smtpEmailFrom;
 	
@@ -205,6 +236,157 @@ public class LigretoParameters {
 		this.fetchSize = Integer.parseInt(fetchSize);
 	}
 
+	/**
+	 * @return the sort buffer size in kilobytes
+	 */
+	public int getSortBufferSize() {
+		return sortBufferSize;
+	}
+
+	public String getSortBufferSizeAsString() {
+		if (sortBufferSize % 1024 == 0) {
+			return Integer.toString(sortBufferSize / 1024);
+		}
+		return Integer.toString(sortBufferSize) + "k";
+	}
+
+	/**
+	 * @param sortBufferSize the sort buffer size in kilobytes
+	 */
+	public void setSortBufferSize(int sortBufferSize) {
+		if (sortBufferSize <= 0) {
+			throw new IllegalArgumentException("The sort buffer size has to be positive: " + sortBufferSize);
+		}
+		this.sortBufferSize = sortBufferSize;
+	}
+
+	/**
+	 * @param sortBufferSize the sort buffer size in megabytes or in kilobytes if it ends with 'k'
+	 */
+	public void setSortBufferSize(String sortBufferSize) {
+		String value = sortBufferSize.trim();
+		if (value.endsWith("k") || value.endsWith("K")) {
+			setSortBufferSize(Integer.parseInt(value.substring(0, value.length() - 1)));
+		} else {
+			setSortBufferSize(Integer.parseInt(value) * 1024);
+		}
+	}
+
+	public int getSortThreads() {
+		return sortThreads;
+	}
+
+	public String getSortThreadsAsString() {
+		return Integer.toString(sortThreads);
+	}
+
+	public void setSortThreads(int sortThreads) {
+		this.sortThreads = sortThreads;
+	}
+
+	public void setSortThreads(String sortThreads) {
+		this.sortThreads = Integer.parseInt(sortThreads);
+	}
+
+	public int getSortFanIn() {
+		return sortFanIn;
+	}
+
+	public String getSortFanInAsString() {
+		return Integer.toString(sortFanIn);
+	}
+
+	public void setSortFanIn(int sortFanIn) {
+		if (sortFanIn < 2) {
+			throw new IllegalArgumentException("The sort fan-in has to be at least 2: " + sortFanIn);
+		}
+		this.sortFanIn = sortFanIn;
+	}
+
+	public void setSortFanIn(String sortFanIn) {
+		setSortFanIn(Integer.parseInt(sortFanIn));
+	}
+
+	public int getPrefetchSize() {
+		return prefetchSize;
+	}
+
+	public String getPrefetchSizeAsString() {
+		return Integer.toString(prefetchSize);
+	}
+
+	public void setPrefetchSize(int prefetchSize) {
+		this.prefetchSize = prefetchSize;
+	}
+
+	public void setPrefetchSize(String prefetchSize) {
+		this.prefetchSize = Integer.parseInt(prefetchSize);
+	}
+
+	public int getLayoutQueueSize() {
+		return layoutQueueSize;
+	}
+
+	public String getLayoutQueueSizeAsString() {
+		return Integer.toString(layoutQueueSize);
+	}
+
+	public void setLayoutQueueSize(int layoutQueueSize) {
+		this.layoutQueueSize = layoutQueueSize;
+	}
+
+	public void setLayoutQueueSize(String layoutQueueSize) {
+		this.layoutQueueSize = Integer.parseInt(layoutQueueSize);
+	}
+
+	public int getPartitionBufferSize() {
+		return partitionBufferSize;
+	}
+
+	public String getPartitionBufferSizeAsString() {
+		return Integer.toString(partitionBufferSize);
+	}
+
+	public void setPartitionBufferSize(int partitionBufferSize) {
+		this.partitionBufferSize = partitionBufferSize;
+	}
+
+	public void setPartitionBufferSize(String partitionBufferSize) {
+		this.partitionBufferSize = Integer.parseInt(partitionBufferSize);
+	}
+
+	public int getCollationSampleInterval() {
+		return collationSampleInterval;
+	}
+
+	public String getCollationSampleIntervalAsString() {
+		return Integer.toString(collationSampleInterval);
+	}
+
+	public void setCollationSampleInterval(int collationSampleInterval) {
+		this.collationSampleInterval = collationSampleInterval;
+	}
+
+	public void setCollationSampleInterval(String collationSampleInterval) {
+		this.collationSampleInterval = Integer.parseInt(collationSampleInterval);
+	}
+
+	public boolean getCollationKeys() {
+		return collationKeys;
+	}
+
+	public String getCollationKeysAsString() {
+		return Boolean.toString(collationKeys);
+	}
+
+	public void setCollationKeys(boolean collationKeys) {
+		this.collationKeys = collationKeys;
+	}
+
+	public void setCollationKeys(String collationKeys) {
+		this.collationKeys = Boolean.parseBoolean(collationKeys);
+	}
+
 	public void setStrictTypes(String strictTypes) {
 		this.strictTypes = Boolean.parseBoolean(strictTypes);
 	}
@@ -353,6 +535,18 @@ public class LigretoParameters {
 		this.xlsxJdbcDateFormat = xlsxJdbcDateFormat;
 	}
 
+	public String getPtpStateFile() {
+		return ptpStateFile;
+	}
+
+	public String getPtpStateFileAsString() {
+		return ptpStateFile;
+	}
+
+	public void setPtpStateFile(String ptpStateFile) {
+		this.ptpStateFile = ptpStateFile;
+	}
+
 	public String getSmtpEmailFrom() {
 		return smtpEmailFrom;
 	}
@@ -115,4 +115,14 @@ public interface BuilderInterface {
 	 * @return generated output file
 	 */
 	public abstract File getOutputFile();
+
+	/**
+	 * Provides the object that has to be locked while the specified target is used from
+	 * the thread other than the one that created it. The targets sharing the same underlying
+	 * document have to return the same lock object.
+	 * 
+	 * @param target the target created by this builder
+	 * @return the object to synchronize the access to the target on
+	 */
+	public abstract Object getTargetLock(TargetInterface target);
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package net.ligreto.builders;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.MiscUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Provides the option of dumping the output in the CSV format. The rows are written into
+ * the file as soon as they are produced, so the memory used does not depend on the size
+ * of the report.
+ * 
+ * The first target of the report is written into the output file and each other target
+ * is written into its own file named by the output file and the target name, since
+ * the CSV file could hold only one table. The following options are supported:
+ * <ul>
+ * <li><code>gzip</code> - the files are compressed by gzip</li>
+ * <li><code>tabDelimited</code> - the values are delimited by tabs instead of commas</li>
+ * </ul>
+ * 
+ * @author Julius Stroffek
+ *
+ */
+public class CsvReportBuilder extends ReportBuilder {
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(CsvReportBuilder.class);
+
+	/** Indicates whether the files are compressed by gzip. */
+	protected boolean gzip = false;
+	
+	/** The delimiter of the values. */
+	protected char delimiter = ',';
+	
+	/** The targets by their names. */
+	protected Map<String, CsvReportTarget> targetMap = new HashMap<String, CsvReportTarget>();
+	
+	/** The targets in the order of their creation. */
+	protected List<CsvReportTarget> targetList = new LinkedList<CsvReportTarget>();
+	
+	@Override
+	public void setTemplate(String template) {
+		if (MiscUtils.isNotEmpty(template)) {
+			throw new UnsupportedOperationException("Templates cannot be used for CSV reports.");
+		}
+	}
+
+	@Override
+	public void setOptions(Iterable<String> options) throws LigretoException {		
+		for (String o : options) {
+			if ("gzip".equals(o)) {
+				gzip = true;
+			} else if ("tabDelimited".equals(o)) {
+				delimiter = '\t';
+			} else {
+				throw new LigretoException("Unsupported option specified: '" + o + "'");
+			}
+		}
+	}
+
+	/**
+	 * @return the extension of the produced files
+	 */
+	protected String getFileExt() {
+		String fileExt = delimiter == '\t' ? ".tsv" : ".csv";
+		return gzip ? fileExt + ".gz" : fileExt;
+	}
+
+	/**
+	 * @param targetName the name of the target
+	 * @return the file the target is written into
+	 */
+	protected File getTargetFile(String targetName) {
+		if (targetList.isEmpty()) {
+			return getOutputFile();
+		}
+		String fileExt = getFileExt();
+		String baseName = output.substring(0, output.length() - fileExt.length());
+		StringBuilder sb = new StringBuilder(baseName);
+		sb.append('_');
+		for (int i=0; i < targetName.length(); i++) {
+			char c = targetName.charAt(i);
+			sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+		}
+		sb.append(fileExt);
+		return new File(sb.toString());
+	}
+	
+	@Override
+	public TargetInterface getTargetBuilder(String targetName, boolean append) throws TargetException {
+		CsvReportTarget target = targetMap.get(targetName);
+		if (target == null) {
+			File file = getTargetFile(targetName);
+			try {
+				target = new CsvReportTarget(this, file, gzip, delimiter);
+			} catch (IOException e) {
+				throw new TargetException("Could not create the file for the target \"" + targetName + "\": " + file.getPath(), e);
+			}
+			target.setLigretoParameters(ligretoParameters);
+			log.info("The target \"" + targetName + "\" will be written to \"" + file.getPath() + "\".");
+			targetMap.put(targetName, target);
+			targetList.add(target);
+		}
+		return target;
+	}
+
+	@Override
+	public void start() throws IOException, LigretoException {
+		output = MiscUtils.fixFileExt(output, getFileExt());
+	}
+
+	/**
+	 * The rows are already written, so the files are just closed.
+	 */
+	@Override
+	public void writeOutput() throws IOException {
+		IOException exception = null;
+		for (CsvReportTarget target : targetList) {
+			try {
+				target.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Each target writes its own file, so the targets could be used in parallel.
+	 */
+	@Override
+	public Object getTargetLock(TargetInterface target) {
+		return target;
+	}
+}
@@ -0,0 +1,193 @@
+package net.ligreto.builders;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import net.ligreto.builders.BuilderInterface.OutputFormat;
+import net.ligreto.builders.BuilderInterface.OutputStyle;
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The target writing the rows into the CSV file. Only the current row is kept in memory
+ * and it is written once the next row is started or the target is finished. The values
+ * are formatted regardless of the locale, so the file could be processed by other tools;
+ * the output formats and styles, e.g. the highlighting, are ignored.
+ * 
+ * The values containing the delimiter, the quotes or the line breaks are quoted and the quotes
+ * inside them are doubled.
+ * 
+ * @author Julius Stroffek
+ *
+ */
+public class CsvReportTarget extends ReportTarget {
+
+	/** The size of the output buffers. */
+	protected static final int BUFFER_SIZE = 65536;
+
+	/** The encoding of the file. */
+	protected static final String ENCODING = "UTF-8";
+
+	/** The file written by the target. */
+	protected File file;
+	
+	/** The writer of the file. */
+	protected Writer writer;
+	
+	/** The delimiter of the values. */
+	protected char delimiter;
+	
+	/** The values of the current row by the column positions. */
+	protected String[] row = new String[16];
+	
+	/** The number of columns of the current row. */
+	protected int columnCount = 0;
+	
+	/** The number of columns of the widest row written so far; the narrower rows are padded to it. */
+	protected int width = 0;
+	
+	/** Indicates whether the current row was started and not written yet. */
+	protected boolean rowStarted = false;
+
+	/**
+	 * Creates the target and the file it is written into.
+	 * 
+	 * @param reportBuilder the report builder creating the target
+	 * @param file the file to write
+	 * @param gzip whether the file should be compressed by gzip
+	 * @param delimiter the delimiter of the values
+	 * @throws IOException if the file could not be created
+	 */
+	protected CsvReportTarget(ReportBuilder reportBuilder, File file, boolean gzip, char delimiter) throws IOException {
+		super(reportBuilder);
+		this.file = file;
+		this.delimiter = delimiter;
+		OutputStream out = new FileOutputStream(file);
+		try {
+			if (gzip) {
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+			} else {
+				out = new BufferedOutputStream(out, BUFFER_SIZE);
+			}
+			writer = new BufferedWriter(new OutputStreamWriter(out, ENCODING), BUFFER_SIZE);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void nextRow() throws IOException {
+		super.nextRow();
+		writeRow();
+		rowStarted = true;
+	}
+
+	@Override
+	public void dumpCell(int i, Object value, OutputFormat outputFormat, OutputStyle outputStyle) throws LigretoException {
+		int column = currentColumnPosition + columnStep * i;
+		if (column >= row.length) {
+			row = Arrays.copyOf(row, Math.max(column + 1, 2 * row.length));
+		}
+		row[column] = value != null ? formatPlain(value) : ligretoParameters.getNullString();
+		if (column >= columnCount) {
+			columnCount = column + 1;
+		}
+	}
+
+	/**
+	 * Writes the current row if it was started and clears it.
+	 * 
+	 * @throws IOException if the row could not be written
+	 */
+	protected void writeRow() throws IOException {
+		if (!rowStarted) {
+			return;
+		}
+		if (columnCount > width) {
+			width = columnCount;
+		}
+		for (int i=0; i < width; i++) {
+			if (i > 0) {
+				writer.write(delimiter);
+			}
+			if (i < columnCount && row[i] != null) {
+				writeValue(row[i]);
+				row[i] = null;
+			}
+		}
+		writer.write("\r\n");
+		columnCount = 0;
+		rowStarted = false;
+	}
+
+	/**
+	 * Writes the value quoted if needed.
+	 * 
+	 * @param value the value to write
+	 * @throws IOException if the value could not be written
+	 */
+	protected void writeValue(String value) throws IOException {
+		boolean quote = false;
+		for (int i=0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+		}
+		if (quote) {
+			writer.write('"');
+			writer.write(value.replace("\"", "\"\""));
+			writer.write('"');
+		} else {
+			writer.write(value);
+		}
+	}
+
+	/**
+	 * Writes the current row. The file is kept open, since the target could be appended to.
+	 */
+	@Override
+	public void finish() throws IOException {
+		writeRow();
+	}
+
+	/**
+	 * Writes the current row and closes the file.
+	 * 
+	 * @throws IOException if the file could not be written
+	 */
+	public void close() throws IOException {
+		if (writer != null) {
+			try {
+				writeRow();
+			} finally {
+				writer.close();
+				writer = null;
+			}
+		}
+	}
+
+	/**
+	 * The highlighting is not supported by CSV files.
+	 */
+	@Override
+	public void setHighlight(boolean highlight) {
+	}
+
+	@Override
+	public void setHighlightColor(short[] rgbHlColor) {
+	}
+
+	/**
+	 * @return the file written by the target
+	 */
+	public File getFile() {
+		return file;
+	}
+}
@@ -3,8 +3,11 @@ package net.ligreto.builders;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import net.ligreto.exceptions.InvalidTargetException;
@@ -33,8 +36,17 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  *   <li>autoSize</li>
  *   <li>formatHeader</li>
  *   <li>noDataFormat</li>
+ *   <li>maxRows=N</li>
+ *   <li>maxFileRows=N</li>
  * </ul>
  * 
+ * The target reaching the maximal number of rows of the sheet continues on the next sheet
+ * named by the number of the part, e.g. "Sheet (2)", with the header rows repeated. The limit
+ * is given by the file format unless it is lowered by the <code>maxRows</code> option.
+ * Once the workbook holds the number of rows specified by the <code>maxFileRows</code> option,
+ * it is written and the targets continue in the next workbook written into the numbered file,
+ * e.g. "report_2.xlsx".
+ * 
  * @author Julius Stroffek
  *
  */
@@ -47,8 +59,8 @@ public class ExcelReportBuilder extends ReportBuilder {
 	 */
 	protected class TargetInfo {
 		
-		/** The sheet index. */
-		int sheet;
+		/** The sheet name. */
+		String sheetName;
 		
 		/** The row number within the sheet. */
 		int row;
@@ -65,10 +77,20 @@ public class ExcelReportBuilder extends ReportBuilder {
 		/** The string representation of this target. */
 		String name;
 		
+		/** The name of the sheet where the target continues. */
+		String currentSheetName;
+		
+		/** The number of the sheet part where the target continues. */
+		int sheetPart = 1;
+		
+		/** The header rows of the target repeated on each sheet part. */
+		List<List<ExcelReportTarget.HeaderCell>> headerRows = new ArrayList<List<ExcelReportTarget.HeaderCell>>();
+		
 		/** Creates the target information class. */
-		public TargetInfo(String name, int sheet, int row, int column) {
+		public TargetInfo(String name, String sheetName, int row, int column) {
 			this.name = name;
-			this.sheet = sheet;
+			this.sheetName = sheetName;
+			this.currentSheetName = sheetName;
 			this.row = row;
 			this.column = column;
 			this.lastRow = this.row - 1;
@@ -78,14 +100,14 @@ public class ExcelReportBuilder extends ReportBuilder {
 		@Override
 		public int hashCode() {
 			final int prime = 31;
-			return prime*prime*sheet + prime*row + column;
+			return prime*prime*sheetName.hashCode() + prime*row + column;
 		}
 		
 		@Override
 		public boolean equals(Object object) {
 			if (object instanceof TargetInfo) {
 				TargetInfo info = (TargetInfo) object;
-				return sheet == info.sheet && row == info.row && column == info.column;
+				return sheetName.equals(info.sheetName) && row == info.row && column == info.column;
 			}
 			return false;
 		}
@@ -139,6 +161,24 @@ public class ExcelReportBuilder extends ReportBuilder {
 	/** Maximal column width for auto sized columns. */
 	protected int maxColumnWidth = 20480; 
 	
+	/** The maximal number of rows of the sheet or 0 if the limit of the file format is used. */
+	protected int maxRows = 0;
+	
+	/** The number of rows written into the workbook after which the next workbook is started or 0 if not limited. */
+	protected int maxFileRows = 0;
+	
+	/** The number of rows written into the current workbook. */
+	protected int fileRowCount = 0;
+	
+	/** The number of the written files. */
+	protected int fileCount = 1;
+	
+	/** The number of the sheets created for the targets exceeding the sheet size. */
+	protected int sheetPartCount = 0;
+	
+	/** The targets which were not finished yet. */
+	protected List<ExcelReportTarget> activeTargets = new LinkedList<ExcelReportTarget>();
+	
 	/** Holds the highest column index used for current target. */
 //	int lastColumnIndex = -1;
 	
@@ -234,23 +274,21 @@ public class ExcelReportBuilder extends ReportBuilder {
 		}
 		Sheet sheet;
 		if (ref.getSheetName() != null) {
-			sheet = wb.getSheet(ref.getSheetName());
-			if (sheet == null) {
-				sheet = wb.createSheet(ref.getSheetName());
-			}
+			sheet = getSheet(ref.getSheetName());
 		} else {
 			if (this.sheet == null) {
-				this.sheet = wb.createSheet("Sheet1");
+				this.sheet = getSheet("Sheet1");
 			}
 			sheet = this.sheet;
 		}
 		int rowNum = ref.getRow();
 		int colNum = ref.getCol();
 		if (sheet != null) {
-			TargetInfo info = new TargetInfo(target, wb.getSheetIndex(sheet), rowNum, colNum);
-			newTarget = createTarget(sheet, rowNum, colNum);
+			TargetInfo info = new TargetInfo(target, sheet.getSheetName(), rowNum, colNum);
 			TargetInfo prevInfo = targetMap.get(info);
 			if (append &&  prevInfo != null) {
+				sheet = getSheet(prevInfo.currentSheetName);
+				newTarget = createTarget(sheet, rowNum, colNum);
 				newTarget.setCurrentRow(prevInfo.lastRow);
 				log.info(
 						"Moved from the specified target row \""
@@ -260,15 +298,142 @@ public class ExcelReportBuilder extends ReportBuilder {
 						+ "\" due to append."
 					);
 				info = prevInfo;
-			}			
+			} else {
+				newTarget = createTarget(sheet, rowNum, colNum);
+			}
 			newTarget.setTargetInfo(info);
 			targetMap.put(info, info);
+			activeTargets.add(newTarget);
 		} else {
 			throw new InvalidTargetException("The target reference is invalid: \"" + target + "\"");
 		}
 		return newTarget;
 	}
 
+	/**
+	 * @param sheetName the name of the sheet
+	 * @return the existing sheet of the workbook or the newly created sheet
+	 */
+	protected Sheet getSheet(String sheetName) {
+		Sheet sheet = wb.getSheet(sheetName);
+		if (sheet == null) {
+			sheet = wb.createSheet(sheetName);
+		}
+		return sheet;
+	}
+
+	/**
+	 * Gets the next sheet for the target which reached the maximal number of rows of its sheet.
+	 * The sheet is shared by all the targets of the original sheet reaching the end.
+	 * 
+	 * @param info the information about the target
+	 * @return the sheet where the target continues
+	 */
+	protected Sheet getNextSheet(TargetInfo info) {
+		info.sheetPart++;
+		String suffix = " (" + info.sheetPart + ")";
+		// The length of the sheet name is limited to 31 characters
+		String sheetName = info.sheetName;
+		if (sheetName.length() + suffix.length() > 31) {
+			sheetName = sheetName.substring(0, 31 - suffix.length());
+		}
+		sheetName += suffix;
+		info.currentSheetName = sheetName;
+		Sheet nextSheet = wb.getSheet(sheetName);
+		if (nextSheet == null) {
+			nextSheet = wb.createSheet(sheetName);
+			sheetPartCount++;
+		}
+		log.info("Target \"" + info.name + "\" continues on the sheet \"" + sheetName + "\".");
+		return nextSheet;
+	}
+
+	/**
+	 * @return the maximal number of rows of the sheet
+	 */
+	protected int getMaxRows() {
+		if (maxRows > 0) {
+			return maxRows;
+		}
+		return outputFileFormat == OutputFileFormat.HSSF ? 65536 : 1048576;
+	}
+
+	/**
+	 * Counts the row written into the workbook.
+	 */
+	protected void rowAdded() {
+		fileRowCount++;
+	}
+
+	/**
+	 * @return true if the next workbook should be started before the next row is written
+	 */
+	protected boolean isWorkbookFull() {
+		return maxFileRows > 0 && fileRowCount >= maxFileRows;
+	}
+
+	/**
+	 * Writes the current workbook and moves all the targets not finished yet into
+	 * the new workbook written into the next numbered file.
+	 * 
+	 * @throws IOException if the workbook could not be written or the next file created
+	 */
+	protected void rollOver() throws IOException {
+		for (ExcelReportTarget target : activeTargets) {
+			target.flush(true, true);
+		}
+		writeWorkbook();
+		fileCount++;
+		String fileName = getPartFileName(fileCount);
+		log.info("The workbook reached " + fileRowCount + " rows, the output continues in the file \"" + fileName + "\".");
+		out = new FileOutputStream(fileName);
+		createWorkbook();
+		fileRowCount = 0;
+		for (TargetInfo info : targetMap.values()) {
+			info.lastRow = info.row - 1;
+			info.sheetPart = 1;
+			info.currentSheetName = info.sheetName;
+		}
+		for (ExcelReportTarget target : activeTargets) {
+			target.moveToSheet(getSheet(target.getTargetInfo().sheetName));
+		}
+	}
+
+	/**
+	 * @param number the number of the file
+	 * @return the name of the numbered file, e.g. "report_2.xlsx" for "report.xlsx"
+	 */
+	protected String getPartFileName(int number) {
+		int dot = output.lastIndexOf('.');
+		if (dot < 0 || dot < output.lastIndexOf('/') || dot < output.lastIndexOf('\\')) {
+			return output + "_" + number;
+		}
+		return output.substring(0, dot) + "_" + number + output.substring(dot);
+	}
+
+	/**
+	 * Called by the target once it is finished.
+	 * 
+	 * @param target the finished target
+	 */
+	protected void targetFinished(ExcelReportTarget target) {
+		activeTargets.remove(target);
+	}
+
+	/**
+	 * Writes the current workbook into the output file and closes the file.
+	 * 
+	 * @throws IOException if the workbook could not be written
+	 */
+	protected void writeWorkbook() throws IOException {
+		reportExcelStatisctics();
+		try {
+			wb.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
 	protected void reportExcelStatisctics() {
 		log.debug("The number of workbook styles: " + wb.getNumCellStyles());
 		log.debug("The number of workbook fonts:" + wb.getNumberOfFonts());
@@ -276,9 +441,11 @@ public class ExcelReportBuilder extends ReportBuilder {
 	
 	@Override
 	public void writeOutput() throws IOException {		
-		reportExcelStatisctics();
-		log.info("Writing the result into the file: " + output);
-		wb.write(out);
+		log.info("Writing the result into the file: " + (fileCount > 1 ? getPartFileName(fileCount) : output));
+		writeWorkbook();
+		if (fileCount > 1 || sheetPartCount > 0) {
+			log.info("The report was split into " + fileCount + " file(s) and " + sheetPartCount + " additional sheet(s).");
+		}
 	}
 
 	@Override
@@ -301,7 +468,17 @@ public class ExcelReportBuilder extends ReportBuilder {
 			break;
 		}
 		out = new FileOutputStream(output);
-
+		createWorkbook();
+		reportExcelStatisctics();
+		log.info("The output will be written to \"" + output + "\".");
+	}
+	
+	/**
+	 * Creates the workbook of the report from the template if it was specified.
+	 * 
+	 * @throws IOException if the template could not be read
+	 */
+	protected void createWorkbook() throws IOException {
 		// Read the template file if the template was specified
 		if (template != null) {
 			log.info("Reading a template file: " + template);
@@ -343,10 +520,8 @@ public class ExcelReportBuilder extends ReportBuilder {
 		} else {
 			sheet = null;
 		}
-		reportExcelStatisctics();
-		log.info("The output will be written to \"" + output + "\".");
 	}
-	
+
 	@Override
 	public void setOptions(Iterable<String> options) throws LigretoException {
 		for (String o : options) {
@@ -358,12 +533,34 @@ public class ExcelReportBuilder extends ReportBuilder {
 				headerStyle = true;
 			} else if ("noDataFormat".equals(o)) {
 				noDataFormat = true;
+			} else if (o.startsWith("maxRows=")) {
+				maxRows = parsePositiveOption(o, o.substring("maxRows=".length()));
+			} else if (o.startsWith("maxFileRows=")) {
+				maxFileRows = parsePositiveOption(o, o.substring("maxFileRows=".length()));
 			} else {
 				throw new LigretoException("Unsupported option specified: '" + o + "'");
 			}
 		}
 	}
 
+	/**
+	 * @param option the option specifying the number
+	 * @param value the specified number
+	 * @return the specified number
+	 * @throws LigretoException if the number is not the positive integer
+	 */
+	protected static int parsePositiveOption(String option, String value) throws LigretoException {
+		try {
+			int number = Integer.parseInt(value.trim());
+			if (number > 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new LigretoException("Invalid number specified in the option: '" + option + "'");
+	}
+
 	/**
 	 * @return true if there is a template file used.
 	 */
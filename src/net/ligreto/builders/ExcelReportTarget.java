@@ -6,8 +6,10 @@ import java.math.BigDecimal;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
 import net.ligreto.builders.BuilderInterface.OutputFormat;
@@ -42,6 +44,32 @@ import org.apache.poi.xssf.usermodel.XSSFCellStyle;
  */
 public class ExcelReportTarget extends ReportTarget {
 
+	/**
+	 * The cell of the header row of the target. The header rows are repeated on each sheet
+	 * where the target continues once it reaches the maximal number of rows of the sheet.
+	 */
+	protected static class HeaderCell {
+		/** The column index. */
+		int column;
+		
+		/** The value of the cell. */
+		Object value;
+		
+		/** The output format of the cell. */
+		OutputFormat outputFormat;
+		
+		/** The output style of the cell. */
+		OutputStyle outputStyle;
+		
+		/** Creates the header cell. */
+		HeaderCell(int column, Object value, OutputFormat outputFormat, OutputStyle outputStyle) {
+			this.column = column;
+			this.value = value;
+			this.outputFormat = outputFormat;
+			this.outputStyle = outputStyle;
+		}
+	}
+
 	/**
 	 * This is a work-around constant that limits the row number in references
 	 * to functionality like auto filter. Apache POI library will fail if the cell
@@ -125,6 +153,15 @@ public class ExcelReportTarget extends ReportTarget {
 	 */
 	protected Map<Pair<OutputStyle, String>, CellStyle> cellStyles = new HashMap<Pair<OutputStyle, String>, CellStyle>(512);
 	
+	/** Indicates whether the header rows of the target are collected. */
+	protected boolean collectingHeader = false;
+	
+	/** The header cells of the current row or null if the row has no header cell. */
+	protected List<HeaderCell> headerRow = null;
+	
+	/** The number of rows produced by the target. */
+	protected int rowCount = 0;
+	
 	/**
 	 * Creates the target instance bound to ExcelReportBuilder.
 	 * 
@@ -192,21 +229,42 @@ public class ExcelReportTarget extends ReportTarget {
 		}
 
 		if (autoSize && lastColumnIndex > baseColumnPosition) {
-			for (int i = baseColumnPosition; i <= lastColumnIndex; i++) {
-				int columnWidth = sheet.getColumnWidth(i);
-				sheet.autoSizeColumn(i);
-				int newColumnWidth = sheet.getColumnWidth(i) + 1024;
-				if (increaseSizeOnly && columnWidth > newColumnWidth) {
-					newColumnWidth = columnWidth;
-				}
-				if (newColumnWidth > maxColumnWidth) {
-					newColumnWidth = maxColumnWidth;
-				}
-				sheet.setColumnWidth(i, newColumnWidth);
-			}
+			autoSizeColumns(increaseSizeOnly);
+		}
+	}
+
+	/**
+	 * Sets the widths of the target columns to fit their content.
+	 * 
+	 * @param increaseSizeOnly indicates whether the size should be only increased
+	 */
+	protected void autoSizeColumns(boolean increaseSizeOnly) {
+		for (int i = baseColumnPosition; i <= lastColumnIndex; i++) {
+			int columnWidth = sheet.getColumnWidth(i);
+			sheet.autoSizeColumn(i);
+			setColumnWidth(i, sheet.getColumnWidth(i), columnWidth, increaseSizeOnly);
 		}
 	}
 
+	/**
+	 * Sets the column width to the content width with the padding limited by the maximal column width.
+	 * 
+	 * @param column the column index
+	 * @param contentWidth the width of the column content in 1/256th of the character width
+	 * @param columnWidth the current width of the column
+	 * @param increaseSizeOnly indicates whether the size should be only increased
+	 */
+	protected void setColumnWidth(int column, int contentWidth, int columnWidth, boolean increaseSizeOnly) {
+		int newColumnWidth = contentWidth + 1024;
+		if (increaseSizeOnly && columnWidth > newColumnWidth) {
+			newColumnWidth = columnWidth;
+		}
+		if (newColumnWidth > maxColumnWidth) {
+			newColumnWidth = maxColumnWidth;
+		}
+		sheet.setColumnWidth(column, newColumnWidth);
+	}
+
 	/**
 	 * Report the number of styles, fonts and similar characteristics of the excel file. This
 	 * information is dumped as debug message into the log.
@@ -538,6 +596,12 @@ public class ExcelReportTarget extends ReportTarget {
 
 	@Override
 	public void dumpCell(int i, Object value, OutputFormat outputFormat, OutputStyle outputStyle) throws LigretoException {
+		if (collectingHeader && (outputStyle == OutputStyle.TOP_HEADER || outputStyle == OutputStyle.TOP_HEADER_DISABLED)) {
+			if (headerRow == null) {
+				headerRow = new ArrayList<HeaderCell>();
+			}
+			headerRow.add(new HeaderCell(currentColumnPosition + columnStep * i, value, outputFormat, outputStyle));
+		}
 		String dataFormat = null;
 		Cell cell = createCell(row, currentColumnPosition + columnStep * i);
 		if (value == null) {
@@ -634,6 +698,7 @@ public class ExcelReportTarget extends ReportTarget {
 		flush(true, false);
 		targetInfo.lastRow = currentRowNumber;
 		targetInfo.inUse = false;
+		reportBuilder.targetFinished(this);
 	}
 
 	/**
@@ -692,12 +757,68 @@ public class ExcelReportTarget extends ReportTarget {
 
 	@Override
 	public void nextRow() throws IOException {
+		// The leading rows with the header cells are the header rows of the target
+		if (collectingHeader && rowCount > 0) {
+			if (headerRow != null) {
+				targetInfo.headerRows.add(headerRow);
+				headerRow = null;
+			} else {
+				collectingHeader = false;
+			}
+		}
+		
+		// Continue in the next workbook or on the next sheet if the limits are reached
+		if (reportBuilder.isWorkbookFull()) {
+			reportBuilder.rollOver();
+		} else if (currentRowNumber + 1 >= reportBuilder.getMaxRows()) {
+			flush(true, true);
+			moveToSheet(reportBuilder.getNextSheet(targetInfo));
+			if (currentRowNumber + 1 >= reportBuilder.getMaxRows()) {
+				throw new IOException("The header of the target \"" + targetInfo.name + "\" does not fit into the sheet.");
+			}
+		}
+		
 		super.nextRow();
+		rowCount++;
+		reportBuilder.rowAdded();
 		row = sheet.getRow(currentRowNumber);
 		if (row == null)
 			row = sheet.createRow(currentRowNumber);
 	}
 
+	/**
+	 * Moves the target to the beginning of the sheet and repeats the header rows of the target there.
+	 * 
+	 * @param nextSheet the sheet where the target continues
+	 * @throws IOException if the header rows could not be written
+	 */
+	protected void moveToSheet(Sheet nextSheet) throws IOException {
+		collectingHeader = false;
+		headerRow = null;
+		if (nextSheet.getWorkbook() != wb) {
+			wb = nextSheet.getWorkbook();
+			dataFormat = reportBuilder.dataFormat;
+			cellStyles.clear();
+		}
+		sheet = nextSheet;
+		currentRowNumber = baseRowNumber - 1;
+		for (List<HeaderCell> headerCells : targetInfo.headerRows) {
+			currentRowNumber++;
+			reportBuilder.rowAdded();
+			row = sheet.getRow(currentRowNumber);
+			if (row == null)
+				row = sheet.createRow(currentRowNumber);
+			for (HeaderCell headerCell : headerCells) {
+				setPosition(headerCell.column - baseColumnPosition, 1);
+				try {
+					dumpCell(0, headerCell.value, headerCell.outputFormat, headerCell.outputStyle);
+				} catch (LigretoException e) {
+					throw new IOException("Could not repeat the header of the target \"" + targetInfo.name + "\".", e);
+				}
+			}
+		}
+	}
+
 	@Override
 	public void setHighlightColor(short[] rgbHighlightColor) {
 		this.rgbHighlightColor = rgbHighlightColor;
@@ -760,6 +881,7 @@ public class ExcelReportTarget extends ReportTarget {
 		}
 		this.targetInfo = targetInfo;
 		this.targetInfo.inUse = true;
+		collectingHeader = targetInfo.headerRows.isEmpty() && targetInfo.lastRow < targetInfo.row;
 	}
 
 	@Override
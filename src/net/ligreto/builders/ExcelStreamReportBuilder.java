@@ -1,20 +1,34 @@
 package net.ligreto.builders;
 
+import java.awt.font.FontRenderContext;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import net.ligreto.exceptions.LigretoException;
 import net.ligreto.util.MiscUtils;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 /**
  * Provides the streaming version of XSSF Apache POI report generator. The produced
  * rows are flushed to disk each time the certain number of rows is produced.
  * 
+ * Besides the options of {@link ExcelReportBuilder} the number of rows kept in memory
+ * could be specified by the <code>flushRows=N</code> option for all the targets
+ * and by the <code>flushRows.TARGET=N</code> option for the single target,
+ * e.g. <code>flushRows.Sheet1!A1=100</code>. The targets sharing the same sheet
+ * keep the largest of their numbers of rows in memory.
+ * 
  * @author Julius Stroffek
  *
  */
@@ -26,9 +40,27 @@ public class ExcelStreamReportBuilder extends ExcelReportBuilder {
 	 */
 	public static final int FLUSH_ROW_INTERVAL = 500;
 	
+	/** The text used to estimate the average character width of the font. */
+	protected static final String CHAR_WIDTH_SAMPLE = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	
+	/** The font render context used to estimate the character widths. */
+	protected static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+	
 	/** The logger instance for the class. */
 	private Log log = LogFactory.getLog(ExcelStreamReportBuilder.class);
 
+	/** The number of rows which are kept in memory for the targets without their own setting. */
+	protected int flushRowInterval = FLUSH_ROW_INTERVAL;
+	
+	/** The number of rows which are kept in memory by the target names. */
+	protected Map<String, Integer> targetFlushRowIntervals = new HashMap<String, Integer>();
+	
+	/** The number of rows which are kept in memory by the sheets of the workbook. */
+	protected Map<Sheet, Integer> windowSizes = new HashMap<Sheet, Integer>();
+	
+	/** The estimated character widths in 1/256th of the default character width by the cell style indexes. */
+	protected Map<Short, Integer> charWidths = new HashMap<Short, Integer>();
+	
 	@Override
 	protected ExcelStreamReportTarget createTarget(Sheet sheet, int baseRow, int baseCol) {
 		ExcelStreamReportTarget newTarget = new ExcelStreamReportTarget(this, sheet, baseRow, baseCol);
@@ -45,6 +77,101 @@ public class ExcelStreamReportBuilder extends ExcelReportBuilder {
 	public ExcelStreamReportBuilder() {
 	}
 	
+	@Override
+	public TargetInterface getTargetBuilder(String target, boolean append) throws TargetException {
+		ExcelStreamReportTarget newTarget = (ExcelStreamReportTarget) super.getTargetBuilder(target, append);
+		Integer interval = targetFlushRowIntervals.get(target);
+		newTarget.setFlushRowInterval(interval != null ? interval : flushRowInterval);
+		return newTarget;
+	}
+
+	@Override
+	public void setOptions(Iterable<String> options) throws LigretoException {
+		List<String> excelOptions = new ArrayList<String>();
+		for (String o : options) {
+			if (o.startsWith("flushRows=")) {
+				flushRowInterval = parsePositiveOption(o, o.substring("flushRows=".length()));
+			} else if (o.startsWith("flushRows.") && o.lastIndexOf('=') > "flushRows.".length()) {
+				int eq = o.lastIndexOf('=');
+				targetFlushRowIntervals.put(o.substring("flushRows.".length(), eq), parsePositiveOption(o, o.substring(eq + 1)));
+			} else {
+				excelOptions.add(o);
+			}
+		}
+		super.setOptions(excelOptions);
+	}
+
+	/**
+	 * Makes the sheet keep at least the specified number of rows in memory. The random access
+	 * window is set for the whole sheet, so the largest number of rows requested by the targets
+	 * writing into the sheet is used.
+	 * 
+	 * @param sheet the sheet
+	 * @param rows the number of rows requested by the target
+	 */
+	protected void requestWindowSize(Sheet sheet, int rows) {
+		Integer windowSize = windowSizes.get(sheet);
+		if (windowSize == null || windowSize < rows) {
+			((SXSSFSheet) sheet).setRandomAccessWindowSize(rows);
+			windowSizes.put(sheet, rows);
+		}
+	}
+	
+	/**
+	 * @param sheet the sheet
+	 * @return the number of rows which are kept in memory by the sheet
+	 */
+	protected int getWindowSize(Sheet sheet) {
+		Integer windowSize = windowSizes.get(sheet);
+		return windowSize != null ? windowSize : flushRowInterval;
+	}
+
+	/**
+	 * Estimates the average width of the character written by the cell style. The width is
+	 * measured once for each style relatively to the width of the digit in the default font,
+	 * which is the unit of the column widths.
+	 * 
+	 * @param style the cell style
+	 * @return the estimated character width in 1/256th of the default character width
+	 */
+	protected int getCharWidth(CellStyle style) {
+		Integer charWidth = charWidths.get(style.getIndex());
+		if (charWidth == null) {
+			double width = getTextWidth(wb.getFontAt(style.getFontIndex()), CHAR_WIDTH_SAMPLE) / CHAR_WIDTH_SAMPLE.length();
+			double defaultWidth = getTextWidth(wb.getFontAt((short) 0), "0");
+			charWidth = (int) Math.ceil(256 * width / defaultWidth);
+			charWidths.put(style.getIndex(), charWidth);
+		}
+		return charWidth;
+	}
+
+	/**
+	 * @param font the font writing the text
+	 * @param text the text to measure
+	 * @return the width of the text in points
+	 */
+	protected static double getTextWidth(Font font, String text) {
+		int style = font.getBoldweight() == Font.BOLDWEIGHT_BOLD ? java.awt.Font.BOLD : java.awt.Font.PLAIN;
+		if (font.getItalic()) {
+			style |= java.awt.Font.ITALIC;
+		}
+		java.awt.Font awtFont = new java.awt.Font(font.getFontName(), style, font.getFontHeightInPoints());
+		return awtFont.getStringBounds(text, FONT_RENDER_CONTEXT).getWidth();
+	}
+
+	@Override
+	protected void createWorkbook() {
+		log.info("Creating the empty workbook.");
+		wb = new SXSSFWorkbook(flushRowInterval);
+		charWidths.clear();
+		windowSizes.clear();
+
+		// Create the data format object
+		dataFormat = wb.createDataFormat();
+		
+		sheet = null;
+	}
+
 	@Override
 	public void start() throws IOException, LigretoException {
 		output = MiscUtils.fixFileExt(output, ".xlsx");
@@ -58,13 +185,7 @@ public class ExcelStreamReportBuilder extends ExcelReportBuilder {
 			throw new LigretoException("For streaming excel Template file could not be used for excel.stream report.");
 		}
 		
-		log.info("Creating the empty workbook.");
-		wb = new SXSSFWorkbook();
-
-		// Create the data format object
-		dataFormat = wb.createDataFormat();
-		
-		sheet = null;
+		createWorkbook();
 		reportExcelStatisctics();
 		log.info("The output will be written to \"" + output + "\".");
 	}
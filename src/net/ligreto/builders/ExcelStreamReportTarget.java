@@ -1,7 +1,14 @@
 package net.ligreto.builders;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
 
+import net.ligreto.builders.BuilderInterface.OutputFormat;
+import net.ligreto.builders.BuilderInterface.OutputStyle;
+import net.ligreto.exceptions.LigretoException;
+
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.streaming.SXSSFSheet;
 
@@ -9,13 +16,18 @@ import org.apache.poi.xssf.streaming.SXSSFSheet;
  * Provides the streaming version of XSSF Apache POI report generator. The produced
  * rows are flushed to disk each time the certain number of rows is produced.
  * 
+ * The rows flushed to disk could not be measured when the columns are auto-sized,
+ * so the width of the widest text is tracked for each column as the cells are
+ * dumped. The widths are estimated by the character widths of the cell styles
+ * and they are applied once the target is finished.
+ * 
  * @author Julius Stroffek
  *
  */
 public class ExcelStreamReportTarget extends ExcelReportTarget {
 
 	/**
-	 * The number of rows which are kept in memory. If the number of rows produced
+	 * The default number of rows which are kept in memory. If the number of rows produced
 	 * in the report exceeds this number, all the rows are flushed to disk.
 	 */
 	public static final int FLUSH_ROW_INTERVAL = 500;
@@ -23,9 +35,19 @@ public class ExcelStreamReportTarget extends ExcelReportTarget {
 	///** The logger instance for the class. */
 	//private Log log = LogFactory.getLog(ExcelReportBuilder.class);
 
+	/** The number of rows which are kept in memory. */
+	protected int flushRowInterval = FLUSH_ROW_INTERVAL;
+	
+	/** The width of the widest text in 1/256th of the character width by the column index. */
+	protected int[] textWidths = new int[0];
+	
+	/** Keep the report builder as ExcelStreamReportBuilder as well to avoid type-cast. */
+	protected ExcelStreamReportBuilder streamReportBuilder;
+
 	/** Creates the target instance bound to ExcelReportBuilder. */
-	public  ExcelStreamReportTarget(ExcelReportBuilder reportBuilder, Sheet sheet, int baseRow, int baseCol) {
+	public  ExcelStreamReportTarget(ExcelStreamReportBuilder reportBuilder, Sheet sheet, int baseRow, int baseCol) {
 		super(reportBuilder, sheet, baseRow, baseCol);
+		streamReportBuilder = reportBuilder;
 	}
 	
 	/**
@@ -35,19 +57,56 @@ public class ExcelStreamReportTarget extends ExcelReportTarget {
 	 */
 	protected void flushRows() throws IOException {
 		SXSSFSheet ss = (SXSSFSheet) sheet;
-		flush(false, true);
 		ss.flushRows();
 	}
 	
 	@Override
 	public void nextRow() throws IOException {
-		// Flush the rows if the number of produced rows matched the specified number
-		if ((currentRowNumber - baseRowNumber) % FLUSH_ROW_INTERVAL == 0)
+		// Flush the rows if the number of produced rows matched the number of rows kept by the sheet
+		if ((currentRowNumber - baseRowNumber) % streamReportBuilder.getWindowSize(sheet) == 0)
 			flushRows();
 		// Do the rest of the job
 		super.nextRow();
 	}
 	
+	@Override
+	public void dumpCell(int i, Object value, OutputFormat outputFormat, OutputStyle outputStyle) throws LigretoException {
+		super.dumpCell(i, value, outputFormat, outputStyle);
+		if (autoSize) {
+			int column = currentColumnPosition + columnStep * i;
+			Cell cell = row.getCell(column);
+			int length;
+			if (cell.getCellType() == Cell.CELL_TYPE_STRING) {
+				length = cell.getStringCellValue().length();
+			} else if (value instanceof Date) {
+				length = cell.getCellStyle().getDataFormatString().length();
+			} else if (outputFormat != OutputFormat.DEFAULT) {
+				// The percentage format with the space for the integer digits
+				length = cell.getCellStyle().getDataFormatString().length() + 2;
+			} else {
+				length = formatPlain(value).length();
+			}
+			int width = length * streamReportBuilder.getCharWidth(cell.getCellStyle());
+			if (column >= textWidths.length) {
+				textWidths = Arrays.copyOf(textWidths, Math.max(column + 1, 2 * textWidths.length));
+			}
+			if (textWidths[column] < width) {
+				textWidths[column] = width;
+			}
+		}
+	}
+
+	/**
+	 * Sets the column widths by the widest texts tracked as the cells were dumped.
+	 */
+	@Override
+	protected void autoSizeColumns(boolean increaseSizeOnly) {
+		for (int i = baseColumnPosition; i <= lastColumnIndex; i++) {
+			int textWidth = i < textWidths.length ? textWidths[i] : 0;
+			setColumnWidth(i, textWidth, sheet.getColumnWidth(i), increaseSizeOnly);
+		}
+	}
+	
 	@Override
 	public void finish() throws IOException {
 		SXSSFSheet ss = (SXSSFSheet) sheet;
@@ -55,6 +114,31 @@ public class ExcelStreamReportTarget extends ExcelReportTarget {
 		ss.flushRows();
 		targetInfo.lastRow = currentRowNumber;
 		targetInfo.inUse = false;
+		reportBuilder.targetFinished(this);
+	}
+
+	@Override
+	protected void moveToSheet(Sheet nextSheet) throws IOException {
+		streamReportBuilder.requestWindowSize(nextSheet, flushRowInterval);
+		super.moveToSheet(nextSheet);
+	}
+
+	/**
+	 * Set the number of rows which are kept in memory. The random access window
+	 * of the sheet is shared by all the targets writing into the sheet, so the sheet
+	 * keeps the largest number of rows requested by its targets.
+	 * 
+	 * @param flushRowInterval the number of rows to keep in memory
+	 */
+	public void setFlushRowInterval(int flushRowInterval) {
+		this.flushRowInterval = flushRowInterval;
+		streamReportBuilder.requestWindowSize(sheet, flushRowInterval);
 	}
 
+	/**
+	 * @return the number of rows requested to be kept in memory by this target
+	 */
+	public int getFlushRowInterval() {
+		return flushRowInterval;
+	}
 }
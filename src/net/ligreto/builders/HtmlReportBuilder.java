@@ -8,8 +8,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,7 +20,9 @@ import net.ligreto.exceptions.LigretoException;
 import net.ligreto.util.MiscUtils;
 
 /**
- * Provides the option of dumping the output in HTML format.
+ * Provides the option of dumping the output in HTML format. The targets stream
+ * their tables into the temporary files which are copied into the output file
+ * when the report is finished.
  * 
  * @author Julius Stroffek
  *
@@ -55,7 +57,11 @@ public class HtmlReportBuilder extends ReportBuilder {
 	public TargetInterface getTargetBuilder(String targetName, boolean append) throws TargetException {
 		HtmlReportTarget target = targetMap.get(targetName);
 		if (target == null) {
-			target = new HtmlReportTarget(this);
+			try {
+				target = new HtmlReportTarget(this);
+			} catch (IOException e) {
+				throw new TargetException("Could not create the target \"" + targetName + "\".", e);
+			}
 			target.setName(targetName);
 			targetMap.put(targetName, target);
 			targetList.add(target);
@@ -70,33 +76,36 @@ public class HtmlReportBuilder extends ReportBuilder {
 	@Override
 	public void writeOutput() throws IOException {
 		FileOutputStream fos = new FileOutputStream(outputFile);
-		PrintWriter pw = new PrintWriter(fos);
-		pw.print("<html>");
-		pw.print("<style>");
-		InputStream styleStream = getClass().getClassLoader().getResourceAsStream("resources/htmlreport.css");
-		InputStreamReader styleReader = new InputStreamReader(styleStream);
-		CharBuffer buffer = CharBuffer.allocate(1024);
-		while (true) {
-			buffer.clear();
-			int read = styleReader.read(buffer);
-			if (read != -1) {
-				for (int i = 0; i < read; i++) {
-					pw.append(buffer.get(i));
+		try {
+			FileChannel channel = fos.getChannel();
+			StringBuilder sb = new StringBuilder();
+			sb.append("<html>");
+			sb.append("<style>");
+			InputStream styleStream = getClass().getClassLoader().getResourceAsStream("resources/htmlreport.css");
+			InputStreamReader styleReader = new InputStreamReader(styleStream);
+			try {
+				CharBuffer buffer = CharBuffer.allocate(1024);
+				while (styleReader.read(buffer) != -1) {
+					buffer.flip();
+					sb.append(buffer);
+					buffer.clear();
 				}
-			} else {
-				break;
+			} finally {
+				styleReader.close();
+			}
+			sb.append("</style>");
+			sb.append("<body>");
+			write(channel, sb.toString().getBytes());
+			for (HtmlReportTarget target : targetList) {
+				target.writeOutput(channel);
+			}
+			write(channel, "</body></html>".getBytes());
+		} finally {
+			fos.close();
+			for (HtmlReportTarget target : targetList) {
+				target.delete();
 			}
 		}
-		
-		pw.print("</style>");
-		pw.print("<body>");
-		for (HtmlReportTarget target : targetList) {
-			target.writeOutput(pw);
-		}
-		pw.print("</body>");
-		pw.print("</html>");
-		pw.close();
-		fos.close();
 	}
 
 	@Override
@@ -107,4 +116,12 @@ public class HtmlReportBuilder extends ReportBuilder {
 	public File getOutputFile() {
 		return outputFile;
 	}
+
+	/**
+	 * Each target builds its own part of the document, so the targets could be used in parallel.
+	 */
+	@Override
+	public Object getTargetLock(TargetInterface target) {
+		return target;
+	}
 }
@@ -3,13 +3,20 @@
  */
 package net.ligreto.builders;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import net.ligreto.LigretoParameters;
 import net.ligreto.builders.BuilderInterface.OutputFormat;
@@ -18,66 +25,106 @@ import net.ligreto.exceptions.LigretoException;
 import net.ligreto.util.MiscUtils;
 
 /**
+ * The target writing the rows into the HTML table. Each finished row is written into
+ * the temporary file, so only the current row is kept in memory. The file is copied into
+ * the report by {@link HtmlReportBuilder} once the report is finished.
+ * 
+ * All the rows of the table have the same number of cells given by the widest row of
+ * the target. The rows are written with the number of cells known at the time, so the
+ * rows written before the widest row are completed when they are copied. The end positions
+ * of the rows and the cells not written yet are kept in the temporary index file for this purpose.
+ * 
  * @author julo
  *
  */
 public class HtmlReportTarget extends ReportTarget {
 
-	protected HtmlReportTarget(ReportBuilder reportBuilder) {
+	/** The size of the output buffers. */
+	protected static final int BUFFER_SIZE = 65536;
+
+	/** The markup ending the row. */
+	protected static final String ROW_END = "</tr>";
+
+	/** The markup of the empty cell. */
+	protected static final String EMPTY_CELL = "<td class=\"default\"></td>";
+
+	protected HtmlReportTarget(ReportBuilder reportBuilder) throws IOException {
 		super(reportBuilder);
+		try {
+			rowFile = File.createTempFile("ligreto-html-", ".html");
+			rowFile.deleteOnExit();
+			rowStream = new BufferedOutputStream(new FileOutputStream(rowFile), BUFFER_SIZE);
+			indexFile = File.createTempFile("ligreto-html-", ".idx");
+			indexFile.deleteOnExit();
+			indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), BUFFER_SIZE));
+		} catch (IOException e) {
+			delete();
+			throw e;
+		}
 	}
 
-	private class Cell {
-		String text;
-		OutputStyle style;
-		OutputFormat format;
-	};
-	
 	private LigretoParameters ligretoParameters;
 	private String targetName = null;
-	private Map<Integer, Cell> headerRow = new HashMap<Integer, Cell>();
-	private List<Map<Integer, Cell>> allRows = new LinkedList<Map<Integer,Cell>>();
-	private Map<Integer, Cell> currentRow = null;
+	
+	/** The temporary file holding the rows. */
+	private File rowFile;
+	private OutputStream rowStream;
+	
+	/** The temporary file holding the end positions and the next cells of the rows with any cell. */
+	private File indexFile;
+	private DataOutputStream indexStream;
+	
+	/** The texts of the cells of the current row by the column positions. */
+	private String[] texts = new String[16];
+	
+	/** The styles of the cells of the current row by the column positions. */
+	private OutputStyle[] styles = new OutputStyle[16];
+	
+	/** The highest column position of the current row or -1 if the row has no cell. */
+	private int rowMaxColumn = -1;
+	
+	/** Indicates whether the current row was started. */
+	private boolean rowStarted = false;
+	
 	private int maxColumnIndex = 0;
 	
+	/** The number of the rows with any cell written so far. */
+	private long rowCount = 0;
+	
+	/** The number of bytes written into the row file. */
+	private long rowFileSize = 0;
+	
+	/** The number of cells the rows were written with; each item holds the number of the first row and the number of cells. */
+	private List<long[]> rowWidths = new ArrayList<long[]>();
+	
+	/** The buffer of the written row. */
+	private StringBuilder rowBuffer = new StringBuilder();
+	
 	@Override
 	public void nextRow() throws IOException {
 		super.nextRow();
-		if (currentRow != null) {
-			allRows.add(currentRow);
+		if (rowStarted) {
+			writeRow();
+		} else {
+			clearRow();
 		}
-		currentRow = new HashMap<Integer, Cell>();
+		rowStarted = true;
 	}
 
 	@Override
 	public void dumpCell(int i, Object value, OutputFormat outputFormat, OutputStyle outputStyle) throws LigretoException {
 		// TODO Formatting of the data
-		Cell cell = new Cell();
-		cell.format = outputFormat;
-		cell.style = outputStyle;
-		if (value != null) {
-			switch (outputFormat) {
-			case DEFAULT:
-				cell.text = value.toString();
-				break;
-			case PERCENTAGE_2_DECIMAL_DIGITS:
-				cell.text = value.toString();
-				break;
-			case PERCENTAGE_3_DECIMAL_DIGITS:
-				cell.text = value.toString();
-				break;
-			case PERCENTAGE_NO_DECIMAL_DIGITS:
-				cell.text = value.toString();
-				break;
-			default:
-				cell.text = value.toString();
-				break;			
-			}
-		} else {
-			cell.text = ligretoParameters.getNullString();
-		}
 		int column = currentColumnPosition + columnStep * i;
-		currentRow.put(column, cell);
+		if (column >= texts.length) {
+			int length = Math.max(column + 1, 2 * texts.length);
+			texts = Arrays.copyOf(texts, length);
+			styles = Arrays.copyOf(styles, length);
+		}
+		texts[column] = value != null ? value.toString() : ligretoParameters.getNullString();
+		styles[column] = outputStyle;
+		if (rowMaxColumn < column) {
+			rowMaxColumn = column;
+		}
 		if (maxColumnIndex < column) {
 			maxColumnIndex = column;
 		}
@@ -104,67 +151,182 @@ public class HtmlReportTarget extends ReportTarget {
 		this.targetName = targetName;
 	}
 
-	private void writeCell(PrintWriter pw, Cell cell) {
-		if (cell != null) {
-			switch (cell.style) {
+	private void writeCell(StringBuilder sb, int column) {
+		if (texts[column] != null) {
+			switch (styles[column]) {
 			case DEFAULT:
-				pw.write("<td class=\"default\">");
+				sb.append("<td class=\"default\">");
 				break;
 			case DISABLED:
-				pw.write("<td class=\"disabled\">");
+				sb.append("<td class=\"disabled\">");
 				break;
 			case HIGHLIGHTED:
-				pw.write("<td class=\"highlighted\">");
+				sb.append("<td class=\"highlighted\">");
 				break;
 			case ROW_HEADER:
-				pw.write("<td class=\"rowHeader\">");
+				sb.append("<td class=\"rowHeader\">");
 				break;
 			case ROW_HEADER_DISABLED:
-				pw.write("<td class=\"rowHeaderDisabled\">");
+				sb.append("<td class=\"rowHeaderDisabled\">");
 				break;
 			case TOP_HEADER:
-				pw.write("<td class=\"topHeader\">");
+				sb.append("<td class=\"topHeader\">");
 				break;
 			case TOP_HEADER_DISABLED:
-				pw.write("<td class=\"topHeaderDisabled\">");
+				sb.append("<td class=\"topHeaderDisabled\">");
 				break;
 			default:
-				pw.write("<td class=\"default\">");
+				sb.append("<td class=\"default\">");
 				break;
 			}
-			pw.write(cell.text);
-			pw.write("</td>");
+			sb.append(texts[column]);
+			sb.append("</td>");
 		} else {
-			pw.write("<td class=\"default\"></td>");
+			sb.append(EMPTY_CELL);
 		}
 	}
-	
 
-	private void writeRow(PrintWriter pw, Map<Integer, Cell> row) {
-		pw.write("<tr>");
-		if (row != null && row.size() > 0) {
-			Integer[] keys = row.keySet().toArray(new Integer[0]);
-			Arrays.sort(keys);
+	/**
+	 * Writes the current row with the number of cells known so far and clears it.
+	 * 
+	 * @throws IOException if the row could not be written
+	 */
+	private void writeRow() throws IOException {
+		rowBuffer.setLength(0);
+		rowBuffer.append("<tr>");
+		if (rowMaxColumn >= 0) {
+			if (rowWidths.isEmpty() || rowWidths.get(rowWidths.size() - 1)[1] != maxColumnIndex) {
+				rowWidths.add(new long[] {rowCount, maxColumnIndex});
+			}
 			for (int i = 0; i < maxColumnIndex; i++) {
-				writeCell(pw, row.get(i));
+				writeCell(rowBuffer, i);
 			}
 		}
-		pw.write("</tr>");
+		rowBuffer.append(ROW_END);
+		byte[] bytes = rowBuffer.toString().getBytes();
+		rowStream.write(bytes);
+		rowFileSize += bytes.length;
+		if (rowMaxColumn >= 0) {
+			indexStream.writeLong(rowFileSize);
+			// The cell which would be written if any wider row comes later
+			if (rowMaxColumn == maxColumnIndex) {
+				rowBuffer.setLength(0);
+				writeCell(rowBuffer, maxColumnIndex);
+				bytes = rowBuffer.toString().getBytes();
+				indexStream.writeInt(bytes.length);
+				indexStream.write(bytes);
+			} else {
+				indexStream.writeInt(0);
+			}
+			rowCount++;
+		}
+		clearRow();
 	}
-	
-	public void writeOutput(PrintWriter pw) {
+
+	private void clearRow() {
+		for (int i = 0; i <= rowMaxColumn; i++) {
+			texts[i] = null;
+			styles[i] = null;
+		}
+		rowMaxColumn = -1;
+	}
+
+	/**
+	 * Copies the table of the target into the report. The rows written with less cells
+	 * than the widest row are completed by their next cell and by the empty cells.
+	 * 
+	 * @param channel the channel of the report file
+	 * @throws IOException if the table could not be copied
+	 */
+	public void writeOutput(FileChannel channel) throws IOException {
+		rowStream.close();
+		indexStream.close();
+		StringBuilder sb = new StringBuilder();
 		if (MiscUtils.isNotEmpty(targetName)) {
-			pw.print("<h2>");
-			pw.print(targetName);
-			pw.print("</h2>");
+			sb.append("<h2>");
+			sb.append(targetName);
+			sb.append("</h2>");
 		}
-		pw.print("<table>");
-		if (headerRow != null) {
-			writeRow(pw, headerRow);
+		sb.append("<table>");
+		// The header row
+		sb.append("<tr>");
+		sb.append(ROW_END);
+		ReportBuilder.write(channel, sb.toString().getBytes());
+		FileInputStream rowInput = new FileInputStream(rowFile);
+		DataInputStream indexInput = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE));
+		try {
+			FileChannel source = rowInput.getChannel();
+			long position = 0;
+			for (int w = 0; w < rowWidths.size(); w++) {
+				long firstRow = rowWidths.get(w)[0];
+				long lastRow = w + 1 < rowWidths.size() ? rowWidths.get(w + 1)[0] : rowCount;
+				int missingCells = maxColumnIndex - (int) rowWidths.get(w)[1];
+				if (missingCells == 0) {
+					long end = position;
+					for (long r = firstRow; r < lastRow; r++) {
+						end = indexInput.readLong();
+						skip(indexInput, indexInput.readInt());
+					}
+					ReportBuilder.transfer(source, position, end, channel);
+					position = end;
+				} else {
+					sb.setLength(0);
+					for (int i = 1; i < missingCells; i++) {
+						sb.append(EMPTY_CELL);
+					}
+					sb.append(ROW_END);
+					byte[] emptyCell = EMPTY_CELL.getBytes();
+					byte[] padding = sb.toString().getBytes();
+					for (long r = firstRow; r < lastRow; r++) {
+						long end = indexInput.readLong();
+						byte[] nextCell = new byte[indexInput.readInt()];
+						indexInput.readFully(nextCell);
+						ReportBuilder.transfer(source, position, end - ROW_END.length(), channel);
+						ReportBuilder.write(channel, nextCell.length > 0 ? nextCell : emptyCell);
+						ReportBuilder.write(channel, padding);
+						position = end;
+					}
+				}
+			}
+			ReportBuilder.transfer(source, position, source.size(), channel);
+		} finally {
+			rowInput.close();
+			indexInput.close();
+		}
+		ReportBuilder.write(channel, "</table>".getBytes());
+	}
+
+	/**
+	 * Deletes the temporary files.
+	 */
+	public void delete() {
+		close(rowStream);
+		close(indexStream);
+		if (rowFile != null) {
+			rowFile.delete();
+		}
+		if (indexFile != null) {
+			indexFile.delete();
+		}
+	}
+
+	private static void skip(DataInputStream in, int length) throws IOException {
+		while (length > 0) {
+			int skipped = in.skipBytes(length);
+			if (skipped <= 0) {
+				throw new EOFException("Unexpected end of the index file.");
+			}
+			length -= skipped;
 		}
-		for (Map<Integer, Cell> row : allRows) {
-			writeRow(pw, row);
+	}
+
+	private static void close(OutputStream stream) {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// The file is deleted anyway
+			}
 		}
-		pw.print("</table>");
 	}
 }
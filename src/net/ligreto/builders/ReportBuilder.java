@@ -1,6 +1,9 @@
 package net.ligreto.builders;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import net.ligreto.LigretoParameters;
 import net.ligreto.exceptions.UnimplementedMethodException;
@@ -58,10 +61,14 @@ public abstract class ReportBuilder implements BuilderInterface {
 		case HTML:
 			builder = new HtmlReportBuilder();
 			break;
+		case CSV:
+			builder = new CsvReportBuilder();
+			break;
 		case TEX:
 			throw new UnimplementedMethodException();
 		case XML:
-			throw new UnimplementedMethodException();
+			builder = new XmlReportBuilder();
+			break;
 		default:
 			throw new UnimplementedMethodException();			
 		}
@@ -97,4 +104,42 @@ public abstract class ReportBuilder implements BuilderInterface {
 	public File getOutputFile() {
 		return new File(output);
 	}
+
+	/**
+	 * The targets of the report share the same document by default, so the whole builder is used
+	 * as the lock.
+	 */
+	@Override
+	public Object getTargetLock(TargetInterface target) {
+		return this;
+	}
+
+	/**
+	 * Writes the bytes into the output file.
+	 * 
+	 * @param channel the channel of the output file
+	 * @param bytes the bytes to write
+	 * @throws IOException if the bytes could not be written
+	 */
+	protected static void write(FileChannel channel, byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Copies the part of the file into the output file without passing the data through the heap.
+	 * 
+	 * @param source the channel of the copied file
+	 * @param position the position of the first byte to copy
+	 * @param end the position after the last byte to copy
+	 * @param channel the channel of the output file
+	 * @throws IOException if the data could not be copied
+	 */
+	protected static void transfer(FileChannel source, long position, long end, FileChannel channel) throws IOException {
+		while (position < end) {
+			position += source.transferTo(position, end - position, channel);
+		}
+	}
 }
@@ -1,6 +1,9 @@
 package net.ligreto.builders;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 import net.ligreto.LigretoParameters;
 import net.ligreto.builders.BuilderInterface.OutputFormat;
@@ -61,6 +64,9 @@ public abstract class ReportTarget implements TargetInterface {
 	/** The global ligreto parameters. */
 	protected LigretoParameters ligretoParameters;
 	
+	/** The format of the dates other than the SQL dates and timestamps used by {@link #formatPlain(Object)}. */
+	protected SimpleDateFormat plainDateFormat = null;
+	
 	/** Instances should be created by static methods. */
 	protected ReportTarget(ReportBuilder reportBuilder) {
 		this.reportBuilder = reportBuilder;
@@ -81,6 +87,26 @@ public abstract class ReportTarget implements TargetInterface {
 		dumpCell(i, value, OutputFormat.DEFAULT, outputStyle);
 	}
 		
+	/**
+	 * Formats the value regardless of the locale, so the output could be processed by other tools.
+	 * 
+	 * @param value the value to format, not null
+	 * @return the formatted value
+	 */
+	protected String formatPlain(Object value) {
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		} else if (value instanceof Date && !(value instanceof java.sql.Date
+			|| value instanceof java.sql.Time || value instanceof java.sql.Timestamp)) {
+			if (plainDateFormat == null) {
+				plainDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+			}
+			return plainDateFormat.format((Date) value);
+		}
+		// The numbers and the SQL dates and timestamps are formatted regardless of the locale
+		return value.toString();
+	}
+		
 	/**
 	 * Set the current row number. This
 	 * @param actualRowNumber the actualRowNumber to set
@@ -0,0 +1,105 @@
+package net.ligreto.builders;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.MiscUtils;
+
+/**
+ * Provides the option of dumping the output in the XML format described by the
+ * <code>resources/ligretoreport.xsd</code> schema. The document looks as follows:
+ * <pre>
+ * &lt;report&gt;
+ *     &lt;target name="interlaced"&gt;
+ *         &lt;row header="true" c0="ID" c1="NAME (Source1)" c2="NAME (Source2)"/&gt;
+ *         &lt;row c0="1" c1="first" c2="changed" highlighted="c1 c2"/&gt;
+ *     &lt;/target&gt;
+ * &lt;/report&gt;
+ * </pre>
+ * 
+ * The targets are streamed by {@link XmlReportTarget} into the temporary files which are
+ * copied into the output file, so the memory used does not depend on the size of the report.
+ * 
+ * @author Julius Stroffek
+ *
+ */
+public class XmlReportBuilder extends ReportBuilder {
+
+	/** The encoding of the report. */
+	public static final String ENCODING = "UTF-8";
+
+	/** The targets by their names. */
+	protected Map<String, XmlReportTarget> targetMap = new HashMap<String, XmlReportTarget>();
+	
+	/** The targets in the order of their creation. */
+	protected List<XmlReportTarget> targetList = new LinkedList<XmlReportTarget>();
+	
+	@Override
+	public void setTemplate(String template) {
+		if (MiscUtils.isNotEmpty(template)) {
+			throw new UnsupportedOperationException("Templates cannot be used for XML reports.");
+		}
+	}
+
+	@Override
+	public void setOptions(Iterable<String> options) throws LigretoException {		
+		for (String o : options) {
+			throw new LigretoException("Unsupported option specified: '" + o + "'");
+		}
+	}
+
+	@Override
+	public TargetInterface getTargetBuilder(String targetName, boolean append) throws TargetException {
+		XmlReportTarget target = targetMap.get(targetName);
+		if (target == null) {
+			try {
+				target = new XmlReportTarget(this, targetName);
+			} catch (IOException e) {
+				throw new TargetException("Could not create the target \"" + targetName + "\".", e);
+			}
+			target.setLigretoParameters(ligretoParameters);
+			targetMap.put(targetName, target);
+			targetList.add(target);
+		}
+		return target;
+	}
+
+	@Override
+	public void start() throws IOException, LigretoException {
+		output = MiscUtils.fixFileExt(output, ".xml");
+	}
+
+	@Override
+	public void writeOutput() throws IOException {
+		FileOutputStream fos = new FileOutputStream(new File(output));
+		try {
+			FileChannel channel = fos.getChannel();
+			write(channel, ("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?>\n<report>").getBytes(ENCODING));
+			for (XmlReportTarget target : targetList) {
+				target.close();
+				target.transferTo(channel);
+			}
+			write(channel, "\n</report>\n".getBytes(ENCODING));
+		} finally {
+			fos.close();
+			for (XmlReportTarget target : targetList) {
+				target.delete();
+			}
+		}
+	}
+
+	/**
+	 * Each target streams its own element, so the targets could be used in parallel.
+	 */
+	@Override
+	public Object getTargetLock(TargetInterface target) {
+		return target;
+	}
+}
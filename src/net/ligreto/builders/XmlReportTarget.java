@@ -0,0 +1,249 @@
+package net.ligreto.builders;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.ligreto.builders.BuilderInterface.OutputFormat;
+import net.ligreto.builders.BuilderInterface.OutputStyle;
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The target writing the rows as the <code>target</code> element of the XML report. Each row
+ * is written as the single <code>row</code> element with the cell values in the attributes
+ * named by the column positions, e.g. <code>c0</code>, <code>c1</code>. The null values are omitted.
+ * The <code>highlighted</code> attribute lists the highlighted columns and the <code>header</code>
+ * attribute marks the header rows.
+ * 
+ * Only the current row is kept in memory. The element is streamed into the temporary file,
+ * since the targets of the report could be filled in parallel, and the file is copied into
+ * the report by {@link XmlReportBuilder} once the report is finished.
+ * 
+ * @author Julius Stroffek
+ *
+ */
+public class XmlReportTarget extends ReportTarget {
+
+	/** The size of the output buffer. */
+	protected static final int BUFFER_SIZE = 65536;
+
+	/** The temporary file holding the target element. */
+	protected File file;
+	
+	/** The stream of the temporary file. */
+	protected OutputStream out;
+	
+	/** The writer of the target element. */
+	protected XMLStreamWriter writer;
+	
+	/** The values of the current row by the column positions. */
+	protected String[] row = new String[16];
+	
+	/** The highlighted columns of the current row. */
+	protected boolean[] highlighted = new boolean[16];
+	
+	/** The number of columns of the current row. */
+	protected int columnCount = 0;
+	
+	/** Indicates whether the current row is the header row. */
+	protected boolean header = false;
+	
+	/** Indicates whether the current row was started and not written yet. */
+	protected boolean rowStarted = false;
+	
+	/** Indicates whether the cells should be highlighted when applicable. */
+	protected boolean highlight = false;
+
+	/**
+	 * Creates the target and starts its element in the temporary file.
+	 * 
+	 * @param reportBuilder the report builder creating the target
+	 * @param targetName the name of the target
+	 * @throws IOException if the temporary file could not be created
+	 */
+	protected XmlReportTarget(ReportBuilder reportBuilder, String targetName) throws IOException {
+		super(reportBuilder);
+		file = File.createTempFile("ligreto-xml-", ".xml");
+		file.deleteOnExit();
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+			writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, XmlReportBuilder.ENCODING);
+			writer.writeCharacters("\n\t");
+			writer.writeStartElement("target");
+			writer.writeAttribute("name", targetName);
+			writer.writeCharacters("\n");
+		} catch (XMLStreamException e) {
+			delete();
+			throw new IOException("Could not write the target \"" + targetName + "\".", e);
+		} catch (IOException e) {
+			delete();
+			throw e;
+		}
+	}
+
+	@Override
+	public void nextRow() throws IOException {
+		super.nextRow();
+		writeRow();
+		rowStarted = true;
+	}
+
+	@Override
+	public void dumpCell(int i, Object value, OutputFormat outputFormat, OutputStyle outputStyle) throws LigretoException {
+		int column = currentColumnPosition + columnStep * i;
+		if (column >= row.length) {
+			int length = Math.max(column + 1, 2 * row.length);
+			row = Arrays.copyOf(row, length);
+			highlighted = Arrays.copyOf(highlighted, length);
+		}
+		row[column] = value != null ? formatPlain(value) : null;
+		highlighted[column] = highlight && outputStyle == OutputStyle.HIGHLIGHTED;
+		if (outputStyle == OutputStyle.TOP_HEADER || outputStyle == OutputStyle.TOP_HEADER_DISABLED) {
+			header = true;
+		}
+		if (column >= columnCount) {
+			columnCount = column + 1;
+		}
+	}
+
+	/**
+	 * Writes the current row if it was started and clears it.
+	 * 
+	 * @throws IOException if the row could not be written
+	 */
+	protected void writeRow() throws IOException {
+		if (!rowStarted) {
+			return;
+		}
+		try {
+			writer.writeCharacters("\t\t");
+			writer.writeEmptyElement("row");
+			if (header) {
+				writer.writeAttribute("header", "true");
+			}
+			StringBuilder hl = null;
+			for (int i=0; i < columnCount; i++) {
+				if (row[i] != null) {
+					writer.writeAttribute("c" + i, removeInvalidChars(row[i]));
+					row[i] = null;
+				}
+				if (highlighted[i]) {
+					if (hl == null) {
+						hl = new StringBuilder();
+					} else {
+						hl.append(' ');
+					}
+					hl.append('c');
+					hl.append(i);
+					highlighted[i] = false;
+				}
+			}
+			if (hl != null) {
+				writer.writeAttribute("highlighted", hl.toString());
+			}
+			writer.writeCharacters("\n");
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not write the row into the XML report.", e);
+		}
+		columnCount = 0;
+		header = false;
+		rowStarted = false;
+	}
+
+	/**
+	 * Replaces the characters not allowed in XML documents, e.g. the control characters.
+	 * 
+	 * @param value the value to check
+	 * @return the value with the invalid characters replaced by the question marks
+	 */
+	protected static String removeInvalidChars(String value) {
+		StringBuilder sb = null;
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c < 0x20 && c != '\t' && c != '\n' && c != '\r') || c == 0xfffe || c == 0xffff) {
+				if (sb == null) {
+					sb = new StringBuilder(value);
+				}
+				sb.setCharAt(i, '?');
+			}
+		}
+		return sb != null ? sb.toString() : value;
+	}
+
+	/**
+	 * Writes the current row. The element is not ended, since the target could be appended to.
+	 */
+	@Override
+	public void finish() throws IOException {
+		writeRow();
+	}
+
+	/**
+	 * Writes the current row and ends the target element.
+	 * 
+	 * @throws IOException if the element could not be written
+	 */
+	protected void close() throws IOException {
+		if (writer != null) {
+			try {
+				writeRow();
+				writer.writeCharacters("\t");
+				writer.writeEndElement();
+				writer.close();
+			} catch (XMLStreamException e) {
+				throw new IOException("Could not write the XML report.", e);
+			} finally {
+				writer = null;
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Copies the target element into the report.
+	 * 
+	 * @param channel the channel of the report file
+	 * @throws IOException if the element could not be copied
+	 */
+	protected void transferTo(FileChannel channel) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel source = in.getChannel();
+			ReportBuilder.transfer(source, 0, source.size(), channel);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Deletes the temporary file.
+	 */
+	protected void delete() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// The file is deleted anyway
+			}
+		}
+		file.delete();
+	}
+
+	@Override
+	public void setHighlight(boolean highlight) {
+		this.highlight = highlight;
+	}
+
+	@Override
+	public void setHighlightColor(short[] rgbHlColor) {
+	}
+}
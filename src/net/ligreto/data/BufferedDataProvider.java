@@ -0,0 +1,270 @@
+package net.ligreto.data;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.CollationKey;
+import java.util.Arrays;
+
+import net.ligreto.exceptions.DataException;
+
+/**
+ * Data provider positioned on the rows buffered in memory.
+ *
+ * The rows are fetched from the underlying data provider and could be kept in memory
+ * by the caller. The current row of this data provider could be then positioned on any
+ * of the stored rows, so the join layouts could access the column values of the rows
+ * in the order the hash join or the partitioned join produces them.
+ * 
+ * The column metadata are copied from the underlying data provider when the instance
+ * is created, so the metadata could be accessed while the underlying data provider
+ * is used by other thread.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class BufferedDataProvider extends DataProvider {
+
+	/** The data provider used to fetch the data. */
+	protected DataProvider dataProvider;
+
+	/** The SQL data types for the columns. */
+	protected int[] columnTypes;
+
+	/** The column labels. */
+	protected String[] columnLabels;
+
+	/** The column names. */
+	protected String[] columnNames;
+
+	/** The current row. */
+	protected DataProviderRow currentRow = null;
+
+	/** Indicates whether last fetched field was null. */
+	protected boolean wasNull = false;
+
+	/** Indicates whether the current row has duplicate key values with other rows. */
+	protected boolean duplicateKey = false;
+
+	/** The index within the set of rows with the same key column values. */
+	protected int indexInDuplicates = 0;
+
+	/**
+	 * Creates the data provider on top of the specified data provider.
+	 *
+	 * @param dataProvider the data provider used to obtain the data
+	 * @throws DataException if any data access error occurred
+	 */
+	public BufferedDataProvider(DataProvider dataProvider) throws DataException {
+		super(dataProvider.getColumnCount(), dataProvider.getKeyIndices(), null);
+		this.dataProvider = dataProvider;
+		this.comparator = dataProvider.getComparator();
+		setCaption(dataProvider.getCaption());
+
+		columnTypes = new int[dataProvider.getColumnCount()];
+		columnLabels = new String[columnTypes.length];
+		columnNames = new String[columnTypes.length];
+		for (int i=0; i < columnTypes.length; i++) {
+			columnTypes[i] = dataProvider.getColumnType(i+1);
+			columnLabels[i] = dataProvider.getColumnLabel(i+1);
+			columnNames[i] = dataProvider.getColumnName(i+1);
+			originalIndices[i] = dataProvider.getOriginalIndex(i+1);
+		}
+		int originalColumnCount = 0;
+		for (int i=0; i < originalIndices.length; i++) {
+			originalColumnCount = Math.max(originalColumnCount, originalIndices[i]);
+		}
+		dataProviderIndices = new int[originalColumnCount];
+		Arrays.fill(dataProviderIndices, -1);
+		for (int i=0; i < originalIndices.length; i++) {
+			dataProviderIndices[originalIndices[i] - 1] = i + 1;
+		}
+		originalKeyIndices = dataProvider.getOriginalKeyIndices().clone();
+	}
+
+	/**
+	 * Fetches the next row from the underlying data provider. The current row
+	 * of this data provider is not changed.
+	 *
+	 * @return the next row or null if there are no more rows available
+	 * @throws DataException if any data access error occurred
+	 */
+	public DataProviderRow fetchRow() throws DataException {
+		if (!dataProvider.next()) {
+			return null;
+		}
+		return new DataProviderRow(columnTypes, dataProvider, keyIndices);
+	}
+
+	/**
+	 * Reads the row of this data provider previously written by {@link DataProviderRow#write}.
+	 *
+	 * @param in the input to read the row from
+	 * @return the row read
+	 * @throws IOException if the row could not be read
+	 * @throws DataException if the data read are corrupted
+	 */
+	public DataProviderRow readRow(DataInput in) throws IOException, DataException {
+		return DataProviderRow.read(in, columnTypes, keyIndices, comparator);
+	}
+
+	/**
+	 * Positions the data provider on the specified row.
+	 *
+	 * @param row the row previously obtained by {@link #fetchRow}
+	 * @param duplicateKey indicates whether the row has duplicate key values with other rows
+	 * @param indexInDuplicates the index within the set of rows with the same key column values
+	 */
+	public void setCurrentRow(DataProviderRow row, boolean duplicateKey, int indexInDuplicates) {
+		this.currentRow = row;
+		this.duplicateKey = duplicateKey;
+		this.indexInDuplicates = indexInDuplicates;
+	}
+
+	@Override
+	public boolean next() throws DataException {
+		setCurrentRow(fetchRow(), false, 0);
+		return currentRow != null;
+	}
+
+	/**
+	 * Returns the value of the specified column of the current row.
+	 *
+	 * @param index the column index
+	 * @return the column value
+	 */
+	protected Object getValue(int index) {
+		assert(currentRow != null);
+		assert(index > 0 && index <= columnTypes.length);
+		Object result = currentRow.columnValues[index-1];
+		wasNull = (result == null);
+		return result;
+	}
+
+	@Override
+	public Boolean getBoolean(int index) throws DataException {
+		return (Boolean) getValue(index);
+	}
+
+	@Override
+	public Integer getInteger(int index) throws DataException {
+		return (Integer) getValue(index);
+	}
+
+	@Override
+	public Long getLong(int index) throws DataException {
+		return (Long) getValue(index);
+	}
+
+	@Override
+	public Double getDouble(int index) throws DataException {
+		return (Double) getValue(index);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int index) throws DataException {
+		return (Timestamp) getValue(index);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int index) throws DataException {
+		return (BigDecimal) getValue(index);
+	}
+
+	@Override
+	public Object getObject(int index) throws DataException {
+		return getValue(index);
+	}
+
+	@Override
+	public String getString(int index) throws DataException {
+		return (String) getValue(index);
+	}
+
+	@Override
+	public Time getTime(int index) throws DataException {
+		return (Time) getValue(index);
+	}
+
+	@Override
+	public Date getDate(int index) throws DataException {
+		return (Date) getValue(index);
+	}
+
+	@Override
+	public CollationKey getCollationKey(int index) throws DataException {
+		return currentRow != null ? currentRow.getCollationKey(index) : null;
+	}
+
+	@Override
+	public int getColumnType(int index) throws DataException {
+		return columnTypes[index-1];
+	}
+
+	@Override
+	public String getColumnLabel(int index) throws DataException {
+		return columnLabels[index-1];
+	}
+
+	@Override
+	public String getColumnName(int index) throws DataException {
+		return columnNames[index-1];
+	}
+
+	@Override
+	public int getColumnCount() throws DataException {
+		return columnTypes.length;
+	}
+
+	@Override
+	public int getOriginalIndex(int index) throws DataException {
+		return originalIndices[index-1];
+	}
+
+	@Override
+	public int getIndex(int originalIndex) throws DataException {
+		if (originalIndex < 1 || originalIndex > dataProviderIndices.length) {
+			return -1;
+		}
+		return dataProviderIndices[originalIndex-1];
+	}
+
+	@Override
+	public boolean isValid() throws DataException {
+		return currentRow != null;
+	}
+
+	@Override
+	public boolean hasDuplicateKey() throws DataException {
+		return duplicateKey;
+	}
+
+	@Override
+	public int getIndexInDuplicates() throws DataException {
+		return indexInDuplicates;
+	}
+
+	@Override
+	public boolean wasNull() throws DataException {
+		return wasNull;
+	}
+
+	@Override
+	public boolean isNumeric(int index) throws DataException {
+		switch (getColumnType(index)) {
+		case Types.BIGINT:
+		case Types.INTEGER:
+		case Types.DOUBLE:
+		case Types.FLOAT:
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -4,8 +4,10 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.text.CollationKey;
 
 import net.ligreto.exceptions.DataException;
+import net.ligreto.util.LigretoComparator;
 
 /**
  * This is the class defining the interface to various data providers.
@@ -47,6 +49,12 @@ public abstract class DataProvider {
 	/** The array of original key column indices as corresponds to the columns in the query. */
 	protected int[] originalKeyIndices;
 	
+	/**
+	 * The comparator used to compare the key columns of the rows. It has to be owned by the thread
+	 * reading the data provider; null if the key columns are never compared.
+	 */
+	protected LigretoComparator comparator = null;
+	
 	/**
 	 * The constructor could be used only by the subclasses. It will creates the mapping arrays
 	 * for indices, original indices and key indices. None reference is kept for any of the arrays
@@ -137,6 +145,45 @@ public abstract class DataProvider {
 	 */
 	public abstract Double getDouble(int index) throws DataException;
 
+	/**
+	 * Returns the int value of the specified column of the current row without boxing it.
+	 * The {@link #wasNull} method tells whether the value was null.
+	 * 
+	 * @param index the column index
+	 * @return the int value of the specified column in current row or 0 if the value is null
+	 * @throws DataException if any data access error occurred
+	 */
+	public int getIntValue(int index) throws DataException {
+		Integer result = getInteger(index);
+		return result == null ? 0 : result.intValue();
+	}
+
+	/**
+	 * Returns the long value of the specified column of the current row without boxing it.
+	 * The {@link #wasNull} method tells whether the value was null.
+	 * 
+	 * @param index the column index
+	 * @return the long value of the specified column in current row or 0 if the value is null
+	 * @throws DataException if any data access error occurred
+	 */
+	public long getLongValue(int index) throws DataException {
+		Long result = getLong(index);
+		return result == null ? 0 : result.longValue();
+	}
+
+	/**
+	 * Returns the double value of the specified column of the current row without boxing it.
+	 * The {@link #wasNull} method tells whether the value was null.
+	 * 
+	 * @param index the column index
+	 * @return the double value of the specified column in current row or 0 if the value is null
+	 * @throws DataException if any data access error occurred
+	 */
+	public double getDoubleValue(int index) throws DataException {
+		Double result = getDouble(index);
+		return result == null ? 0 : result.doubleValue();
+	}
+
 	/**
 	 * Returns the time stamp value of the specified column of the current row.
 	 * 
@@ -294,6 +341,17 @@ public abstract class DataProvider {
 	 */
 	public abstract Date getDate(int index) throws DataException;
 
+	/**
+	 * Returns the collation key precomputed for the specified key column of the current row.
+	 * 
+	 * @param index the column index.
+	 * @return the collation key or null if it was not computed
+	 * @throws DataException if any data access error occurred
+	 */
+	public CollationKey getCollationKey(int index) throws DataException {
+		return null;
+	}
+
 	/**
 	 * Returns the caption used to refer to this data source.
 	 * 
@@ -312,6 +370,23 @@ public abstract class DataProvider {
 		this.caption = caption;
 	}
 	
+	/**
+	 * @return the comparator used to compare the key columns of the rows
+	 */
+	public LigretoComparator getComparator() {
+		return comparator;
+	}
+	
+	/**
+	 * Sets the comparator used to compare the key columns of the rows. The data provider
+	 * passed to another thread has to get the comparator owned by that thread.
+	 * 
+	 * @param comparator the comparator to be used by the thread reading the data provider
+	 */
+	public void setComparator(LigretoComparator comparator) {
+		this.comparator = comparator;
+	}
+	
 	public int[] getKeyIndices() {
 		return keyIndices;
 	}
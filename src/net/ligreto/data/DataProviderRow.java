@@ -1,12 +1,18 @@
 package net.ligreto.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.text.CollationKey;
+import java.util.Comparator;
 
 import net.ligreto.exceptions.DataException;
 import net.ligreto.exceptions.DataTypeMismatchException;
@@ -17,12 +23,25 @@ import net.pcal.sqlsheet.XlsResultSet;
  * This is the row of the data provider.
  * 
  * This class is mainly used to store the rows for sorting and to identify the rows
- * with duplicate key columns.
+ * with duplicate key columns. The rows are compared by the comparator passed explicitly,
+ * so they could be sorted by several threads each using its own comparator.
  * 
  * @author Julius Stroffek
  *
  */
-public class DataProviderRow implements Comparable<DataProviderRow> {
+public class DataProviderRow {
+	
+	/** The tags identifying the column value types in the serialized row. */
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_BOOLEAN = 1;
+	private static final byte TAG_LONG = 2;
+	private static final byte TAG_INTEGER = 3;
+	private static final byte TAG_DOUBLE = 4;
+	private static final byte TAG_TIMESTAMP = 5;
+	private static final byte TAG_DATE = 6;
+	private static final byte TAG_TIME = 7;
+	private static final byte TAG_BIGDECIMAL = 8;
+	private static final byte TAG_STRING = 9;
 	
 	/**
 	 * The data provider where the row was fetched from. It is null if the data
@@ -45,6 +64,30 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 	/** The array of column indices that form the key. The first column has index 1. */
 	protected int[] keyColumns;
 	
+	/** The collation keys of the string key columns at the column positions; null if not computed. */
+	protected CollationKey[] collationKeys = null;
+	
+	/**
+	 * The comparator of the rows by the key columns bound to the specific {@link LigretoComparator}.
+	 */
+	public static class KeyComparator implements Comparator<DataProviderRow> {
+		
+		/** The comparator to use. */
+		protected LigretoComparator comparator;
+		
+		/**
+		 * @param comparator the comparator to use; it has to be owned by the thread doing the comparisons
+		 */
+		public KeyComparator(LigretoComparator comparator) {
+			this.comparator = comparator;
+		}
+		
+		@Override
+		public int compare(DataProviderRow row1, DataProviderRow row2) {
+			return row1.compareTo(row2, comparator);
+		}
+	}
+	
 	/**
 	 * Create the data provider row.
 	 * 
@@ -75,6 +118,7 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 		for (int i=0; i < columnValues.length; i++) {
 			columnValues[i] = dataProvider.getObject(i+1);
 		}
+		computeCollationKeys(dataProvider, dataProvider.getComparator());
 	}
 
 	/**
@@ -83,9 +127,10 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 	 * @param columnTypes the SQL data types
 	 * @param resultSet the result set used to fetch the columns values
 	 * @param keyColumns the indices of key columns in {@code columns} array
+	 * @param comparator the comparator to compute the collation keys or null
 	 * @throws DataException if any data access error occurred
 	 */
-	public DataProviderRow(int[] columnTypes, ResultSet resultSet, int[] keyColumns) throws DataException {
+	public DataProviderRow(int[] columnTypes, ResultSet resultSet, int[] keyColumns, LigretoComparator comparator) throws DataException {
 		this.resultSet = resultSet;
 		this.columnTypes = columnTypes;
 		this.keyColumns = keyColumns;
@@ -98,6 +143,7 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 		} catch (SQLException e) {
 			throw new DataException("Failed to get the data.", e);
 		}
+		computeCollationKeys(null, comparator);
 	}
 
 	
@@ -120,6 +166,7 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 		for (int i=0; i < columnValues.length; i++) {
 			columnValues[i] = dataProvider.getObject(columns[i]);
 		}
+		computeCollationKeys(null, dataProvider.getComparator());
 	}
 
 	/**
@@ -129,9 +176,10 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 	 * @param resultSet the result set used to fetch the columns values
 	 * @param columns the indices of columns to be copied
 	 * @param keyColumns the indices of key columns
+	 * @param comparator the comparator to compute the collation keys or null
 	 * @throws DataException if any data access error occurred
 	 */
-	public DataProviderRow(int[] columnTypes, ResultSet resultSet, int[] columns, int[] keyColumns) throws DataException {
+	public DataProviderRow(int[] columnTypes, ResultSet resultSet, int[] columns, int[] keyColumns, LigretoComparator comparator) throws DataException {
 		this.resultSet = resultSet;
 		this.columnTypes = columnTypes;
 		this.keyColumns = keyColumns;
@@ -145,6 +193,63 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 		} catch (SQLException e) {
 			throw new DataException("Failed to get the data.", e);
 		}
+		computeCollationKeys(null, comparator);
+	}
+
+	/**
+	 * Computes the collation keys of the string key columns if requested by the comparator.
+	 * This allows the rows to be compared by the collation keys instead of the collator.
+	 * 
+	 * @param source the data provider positioned on the same row having the same columns
+	 *               to take the already computed collation keys from or null
+	 * @param comparator the comparator to compute the collation keys or null
+	 * @throws DataException if any data access error occurred
+	 */
+	protected void computeCollationKeys(DataProvider source, LigretoComparator comparator) throws DataException {
+		if (keyColumns == null || keyColumns.length == 0 || comparator == null) {
+			return;
+		}
+		if (!comparator.usesCollationKeys()) {
+			return;
+		}
+		for (int i=0; i < keyColumns.length; i++) {
+			int index = keyColumns[i];
+			if (!isString(columnTypes[index-1]) || columnValues[index-1] == null) {
+				continue;
+			}
+			CollationKey key = source != null ? source.getCollationKey(index) : null;
+			if (key == null) {
+				key = comparator.getCollationKey(columnValues[index-1].toString());
+			}
+			if (collationKeys == null) {
+				collationKeys = new CollationKey[columnValues.length];
+			}
+			collationKeys[index-1] = key;
+		}
+	}
+
+	/**
+	 * @param index the column index
+	 * @return the collation key of the column or null if it was not computed
+	 */
+	public CollationKey getCollationKey(int index) {
+		return collationKeys != null ? collationKeys[index-1] : null;
+	}
+
+	/**
+	 * @param sqlType the SQL data type
+	 * @return true if the values of the type are compared as strings
+	 */
+	protected static boolean isString(int sqlType) {
+		switch (sqlType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+			return true;
+		default:
+			return false;
+		}
 	}
 
 	/**
@@ -228,17 +333,31 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 	
 	/**
 	 * Compare the values of key columns only.
+	 * 
+	 * @param other the row to compare with
+	 * @param comparator the comparator owned by the current thread
+	 * @return -1, 0 or 1 if this row is lower, equal or greater than the other row
 	 */
-	@Override
-	public int compareTo(DataProviderRow other) {
+	public int compareTo(DataProviderRow other, LigretoComparator comparator) {
 		int result = 0;
 
 		assert(columnTypes.length == other.columnTypes.length);
 		assert(keyColumns.length == other.keyColumns.length);
 		try {
 			for (int i = 0; i < keyColumns.length; i++) {
+				int type1 = columnTypes[keyColumns[i] - 1];
+				int type2 = other.columnTypes[other.keyColumns[i] - 1];
+				if (type1 == type2 && isString(type1)) {
+					// The collation keys are used if computed for both rows
+					result = comparator.compare(
+							(String) columnValues[keyColumns[i] - 1], getCollationKey(keyColumns[i]),
+							(String) other.columnValues[other.keyColumns[i] - 1], other.getCollationKey(other.keyColumns[i]));
+					if (result != 0)
+						break;
+					continue;
+				}
 				try {
-				result = LigretoComparator.getInstance().compare(columnTypes[keyColumns[i] - 1],
+				result = comparator.compare(columnTypes[keyColumns[i] - 1],
 						columnValues[keyColumns[i] - 1], other.columnTypes[other.keyColumns[i] - 1],
 						other.columnValues[other.keyColumns[i] - 1]);
 				} catch (DataTypeMismatchException e) {
@@ -283,4 +402,141 @@ public class DataProviderRow implements Comparable<DataProviderRow> {
 		
 		return result;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Estimates the amount of heap memory occupied by the row. The estimate
+	 * is only approximate as it depends on the actual JVM implementation.
+	 * 
+	 * @return the estimated size of the row in bytes
+	 */
+	public long getEstimatedSize() {
+		// The object itself and the array of column values
+		long size = 32 + 16 + 8 * columnValues.length;
+		for (int i=0; i < columnValues.length; i++) {
+			Object value = columnValues[i];
+			if (value == null || value instanceof Boolean) {
+				continue;
+			} else if (value instanceof String) {
+				size += 40 + 2 * ((String) value).length();
+			} else if (value instanceof BigDecimal) {
+				size += 72 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+			} else {
+				size += 32;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the column values of the row into the specified output.
+	 * 
+	 * @param out the output to write the row to
+	 * @throws IOException if the row could not be written
+	 * @throws DataException if the row contains value of unsupported type
+	 */
+	public void write(DataOutput out) throws IOException, DataException {
+		for (int i=0; i < columnValues.length; i++) {
+			Object value = columnValues[i];
+			if (value == null) {
+				out.writeByte(TAG_NULL);
+			} else if (value instanceof Boolean) {
+				out.writeByte(TAG_BOOLEAN);
+				out.writeBoolean((Boolean) value);
+			} else if (value instanceof Long) {
+				out.writeByte(TAG_LONG);
+				out.writeLong((Long) value);
+			} else if (value instanceof Integer) {
+				out.writeByte(TAG_INTEGER);
+				out.writeInt((Integer) value);
+			} else if (value instanceof Double) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) value);
+			} else if (value instanceof Timestamp) {
+				out.writeByte(TAG_TIMESTAMP);
+				out.writeLong(((Timestamp) value).getTime());
+				out.writeInt(((Timestamp) value).getNanos());
+			} else if (value instanceof Date) {
+				out.writeByte(TAG_DATE);
+				out.writeLong(((Date) value).getTime());
+			} else if (value instanceof Time) {
+				out.writeByte(TAG_TIME);
+				out.writeLong(((Time) value).getTime());
+			} else if (value instanceof BigDecimal) {
+				byte[] unscaled = ((BigDecimal) value).unscaledValue().toByteArray();
+				out.writeByte(TAG_BIGDECIMAL);
+				out.writeInt(((BigDecimal) value).scale());
+				out.writeInt(unscaled.length);
+				out.write(unscaled);
+			} else if (value instanceof String) {
+				byte[] bytes = ((String) value).getBytes("UTF-8");
+				out.writeByte(TAG_STRING);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			} else {
+				throw new DataException("Unsupported data type of the column value: " + value.getClass().getName());
+			}
+		}
+	}
+
+	/**
+	 * Reads the row previously written by {@link #write} method.
+	 * 
+	 * @param in the input to read the row from
+	 * @param columnTypes the SQL data types
+	 * @param keyColumns the indices of key columns
+	 * @param comparator the comparator to compute the collation keys or null
+	 * @return the row read
+	 * @throws IOException if the row could not be read
+	 * @throws DataException if the data read are corrupted
+	 */
+	public static DataProviderRow read(DataInput in, int[] columnTypes, int[] keyColumns, LigretoComparator comparator) throws IOException, DataException {
+		Object[] columnValues = new Object[columnTypes.length];
+		for (int i=0; i < columnValues.length; i++) {
+			byte tag = in.readByte();
+			switch (tag) {
+			case TAG_NULL:
+				columnValues[i] = null;
+				break;
+			case TAG_BOOLEAN:
+				columnValues[i] = in.readBoolean();
+				break;
+			case TAG_LONG:
+				columnValues[i] = in.readLong();
+				break;
+			case TAG_INTEGER:
+				columnValues[i] = in.readInt();
+				break;
+			case TAG_DOUBLE:
+				columnValues[i] = in.readDouble();
+				break;
+			case TAG_TIMESTAMP:
+				Timestamp ts = new Timestamp(in.readLong());
+				ts.setNanos(in.readInt());
+				columnValues[i] = ts;
+				break;
+			case TAG_DATE:
+				columnValues[i] = new Date(in.readLong());
+				break;
+			case TAG_TIME:
+				columnValues[i] = new Time(in.readLong());
+				break;
+			case TAG_BIGDECIMAL:
+				int scale = in.readInt();
+				byte[] unscaled = new byte[in.readInt()];
+				in.readFully(unscaled);
+				columnValues[i] = new BigDecimal(new BigInteger(unscaled), scale);
+				break;
+			case TAG_STRING:
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				columnValues[i] = new String(bytes, "UTF-8");
+				break;
+			default:
+				throw new DataException("Unexpected data type tag in the stored row: " + tag);
+			}
+		}
+		DataProviderRow row = new DataProviderRow(columnTypes, columnValues, keyColumns);
+		row.computeCollationKeys(null, comparator);
+		return row;
+	}
+}
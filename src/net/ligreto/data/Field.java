@@ -13,7 +13,7 @@ import net.ligreto.util.LigretoComparator;
  * @author Julius Stroffek
  *
  */
-public class Field implements Comparable<Object> {
+public class Field {
 
 	/** The column type that correspond to java.sql.Types definitions. */
 	protected int columnType;
@@ -34,6 +34,19 @@ public class Field implements Comparable<Object> {
 		numeric = dp.isNumeric(index);
 	}
 
+	/**
+	 * Creates the instance holding the specified value.
+	 * 
+	 * @param columnType the column type that correspond to java.sql.Types definitions
+	 * @param columnValue the column value
+	 * @param numeric indicates whether the field is of a numeric type
+	 */
+	public Field(int columnType, Object columnValue, boolean numeric) {
+		this.columnType = columnType;
+		this.columnValue = columnValue;
+		this.numeric = numeric;
+	}
+
 	/**
 	 * Function required for effective hashing.
 	 */
@@ -103,17 +116,20 @@ public class Field implements Comparable<Object> {
 		this.numeric = numeric;
 	}
 
-	@Override
-	public int compareTo(Object obj) {
-		if (obj == null) {
-			return LigretoComparator.getInstance().compareNulls(false, true);
+	/**
+	 * Compares the field with the other field. The missing field is ordered as the null value.
+	 * 
+	 * @param f the field to compare with or null
+	 * @param comparator the comparator owned by the current thread
+	 * @return the negative number, zero or the positive number if this field is lower,
+	 *         equal or greater than the other field
+	 */
+	public int compareTo(Field f, LigretoComparator comparator) {
+		if (f == null) {
+			return comparator.compareNulls(false, true);
 		}
-		if (!(obj instanceof Field))
-			throw new IllegalArgumentException("Could not compare Column against other objects.");
-		
-		Field f = (Field) obj;
 		try {
-			return LigretoComparator.getInstance().compare(this, f);
+			return comparator.compare(this, f);
 		} catch (DataException e) {
 			throw new IllegalArgumentException(e);
 		} catch (DataTypeMismatchException e) {
@@ -0,0 +1,153 @@
+package net.ligreto.data;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.text.Collator;
+import java.util.Comparator;
+
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.DataTypeMismatchException;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The values of key columns of a single row used as a key in the hash table
+ * built during the hash join processing.
+ *
+ * The equality of the keys is determined by {@link LigretoComparator} so the keys
+ * match exactly when the sort-merge join would match them. The hash code is calculated
+ * from the normalized column values so the keys that are equal for the comparator
+ * have the same hash code as well. The numeric, boolean and date/time columns are hashed
+ * by their values, where the equal values of different scale or sign of zero are normalized.
+ * The strings and the columns of other types are hashed by the collation key of the trimmed
+ * string value if the comparator is the {@link Collator}, or by the trimmed string value
+ * if the natural string order is used. Other string comparators are not supported since
+ * the hash code consistent with them could not be calculated.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class HashJoinKey {
+
+	/** The SQL data types of the key columns. */
+	protected int[] columnTypes;
+
+	/** The values of the key columns. */
+	protected Object[] columnValues;
+
+	/** The pre-calculated hash code. */
+	protected int hashCode;
+
+	/** The comparator used to compare the keys. */
+	protected LigretoComparator comparator;
+
+	/**
+	 * Creates the key from the key columns of the specified row.
+	 *
+	 * @param row the row to create the key for
+	 * @param hashAsString indicates for each key column whether its value should be hashed
+	 *                     as a string; this is required if the column types differ between data sources
+	 * @param comparator the comparator used to compare the keys; it has to be owned by the thread using the key
+	 * @throws IllegalArgumentException if the string comparator is neither the collator nor the natural order
+	 */
+	public HashJoinKey(DataProviderRow row, boolean[] hashAsString, LigretoComparator comparator) {
+		if (!isSupported(comparator)) {
+			throw new IllegalArgumentException("The hash join supports only the locale collation or the natural string order.");
+		}
+		this.comparator = comparator;
+		columnTypes = new int[row.keyColumns.length];
+		columnValues = new Object[row.keyColumns.length];
+		hashCode = 0;
+		for (int i=0; i < columnValues.length; i++) {
+			columnTypes[i] = row.columnTypes[row.keyColumns[i] - 1];
+			columnValues[i] = row.columnValues[row.keyColumns[i] - 1];
+			hashCode = 31*hashCode + hashValue(columnTypes[i], columnValues[i], hashAsString[i], comparator.getComparator());
+		}
+	}
+
+	/**
+	 * @param comparator the comparator to be used to compare the keys
+	 * @return true if the hash code consistent with the specified comparator could be calculated
+	 */
+	public static boolean isSupported(LigretoComparator comparator) {
+		return comparator.getComparator() == null || comparator.getComparator() instanceof Collator;
+	}
+
+	/**
+	 * Calculates the hash code of the single column value.
+	 *
+	 * @param columnType the SQL data type of the column
+	 * @param columnValue the column value
+	 * @param asString indicates whether the value should be hashed as a string
+	 * @param comparator the collator used for string comparison or null if the natural order is used
+	 * @return the hash code of the column value
+	 */
+	protected static int hashValue(int columnType, Object columnValue, boolean asString, Comparator<Object> comparator) {
+		if (columnValue == null) {
+			// All the null values are equal for the comparator
+			return 0;
+		}
+		if (!asString) {
+			switch (columnType) {
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				// The values 1.0 and 1.00 are equal for the comparator; the zero
+				// is special since stripTrailingZeros does not normalize its scale
+				BigDecimal bd = (BigDecimal) columnValue;
+				if (bd.signum() == 0) {
+					return BigDecimal.ZERO.hashCode();
+				}
+				return bd.stripTrailingZeros().hashCode();
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				// The values 0.0 and -0.0 are equal for the comparator
+				Double d = (Double) columnValue;
+				if (d.doubleValue() == 0.0) {
+					return Double.valueOf(0.0).hashCode();
+				}
+				return d.hashCode();
+			case Types.BOOLEAN:
+			case Types.BIGINT:
+			case Types.INTEGER:
+			case Types.DATE:
+			case Types.TIMESTAMP:
+			case Types.TIME:
+				return columnValue.hashCode();
+			default:
+				break;
+			}
+		}
+		String str = columnValue.toString().trim();
+		if (comparator == null) {
+			return str.hashCode();
+		}
+		return ((Collator) comparator).getCollationKey(str).hashCode();
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof HashJoinKey)) {
+			return false;
+		}
+		HashJoinKey other = (HashJoinKey) obj;
+		if (hashCode != other.hashCode || columnValues.length != other.columnValues.length) {
+			return false;
+		}
+		try {
+			for (int i=0; i < columnValues.length; i++) {
+				if (comparator.compare(columnTypes[i], columnValues[i], other.columnTypes[i], other.columnValues[i]) != 0) {
+					return false;
+				}
+			}
+		} catch (DataException e) {
+			throw new IllegalArgumentException(e);
+		} catch (DataTypeMismatchException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return true;
+	}
+}
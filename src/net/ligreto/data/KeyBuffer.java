@@ -0,0 +1,129 @@
+package net.ligreto.data;
+
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The reusable buffer keeping the key column values of the previously processed row
+ * of the data provider. It is used to verify that the rows are received in the order
+ * given by the collation used for the processing.
+ *
+ * The buffer is allocated once for the data provider and the values of the row
+ * are compared with the stored values in place, so no objects are created per row.
+ * The buffer could check only every N-th row, in which case the sampled row is compared
+ * with the previously sampled row.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class KeyBuffer {
+
+	/** The key column indices of the data provider. */
+	protected int[] keyIndices;
+
+	/** The SQL data types of the stored key columns. */
+	protected int[] columnTypes;
+
+	/** Indicates whether the key columns are of a numeric type. */
+	protected boolean[] numeric;
+
+	/** The stored key column values. */
+	protected Object[] values;
+
+	/** Indicates whether the buffer holds the key values. */
+	protected boolean empty = true;
+
+	/** The number of rows between the checked rows. */
+	protected int sampleInterval;
+
+	/** The number of rows since the last checked row. */
+	protected int skippedRows = 0;
+
+	/**
+	 * Creates the buffer for the key columns of the specified data provider.
+	 *
+	 * @param dp the data provider
+	 * @param sampleInterval the number of rows between the checked rows; 1 checks every row
+	 * @throws DataException if any data access error occurred
+	 */
+	public KeyBuffer(DataProvider dp, int sampleInterval) throws DataException {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("The sample interval has to be a positive number: " + sampleInterval);
+		}
+		keyIndices = dp.getKeyIndices();
+		columnTypes = new int[keyIndices.length];
+		numeric = new boolean[keyIndices.length];
+		for (int i=0; i < keyIndices.length; i++) {
+			columnTypes[i] = dp.getColumnType(keyIndices[i]);
+			numeric[i] = dp.isNumeric(keyIndices[i]);
+		}
+		values = new Object[keyIndices.length];
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Counts the row and decides whether it should be checked.
+	 *
+	 * @return true if the current row is sampled
+	 */
+	public boolean sample() {
+		if (++skippedRows < sampleInterval) {
+			return false;
+		}
+		skippedRows = 0;
+		return true;
+	}
+
+	/**
+	 * @return true if no key values were stored yet
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * Stores the key column values of the current row of the data provider.
+	 *
+	 * @param dp the data provider
+	 * @throws DataException if any data access error occurred
+	 */
+	public void store(DataProvider dp) throws DataException {
+		for (int i=0; i < keyIndices.length; i++) {
+			values[i] = dp.getObject(keyIndices[i]);
+		}
+		empty = false;
+	}
+
+	/**
+	 * Compares the stored key with the key of the current row of the data provider.
+	 *
+	 * @param comparator the comparator to use
+	 * @param dp the data provider
+	 * @return -1, 0 or 1 if the stored key is lower, equal or greater than the key of the current row
+	 * @throws LigretoException if the key values could not be compared
+	 */
+	public int compare(LigretoComparator comparator, DataProvider dp) throws LigretoException {
+		for (int i=0; i < keyIndices.length; i++) {
+			int result = comparator.compare(columnTypes[i], values[i], dp.getColumnType(keyIndices[i]), dp.getObject(keyIndices[i]));
+			if (result < 0) {
+				return -1;
+			}
+			if (result > 0) {
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the copy of the stored key values
+	 */
+	public Field[] toFields() {
+		Field[] fields = new Field[values.length];
+		for (int i=0; i < values.length; i++) {
+			fields[i] = new Field(columnTypes[i], values[i], numeric[i]);
+		}
+		return fields;
+	}
+}
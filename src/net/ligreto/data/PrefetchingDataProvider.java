@@ -0,0 +1,262 @@
+package net.ligreto.data;
+
+import java.text.CollationKey;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.DataException;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * Data provider fetching the rows of the underlying data provider in the background thread.
+ *
+ * The producer thread moves the underlying data provider to the next row and copies the column
+ * values into the slots of the bounded ring buffer while the join processing consumes
+ * the rows already fetched. This allows to overlap the waits for the database with the comparison
+ * and output processing. The ring buffer has a single producer and a single consumer, so it
+ * is synchronized only by the volatile positions of both sides. The slots are allocated once and
+ * reused; the values of the current row are valid until the next call to {@link #next()}.
+ *
+ * The producer and consumer stall counters tell how many times the buffer was full or empty.
+ * The frequent producer stalls mean the data are consumed slower than fetched; the frequent
+ * consumer stalls mean the data source is the bottleneck.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class PrefetchingDataProvider extends BufferedDataProvider {
+
+	/** The time in nanoseconds the waiting side is parked before checking the buffer again. */
+	protected static final long PARK_NANOS = 50000L;
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(PrefetchingDataProvider.class);
+
+	/** The reusable slot of the ring buffer. */
+	protected static class Slot {
+		/** The column values of the row. */
+		protected Object[] values;
+
+		/** The row wrapping the values. */
+		protected DataProviderRow row;
+
+		/** Indicates whether the row has duplicate key values with other rows. */
+		protected boolean duplicateKey;
+
+		/** The index within the set of rows with the same key column values. */
+		protected int indexInDuplicates;
+	}
+
+	/** The producer thread fetching the rows into the ring buffer. */
+	protected class ProducerThread extends Thread {
+
+		/** The comparator owned by this thread. */
+		protected LigretoComparator comparator;
+
+		/**
+		 * Creates the producer thread.
+		 *
+		 * @param comparator the comparator owned by this thread
+		 */
+		protected ProducerThread(LigretoComparator comparator) {
+			super("ligreto-prefetch-" + getCaption());
+			this.comparator = comparator;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!cancelled && dataProvider.next()) {
+					long position = tail;
+					if (position - head >= slots.length) {
+						producerStalls++;
+						while (!cancelled && position - head >= slots.length) {
+							LockSupport.parkNanos(PARK_NANOS);
+						}
+					}
+					Slot slot = slots[(int) (position % slots.length)];
+					for (int i=0; i < slot.values.length; i++) {
+						slot.values[i] = dataProvider.getObject(i+1);
+					}
+					if (slot.row.collationKeys != null) {
+						for (int i=0; i < keyIndices.length; i++) {
+							slot.row.collationKeys[keyIndices[i]-1] = dataProvider.getCollationKey(keyIndices[i]);
+						}
+					}
+					slot.duplicateKey = dataProvider.hasDuplicateKey();
+					slot.indexInDuplicates = dataProvider.getIndexInDuplicates();
+					tail = position + 1;
+				}
+			} catch (Throwable t) {
+				throwable = t;
+			} finally {
+				if (comparator != null) {
+					comparator.release();
+				}
+				finished = true;
+			}
+		}
+	}
+
+	/** The slots of the ring buffer. */
+	protected Slot[] slots;
+
+	/** The position of the current row of the consumer. */
+	protected volatile long head = 0;
+
+	/** The position of the next row to be written by the producer. */
+	protected volatile long tail = 0;
+
+	/** Indicates whether the producer fetched all the rows. */
+	protected volatile boolean finished = false;
+
+	/** Indicates whether the prefetching was cancelled. */
+	protected volatile boolean cancelled = false;
+
+	/** The throwable object that was caught by the producer thread. */
+	protected volatile Throwable throwable = null;
+
+	/** The number of times the producer waited for the free slot. */
+	protected volatile long producerStalls = 0;
+
+	/** The number of times the consumer waited for the row to be fetched. */
+	protected long consumerStalls = 0;
+
+	/** Indicates whether the consumer holds the slot of the current row. */
+	protected boolean holdingSlot = false;
+
+	/** Indicates whether the consumer reached the end of data. */
+	protected boolean ended = false;
+
+	/** The producer thread. */
+	protected ProducerThread producer = null;
+
+	/**
+	 * Creates the data provider prefetching the rows of the specified data provider.
+	 *
+	 * @param dataProvider the data provider used to obtain the data
+	 * @param capacity the number of rows fetched in advance
+	 * @throws DataException if any data access error occurred
+	 */
+	public PrefetchingDataProvider(DataProvider dataProvider, int capacity) throws DataException {
+		super(dataProvider);
+		if (capacity < 1) {
+			throw new DataException("The prefetch capacity has to be a positive number: " + capacity);
+		}
+		slots = new Slot[capacity];
+		boolean collationKeys = keyIndices.length > 0 && comparator != null && comparator.usesCollationKeys();
+		for (int i=0; i < slots.length; i++) {
+			slots[i] = new Slot();
+			slots[i].values = new Object[columnTypes.length];
+			slots[i].row = new DataProviderRow(columnTypes, slots[i].values, keyIndices);
+			if (collationKeys) {
+				slots[i].row.collationKeys = new CollationKey[columnTypes.length];
+			}
+		}
+	}
+
+	/**
+	 * Starts the producer thread. It is started by the first call to {@link #next()}
+	 * if not started before. The producer thread uses the copy of the comparator of this
+	 * data provider and the underlying data provider must not be used by other threads since.
+	 */
+	public synchronized void start() {
+		if (producer == null) {
+			LigretoComparator producerComparator = comparator != null ? new LigretoComparator(comparator) : null;
+			dataProvider.setComparator(producerComparator);
+			producer = new ProducerThread(producerComparator);
+			producer.start();
+		}
+	}
+
+	/**
+	 * Stops the producer thread and waits for its termination. The method should be called
+	 * before the underlying data provider is closed if not all the rows were consumed.
+	 */
+	public void close() {
+		cancelled = true;
+		if (producer != null) {
+			try {
+				producer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public boolean next() throws DataException {
+		start();
+		if (holdingSlot) {
+			head = head + 1;
+			holdingSlot = false;
+		}
+		long position = head;
+		if (position == tail && !finished) {
+			consumerStalls++;
+			while (position == tail && !finished) {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		if (position == tail) {
+			// The producer might publish the last row just before it finished
+			if (throwable != null) {
+				throw new DataException("Error while fetching data from \"" + getCaption() + "\".", throwable);
+			}
+			setCurrentRow(null, false, 0);
+			if (ended) {
+				return false;
+			}
+			ended = true;
+			log.info("Prefetched " + position + " rows of data source \"" + getCaption() + "\"; producer stalls: "
+					+ producerStalls + "; consumer stalls: " + consumerStalls);
+			return false;
+		}
+		Slot slot = slots[(int) (position % slots.length)];
+		setCurrentRow(slot.row, slot.duplicateKey, slot.indexInDuplicates);
+		holdingSlot = true;
+		return true;
+	}
+
+	/**
+	 * Fetches the next row. The current row of this data provider is moved as well.
+	 *
+	 * @return the copy of the next row or null if there are no more rows available
+	 * @throws DataException if any data access error occurred
+	 */
+	@Override
+	public DataProviderRow fetchRow() throws DataException {
+		if (!next()) {
+			return null;
+		}
+		DataProviderRow row = new DataProviderRow(columnTypes, currentRow.columnValues.clone(), keyIndices);
+		if (currentRow.collationKeys != null) {
+			row.collationKeys = currentRow.collationKeys.clone();
+		}
+		return row;
+	}
+
+	/**
+	 * @return the number of times the producer waited for the free slot
+	 */
+	public long getProducerStalls() {
+		return producerStalls;
+	}
+
+	/**
+	 * @return the number of times the consumer waited for the row to be fetched
+	 */
+	public long getConsumerStalls() {
+		return consumerStalls;
+	}
+
+	/**
+	 * @return the number of rows fetched in advance
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+}
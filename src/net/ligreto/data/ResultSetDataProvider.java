@@ -8,8 +8,10 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.sql.Date;
+import java.text.CollationKey;
 
 import net.ligreto.exceptions.DataException;
+import net.ligreto.util.LigretoComparator;
 import net.pcal.sqlsheet.XlsResultSet;
 
 /**
@@ -49,12 +51,14 @@ public class ResultSetDataProvider extends DataProvider {
 	 * 
 	 * @param resultSet the result set to be used to obtain the data
 	 * @param keyColumns the indices of key columns
+	 * @param comparator the comparator used to compare the key columns by the current thread
 	 * @throws DataException if any data access error occurred
 	 * @throws SQLException if there was an error in the result set calls
 	 */
-	public ResultSetDataProvider(ResultSet resultSet, int[] keyColumns) throws DataException, SQLException {
+	public ResultSetDataProvider(ResultSet resultSet, int[] keyColumns, LigretoComparator comparator) throws DataException, SQLException {
 		super(resultSet.getMetaData().getColumnCount(), keyColumns, null);
 		this.resultSet = resultSet;
+		this.comparator = comparator;
 		
 		ResultSetMetaData rsmd = resultSet.getMetaData();
 		
@@ -63,7 +67,7 @@ public class ResultSetDataProvider extends DataProvider {
 			columnTypes[i] = rsmd.getColumnType(i+1);
 		}
 		resultSet.next();
-		nextRow = new DataProviderRow(columnTypes, resultSet, keyColumns);
+		nextRow = new DataProviderRow(columnTypes, resultSet, keyColumns, comparator);
 		hasDuplicateKey = false;
 		nextHasDuplicateKey = false;
 	}
@@ -74,12 +78,14 @@ public class ResultSetDataProvider extends DataProvider {
 	 * @param resultSet the result set to be used to obtain the data
 	 * @param keyColumns the indices of key columns
 	 * @param excludeColumns the indices of columns to be excluded
+	 * @param comparator the comparator used to compare the key columns by the current thread
 	 * @throws DataException if any data access error occurred
 	 * @throws SQLException if there was an error in the result set calls
 	 */
-	public ResultSetDataProvider(ResultSet resultSet, int[] keyColumns, int[] excludeColumns) throws SQLException, DataException {
+	public ResultSetDataProvider(ResultSet resultSet, int[] keyColumns, int[] excludeColumns, LigretoComparator comparator) throws SQLException, DataException {
 		super(resultSet.getMetaData().getColumnCount(), keyColumns, excludeColumns);
 		this.resultSet = resultSet;
+		this.comparator = comparator;
 
 		ResultSetMetaData rsmd = resultSet.getMetaData();
 		
@@ -91,7 +97,7 @@ public class ResultSetDataProvider extends DataProvider {
 		}
 
 		if (resultSet.next()) {
-			nextRow = new DataProviderRow(columnTypes, resultSet, originalIndices, keyIndices);
+			nextRow = new DataProviderRow(columnTypes, resultSet, originalIndices, keyIndices, comparator);
 		} else {
 			nextRow = null;
 		}
@@ -110,8 +116,8 @@ public class ResultSetDataProvider extends DataProvider {
 				indexInDuplicates = 0;
 			}
 			if (currentRow != null && resultSet.next()) {
-				nextRow = new DataProviderRow(columnTypes, resultSet, originalIndices, keyIndices);
-				nextHasDuplicateKey = currentRow.compareTo(nextRow) == 0;
+				nextRow = new DataProviderRow(columnTypes, resultSet, originalIndices, keyIndices, comparator);
+				nextHasDuplicateKey = currentRow.compareTo(nextRow, comparator) == 0;
 			} else {
 				nextRow = null;
 				nextHasDuplicateKey = false;
@@ -243,6 +249,11 @@ public class ResultSetDataProvider extends DataProvider {
 		}
 	}
 
+	@Override
+	public CollationKey getCollationKey(int index) throws DataException {
+		return currentRow != null ? currentRow.getCollationKey(index) : null;
+	}
+
 	@Override
 	public Object getObject(int index) throws DataException {	
 		Object columnValue = null;
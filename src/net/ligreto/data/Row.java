@@ -1,5 +1,7 @@
 package net.ligreto.data;
 
+import net.ligreto.util.LigretoComparator;
+
 /**
  * Encapsulates the array of {@code Column} objects. It is required to be
  * a separate class due to efficient hashing to {@code HashMap}-s.
@@ -7,7 +9,7 @@ package net.ligreto.data;
  * @author Julius Stroffek
  *
  */
-public class Row implements Comparable<Object> {
+public class Row {
 	
 	/** The array of field values. */
 	protected Field[] fields = null;
@@ -71,14 +73,18 @@ public class Row implements Comparable<Object> {
 		this.fields = fields;
 	}
 
-	@Override
-	public int compareTo(Object obj) {
-		if (!(obj instanceof Row))
-			throw new IllegalArgumentException("Could not compare Row against other objects.");
-		Row fObj = (Row) obj;
+	/**
+	 * Compares the fields of the rows in their order.
+	 * 
+	 * @param fObj the row to compare with
+	 * @param comparator the comparator owned by the current thread
+	 * @return the negative number, zero or the positive number if this row is lower,
+	 *         equal or greater than the other row
+	 */
+	public int compareTo(Row fObj, LigretoComparator comparator) {
 		int result = 0;
 		for (int i=0; i < fields.length; i++) {
-			result = fields[i].compareTo(fObj.getFields()[i]);
+			result = fields[i].compareTo(fObj.getFields()[i], comparator);
 			if (result != 0)
 				break;
 		}
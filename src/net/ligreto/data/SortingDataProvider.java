@@ -1,24 +1,58 @@
 package net.ligreto.data;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.text.CollationKey;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import net.ligreto.exceptions.DataException;
+import net.ligreto.util.LigretoComparator;
 
 /**
  * Data provider which sorts the data obtained from the underlying data provider
  * by the values of key columns.
  * 
+ * The rows are sorted in memory in runs limited by the sort buffer size. If all the rows
+ * do not fit into a single run, the sorted runs are spilled into temporary files and
+ * they are merged when the rows are fetched from this data provider. Each run is sorted
+ * by the parallel merge sort using the configured number of sort threads. If there are
+ * more runs than the configured fan-in, the neighbouring runs are merged into the larger
+ * spilled runs in several passes first, so the number of the open temporary files
+ * is bounded.
+ * 
  * @author Julius Stroffek
  *
  */
 public class SortingDataProvider extends DataProvider {
 
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(SortingDataProvider.class);
+	
+	/** The minimal number of rows sorted by a single sort thread. */
+	protected static final int MIN_ROWS_PER_SORT_THREAD = 8192;
+	
 	/** The data provider used to fetch the data to be sorted. */
 	protected DataProvider dataProvider;
 	
@@ -27,12 +61,36 @@ public class SortingDataProvider extends DataProvider {
 	
 	/** The SQL data types for the columns. */
 	protected int[] columnTypes;
+	
+	/** The estimated amount of memory in bytes that could be used by a single sorted run. */
+	protected long sortBufferSize;
+	
+	/** The number of threads used to sort a single run. */
+	protected int sortThreads = 1;
+	
+	/** The maximal number of runs merged at once. */
+	protected int fanIn = 64;
+	
+	/** The executor running the parallel sort tasks. */
+	protected ExecutorService sortExecutor;
+	
+	/** The number of rows fetched from the underlying data provider. */
+	protected long rowCount = 0;
+	
+	/** The time in milliseconds spent by fetching the rows from the underlying data provider. */
+	protected long fetchTime = 0;
+	
+	/** The time in milliseconds spent by sorting and spilling the rows. */
+	protected long sortTime = 0;
+	
+	/** The queue of sorted runs ordered by their current rows. */
+	protected PriorityQueue<SortedRun> runs;
 		
-	/** The array of sorted rows. */
-	protected DataProviderRow[] rows;
+	/** The current row. */
+	protected DataProviderRow currentRow;
 	
-	/** The index of current row. */
-	protected int currentRow;
+	/** The row coming after the current row. */
+	protected DataProviderRow nextRow;
 	
 	/** Indicates whether the data were successfully prepared. */
 	protected boolean prepared = false;
@@ -49,19 +107,163 @@ public class SortingDataProvider extends DataProvider {
 	/** The result of the last key comparison. It should be always only 0 or -1. */
 	protected int cmpKey = -1;
 	
+	/**
+	 * The sequence of rows sorted by the key columns.
+	 */
+	protected static abstract class SortedRun {
+		
+		/** The order of the run used to keep the sort stable. */
+		protected int index;
+		
+		/** The current row of the run. */
+		protected DataProviderRow current;
+		
+		/**
+		 * Moves to the next row of the run.
+		 * 
+		 * @param comparator the comparator owned by the current thread
+		 * @return false if there are no more rows in the run
+		 * @throws DataException if the row could not be read
+		 */
+		public abstract boolean advance(LigretoComparator comparator) throws DataException;
+	}
+	
+	/**
+	 * The sorted run kept in memory.
+	 */
+	protected static class MemoryRun extends SortedRun {
+		
+		/** The sorted rows. */
+		protected DataProviderRow[] rows;
+		
+		/** The position of the current row. */
+		protected int position = -1;
+		
+		public MemoryRun(DataProviderRow[] rows, int index) {
+			this.rows = rows;
+			this.index = index;
+		}
+
+		@Override
+		public boolean advance(LigretoComparator comparator) {
+			if (position >= 0) {
+				rows[position] = null;
+			}
+			position++;
+			current = position < rows.length ? rows[position] : null;
+			return current != null;
+		}
+	}
+	
+	/**
+	 * The sorted run spilled into the temporary file.
+	 */
+	protected static class FileRun extends SortedRun {
+		
+		/** The temporary file holding the rows. */
+		protected File file;
+		
+		/** The stream used to read the rows. */
+		protected DataInputStream in;
+		
+		/** The number of rows not yet read. */
+		protected int remaining;
+		
+		/** The SQL data types for the columns. */
+		protected int[] columnTypes;
+		
+		/** The indices of key columns. */
+		protected int[] keyColumns;
+		
+		public FileRun(File file, int rowCount, int[] columnTypes, int[] keyColumns, int index) {
+			this.file = file;
+			this.remaining = rowCount;
+			this.columnTypes = columnTypes;
+			this.keyColumns = keyColumns;
+			this.index = index;
+		}
+
+		@Override
+		public boolean advance(LigretoComparator comparator) throws DataException {
+			try {
+				if (in == null) {
+					in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				}
+				if (remaining == 0) {
+					current = null;
+					in.close();
+					if (!file.delete()) {
+						log.warn("Could not delete the temporary file: " + file.getAbsolutePath());
+					}
+					return false;
+				}
+				current = DataProviderRow.read(in, columnTypes, keyColumns, comparator);
+				remaining--;
+				return true;
+			} catch (IOException e) {
+				throw new DataException("Could not read the sorted rows from the temporary file: " + file.getAbsolutePath(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Orders the sorted runs by their current rows. The runs with the same values
+	 * in key columns are ordered by their creation order to keep the sort stable.
+	 * The rows are compared by the current comparator of the data provider.
+	 */
+	protected class SortedRunComparator implements Comparator<SortedRun> {
+		@Override
+		public int compare(SortedRun run1, SortedRun run2) {
+			int result = run1.current.compareTo(run2.current, comparator);
+			if (result != 0) {
+				return result;
+			}
+			return run1.index < run2.index ? -1 : (run1.index > run2.index ? 1 : 0);
+		}
+	}
+	
 	/**
 	 * Creates the data provider sorting the data by the specified key columns.
+	 * All the data are sorted in memory.
 	 * 
 	 * @param dataProvider the data provider used to obtain the data
 	 * @param keyColumns the indices of the key columns
 	 * @throws DataException if any data access error occurred
 	 */
 	public SortingDataProvider(DataProvider dataProvider, int[] keyColumns) throws DataException {
+		this(dataProvider, keyColumns, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates the data provider sorting the data by the specified key columns.
+	 * 
+	 * @param dataProvider the data provider used to obtain the data
+	 * @param keyColumns the indices of the key columns
+	 * @param sortBufferSize the estimated amount of memory in bytes used to sort the rows
+	 *                       before they are spilled into the temporary file
+	 * @throws DataException if any data access error occurred
+	 */
+	public SortingDataProvider(DataProvider dataProvider, int[] keyColumns, long sortBufferSize) throws DataException {
 		super(dataProvider.getColumnCount(), keyColumns, null);
+		if (sortBufferSize <= 0) {
+			throw new DataException("The sort buffer size has to be positive: " + sortBufferSize);
+		}
 		this.dataProvider = dataProvider;
+		this.sortBufferSize = sortBufferSize;
+		this.comparator = dataProvider.getComparator();
 		setCaption(dataProvider.getCaption());
 	}
 
+	/**
+	 * Sets the comparator of this data provider and of the underlying data provider
+	 * since both are read by the same thread.
+	 */
+	@Override
+	public void setComparator(LigretoComparator comparator) {
+		super.setComparator(comparator);
+		dataProvider.setComparator(comparator);
+	}
+
 	/**
 	 * Prepare the data for further processing.
 	 * 
@@ -73,33 +275,363 @@ public class SortingDataProvider extends DataProvider {
 	public void prepareData() throws DataException {
 		columnCount = dataProvider.getColumnCount();
 		columnTypes = new int[columnCount];
-		LinkedList<DataProviderRow> rowList = new LinkedList<DataProviderRow>();
+		List<DataProviderRow> rowList = new ArrayList<DataProviderRow>();
+		List<SortedRun> sortedRuns = new ArrayList<SortedRun>();
 
 		for (int i=0; i < columnCount; i++) {
 			columnTypes[i] = dataProvider.getColumnType(i+1);
 		}
-		DataProviderRow row = null;
-		while (dataProvider.next()) {
-			row = new DataProviderRow(columnTypes, dataProvider, keyIndices);
-			rowList.add(row);
+		if (sortThreads > 1) {
+			sortExecutor = Executors.newFixedThreadPool(sortThreads);
 		}
-		DataProviderRow[] arrayType = new DataProviderRow[0];
-		rows = rowList.toArray(arrayType);
-		Arrays.sort(rows);
-		currentRow = -1;
+		try {
+			DataProviderRow row = null;
+			long size = 0;
+			long fetchStart = System.nanoTime();
+			while (dataProvider.next()) {
+				row = new DataProviderRow(columnTypes, dataProvider, keyIndices);
+				rowList.add(row);
+				rowCount++;
+				size += row.getEstimatedSize();
+				if (size >= sortBufferSize) {
+					fetchTime += (System.nanoTime() - fetchStart) / 1000000;
+					sortedRuns.add(spillRun(rowList, sortedRuns.size()));
+					rowList.clear();
+					size = 0;
+					fetchStart = System.nanoTime();
+				}
+			}
+			fetchTime += (System.nanoTime() - fetchStart) / 1000000;
+			
+			long sortStart = System.nanoTime();
+			DataProviderRow[] rows = rowList.toArray(new DataProviderRow[rowList.size()]);
+			rowList = null;
+			sortRows(rows);
+			sortTime += (System.nanoTime() - sortStart) / 1000000;
+			sortedRuns.add(new MemoryRun(rows, sortedRuns.size()));
+			
+			while (sortedRuns.size() > fanIn) {
+				sortedRuns = mergeRuns(sortedRuns);
+			}
+		} finally {
+			if (sortExecutor != null) {
+				sortExecutor.shutdown();
+				sortExecutor = null;
+			}
+		}
+		log.info("Prepared " + rowCount + " rows of data source \"" + getCaption() + "\"; fetch: "
+			+ fetchTime + " ms; sort: " + sortTime + " ms; sorted runs: " + sortedRuns.size());
+		
+		runs = new PriorityQueue<SortedRun>(sortedRuns.size(), new SortedRunComparator());
+		for (SortedRun run : sortedRuns) {
+			if (run.advance(comparator)) {
+				runs.add(run);
+			}
+		}
+		currentRow = null;
+		nextRow = fetchSortedRow();
 		cmpKey = -1;
 		prepared = true;
 	}
 	
+	/**
+	 * Sorts the specified rows by the key columns. The sort is stable.
+	 * 
+	 * The array is split into chunks sorted by the separate threads. The sorted chunks
+	 * are then merged in parallel in pairs until the whole array is sorted.
+	 * 
+	 * @param rows the rows to be sorted
+	 * @throws DataException if the sort failed
+	 */
+	protected void sortRows(final DataProviderRow[] rows) throws DataException {
+		int chunks = Math.min(sortThreads, rows.length / MIN_ROWS_PER_SORT_THREAD);
+		if (sortExecutor == null || chunks < 2) {
+			Arrays.sort(rows, new DataProviderRow.KeyComparator(comparator));
+			return;
+		}
+		
+		// Sort the chunks in parallel
+		int[] bounds = new int[chunks + 1];
+		for (int i=0; i <= chunks; i++) {
+			bounds[i] = (int) ((long) rows.length * i / chunks);
+		}
+		List<Future<?>> futures = new ArrayList<Future<?>>(chunks);
+		for (int i=0; i < chunks; i++) {
+			final int from = bounds[i];
+			final int to = bounds[i + 1];
+			futures.add(sortExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					LigretoComparator taskComparator = new LigretoComparator(comparator);
+					try {
+						Arrays.sort(rows, from, to, new DataProviderRow.KeyComparator(taskComparator));
+					} finally {
+						taskComparator.release();
+					}
+				}
+			}));
+		}
+		waitForTasks(futures);
+		
+		// Merge the neighbouring chunks in parallel until there is a single chunk
+		DataProviderRow[] source = rows;
+		DataProviderRow[] target = new DataProviderRow[rows.length];
+		while (chunks > 1) {
+			int mergedChunks = (chunks + 1) / 2;
+			int[] mergedBounds = new int[mergedChunks + 1];
+			futures.clear();
+			for (int i=0; i < chunks; i += 2) {
+				final DataProviderRow[] src = source;
+				final DataProviderRow[] dst = target;
+				final int lo = bounds[i];
+				final int mid = bounds[Math.min(i + 1, chunks)];
+				final int hi = bounds[Math.min(i + 2, chunks)];
+				mergedBounds[i / 2] = lo;
+				futures.add(sortExecutor.submit(new Runnable() {
+					@Override
+					public void run() {
+						LigretoComparator taskComparator = new LigretoComparator(comparator);
+						try {
+							merge(src, dst, lo, mid, hi, taskComparator);
+						} finally {
+							taskComparator.release();
+						}
+					}
+				}));
+			}
+			mergedBounds[mergedChunks] = rows.length;
+			waitForTasks(futures);
+			DataProviderRow[] tmp = source;
+			source = target;
+			target = tmp;
+			bounds = mergedBounds;
+			chunks = mergedChunks;
+		}
+		if (source != rows) {
+			System.arraycopy(source, 0, rows, 0, rows.length);
+		}
+	}
+	
+	/**
+	 * Merges the two neighbouring sorted ranges of the source array into the target array.
+	 * The rows from the first range take precedence in case of equal keys.
+	 * 
+	 * @param src the source array
+	 * @param dst the target array
+	 * @param lo the start of the first range
+	 * @param mid the end of the first range and the start of the second range
+	 * @param hi the end of the second range
+	 * @param comparator the comparator owned by the current thread
+	 */
+	protected static void merge(DataProviderRow[] src, DataProviderRow[] dst, int lo, int mid, int hi, LigretoComparator comparator) {
+		int i = lo, j = mid, k = lo;
+		while (i < mid && j < hi) {
+			if (src[i].compareTo(src[j], comparator) <= 0) {
+				dst[k++] = src[i++];
+			} else {
+				dst[k++] = src[j++];
+			}
+		}
+		while (i < mid) {
+			dst[k++] = src[i++];
+		}
+		while (j < hi) {
+			dst[k++] = src[j++];
+		}
+	}
+	
+	/**
+	 * Waits for the completion of the specified sort tasks.
+	 * 
+	 * @param futures the tasks to wait for
+	 * @throws DataException if any of the tasks failed
+	 */
+	protected void waitForTasks(List<Future<?>> futures) throws DataException {
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new DataException("The sort was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new DataException("The sort of data source \"" + getCaption() + "\" failed.", e.getCause());
+		}
+	}
+	
+	/**
+	 * Sorts the specified rows and writes them into the temporary file.
+	 * 
+	 * @param rowList the rows to be sorted
+	 * @param index the order of the created run
+	 * @return the sorted run stored in the temporary file
+	 * @throws DataException if the rows could not be written
+	 */
+	protected SortedRun spillRun(List<DataProviderRow> rowList, int index) throws DataException {
+		long sortStart = System.nanoTime();
+		DataProviderRow[] rows = rowList.toArray(new DataProviderRow[rowList.size()]);
+		sortRows(rows);
+		File file = null;
+		try {
+			file = File.createTempFile("ligreto", ".sort");
+			file.deleteOnExit();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				for (int i=0; i < rows.length; i++) {
+					rows[i].write(out);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new DataException("Could not write the sorted rows to the temporary file: " + file, e);
+		}
+		sortTime += (System.nanoTime() - sortStart) / 1000000;
+		log.debug("Spilled " + rows.length + " sorted rows of data source \"" + getCaption() + "\" to the file: " + file.getAbsolutePath());
+		return new FileRun(file, rows.length, columnTypes, keyIndices, index);
+	}
+	
+	/**
+	 * Merges each group of the neighbouring runs not larger than the fan-in into a single
+	 * spilled run. Merging only the neighbouring runs keeps the sort stable.
+	 * 
+	 * @param sortedRuns the runs to be merged in the order of their creation
+	 * @return the merged runs in the same order
+	 * @throws DataException if the rows could not be read or written
+	 */
+	protected List<SortedRun> mergeRuns(List<SortedRun> sortedRuns) throws DataException {
+		List<SortedRun> mergedRuns = new ArrayList<SortedRun>((sortedRuns.size() + fanIn - 1) / fanIn);
+		for (int i=0; i < sortedRuns.size(); i += fanIn) {
+			List<SortedRun> group = sortedRuns.subList(i, Math.min(i + fanIn, sortedRuns.size()));
+			if (group.size() == 1) {
+				SortedRun run = group.get(0);
+				run.index = mergedRuns.size();
+				mergedRuns.add(run);
+			} else {
+				mergedRuns.add(mergeRun(group, mergedRuns.size()));
+			}
+		}
+		log.debug("Merged " + sortedRuns.size() + " sorted runs of data source \"" + getCaption() + "\" into " + mergedRuns.size() + " runs");
+		return mergedRuns;
+	}
+	
+	/**
+	 * Merges the specified runs and writes the rows into the temporary file.
+	 * 
+	 * @param group the runs to be merged
+	 * @param index the order of the created run
+	 * @return the merged run stored in the temporary file
+	 * @throws DataException if the rows could not be read or written
+	 */
+	protected SortedRun mergeRun(List<SortedRun> group, int index) throws DataException {
+		long mergeStart = System.nanoTime();
+		PriorityQueue<SortedRun> queue = new PriorityQueue<SortedRun>(group.size(), new SortedRunComparator());
+		for (SortedRun run : group) {
+			if (run.advance(comparator)) {
+				queue.add(run);
+			}
+		}
+		File file = null;
+		int mergedRows = 0;
+		try {
+			file = File.createTempFile("ligreto", ".sort");
+			file.deleteOnExit();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				SortedRun run;
+				while ((run = queue.poll()) != null) {
+					run.current.write(out);
+					mergedRows++;
+					if (run.advance(comparator)) {
+						queue.add(run);
+					}
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new DataException("Could not write the merged rows to the temporary file: " + file, e);
+		}
+		sortTime += (System.nanoTime() - mergeStart) / 1000000;
+		return new FileRun(file, mergedRows, columnTypes, keyIndices, index);
+	}
+	
+	/**
+	 * Merges the sorted runs and returns the next row in the sort order.
+	 * 
+	 * @return the next row or null if there are no more rows
+	 * @throws DataException if the row could not be read
+	 */
+	protected DataProviderRow fetchSortedRow() throws DataException {
+		SortedRun run = runs.poll();
+		if (run == null) {
+			return null;
+		}
+		DataProviderRow row = run.current;
+		if (run.advance(comparator)) {
+			runs.add(run);
+		}
+		return row;
+	}
+	
+	/**
+	 * @return the number of threads used to sort a single run
+	 */
+	public int getSortThreads() {
+		return sortThreads;
+	}
+
+	/**
+	 * @param sortThreads the number of threads used to sort a single run
+	 */
+	public void setSortThreads(int sortThreads) {
+		this.sortThreads = sortThreads;
+	}
+
+	/**
+	 * @return the maximal number of runs merged at once
+	 */
+	public int getFanIn() {
+		return fanIn;
+	}
+
+	/**
+	 * @param fanIn the maximal number of runs merged at once; it has to be at least 2
+	 */
+	public void setFanIn(int fanIn) {
+		this.fanIn = Math.max(2, fanIn);
+	}
+
+	/**
+	 * @return the number of rows fetched from the underlying data provider
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the time in milliseconds spent by fetching the rows from the underlying data provider
+	 */
+	public long getFetchTime() {
+		return fetchTime;
+	}
+
+	/**
+	 * @return the time in milliseconds spent by sorting and spilling the rows
+	 */
+	public long getSortTime() {
+		return sortTime;
+	}
+
 	@Override
 	public boolean next() throws DataException {
 		assert(prepared);
-		currentRow++;
+		currentRow = nextRow;
 		
 		// We are already over the data
-		if (currentRow >= rows.length) {
+		if (currentRow == null) {
 			return false;
 		}
+		nextRow = fetchSortedRow();
 		
 		if (cmpKey == 0) {
 			indexInDuplicates++;
@@ -109,8 +641,8 @@ public class SortingDataProvider extends DataProvider {
 			duplicateKey = false;
 		}
 
-		if (currentRow + 1 < rows.length) {
-			cmpKey = rows[currentRow].compareTo(rows[currentRow + 1]);
+		if (nextRow != null) {
+			cmpKey = currentRow.compareTo(nextRow, comparator);
 			if (cmpKey == 0) {
 				duplicateKey = true;
 			} else {
@@ -123,43 +655,43 @@ public class SortingDataProvider extends DataProvider {
 
 	@Override
 	public Boolean getBoolean(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.BOOLEAN);
-		Boolean result = (Boolean) rows[currentRow].columnValues[index-1];
+		Boolean result = (Boolean) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public Integer getInteger(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.INTEGER);
-		Integer result = (Integer) rows[currentRow].columnValues[index-1];
+		Integer result = (Integer) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public Long getLong(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.BIGINT);
-		Long result = (Long) rows[currentRow].columnValues[index-1];
+		Long result = (Long) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public Double getDouble(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
-		assert(index > 0 && index < columnTypes.length);
+		assert(prepared && currentRow != null);
+		assert(index > 0 && index <= columnTypes.length);
 		Double result = null;
 		switch (columnTypes[index-1]) {
 		case Types.DOUBLE:
 		case Types.FLOAT:
-			result = (Double) rows[currentRow].columnValues[index-1];
+			result = (Double) currentRow.columnValues[index-1];
 			break;
 		default:
 			assert(false);
@@ -172,39 +704,38 @@ public class SortingDataProvider extends DataProvider {
 
 	@Override
 	public Timestamp getTimestamp(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.TIMESTAMP);
-		Timestamp result = (Timestamp) rows[currentRow].columnValues[index-1];
+		Timestamp result = (Timestamp) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public BigDecimal getBigDecimal(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
-		assert(columnTypes[index-1] == Types.TIMESTAMP);
-		BigDecimal result = (BigDecimal) rows[currentRow].columnValues[index-1];
+		assert(columnTypes[index-1] == Types.DECIMAL || columnTypes[index-1] == Types.NUMERIC);
+		BigDecimal result = (BigDecimal) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public Object getObject(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
-		Object result = rows[currentRow].columnValues[index-1];
+		Object result = currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public String getString(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
-		assert(columnTypes[index-1] == Types.TIMESTAMP);
-		String result = (String) rows[currentRow].columnValues[index-1];
+		String result = (String) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
@@ -268,33 +799,35 @@ public class SortingDataProvider extends DataProvider {
 
 	@Override
 	public Time getTime(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.TIMESTAMP);
-		Time result = (Time) rows[currentRow].columnValues[index-1];
+		Time result = (Time) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
 	@Override
 	public Date getDate(int index) throws DataException {
-		assert(prepared && currentRow < rows.length);
+		assert(prepared && currentRow != null);
 		assert(index > 0 && index <= columnTypes.length);
 		assert(columnTypes[index-1] == Types.TIMESTAMP);
-		Date result = (Date) rows[currentRow].columnValues[index-1];
+		Date result = (Date) currentRow.columnValues[index-1];
 		wasNull = (result == null);
 		return result;
 	}
 
+	@Override
+	public CollationKey getCollationKey(int index) throws DataException {
+		return currentRow != null ? currentRow.getCollationKey(index) : null;
+	}
+
 	@Override
 	public boolean isValid() throws DataException {
 		if (!prepared) {
 			return false;
 		}
-		if (currentRow >= 0 && currentRow < rows.length) {
-			return true;
-		}
-		return false;
+		return currentRow != null;
 	}
 
 	@Override
@@ -0,0 +1,89 @@
+package net.ligreto.data;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The class allowing to fetch and sort the data of {@link SortingDataProvider} in the separate
+ * execution thread. This allows to prepare the data from multiple data sources in parallel.
+ * The instances of this class should be used as follows:
+ * <pre>
+ * SortingThread t1 = new SortingThread(...);
+ * SortingThread t2 = new SortingThread(...);
+ * t1.start();
+ * t2.start();
+ * try {
+ *     t1.join();
+ *     t2.join();
+ * } catch (InterruptedException e) {
+ *     throw new LigretoException("Execution interrupted.", e);
+ * }
+ * t1.throwExceptions();
+ * t2.throwExceptions();
+ * </pre>
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class SortingThread extends Thread {
+
+	/** The data provider which data should be prepared. */
+	protected SortingDataProvider dataProvider;
+
+	/** The comparator which settings should be used in this thread. */
+	protected LigretoComparator comparator;
+
+	/** The throwable object that was caught during the thread execution. */
+	protected Throwable throwable = null;
+
+	/**
+	 * Creates the thread preparing the data of the specified data provider. The created thread is not started.
+	 *
+	 * @param dataProvider the data provider which data should be prepared
+	 * @param comparator the comparator which settings should be used to sort the data
+	 */
+	public SortingThread(SortingDataProvider dataProvider, LigretoComparator comparator) {
+		super();
+		this.dataProvider = dataProvider;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Prepare the data. This method is called by {@link #start()}.
+	 */
+	@Override
+	public void run() {
+		LigretoComparator threadComparator = new LigretoComparator(comparator);
+		try {
+			dataProvider.setComparator(threadComparator);
+			dataProvider.prepareData();
+		} catch (Throwable t) {
+			throwable = t;
+		} finally {
+			// The prepared data are read by the thread the comparator was taken from
+			dataProvider.setComparator(comparator);
+			threadComparator.release();
+		}
+	}
+
+	/**
+	 * Provides the access to the throwable object that was thrown during the thread execution.
+	 *
+	 * @return the throwable caught during the thread execution.
+	 */
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	/**
+	 * This method will throw the exception in the current thread that was caught
+	 * during the data preparation.
+	 *
+	 * @throws LigretoException if the throwable object was caught during the data preparation
+	 */
+	public void throwExceptions() throws LigretoException {
+		if (throwable != null) {
+			throw new LigretoException("Error while sorting data from \"" + dataProvider.getCaption() + "\".", throwable);
+		}
+	}
+}
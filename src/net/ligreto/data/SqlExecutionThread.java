@@ -11,7 +11,6 @@ import org.apache.commons.logging.LogFactory;
 
 import net.ligreto.Database;
 import net.ligreto.exceptions.LigretoException;
-import net.ligreto.parser.nodes.LigretoNode;
 import net.ligreto.parser.nodes.SqlNode;
 
 /**
@@ -66,29 +65,30 @@ public class SqlExecutionThread extends Thread {
 	/** The result set to be returned after execution. */
 	protected ResultSet resultSet = null;
 	
-	/** The reference to the ligreto node. */
-	protected LigretoNode ligretoNode = null;
+	/** The database providing the connection to the data source. */
+	protected Database database = null;
 			
 	/**
 	 * Creates the instance.
 	 * 
 	 * Instances should be created only using static method {@link #executeQuery}.
 	 */
-	protected SqlExecutionThread(LigretoNode ligretoNode) {
+	protected SqlExecutionThread(Database database) {
 		super();
-		this.ligretoNode = ligretoNode;
+		this.database = database;
 	}
 	
 	/**
 	 * Creates the instance with the specified query to be executed the separate execution thread. The created thread is not started.
 	 * 
+	 * @param database the database providing the connection to the data source
 	 * @param dataSource the data source name where the query should be executed
 	 * @param query the query string to be executed
 	 * @param queryType the type of the query
 	 * @return the created SqlExecutionThread object
 	 */
-	public static SqlExecutionThread getInstance(LigretoNode ligretoNode, String dataSource, String query, SqlNode.QueryType queryType) {
-		SqlExecutionThread instance = new SqlExecutionThread(ligretoNode);
+	public static SqlExecutionThread getInstance(Database database, String dataSource, String query, SqlNode.QueryType queryType) {
+		SqlExecutionThread instance = new SqlExecutionThread(database);
 		instance.dataSource = dataSource;
 		instance.query = query;
 		instance.queryType = queryType;
@@ -101,7 +101,7 @@ public class SqlExecutionThread extends Thread {
 	@Override
 	public void run() {
 		try {
-			cnn = Database.getInstance(ligretoNode).getConnection(dataSource);
+			cnn = database.getConnection(dataSource);
 			switch (queryType) {
 			case QUERY:
 			case STATEMENT:
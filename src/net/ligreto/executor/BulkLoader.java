@@ -0,0 +1,87 @@
+package net.ligreto.executor;
+
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The loader of the transferred rows using the native bulk load facility of the target database.
+ * The loaders are created by {@link net.ligreto.executor.ddl.DataTypeDialect#createBulkLoader}
+ * if the target database supports the bulk load.
+ *
+ * The loader is used by the thread reading the source rows as follows:
+ * <pre>
+ * BulkLoader loader = dataTypeDialect.createBulkLoader(...);
+ * try {
+ *     // pass the rows by loader.write(row, rowNumber)
+ *     loader.flush();
+ * } finally {
+ *     loader.close();
+ * }
+ * </pre>
+ *
+ * @author Julius Stroffek
+ *
+ */
+public abstract class BulkLoader {
+
+	/** The number of rows passed to the loader. */
+	protected long rowCount = 0;
+
+	/** The number of rows already loaded and committed into the target table. */
+	protected long committedRowCount = 0;
+
+	/**
+	 * Passes the row to be loaded into the target table. The row does not have
+	 * to be loaded until the loader is flushed.
+	 *
+	 * @param row the row values
+	 * @param rowNumber the number of the row in the source result set
+	 * @throws LigretoException if the row could not be loaded
+	 */
+	public abstract void write(Object[] row, long rowNumber) throws LigretoException;
+
+	/**
+	 * Loads and commits all the rows passed to the loader.
+	 *
+	 * @throws LigretoException if the rows could not be loaded
+	 */
+	public abstract void flush() throws LigretoException;
+
+	/**
+	 * Releases the resources of the loader. The connection is not closed.
+	 *
+	 * @throws SQLException if the resources could not be released
+	 */
+	public abstract void close() throws SQLException;
+
+	/**
+	 * @return the description of the bulk load method used in the log messages
+	 */
+	public abstract String getMethod();
+
+	/**
+	 * @return the number of rows passed to the loader
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the number of rows already loaded and committed into the target table
+	 */
+	public long getCommittedRowCount() {
+		return committedRowCount;
+	}
+
+	/**
+	 * Logs the statistics of the loader.
+	 *
+	 * @param log the log to write the statistics into
+	 */
+	public void info(Log log) {
+		log.info("Bulk loaded " + committedRowCount + " rows by " + getMethod() + ".");
+	}
+}
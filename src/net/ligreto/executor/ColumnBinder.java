@@ -0,0 +1,374 @@
+package net.ligreto.executor;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.DataProviderUtils;
+import net.ligreto.util.MiscUtils;
+
+/**
+ * The binder of the single column transferred by the PTP transfer. The binders are created
+ * by {@link #create} once the source column types are known, so the transfer of each row
+ * does not need to dispatch on the data type. The value is read from the source result set
+ * by {@link #read(ResultSet)} and bound to the insert statement by {@link #bind(PreparedStatement, Object)},
+ * which could be done by different threads. The null values of the source columns are read
+ * as null, so the transfer could tell them from zero or false, and they are bound as the SQL
+ * null of the column type.
+ *
+ * The binders do not keep any state except the excel date binder, which keeps its own date format.
+ * The values are read by the single thread, so the date format does not need any synchronization.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public abstract class ColumnBinder {
+
+	/** The index of the column in the result set and of the parameter in the insert statement. */
+	protected int index;
+
+	/** The SQL data type of the column used to bind the null values. */
+	protected int columnType;
+
+	/**
+	 * @param index the index of the column in the result set and of the parameter in the insert statement
+	 * @param columnType the SQL data type of the column
+	 */
+	protected ColumnBinder(int index, int columnType) {
+		this.index = index;
+		this.columnType = columnType;
+	}
+
+	/**
+	 * Reads the column value of the current row of the result set.
+	 *
+	 * @param rs the result set positioned on the row
+	 * @return the column value or null if the value is the SQL null
+	 * @throws SQLException if the value could not be read
+	 * @throws LigretoException if the column type is not supported
+	 * @throws ParseException if the excel date could not be parsed
+	 */
+	public abstract Object read(ResultSet rs) throws SQLException, LigretoException, ParseException;
+
+	/**
+	 * Binds the value read by {@link #read(ResultSet)} to the parameter of the statement.
+	 * The null value is bound as the SQL null of the column type.
+	 *
+	 * @param stmt the statement
+	 * @param value the column value
+	 * @throws SQLException if the value could not be bound
+	 */
+	public void bind(PreparedStatement stmt, Object value) throws SQLException {
+		if (value == null) {
+			stmt.setNull(index, columnType);
+		} else {
+			bindValue(stmt, value);
+		}
+	}
+
+	/**
+	 * Binds the value which is not null to the parameter of the statement.
+	 *
+	 * @param stmt the statement
+	 * @param value the column value
+	 * @throws SQLException if the value could not be bound
+	 */
+	protected abstract void bindValue(PreparedStatement stmt, Object value) throws SQLException;
+
+	/**
+	 * Creates the binder for the specified column.
+	 *
+	 * @param columnType the SQL data type of the source column
+	 * @param index the index of the column in the result set and of the parameter in the insert statement
+	 * @param excelDatePattern the pattern of the dates read from the excel sheets as strings or null
+	 * @return the binder specialized for the column type
+	 */
+	public static ColumnBinder create(int columnType, int index, String excelDatePattern) {
+		switch (columnType) {
+		case Types.BIGINT:
+			return new LongColumnBinder(index, columnType);
+		case Types.BOOLEAN:
+			return new BooleanColumnBinder(index, columnType);
+		case Types.DATE:
+			if (excelDatePattern != null) {
+				return new ExcelDateColumnBinder(index, columnType, excelDatePattern);
+			}
+			return new DateColumnBinder(index, columnType);
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return new BigDecimalColumnBinder(index, columnType);
+		case Types.DOUBLE:
+			return new DoubleColumnBinder(index, columnType);
+		case Types.FLOAT:
+		case Types.REAL:
+			return new FloatColumnBinder(index, columnType);
+		case Types.INTEGER:
+			return new IntegerColumnBinder(index, columnType);
+		case Types.SMALLINT:
+		case Types.TINYINT:
+			return new ShortColumnBinder(index, columnType);
+		case Types.TIMESTAMP:
+			return new TimestampColumnBinder(index, columnType);
+		case Types.CHAR:
+		case Types.LONGNVARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.VARCHAR:
+			return new StringColumnBinder(index, columnType);
+		default:
+			return new UnsupportedColumnBinder(index, columnType);
+		}
+	}
+
+	/**
+	 * Binds the flag telling whether the column value is null. The flag is bound as the integer 1
+	 * for the null values and 0 otherwise, so the statements could compare the null values
+	 * without binding the untyped null parameters. The flag is not read from the result set,
+	 * it is derived from the value read by the binder of the column.
+	 *
+	 * @param stmt the statement
+	 * @param index the index of the flag parameter in the statement
+	 * @param value the column value
+	 * @throws SQLException if the flag could not be bound
+	 */
+	public static void bindNullFlag(PreparedStatement stmt, int index, Object value) throws SQLException {
+		stmt.setInt(index, value == null ? 1 : 0);
+	}
+
+	/** The binder of the BIGINT columns. */
+	protected static class LongColumnBinder extends ColumnBinder {
+		protected LongColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			long value = rs.getLong(index);
+			return rs.wasNull() ? null : Long.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setLong(index, ((Long) value).longValue());
+		}
+	}
+
+	/** The binder of the BOOLEAN columns. */
+	protected static class BooleanColumnBinder extends ColumnBinder {
+		protected BooleanColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			boolean value = rs.getBoolean(index);
+			return rs.wasNull() ? null : Boolean.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setBoolean(index, ((Boolean) value).booleanValue());
+		}
+	}
+
+	/** The binder of the DATE columns. */
+	protected static class DateColumnBinder extends ColumnBinder {
+		protected DateColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			return rs.getDate(index);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setDate(index, (Date) value);
+		}
+	}
+
+	/** The binder of the DATE columns read from the excel sheets as strings. */
+	protected static class ExcelDateColumnBinder extends ColumnBinder {
+		/** The date format used only by the thread reading the rows. */
+		protected DateFormat dateFormat;
+
+		/** The reused parse position. */
+		protected ParsePosition position = new ParsePosition(0);
+
+		protected ExcelDateColumnBinder(int index, int columnType, String excelDatePattern) {
+			super(index, columnType);
+			dateFormat = new SimpleDateFormat(excelDatePattern);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException, ParseException {
+			String dateString = rs.getString(index);
+			if (MiscUtils.isEmpty(dateString)) {
+				return null;
+			}
+			position.setIndex(0);
+			position.setErrorIndex(-1);
+			java.util.Date date = dateFormat.parse(dateString, position);
+			if (date == null) {
+				throw new ParseException("Unparseable date: \"" + dateString + "\"", position.getErrorIndex());
+			}
+			return new Date(date.getTime());
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setDate(index, (Date) value);
+		}
+	}
+
+	/** The binder of the DECIMAL and NUMERIC columns. */
+	protected static class BigDecimalColumnBinder extends ColumnBinder {
+		protected BigDecimalColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			return rs.getBigDecimal(index);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setBigDecimal(index, (BigDecimal) value);
+		}
+	}
+
+	/** The binder of the DOUBLE columns. */
+	protected static class DoubleColumnBinder extends ColumnBinder {
+		protected DoubleColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			double value = rs.getDouble(index);
+			return rs.wasNull() ? null : Double.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setDouble(index, ((Double) value).doubleValue());
+		}
+	}
+
+	/** The binder of the FLOAT and REAL columns. */
+	protected static class FloatColumnBinder extends ColumnBinder {
+		protected FloatColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			float value = rs.getFloat(index);
+			return rs.wasNull() ? null : Float.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setFloat(index, ((Float) value).floatValue());
+		}
+	}
+
+	/** The binder of the INTEGER columns. */
+	protected static class IntegerColumnBinder extends ColumnBinder {
+		protected IntegerColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			int value = rs.getInt(index);
+			return rs.wasNull() ? null : Integer.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setInt(index, ((Integer) value).intValue());
+		}
+	}
+
+	/** The binder of the SMALLINT and TINYINT columns. */
+	protected static class ShortColumnBinder extends ColumnBinder {
+		protected ShortColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			short value = rs.getShort(index);
+			return rs.wasNull() ? null : Short.valueOf(value);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setShort(index, ((Short) value).shortValue());
+		}
+	}
+
+	/** The binder of the TIMESTAMP columns. */
+	protected static class TimestampColumnBinder extends ColumnBinder {
+		protected TimestampColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			return rs.getTimestamp(index);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setTimestamp(index, (Timestamp) value);
+		}
+	}
+
+	/** The binder of the character columns. */
+	protected static class StringColumnBinder extends ColumnBinder {
+		protected StringColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws SQLException {
+			return rs.getString(index);
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) throws SQLException {
+			stmt.setString(index, (String) value);
+		}
+	}
+
+	/** The binder of the columns of unsupported types failing when the first row is read. */
+	protected static class UnsupportedColumnBinder extends ColumnBinder {
+		protected UnsupportedColumnBinder(int index, int columnType) {
+			super(index, columnType);
+		}
+
+		@Override
+		public Object read(ResultSet rs) throws LigretoException {
+			throw new LigretoException("Unsupported data type: " + DataProviderUtils.getJdbcTypeName(columnType));
+		}
+
+		@Override
+		protected void bindValue(PreparedStatement stmt, Object value) {
+			throw new UnsupportedOperationException("Unsupported data type: " + DataProviderUtils.getJdbcTypeName(columnType));
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package net.ligreto.executor;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The loader writing the transferred rows into the temporary delimited file which is loaded
+ * into the target table by the <code>SYSCS_UTIL.SYSCS_IMPORT_DATA</code> system procedure
+ * of the embedded Derby database. The file is read by the database engine itself, so the loader
+ * could be used only with the embedded driver running in the same process.
+ *
+ * The rows are imported at once by {@link #flush()} unless the commit interval is specified.
+ * In such case the file is imported and truncated once the commit interval is reached, so
+ * the size of the temporary file is limited. Each import is committed by the database.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class DerbyBulkLoader extends BulkLoader {
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(DerbyBulkLoader.class);
+
+	/** The column delimiter used in the temporary file. */
+	protected static final char COLUMN_DELIMITER = ',';
+
+	/** The character delimiter used in the temporary file. */
+	protected static final char CHARACTER_DELIMITER = '"';
+
+	/** The encoding of the temporary file. */
+	protected static final String ENCODING = "UTF-8";
+
+	/** The connection to the target data source. */
+	protected Connection cnn;
+
+	/** The schema of the target table or null for the current schema. */
+	protected String schemaName;
+
+	/** The name of the target table. */
+	protected String tableName;
+
+	/** The comma separated list of the names of the loaded columns as stored in the database catalog. */
+	protected String insertColumns;
+
+	/** The number of rows imported at once; all the rows are imported at once if lower than 2. */
+	protected int commitInterval;
+
+	/** The temporary file holding the rows to be imported. */
+	protected File file;
+
+	/** The writer of the temporary file. */
+	protected Writer writer;
+
+	/** The number of the first row written into the temporary file. */
+	protected long firstRow = 0;
+
+	/** The number of the last row written into the temporary file. */
+	protected long lastRow = 0;
+
+	/** The number of rows written into the temporary file. */
+	protected long fileRows = 0;
+
+	/** The time in milliseconds spent by the import procedure. */
+	protected long importMillis = 0;
+
+	/**
+	 * Creates the loader of the specified table. The temporary file is created in the default
+	 * temporary directory.
+	 *
+	 * @param cnn the connection to the target data source owned by the caller
+	 * @param table the name of the target table as specified in the transfer, possibly qualified by the schema
+	 * @param columnNames the names of the loaded columns
+	 * @param quoteColumnNames whether the column names are case sensitive
+	 * @param commitInterval the number of rows imported at once; all the rows are imported at once if lower than 2
+	 * @throws SQLException if the auto commit could not be set
+	 * @throws LigretoException if the temporary file could not be created
+	 */
+	public DerbyBulkLoader(Connection cnn, String table, String[] columnNames, boolean quoteColumnNames, int commitInterval) throws SQLException, LigretoException {
+		this.cnn = cnn;
+		this.commitInterval = commitInterval;
+		// Find the dot separating the schema outside of the quoted identifiers
+		int dot = -1;
+		boolean quoted = false;
+		for (int i=0; i < table.length(); i++) {
+			if (table.charAt(i) == '"') {
+				quoted = !quoted;
+			} else if (table.charAt(i) == '.' && !quoted) {
+				dot = i;
+			}
+		}
+		if (dot >= 0) {
+			schemaName = normalizeIdentifier(table.substring(0, dot), false);
+			tableName = normalizeIdentifier(table.substring(dot + 1), false);
+		} else {
+			tableName = normalizeIdentifier(table, false);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < columnNames.length; i++) {
+			if (i > 0) {
+				sb.append(COLUMN_DELIMITER);
+			}
+			sb.append(normalizeIdentifier(columnNames[i], quoteColumnNames));
+		}
+		insertColumns = sb.toString();
+		cnn.setAutoCommit(true);
+		try {
+			file = File.createTempFile("ligreto-bulk-", ".del");
+			file.deleteOnExit();
+			openFile();
+		} catch (IOException e) {
+			close(file);
+			throw new LigretoException("Failed to create the temporary file for the bulk load.", e);
+		}
+	}
+
+	/**
+	 * Converts the SQL identifier into the name stored in the database catalog.
+	 *
+	 * @param identifier the identifier as used in the SQL statement
+	 * @param caseSensitive whether the unquoted identifier is case sensitive
+	 * @return the identifier without the quotes and in the upper case if it is not case sensitive
+	 */
+	protected static String normalizeIdentifier(String identifier, boolean caseSensitive) {
+		identifier = identifier.trim();
+		if (identifier.length() > 1 && identifier.startsWith("\"") && identifier.endsWith("\"")) {
+			return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+		}
+		if (caseSensitive) {
+			return identifier;
+		}
+		return identifier.toUpperCase();
+	}
+
+	/**
+	 * Opens the writer of the empty temporary file.
+	 *
+	 * @throws IOException if the file could not be opened
+	 */
+	protected void openFile() throws IOException {
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+		fileRows = 0;
+	}
+
+	@Override
+	public void write(Object[] row, long rowNumber) throws LigretoException {
+		try {
+			if (fileRows == 0) {
+				firstRow = rowNumber;
+			}
+			for (int i=0; i < row.length; i++) {
+				if (i > 0) {
+					writer.write(COLUMN_DELIMITER);
+				}
+				writeValue(row[i]);
+			}
+			writer.write('\n');
+			lastRow = rowNumber;
+			fileRows++;
+			rowCount++;
+		} catch (IOException e) {
+			throw new LigretoException("Failed to write the row " + rowNumber + " into the temporary file for the bulk load.", e);
+		}
+		if (commitInterval > 1 && fileRows == commitInterval) {
+			importFile();
+		}
+	}
+
+	/**
+	 * Writes the single value in the format expected by the import procedure. The null values
+	 * are written as empty fields and the character values are always delimited, so the empty
+	 * strings are distinguished from the null values.
+	 *
+	 * @param value the value to write
+	 * @throws IOException if the value could not be written
+	 */
+	protected void writeValue(Object value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		if (value instanceof String) {
+			String str = (String) value;
+			writer.write(CHARACTER_DELIMITER);
+			if (str.indexOf(CHARACTER_DELIMITER) >= 0) {
+				str = str.replace("\"", "\"\"");
+			}
+			writer.write(str);
+			writer.write(CHARACTER_DELIMITER);
+		} else if (value instanceof BigDecimal) {
+			writer.write(((BigDecimal) value).toPlainString());
+		} else if ((value instanceof Double || value instanceof Float) && !isSpecial(((Number) value).doubleValue())) {
+			// The exact decimal form of the value without the exponent, as for the decimals
+			writer.write(new BigDecimal(value.toString()).toPlainString());
+		} else {
+			// The numbers, booleans, dates and timestamps are formatted in the SQL format
+			writer.write(value.toString());
+		}
+	}
+
+	/**
+	 * @param value the floating point value
+	 * @return true if the value is not a number or the infinity which have no decimal form
+	 */
+	protected static boolean isSpecial(double value) {
+		return Double.isNaN(value) || Double.isInfinite(value);
+	}
+
+	/**
+	 * Imports the rows written into the temporary file and truncates the file.
+	 *
+	 * @throws LigretoException if the rows could not be imported
+	 */
+	protected void importFile() throws LigretoException {
+		if (fileRows == 0) {
+			return;
+		}
+		try {
+			writer.close();
+			writer = null;
+		} catch (IOException e) {
+			throw new LigretoException("Failed to write the temporary file for the bulk load.", e);
+		}
+		long startTime = System.currentTimeMillis();
+		CallableStatement stmt = null;
+		try {
+			stmt = cnn.prepareCall("CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(?, ?, ?, null, ?, ?, ?, ?, 0)");
+			stmt.setString(1, schemaName);
+			stmt.setString(2, tableName);
+			stmt.setString(3, insertColumns);
+			stmt.setString(4, file.getAbsolutePath());
+			stmt.setString(5, String.valueOf(COLUMN_DELIMITER));
+			stmt.setString(6, String.valueOf(CHARACTER_DELIMITER));
+			stmt.setString(7, ENCODING);
+			stmt.execute();
+			committedRowCount += fileRows;
+		} catch (SQLException e) {
+			throw new LigretoException("Failed to bulk load the rows " + firstRow + " to " + lastRow + " into the target table.", e);
+		} finally {
+			importMillis += System.currentTimeMillis() - startTime;
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException e) {
+					log.debug("Failed to close the import statement.", e);
+				}
+			}
+		}
+		try {
+			openFile();
+		} catch (IOException e) {
+			throw new LigretoException("Failed to truncate the temporary file for the bulk load.", e);
+		}
+	}
+
+	@Override
+	public void flush() throws LigretoException {
+		importFile();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log.debug("Failed to close the temporary file for the bulk load.", e);
+			}
+			writer = null;
+		}
+		close(file);
+	}
+
+	/**
+	 * Deletes the temporary file.
+	 *
+	 * @param file the file to delete or null
+	 */
+	protected static void close(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			log.debug("Failed to delete the temporary file for the bulk load: " + file.getAbsolutePath());
+		}
+	}
+
+	@Override
+	public String getMethod() {
+		return "SYSCS_UTIL.SYSCS_IMPORT_DATA";
+	}
+
+	@Override
+	public void info(Log log) {
+		super.info(log);
+		log.info("Import procedure took " + importMillis + " ms.");
+	}
+}
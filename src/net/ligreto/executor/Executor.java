@@ -1,10 +1,25 @@
 package net.ligreto.executor;
 
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.exceptions.LigretoException;
 
 public abstract class Executor {
 	
+	/** The context of the execution run. */
+	protected ExecutionContext executionContext = null;
+	
+	/** Creates the executor without the execution context. */
+	protected Executor() {
+	}
+	
+	/**
+	 * @param executionContext the context of the execution run
+	 */
+	protected Executor(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+	
 	/**
 	 * Execute the operation.
 	 * 
@@ -12,4 +27,11 @@ public abstract class Executor {
 	 * @throws LigretoException
 	 */
 	public abstract ResultStatus execute() throws LigretoException;
+
+	/**
+	 * @return the context of the execution run
+	 */
+	public ExecutionContext getExecutionContext() {
+		return executionContext;
+	}
 }
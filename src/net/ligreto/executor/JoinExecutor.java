@@ -8,25 +8,37 @@ import java.sql.SQLException;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import net.ligreto.Database;
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.builders.BuilderInterface;
 import net.ligreto.builders.TargetInterface;
-import net.ligreto.data.Field;
 import net.ligreto.data.DataProvider;
+import net.ligreto.data.DataProviderRow;
+import net.ligreto.data.BufferedDataProvider;
+import net.ligreto.data.HashJoinKey;
+import net.ligreto.data.KeyBuffer;
+import net.ligreto.data.PrefetchingDataProvider;
 import net.ligreto.data.ResultSetDataProvider;
 import net.ligreto.data.SortingDataProvider;
+import net.ligreto.data.SortingThread;
 import net.ligreto.data.SqlExecutionThread;
 import net.ligreto.exceptions.CollationException;
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.DataTypeMismatchException;
 import net.ligreto.exceptions.DuplicateKeyValuesException;
 import net.ligreto.exceptions.LigretoException;
 import net.ligreto.exceptions.UnimplementedMethodException;
+import net.ligreto.executor.layouts.AsyncJoinLayout;
 import net.ligreto.executor.layouts.JoinLayout;
 import net.ligreto.executor.layouts.JoinLayout.JoinResultType;
 import net.ligreto.parser.nodes.JoinNode;
@@ -35,6 +47,8 @@ import net.ligreto.parser.nodes.JoinNode.SortingStrategy;
 import net.ligreto.parser.nodes.LayoutNode;
 import net.ligreto.parser.nodes.SqlNode;
 import net.ligreto.parser.nodes.Node.Attitude;
+import net.ligreto.util.CollationKeyStatistics;
+import net.ligreto.util.ColumnComparator;
 import net.ligreto.util.MiscUtils;
 import net.ligreto.util.LigretoComparator;
 
@@ -70,6 +84,13 @@ public class JoinExecutor extends Executor implements JoinResultCallBack {
 	/** The collator to be used for join processing based on the specified locale. */
 	protected Comparator<Object> comparator;
 	
+	/**
+	 * @param executionContext the context of the execution run
+	 */
+	public JoinExecutor(ExecutionContext executionContext) {
+		super(executionContext);
+	}
+	
 	@Override
 	public boolean prepareProcessing(JoinNode joinNode, ResultSet rs1, ResultSet rs2) throws Exception {
 		throw new UnimplementedMethodException("Callback implementation is not done for join execution");
@@ -105,11 +126,12 @@ public class JoinExecutor extends Executor implements JoinResultCallBack {
 
 			// Use the specified collator class if no locale is specified
 			// and both collatorClass and collationName were specified
-			// and we are not doing internal sort
+			// and we are not doing internal sort or hash join
 			if (collatorClassName != null
 					&& !"".equals(collatorClassName)
 					&& (localeName == null || "".equals(localeName))
-					&& joinNode.getSortingStrategy() != JoinNode.SortingStrategy.INTERNAL) {
+					&& joinNode.getSortingStrategy() != JoinNode.SortingStrategy.INTERNAL
+					&& joinNode.getSortingStrategy() != JoinNode.SortingStrategy.HASH) {
 				if ("oracle.i18n.text.OraCollator".equals(collatorClassName)) {
 					Class<?> collatorClass = Class.forName(collatorClassName);
 
@@ -163,11 +185,32 @@ public class JoinExecutor extends Executor implements JoinResultCallBack {
 		if (sqlQueries.size() < 2)
 			throw new LigretoException("There have to be two queries defined for a join.");
 		
-		if (sqlQueries.size() > 2)
-			throw new UnimplementedMethodException("Join of more than 2 tables is not yet implemented");
+		// The layouts comparing other pair of queries than the first two require the multi-way join
+		boolean multiJoin = sqlQueries.size() > 2;
+		for (LayoutNode layoutNode : joinNode.getLayouts()) {
+			int[] sources = layoutNode.getSources();
+			if (sources[0] > sqlQueries.size() || sources[1] > sqlQueries.size()) {
+				throw new LigretoException("The layout sources are out of the range of the queries: " + sources[0] + "," + sources[1]);
+			}
+			if (sources[0] != 1 || sources[1] != 2) {
+				multiJoin = true;
+			}
+		}
+		if (multiJoin && joinNode.getSortingStrategy() == SortingStrategy.HASH)
+			throw new UnimplementedMethodException("Hash join of more than 2 queries is not yet implemented");
+		
+		SqlExecutionThread[] execs1 = new SqlExecutionThread[0];
+		SqlExecutionThread[] execs2 = new SqlExecutionThread[0];
+		SqlExecutionThread[] otherExecs = new SqlExecutionThread[sqlQueries.size() - 2];
+		List<PrefetchingDataProvider> prefetchers = new ArrayList<PrefetchingDataProvider>();
+		Map<Object, AsyncJoinLayout.LayoutThread> layoutThreads = new IdentityHashMap<Object, AsyncJoinLayout.LayoutThread>();
 		
-		SqlExecutionThread exec1 = null;
-		SqlExecutionThread exec2 = null;
+		// The comparator of the join used by this thread; the worker threads use its copies
+		LigretoComparator rsComparator = new LigretoComparator(executionContext.getLigretoParameters());
+		rsComparator.setComparator(comparator);
+		if (executionContext.getLigretoParameters().getCollationKeys() && comparator instanceof Collator) {
+			rsComparator.setCollationKeyStatistics(new CollationKeyStatistics(null));
+		}
 		ResultSet rs1 = null, rs2 = null;
 		try {
 			StringBuilder qry1 = new StringBuilder(sqlQueries.get(0).getQuery().toString());
@@ -179,139 +222,181 @@ public class JoinExecutor extends Executor implements JoinResultCallBack {
 			
 			// Do certain sanity checks here
 
-			
-			if (key.length > 0 && joinNode.getSortingStrategy() == SortingStrategy.EXTERNAL) {
+			// Split the key space into the ranges processed in parallel
+			List<String> partitionBounds = joinNode.getPartitionBounds();
+			if (partitionBounds == null && joinNode.getPartitions() > 1 || partitionBounds != null && partitionBounds.size() > 0) {
+				if (joinNode.getSortingStrategy() == SortingStrategy.HASH) {
+					throw new LigretoException("The partitioned join could not be used with the hash sort.");
+				}
+				if (multiJoin) {
+					throw new LigretoException("The partitioned join could be used only for the layouts comparing the first two queries.");
+				}
+				if (key.length == 0) {
+					throw new LigretoException("The partitioned join requires the \"key\" attribute.");
+				}
+				for (SqlNode sqlQuery : sqlQueries) {
+					if (sqlQuery.getQueryType() != SqlNode.QueryType.QUERY) {
+						throw new LigretoException("The partitioned join could be used only with queries.");
+					}
+				}
+				String column1 = JoinPartition.getColumnLabel(executionContext, sqlQueries.get(0), key[0]);
+				String column2 = JoinPartition.getColumnLabel(executionContext, sqlQueries.get(1), key[0]);
+				if (partitionBounds == null) {
+					partitionBounds = JoinPartition.getBounds(executionContext, sqlQueries.get(0), column1, joinNode.getPartitions());
+				}
+				int[] orderBy = joinNode.getSortingStrategy() == SortingStrategy.EXTERNAL ? key : null;
+				execs1 = new SqlExecutionThread[partitionBounds.size() + 1];
+				execs2 = new SqlExecutionThread[partitionBounds.size() + 1];
+				for (int i=0; i < execs1.length; i++) {
+					String pqry1 = JoinPartition.getPartitionQuery(qry1.toString(), column1, partitionBounds, i, orderBy);
+					String pqry2 = JoinPartition.getPartitionQuery(qry2.toString(), column2, partitionBounds, i, orderBy);
+					execs1[i] = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlQueries.get(0).getDataSource(), pqry1, sqlQueries.get(0).getQueryType());
+					execs2[i] = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlQueries.get(1).getDataSource(), pqry2, sqlQueries.get(1).getQueryType());
+				}
+				log.info("The join is split into " + execs1.length + " partitions.");
+			} else if (key.length > 0 && joinNode.getSortingStrategy() == SortingStrategy.EXTERNAL) {
 				// Things are all right, so we will continue...
-				qry1.append(" order by ");
-				qry2.append(" order by ");
-				for (int i = 0; i < key.length; i++) {
-					qry1.append(key[i]);
-					qry1.append(" nulls first,");
-					qry2.append(key[i]);
-					qry2.append(" nulls first,");
+				qry1.append(getOrderByClause(key));
+				qry2.append(getOrderByClause(key));
+			}
+			for (int i=0; i < otherExecs.length; i++) {
+				SqlNode sqlQuery = sqlQueries.get(i + 2);
+				StringBuilder qry = new StringBuilder(sqlQuery.getQuery().toString());
+				if (key.length > 0 && joinNode.getSortingStrategy() == SortingStrategy.EXTERNAL) {
+					qry.append(getOrderByClause(key));
 				}
-				qry1.deleteCharAt(qry1.length() - 1);
-				qry2.deleteCharAt(qry2.length() - 1);
+				otherExecs[i] = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlQuery.getDataSource(), qry.toString(), sqlQuery.getQueryType());
+			}
+			if (execs1.length == 0) {
+				execs1 = new SqlExecutionThread[] {
+					SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlQueries.get(0).getDataSource(), qry1.toString(), sqlQueries.get(0).getQueryType())
+				};
+				execs2 = new SqlExecutionThread[] {
+					SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlQueries.get(1).getDataSource(), qry2.toString(), sqlQueries.get(1).getQueryType())
+				};
 			}
 			int fetchSize = joinNode.getLigretoNode().getLigretoParameters().getFetchSize();
-			exec1 = SqlExecutionThread.getInstance(joinNode.getLigretoNode(), sqlQueries.get(0).getDataSource(), qry1.toString(), sqlQueries.get(0).getQueryType());
-			exec1.setFetchSize(fetchSize);
-			exec1.start();
-			exec2 = SqlExecutionThread.getInstance(joinNode.getLigretoNode(), sqlQueries.get(1).getDataSource(), qry2.toString(), sqlQueries.get(1).getQueryType());
-			exec2.setFetchSize(fetchSize);
-			exec2.start();
+			for (int i=0; i < execs1.length; i++) {
+				execs1[i].setFetchSize(fetchSize);
+				execs1[i].start();
+				execs2[i].setFetchSize(fetchSize);
+				execs2[i].start();
+			}
+			for (int i=0; i < otherExecs.length; i++) {
+				otherExecs[i].setFetchSize(fetchSize);
+				otherExecs[i].start();
+			}
 			
 			try {
-				exec1.join();
-				exec2.join();
+				for (int i=0; i < execs1.length; i++) {
+					execs1[i].join();
+					execs2[i].join();
+				}
+				for (int i=0; i < otherExecs.length; i++) {
+					otherExecs[i].join();
+				}
 			} catch (InterruptedException e) {
 				throw new LigretoException("Execution interrupted.", e);
 			}
 
-			exec1.throwExceptions();
-			exec2.throwExceptions();
-			rs1 = exec1.getResultSet();
-			rs2 = exec2.getResultSet();			
-			
-			ResultSetMetaData rsmd1 = rs1.getMetaData();
-			ResultSetMetaData rsmd2 = rs2.getMetaData();
+			for (int i=0; i < execs1.length; i++) {
+				execs1[i].throwExceptions();
+				execs2[i].throwExceptions();
+			}
+			for (int i=0; i < otherExecs.length; i++) {
+				otherExecs[i].throwExceptions();
+			}
+			rs1 = execs1[0].getResultSet();
+			rs2 = execs2[0].getResultSet();			
+			ResultSet[] rss = new ResultSet[sqlQueries.size()];
+			rss[0] = rs1;
+			rss[1] = rs2;
+			for (int i=0; i < otherExecs.length; i++) {
+				rss[i + 2] = otherExecs[i].getResultSet();
+			}
 			
-			for (int i=0; i < key.length; i++) {
-				if (key[i] > rsmd1.getColumnCount())
-					throw new LigretoException("Index in \"key\" is out of the range for 1st query. It is \""
-							+ key[i] + "\" and should be \"" + rsmd1.getColumnCount() + "\" the largest.");
-				if (key[i] > rsmd2.getColumnCount())
-					throw new LigretoException("Index in \"key\" is out of the range for 2nd query. It is \""
-							+ key[i] + "\" and should be \"" + rsmd1.getColumnCount() + "\" the largest.");
+			for (int r=0; r < rss.length; r++) {
+				ResultSetMetaData rsmd = rss[r].getMetaData();
+				for (int i=0; i < key.length; i++) {
+					if (key[i] > rsmd.getColumnCount())
+						throw new LigretoException("Index in \"key\" is out of the range for " + MiscUtils.ordinal(r + 1) + " query. It is \""
+								+ key[i] + "\" and should be \"" + rsmd.getColumnCount() + "\" the largest.");
+				}
 			}
 		
 			// Process the exclude columns
-			String[] exclStr1 = sqlQueries.get(0).getExcludeColumns();
-			String[] exclStr2 = sqlQueries.get(1).getExcludeColumns();
-			
-			if (exclStr1 == null)
-				exclStr1 = joinNode.getExcludeColumns();
-			
-			if (exclStr2 == null)
-				exclStr2 = joinNode.getExcludeColumns();
-			
-			// Initialize exclude arrays to empty arrays
-			int[] excl1Tmp = new int[0];
-			int[] excl2Tmp = new int[0];
-			int excl1Count = 0, excl2Count = 0;
+			int[][] excls = new int[rss.length][];
+			for (int r=0; r < rss.length; r++) {
+				excls[r] = getExcludeIndices(joinNode, sqlQueries.get(r), rss[r], key, MiscUtils.ordinal(r + 1));
+			}
+			int[] excl1 = excls[0];
+			int[] excl2 = excls[1];
 			
-			// Convert the column names into numbers for sql query 1
-			if (exclStr1 != null && exclStr1.length > 0) {
-				excl1Tmp = new int[exclStr1.length];
-				for (int i=0; i < exclStr1.length; i++) {
-					excl1Tmp[i] = MiscUtils.findColumnIndex(rs1, exclStr1[i]);
-					if (excl1Tmp[i] >= 0) {
-						if (MiscUtils.arrayContains(key, excl1Tmp[i])) {
-							throw new LigretoException("Column listed in 'exclude' attribute cannot be used in 'on' clause:" + exclStr1[i]);
-						}
-						excl1Count++;
-						log.info("Excluding column \"" + exclStr1[i] + "\" from 1st sql query which has the index: " + excl1Tmp[i]);
-					} else {
-						log.info("Column to be exculded \"" + exclStr1[i] + "\" from 1st sql query was not found in the result set.");												
-					}
+			DataProvider[] dps = new DataProvider[rss.length];
+			for (int r=0; r < rss.length; r++) {
+				dps[r] = new ResultSetDataProvider(rss[r], key, excls[r], rsComparator);
+				String dSrc = joinNode.getSqlQueries().get(r).getDataSource();
+				dps[r].setCaption(executionContext.getDatabase().getDataSourceNode(dSrc).getDescription());
+				if (dps[0].getColumnCount() != dps[r].getColumnCount()) {
+					throw new LigretoException("Result set column counts differs: " + dps[0].getColumnCount() + " and " + dps[r].getColumnCount());
 				}
+				dps[r] = prefetch(dps[r], joinNode, prefetchers);
 			}
+			DataProvider dp1 = dps[0];
+			DataProvider dp2 = dps[1];
 			
-			// Convert the column names into numbers for sql query 2
-			if (exclStr2 != null && exclStr2.length > 0) {
-				excl2Tmp = new int[exclStr2.length];
-				for (int i=0; i < exclStr2.length; i++) {
-					excl2Tmp[i] = MiscUtils.findColumnIndex(rs2, exclStr2[i]);
-					if (excl2Tmp[i] >= 0) {
-						if (MiscUtils.arrayContains(key, excl2Tmp[i])) {
-							throw new LigretoException("Column listed in 'exclude' attribute cannot be used in 'on' clause:" + exclStr2[i]);
-						}
-						excl2Count++;
-						log.info("Excluding column \"" + exclStr2[i] + "\" from 2nd sql query which has the index: " + excl2Tmp[i]);
-					} else {
-						log.info("Column to be exculded \"" + exclStr2[i] + "\" from 2nd sql query was not found in the result set.");						
-					}
+			// The data providers of each partition are processed in the partition threads
+			DataProvider[] partitionDps1 = null;
+			DataProvider[] partitionDps2 = null;
+			if (execs1.length > 1) {
+				partitionDps1 = new DataProvider[execs1.length];
+				partitionDps2 = new DataProvider[execs2.length];
+				partitionDps1[0] = dp1;
+				partitionDps2[0] = dp2;
+				for (int i=1; i < execs1.length; i++) {
+					partitionDps1[i] = new ResultSetDataProvider(execs1[i].getResultSet(), key, excl1, rsComparator);
+					partitionDps2[i] = new ResultSetDataProvider(execs2[i].getResultSet(), key, excl2, rsComparator);
+					partitionDps1[i].setCaption(dp1.getCaption());
+					partitionDps2[i].setCaption(dp2.getCaption());
+					partitionDps1[i] = prefetch(partitionDps1[i], joinNode, prefetchers);
+					partitionDps2[i] = prefetch(partitionDps2[i], joinNode, prefetchers);
 				}
 			}
 			
-			int[] excl1 = new int[excl1Count];
-			int[] excl2 = new int[excl2Count];
-			
-			for (int i=0, ti=0; i < excl1Tmp.length; i++) {
-				if (excl1Tmp[i] >= 0) {
-					excl1[ti] = excl1Tmp[i];
-					ti++;
+			if (joinNode.getSortingStrategy() == SortingStrategy.INTERNAL && partitionDps1 == null) {
+				long sortBufferSize = joinNode.getLigretoNode().getLigretoParameters().getSortBufferSize() * 1024L;
+				
+				// Fetch and sort the data from all data sources in parallel
+				SortingThread[] sorts = new SortingThread[dps.length];
+				for (int r=0; r < dps.length; r++) {
+					SortingDataProvider sdp = new SortingDataProvider(dps[r], key, sortBufferSize);
+					sdp.setSortThreads(joinNode.getLigretoNode().getLigretoParameters().getSortThreads());
+					sdp.setFanIn(joinNode.getLigretoNode().getLigretoParameters().getSortFanIn());
+					dps[r] = sdp;
+					sorts[r] = new SortingThread(sdp, rsComparator);
+					sorts[r].start();
 				}
-			}
-			for (int i=0, ti=0; i < excl2Tmp.length; i++) {
-				if (excl2Tmp[i] >= 0) {
-					excl2[ti] = excl2Tmp[i];
-					ti++;
+				try {
+					for (int r=0; r < sorts.length; r++) {
+						sorts[r].join();
+					}
+				} catch (InterruptedException e) {
+					throw new LigretoException("Execution interrupted.", e);
 				}
+				for (int r=0; r < sorts.length; r++) {
+					sorts[r].throwExceptions();
+				}
+				dp1 = dps[0];
+				dp2 = dps[1];
 			}
 			
-			// The comparator instance
-			LigretoComparator rsComparator = LigretoComparator.getInstance(joinNode.getLigretoNode().getLigretoParameters());
-			rsComparator.setComparator(comparator);
-			
-			DataProvider dp1 = new ResultSetDataProvider(rs1, key, excl1);
-			DataProvider dp2 = new ResultSetDataProvider(rs2, key, excl2);
-			String dSrc1 =  joinNode.getSqlQueries().get(0).getDataSource();
-			String dSrc2 =  joinNode.getSqlQueries().get(1).getDataSource();		
-			dp1.setCaption(Database.getInstance().getDataSourceNode(dSrc1).getDescription());		
-			dp2.setCaption(Database.getInstance().getDataSourceNode(dSrc2).getDescription());		
-			
-			if (dp1.getColumnCount() != dp2.getColumnCount()) {
-				throw new LigretoException("Result set column counts differs: " + dp1.getColumnCount() + " and " + dp2.getColumnCount());
-			}
-			
-			if (joinNode.getSortingStrategy() == SortingStrategy.INTERNAL) {
-				SortingDataProvider sdp1 = new SortingDataProvider(dp1, key);
-				SortingDataProvider sdp2 = new SortingDataProvider(dp2, key);
-				sdp1.prepareData();
-				sdp2.prepareData();
-				dp1 = sdp1;
-				dp2 = sdp2;
+			BufferedDataProvider hdp1 = null;
+			BufferedDataProvider hdp2 = null;
+			if (joinNode.getSortingStrategy() == SortingStrategy.HASH || partitionDps1 != null) {
+				hdp1 = new BufferedDataProvider(dp1);
+				hdp2 = new BufferedDataProvider(dp2);
+				dp1 = hdp1;
+				dp2 = hdp2;
 			}
 			
 			// Get the list of columns to compare
@@ -384,241 +469,835 @@ public class JoinExecutor extends Executor implements JoinResultCallBack {
 				joinLayout.setLayoutNode(layoutNode);
 				joinLayout.setGroupByColumns(layoutNode.getGroupBy());
 				joinLayout.setResultStatus(result);
-				joinLayout.setDataProviders(dp1, dp2);
+				int[] sources = layoutNode.getSources();
+				joinLayout.setDataProviders(multiJoin ? dps[sources[0] - 1] : dp1, multiJoin ? dps[sources[1] - 1] : dp2);
 				joinLayout.setComparedColumns(columns);
+				joinLayout.setComparator(rsComparator);
 				joinLayout.start();
 				
 				// Dump the header row if requested
 				if (layoutNode.getHeader()) {
 					joinLayout.dumpHeader();
 				}
-				layouts.add(joinLayout);
+				layouts.add(async(joinLayout, joinNode, rsComparator, reportBuilder.getTargetLock(targetBuilder), layoutThreads));
+			}
+			for (AsyncJoinLayout.LayoutThread layoutThread : layoutThreads.values()) {
+				layoutThread.start();
+			}
+			
+			if (joinNode.getSortingStrategy() == SortingStrategy.HASH) {
+				processHashJoin(joinNode, hdp1, hdp2, layouts, columns, trueArray, otherColumnCount, firstTarget);
+			} else if (multiJoin) {
+				processMultiJoin(joinNode, dps, layouts, columns, trueArray, otherColumnCount, firstTarget);
+			} else if (partitionDps1 != null) {
+				List<JoinPartition> partitions = new ArrayList<JoinPartition>();
+				for (int i=0; i < partitionDps1.length; i++) {
+					partitions.add(new JoinPartition(this, joinNode, i, partitionDps1[i], partitionDps2[i], rsComparator, columns, trueArray, otherColumnCount, firstTarget));
+				}
+				processPartitionedJoin(partitions, hdp1, hdp2, layouts);
+			} else {
+				processMergeJoin(joinNode, dp1, dp2, layouts, columns, trueArray, otherColumnCount, firstTarget);
+			}
+
+			result = new ResultStatus();
+			for (JoinLayout joinLayout : layouts) {
+				result.merge(joinLayout.finish());
+			}
+		}
+		finally {
+			for (AsyncJoinLayout.LayoutThread layoutThread : layoutThreads.values()) {
+				layoutThread.cancel();
+			}
+			// The background fetching has to be stopped before the result sets are closed
+			for (PrefetchingDataProvider prefetcher : prefetchers) {
+				prefetcher.close();
+			}
+			for (int i=0; i < execs1.length; i++) {
+				if (execs1[i] != null) {
+					execs1[i].cleanup();
+				}
+				if (execs2[i] != null) {
+					execs2[i].cleanup();
+				}
+			}
+			for (int i=0; i < otherExecs.length; i++) {
+				if (otherExecs[i] != null) {
+					otherExecs[i].cleanup();
+				}
+			}
+		}
+		CollationKeyStatistics collationKeyStatistics = rsComparator.getCollationKeyStatistics();
+		if (collationKeyStatistics != null) {
+			collationKeyStatistics.info(log);
+		}
+		result.info(log, "JOIN COMPARISON");
+		return result;
+	}
+
+	/**
+	 * Wraps the data provider by the data provider fetching its rows in the background thread
+	 * if requested by the "prefetchSize" parameter.
+	 * 
+	 * @param dp the data provider to wrap
+	 * @param joinNode the join node being processed
+	 * @param prefetchers the list where the created prefetching data provider is added
+	 * @return the data provider to be used for the join
+	 * @throws DataException if any data access error occurred
+	 */
+	protected DataProvider prefetch(DataProvider dp, JoinNode joinNode, List<PrefetchingDataProvider> prefetchers) throws DataException {
+		int prefetchSize = joinNode.getLigretoNode().getLigretoParameters().getPrefetchSize();
+		if (prefetchSize <= 0) {
+			return dp;
+		}
+		PrefetchingDataProvider prefetcher = new PrefetchingDataProvider(dp, prefetchSize);
+		prefetchers.add(prefetcher);
+		prefetcher.start();
+		return prefetcher;
+	}
+
+	/**
+	 * Wraps the layout by the layout processed in the separate thread if requested
+	 * by the "layoutQueueSize" parameter. The layouts writing into the targets having the same
+	 * lock share the same thread. The created threads are not started.
+	 * 
+	 * @param joinLayout the started layout to wrap
+	 * @param joinNode the join node being processed
+	 * @param rsComparator the comparator of the join
+	 * @param targetLock the lock of the target of the layout
+	 * @param layoutThreads the threads of the layouts for each target lock
+	 * @return the layout to be used for the join
+	 * @throws DataException if any data access error occurred
+	 */
+	protected JoinLayout async(JoinLayout joinLayout, JoinNode joinNode, LigretoComparator rsComparator, Object targetLock, Map<Object, AsyncJoinLayout.LayoutThread> layoutThreads) throws DataException {
+		int layoutQueueSize = joinNode.getLigretoNode().getLigretoParameters().getLayoutQueueSize();
+		if (layoutQueueSize <= 0) {
+			return joinLayout;
+		}
+		AsyncJoinLayout.LayoutThread layoutThread = layoutThreads.get(targetLock);
+		if (layoutThread == null) {
+			layoutThread = new AsyncJoinLayout.LayoutThread(layoutQueueSize, rsComparator);
+			layoutThreads.put(targetLock, layoutThread);
+		}
+		return new AsyncJoinLayout(joinLayout, layoutThread);
+	}
+
+	/**
+	 * @param key the key column indices
+	 * @return the order by clause sorting the query result on the key columns
+	 */
+	protected static String getOrderByClause(int[] key) {
+		StringBuilder orderBy = new StringBuilder(" order by ");
+		for (int i = 0; i < key.length; i++) {
+			orderBy.append(key[i]);
+			orderBy.append(" nulls first,");
+		}
+		orderBy.deleteCharAt(orderBy.length() - 1);
+		return orderBy.toString();
+	}
+
+	/**
+	 * Converts the names of columns to be excluded into the column indices of the query result.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param sqlNode the query
+	 * @param rs the result set of the query
+	 * @param key the key column indices
+	 * @param queryName the query name used in log messages
+	 * @return the indices of the columns to be excluded
+	 * @throws SQLException if database related problems occurred
+	 * @throws LigretoException if the key column should be excluded
+	 */
+	protected int[] getExcludeIndices(JoinNode joinNode, SqlNode sqlNode, ResultSet rs, int[] key, String queryName) throws SQLException, LigretoException {
+		String[] exclStr = sqlNode.getExcludeColumns();
+		if (exclStr == null)
+			exclStr = joinNode.getExcludeColumns();
+		if (exclStr == null)
+			return new int[0];
+		
+		int[] exclTmp = new int[exclStr.length];
+		int exclCount = 0;
+		for (int i=0; i < exclStr.length; i++) {
+			exclTmp[i] = MiscUtils.findColumnIndex(rs, exclStr[i]);
+			if (exclTmp[i] >= 0) {
+				if (MiscUtils.arrayContains(key, exclTmp[i])) {
+					throw new LigretoException("Column listed in 'exclude' attribute cannot be used in 'on' clause:" + exclStr[i]);
+				}
+				exclCount++;
+				log.info("Excluding column \"" + exclStr[i] + "\" from " + queryName + " sql query which has the index: " + exclTmp[i]);
+			} else {
+				log.info("Column to be exculded \"" + exclStr[i] + "\" from " + queryName + " sql query was not found in the result set.");
+			}
+		}
+		
+		int[] excl = new int[exclCount];
+		for (int i=0, ti=0; i < exclTmp.length; i++) {
+			if (exclTmp[i] >= 0) {
+				excl[ti] = exclTmp[i];
+				ti++;
+			}
+		}
+		return excl;
+	}
+
+	/**
+	 * Processes the join of the sorted data using the merge join algorithm.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param dp1 the data provider of the first data source
+	 * @param dp2 the data provider of the second data source
+	 * @param layouts the layouts to process the rows
+	 * @param columns the columns to be compared
+	 * @param trueArray the highlight array used for non-matched rows
+	 * @param otherColumnCount the number of non-key columns
+	 * @param firstTarget the first target used for error messages
+	 * @throws LigretoException if any error occurred during the join processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected void processMergeJoin(JoinNode joinNode, DataProvider dp1, DataProvider dp2,
+			List<JoinLayout> layouts, int[] columns, boolean[] trueArray, int otherColumnCount,
+			String firstTarget) throws LigretoException, IOException {
+		LigretoComparator rsComparator = dp1.getComparator();
+		KeyBuffer pKey1 = createKeyBuffer(joinNode, dp1);
+		KeyBuffer pKey2 = createKeyBuffer(joinNode, dp2);
+		ColumnComparator[] keyComparators = rsComparator.compile(dp1, dp1.getKeyIndices(), dp2, dp2.getKeyIndices());
+		ColumnComparator[] columnComparators = rsComparator.compile(dp1, columns, dp2, columns);
+		boolean hasNext1 = dp1.next();
+		boolean hasNext2 = dp2.next();
+		boolean moved1 = true;
+		boolean moved2 = true;
+		while (hasNext1 && hasNext2) {
+			
+			// First process the duplicates
+			while (hasNext1 && dp1.hasDuplicateKey()) {
+				if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
+					throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, dp1.getCaption(), firstTarget));
+				}
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.dumpDuplicate(0);
+				}
+				hasNext1 = dp1.next();
+			}
+			while (hasNext2 && dp2.hasDuplicateKey()) {
+				if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
+					throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, dp2.getCaption(), firstTarget));
+				}
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.dumpDuplicate(1);
+				}
+				hasNext2 = dp2.next();
+			}
+
+			// Exit the processing if the processed duplicates
+			// were at the end of the data set
+			if (!hasNext1 || !hasNext2) {
+				break;
 			}
 			
-			boolean hasNext1 = dp1.next();
-			boolean hasNext2 = dp2.next();
-			Field[] pCol1 = null;
-			Field[] pCol2 = null;
-			Field[] col1 = null;
-			Field[] col2 = null;
-			while (hasNext1 && hasNext2) {
+			// Compare the subsequent rows in each result set and see whether they match
+			// the collation we are using here for processing
+			if (moved1) {
+				checkCollation(joinNode, rsComparator, pKey1, dp1, 0, firstTarget);
+			}
+			if (moved2) {
+				checkCollation(joinNode, rsComparator, pKey2, dp2, 1, firstTarget);
+			}
+			
+			int cResult = rsComparator.compareKeys(keyComparators, dp1, dp2);
+			switch (cResult) {
+			case -1:
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.LEFT);
+				}
+				hasNext1 = dp1.next();
+				moved1 = true;
+				moved2 = false;
+				break;
+			case 0:
+				// We will break if we are supposed to produce only differences
+				// and there are no differences present.
+				boolean[] cmpArray = rsComparator.compareColumnsAsDataSource(columnComparators, dp1, dp2);
 				
-				// First process the duplicates
-				while (hasNext1 && dp1.hasDuplicateKey()) {
-					if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
-						throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, dp1.getCaption(), firstTarget));
-					}
-					for (JoinLayout joinLayout : layouts) {
-						joinLayout.dumpDuplicate(0);
-					}
-					hasNext1 = dp1.next();
+				int rowDiffs = MiscUtils.countFalses(cmpArray);
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.processRow(rowDiffs, cmpArray, JoinResultType.INNER);
 				}
-				while (hasNext2 && dp2.hasDuplicateKey()) {
-					if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
-						throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, dp2.getCaption(), firstTarget));
-					}
-					for (JoinLayout joinLayout : layouts) {
-						joinLayout.dumpDuplicate(1);
-					}
-					hasNext2 = dp2.next();
+				
+				hasNext1 = dp1.next();
+				hasNext2 = dp2.next();
+				moved1 = true;
+				moved2 = true;
+				break;
+			case 1:
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.RIGHT);
+				}						
+				hasNext2 = dp2.next();
+				moved1 = false;
+				moved2 = true;
+				break;
+			default:
+				throw new RuntimeException("Unexpected error occurred!");
+			}
+			boolean stillProcessing = false;
+			for (JoinLayout joinLayout : layouts) {
+				if (!joinLayout.isOverLimit()) {
+					stillProcessing = true;
+					break;
 				}
+			}
+			if (!stillProcessing) {
+				hasNext1 = false;
+				hasNext2 = false;
+				break;
+			}
+		}
+		while (hasNext1) {
+			// Compare the subsequent rows in each result set and see whether they match
+			// the collation we are using here for processing
+			if (moved1) {
+				checkCollation(joinNode, rsComparator, pKey1, dp1, 0, firstTarget);
+			}
+			moved1 = true;
 
-				// Exit the processing if the processed duplicates
-				// were at the end of the data set
-				if (!hasNext1 || !hasNext2) {
+			for (JoinLayout joinLayout : layouts) {
+				joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.LEFT);
+			}
+			hasNext1 = dp1.next();
+			boolean stillProcessing = false;
+			for (JoinLayout joinLayout : layouts) {
+				if (!joinLayout.isOverLimit()) {
+					stillProcessing = true;
 					break;
 				}
-				
-				// Compare the subsequent rows in each result set and see whether they match
-				// the collation we are using here for processing
-				col1 = LigretoComparator.duplicate(dp1, dp1.getKeyIndices());
-				col2 = LigretoComparator.duplicate(dp2, dp2.getKeyIndices());
-				int dResult1 = pCol1 != null ? rsComparator.compare(pCol1, col1) : -1;
-				int dResult2 = pCol2 != null ? rsComparator.compare(pCol2, col2) : -1;
-
-				assert(dResult1 != 0);
-				assert(dResult2 != 0);
-				if (dResult1 > 0 && joinNode.getCollation() != Attitude.IGNORE) {
-					log.error("Wrong collation found.");
-					rsComparator.error(log, pCol1);
-					rsComparator.error(log, col1);
-					CollationException e = new CollationException(String.format(collationError, joinNode.getSqlQueries().get(0).getDataSource(), firstTarget));
-					switch (joinNode.getCollation()) {
-					case DUMP:
-						log.error("Wrong collation found", e);
-						break;
-					case FAIL:
-						throw e;
-					default:
-						assert(false);
-						break;
-					}
+			}
+			if (!stillProcessing) {
+				hasNext1 = false;
+				hasNext2 = false;
+				break;
+			}
+		}
+
+		while (hasNext2) {
+			// Compare the subsequent rows in each result set and see whether they match
+			// the collation we are using here for processing
+			if (moved2) {
+				checkCollation(joinNode, rsComparator, pKey2, dp2, 1, firstTarget);
+			}
+			moved2 = true;
+			
+			for (JoinLayout joinLayout : layouts) {
+				joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.RIGHT);
+			}
+			hasNext2 = dp2.next();
+			boolean stillProcessing = false;
+			for (JoinLayout joinLayout : layouts) {
+				if (!joinLayout.isOverLimit()) {
+					stillProcessing = true;
+					break;
 				}
-				if (dResult2 > 0 && joinNode.getCollation() != Attitude.IGNORE) {
-					log.error("Wrong collation found.");
-					rsComparator.error(log, pCol2);
-					rsComparator.error(log, col2);
-					CollationException e = new CollationException(String.format(collationError, joinNode.getSqlQueries().get(1).getDataSource(), firstTarget));
-					switch (joinNode.getCollation()) {
-					case DUMP:
-						log.error("Wrong collation found", e);
-						break;
-					case FAIL:
-						throw e;
-					default:
-						assert(false);
-						break;
-					}
+			}
+			if (!stillProcessing) {
+				hasNext1 = false;
+				hasNext2 = false;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Creates the buffer keeping the key of the previous row of the data provider used
+	 * to check the collation of the rows.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param dp the data provider
+	 * @return the created buffer
+	 * @throws DataException if any data access error occurred
+	 */
+	protected KeyBuffer createKeyBuffer(JoinNode joinNode, DataProvider dp) throws DataException {
+		int sampleInterval = 1;
+		if (joinNode.isCollationSampled()) {
+			sampleInterval = joinNode.getLigretoNode().getLigretoParameters().getCollationSampleInterval();
+		}
+		return new KeyBuffer(dp, sampleInterval);
+	}
+
+	/**
+	 * Checks whether the current row of the data provider follows the previous row
+	 * in the collation we are using here for processing. The key of the row is stored
+	 * into the buffer afterwards. Only the rows sampled by the buffer are checked.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param rsComparator the comparator to use
+	 * @param previous the buffer holding the key of the previous row
+	 * @param dp the data provider positioned on the row to check
+	 * @param source the index of the data source
+	 * @param firstTarget the first target used for error messages
+	 * @throws LigretoException if the collation error was found and it should cause the failure
+	 */
+	protected void checkCollation(JoinNode joinNode, LigretoComparator rsComparator, KeyBuffer previous,
+			DataProvider dp, int source, String firstTarget) throws LigretoException {
+		if (joinNode.getCollation() == Attitude.IGNORE || !previous.sample()) {
+			return;
+		}
+		if (!previous.isEmpty()) {
+			int dResult = previous.compare(rsComparator, dp);
+			assert(dResult != 0);
+			if (dResult > 0) {
+				log.error("Wrong collation found.");
+				rsComparator.error(log, previous.toFields());
+				rsComparator.error(log, LigretoComparator.duplicate(dp, dp.getKeyIndices()));
+				CollationException e = new CollationException(String.format(collationError, joinNode.getSqlQueries().get(source).getDataSource(), firstTarget));
+				switch (joinNode.getCollation()) {
+				case DUMP:
+					log.error("Wrong collation found", e);
+					break;
+				case FAIL:
+					throw e;
+				default:
+					assert(false);
+					break;
+				}
+			}
+		}
+		previous.store(dp);
+	}
+
+	/**
+	 * Compares the data sources by the key of their current rows using the key comparators
+	 * compiled for each pair of the data sources. The sources with the same key are ordered
+	 * by their index, so the heap returns the sources in a stable order.
+	 */
+	protected static class SourceKeyComparator implements Comparator<Integer> {
+
+		/** The data providers positioned on their current rows. */
+		protected DataProvider[] dps;
+
+		/** The key comparators for each pair of the data sources. */
+		protected ColumnComparator[][][] keyComparators;
+
+		/** The comparator used to compare the keys. */
+		protected LigretoComparator comparator;
+
+		/**
+		 * @param dps the data providers positioned on their current rows
+		 * @param keyComparators the key comparators for each pair of the data sources
+		 * @param comparator the comparator used to compare the keys
+		 */
+		public SourceKeyComparator(DataProvider[] dps, ColumnComparator[][][] keyComparators, LigretoComparator comparator) {
+			this.dps = dps;
+			this.keyComparators = keyComparators;
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Compares the keys of the current rows of the specified data sources.
+		 *
+		 * @param source1 the index of the first data source
+		 * @param source2 the index of the second data source
+		 * @return -1, 0 or 1 if the first key is lower, equal or greater than the second key
+		 * @throws LigretoException if the keys could not be compared
+		 */
+		public int compareKeys(int source1, int source2) throws LigretoException {
+			return comparator.compareKeys(keyComparators[source1][source2], dps[source1], dps[source2]);
+		}
+
+		@Override
+		public int compare(Integer source1, Integer source2) {
+			try {
+				int result = compareKeys(source1, source2);
+				return result != 0 ? result : source1 - source2;
+			} catch (LigretoException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	/**
+	 * Processes the join of any number of sorted data sources in a single pass using the k-way
+	 * merge driven by the heap on the key columns. The keys of the data sources are compared
+	 * by the comparators compiled for each pair of the data sources. Each layout compares
+	 * the pair of data sources specified by its layout node.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param dps the data providers of all the data sources
+	 * @param layouts the layouts to process the rows
+	 * @param columns the columns to be compared
+	 * @param trueArray the highlight array used for non-matched rows
+	 * @param otherColumnCount the number of non-key columns
+	 * @param firstTarget the first target used for error messages
+	 * @throws LigretoException if any error occurred during the join processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected void processMultiJoin(JoinNode joinNode, DataProvider[] dps, List<JoinLayout> layouts,
+			int[] columns, boolean[] trueArray, int otherColumnCount, String firstTarget) throws LigretoException, IOException {
+		LigretoComparator rsComparator = dps[0].getComparator();
+		ColumnComparator[][][] keyComparators = new ColumnComparator[dps.length][dps.length][];
+		KeyBuffer[] previousKeys = new KeyBuffer[dps.length];
+		for (int s1=0; s1 < dps.length; s1++) {
+			for (int s2=0; s2 < dps.length; s2++) {
+				keyComparators[s1][s2] = rsComparator.compile(dps[s1], dps[s1].getKeyIndices(), dps[s2], dps[s2].getKeyIndices());
+			}
+			previousKeys[s1] = createKeyBuffer(joinNode, dps[s1]);
+		}
+		int[][] layoutSources = new int[layouts.size()][];
+		ColumnComparator[][] columnComparators = new ColumnComparator[layouts.size()][];
+		for (int i=0; i < layoutSources.length; i++) {
+			int[] sources = layouts.get(i).getLayoutNode().getSources();
+			layoutSources[i] = new int[] {sources[0] - 1, sources[1] - 1};
+			columnComparators[i] = rsComparator.compile(dps[layoutSources[i][0]], columns, dps[layoutSources[i][1]], columns);
+		}
+		
+		SourceKeyComparator sourceComparator = new SourceKeyComparator(dps, keyComparators, rsComparator);
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(dps.length, sourceComparator);
+		long keyCount = 0;
+		long completeKeyCount = 0;
+		try {
+			for (int s=0; s < dps.length; s++) {
+				if (nextMultiJoinRow(joinNode, dps, s, previousKeys, layouts, layoutSources, firstTarget)) {
+					heap.add(s);
+				}
+			}
+			List<Integer> matched = new ArrayList<Integer>(dps.length);
+			while (!heap.isEmpty()) {
+				// Collect all the data sources having the smallest key
+				matched.clear();
+				boolean[] keySources = new boolean[dps.length];
+				int first = heap.poll();
+				matched.add(first);
+				keySources[first] = true;
+				while (!heap.isEmpty() && sourceComparator.compareKeys(first, heap.peek()) == 0) {
+					int s = heap.poll();
+					matched.add(s);
+					keySources[s] = true;
+				}
+				keyCount++;
+				if (matched.size() == dps.length) {
+					completeKeyCount++;
 				}
 				
-				int cResult = rsComparator.compareKeys(dp1, dp1.getKeyIndices(), dp2, dp2.getKeyIndices());
-				switch (cResult) {
-				case -1:
-					for (JoinLayout joinLayout : layouts) {
+				for (int i=0; i < layouts.size(); i++) {
+					JoinLayout joinLayout = layouts.get(i);
+					int s1 = layoutSources[i][0];
+					int s2 = layoutSources[i][1];
+					joinLayout.setKeySources(keySources);
+					if (keySources[s1] && keySources[s2]) {
+						boolean[] cmpArray = rsComparator.compareColumnsAsDataSource(columnComparators[i], dps[s1], dps[s2]);
+						joinLayout.processRow(MiscUtils.countFalses(cmpArray), cmpArray, JoinResultType.INNER);
+					} else if (keySources[s1]) {
 						joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.LEFT);
-					}
-					hasNext1 = dp1.next();
-					pCol1 = col1;
-					break;
-				case 0:
-					// We will break if we are supposed to produce only differences
-					// and there are no differences present.
-					boolean[] cmpArray = rsComparator.compareColumnsAsDataSource(dp1, columns, dp2, columns);
-					
-					int rowDiffs = MiscUtils.countFalses(cmpArray);
-					for (JoinLayout joinLayout : layouts) {
-						joinLayout.processRow(rowDiffs, cmpArray, JoinResultType.INNER);
-					}
-					
-					hasNext1 = dp1.next();
-					hasNext2 = dp2.next();
-					pCol1 = col1;
-					pCol2 = col2;
-					break;
-				case 1:
-					for (JoinLayout joinLayout : layouts) {
+					} else if (keySources[s2]) {
 						joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.RIGHT);
-					}						
-					pCol2 = col2;
-					hasNext2 = dp2.next();
+					}
+				}
+				if (isOverLimit(layouts)) {
 					break;
-				default:
-					throw new RuntimeException("Unexpected error occurred!");
 				}
-				boolean stillProcessing = false;
-				for (JoinLayout joinLayout : layouts) {
-					if (!joinLayout.isOverLimit()) {
-						stillProcessing = true;
-						break;
+				
+				for (int s : matched) {
+					if (nextMultiJoinRow(joinNode, dps, s, previousKeys, layouts, layoutSources, firstTarget)) {
+						heap.add(s);
 					}
 				}
-				if (!stillProcessing) {
-					hasNext1 = false;
-					hasNext2 = false;
+			}
+		} catch (IllegalArgumentException e) {
+			if (e.getCause() instanceof LigretoException) {
+				throw (LigretoException) e.getCause();
+			}
+			throw e;
+		}
+		log.info("Processed " + keyCount + " distinct keys of " + dps.length + " data sources; present in all data sources: " + completeKeyCount);
+	}
+
+	/**
+	 * Moves the data source of the multi-way join to the next row with unique key. The rows
+	 * with duplicate keys are passed to the layouts comparing the data source.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param dps the data providers of all the data sources
+	 * @param s the index of the data source to move
+	 * @param previousKeys the buffers holding the key of the previous row of each data source
+	 * @param layouts the layouts to process the rows
+	 * @param layoutSources the pair of data source indices compared by each layout
+	 * @param firstTarget the first target used for error messages
+	 * @return true if there is the next row available
+	 * @throws LigretoException if any error occurred during the join processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected boolean nextMultiJoinRow(JoinNode joinNode, DataProvider[] dps, int s, KeyBuffer[] previousKeys,
+			List<JoinLayout> layouts, int[][] layoutSources, String firstTarget) throws LigretoException, IOException {
+		DataProvider dp = dps[s];
+		boolean hasNext = dp.next();
+		while (hasNext && dp.hasDuplicateKey()) {
+			if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
+				throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, dp.getCaption(), firstTarget));
+			}
+			for (int i=0; i < layouts.size(); i++) {
+				if (layoutSources[i][0] == s) {
+					layouts.get(i).dumpDuplicate(0);
+				} else if (layoutSources[i][1] == s) {
+					layouts.get(i).dumpDuplicate(1);
+				}
+			}
+			hasNext = dp.next();
+		}
+		if (!hasNext) {
+			return false;
+		}
+		
+		// Check whether the rows received match the collation we are using here for processing
+		checkCollation(joinNode, dp.getComparator(), previousKeys[s], dp, s, firstTarget);
+		return true;
+	}
+
+	/**
+	 * Processes the join split into the key ranges. Each partition is processed in the separate
+	 * thread and the rows produced are replayed into the layouts partition by partition once
+	 * the partition is processed, so the layouts process the rows in the global key order.
+	 * 
+	 * @param partitions the partitions to be processed
+	 * @param bdp1 the data provider of the first data source the layouts read the rows from
+	 * @param bdp2 the data provider of the second data source the layouts read the rows from
+	 * @param layouts the layouts to process the rows
+	 * @throws LigretoException if any error occurred during the join processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected void processPartitionedJoin(List<JoinPartition> partitions, BufferedDataProvider bdp1,
+			BufferedDataProvider bdp2, List<JoinLayout> layouts) throws LigretoException, IOException {
+		try {
+			for (JoinPartition partition : partitions) {
+				partition.start();
+			}
+			for (JoinPartition partition : partitions) {
+				if (!partition.replay(bdp1, bdp2, layouts)) {
 					break;
 				}
 			}
-			while (hasNext1) {
-				// Compare the subsequent rows in each result set and see whether they match
-				// the collation we are using here for processing
-				col1 = LigretoComparator.duplicate(dp1, dp1.getKeyIndices());
-				int dResult1 = pCol1 != null ? rsComparator.compare(pCol1, col1) : -1;
-				assert(dResult1 != 0);
-
-				if (dResult1 > 0 && joinNode.getCollation() != Attitude.IGNORE) {
-					log.error("Wrong collation found.");
-					rsComparator.error(log, pCol1);
-					rsComparator.error(log, col1);
-					CollationException e = new CollationException(String.format(collationError, joinNode.getSqlQueries().get(0).getDataSource(), firstTarget));
-					switch (joinNode.getCollation()) {
-					case DUMP:
-						log.error("Wrong collation found", e);
-						break;
-					case FAIL:
-						throw e;
-					default:
-						assert(false);
-						break;
-					}
+		} finally {
+			for (JoinPartition partition : partitions) {
+				partition.cancel();
+			}
+			try {
+				for (JoinPartition partition : partitions) {
+					partition.join();
 				}
-				pCol1 = col1;
+			} catch (InterruptedException e) {
+				throw new LigretoException("Execution interrupted.", e);
+			} finally {
+				for (JoinPartition partition : partitions) {
+					partition.cleanup();
+				}
+			}
+		}
+	}
 
-				for (JoinLayout joinLayout : layouts) {
-					joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.LEFT);
+	/**
+	 * Processes the join using the hash join algorithm.
+	 * 
+	 * Both data sources are read alternately until one of them is exhausted. The exhausted
+	 * data source is the smaller one and it is used to build the hash table on the key
+	 * columns. The rows of the other data source are then streamed through the hash table.
+	 * The rows of the build side that were not matched are processed at the end.
+	 * 
+	 * The rows of the other data source without the key in the hash table are processed
+	 * as non-matched rows as they are read. The rows with the key in the hash table are kept
+	 * until the other data source is exhausted, so the memory used is bounded by the keys
+	 * of the build side. The rows with duplicate key values matching the hash table on either
+	 * side are processed as duplicates and the row with the same key on the other side is not
+	 * matched, which is the same result as the sort-merge join produces regardless of the build
+	 * side. The duplicate key values of the non-matched rows of the other data source are not
+	 * detected, so such rows are processed as non-matched rows and the duplicates strategy
+	 * "fail" does not apply to them.
+	 * The string key columns could be hashed only if the locale collation or the natural
+	 * string order is used.
+	 * 
+	 * @param joinNode the join node being processed
+	 * @param hdp1 the data provider of the first data source
+	 * @param hdp2 the data provider of the second data source
+	 * @param layouts the layouts to process the rows
+	 * @param columns the columns to be compared
+	 * @param trueArray the highlight array used for non-matched rows
+	 * @param otherColumnCount the number of non-key columns
+	 * @param firstTarget the first target used for error messages
+	 * @throws LigretoException if any error occurred during the join processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected void processHashJoin(JoinNode joinNode, BufferedDataProvider hdp1, BufferedDataProvider hdp2,
+			List<JoinLayout> layouts, int[] columns, boolean[] trueArray, int otherColumnCount,
+			String firstTarget) throws LigretoException, IOException {
+		BufferedDataProvider[] hdp = {hdp1, hdp2};
+		JoinResultType[] nonMatchedType = {JoinResultType.LEFT, JoinResultType.RIGHT};
+		LigretoComparator rsComparator = hdp1.getComparator();
+		if (!HashJoinKey.isSupported(rsComparator)) {
+			throw new UnimplementedMethodException("Hash join supports only the locale collation or the natural string order");
+		}
+		ColumnComparator[] columnComparators = rsComparator.compile(hdp1, columns, hdp2, columns);
+		
+		// The key columns of different types could be matched only by their string values
+		int[] key1 = hdp1.getKeyIndices();
+		int[] key2 = hdp2.getKeyIndices();
+		boolean[] hashAsString = new boolean[key1.length];
+		for (int i=0; i < key1.length; i++) {
+			int type1 = hdp1.getColumnType(key1[i]);
+			int type2 = hdp2.getColumnType(key2[i]);
+			if (type1 != type2) {
+				if (joinNode.getLigretoNode().getLigretoParameters().getStrictTypes()) {
+					DataTypeMismatchException e = new DataTypeMismatchException(type1, type2);
+					e.setColumnIndices(hdp1.getOriginalIndex(key1[i]), hdp2.getOriginalIndex(key2[i]));
+					e.setColumnNames(hdp1.getColumnName(key1[i]), hdp2.getColumnName(key2[i]));
+					throw e;
 				}
-				hasNext1 = dp1.next();
-				boolean stillProcessing = false;
-				for (JoinLayout joinLayout : layouts) {
-					if (!joinLayout.isOverLimit()) {
-						stillProcessing = true;
-						break;
-					}
+				hashAsString[i] = true;
+			}
+		}
+		
+		// Read both data sources until one of them is exhausted
+		List<DataProviderRow> rows1 = new ArrayList<DataProviderRow>();
+		List<DataProviderRow> rows2 = new ArrayList<DataProviderRow>();
+		boolean hasNext1 = true;
+		boolean hasNext2 = true;
+		while (hasNext1 && hasNext2) {
+			DataProviderRow row1 = hdp1.fetchRow();
+			if (row1 == null) {
+				hasNext1 = false;
+				break;
+			}
+			rows1.add(row1);
+			DataProviderRow row2 = hdp2.fetchRow();
+			if (row2 == null) {
+				hasNext2 = false;
+				break;
+			}
+			rows2.add(row2);
+		}
+		int build = hasNext1 ? 1 : 0;
+		int probe = 1 - build;
+		List<DataProviderRow> buildRows = build == 0 ? rows1 : rows2;
+		List<DataProviderRow> probeRows = build == 0 ? rows2 : rows1;
+		log.info("Building the hash table from " + buildRows.size() + " rows of data source: " + hdp[build].getCaption());
+		
+		// Build the hash table; the rows with duplicate key values are kept separately
+		Map<HashJoinKey, DataProviderRow> hashTable = new LinkedHashMap<HashJoinKey, DataProviderRow>();
+		Map<HashJoinKey, List<DataProviderRow>> duplicateRows = new LinkedHashMap<HashJoinKey, List<DataProviderRow>>();
+		for (DataProviderRow row : buildRows) {
+			HashJoinKey key = new HashJoinKey(row, hashAsString, rsComparator);
+			List<DataProviderRow> duplicates = duplicateRows.get(key);
+			if (duplicates == null) {
+				DataProviderRow previous = hashTable.remove(key);
+				if (previous == null) {
+					hashTable.put(key, row);
+					continue;
 				}
-				if (!stillProcessing) {
-					hasNext1 = false;
-					hasNext2 = false;
-					break;
+				duplicates = new ArrayList<DataProviderRow>();
+				duplicates.add(previous);
+				duplicateRows.put(key, duplicates);
+			}
+			if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
+				throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, hdp[build].getCaption(), firstTarget));
+			}
+			duplicates.add(row);
+		}
+		buildRows.clear();
+		
+		// Stream the rows already read and then the rest of the larger data source through the hash
+		// table. The rows having the key in the hash table are deferred until the larger data source
+		// is exhausted, so the rows with duplicate key values are known before any of them is joined.
+		Map<HashJoinKey, List<DataProviderRow>> probeMatches = new LinkedHashMap<HashJoinKey, List<DataProviderRow>>();
+		int probeIndex = 0;
+		while (true) {
+			DataProviderRow row;
+			if (probeIndex < probeRows.size()) {
+				row = probeRows.set(probeIndex++, null);
+			} else {
+				row = hdp[probe].fetchRow();
+			}
+			if (row == null) {
+				break;
+			}
+			HashJoinKey key = new HashJoinKey(row, hashAsString, rsComparator);
+			List<DataProviderRow> matches = probeMatches.get(key);
+			if (matches == null) {
+				if (!hashTable.containsKey(key) && !duplicateRows.containsKey(key)) {
+					hdp[probe].setCurrentRow(row, false, 0);
+					for (JoinLayout joinLayout : layouts) {
+						joinLayout.processRow(otherColumnCount, trueArray, nonMatchedType[probe]);
+					}
+					if (isOverLimit(layouts)) {
+						return;
+					}
+					continue;
 				}
+				matches = new ArrayList<DataProviderRow>(1);
+				probeMatches.put(key, matches);
+			} else if (joinNode.getDuplicates() == DuplicatesStrategy.FAIL) {
+				throw new DuplicateKeyValuesException(String.format(duplicateJoinColumnsError, hdp[probe].getCaption(), firstTarget));
 			}
+			matches.add(row);
+		}
+		probeRows.clear();
 
-			while (hasNext2) {
-				// Compare the subsequent rows in each result set and see whether they match
-				// the collation we are using here for processing
-				col2 = LigretoComparator.duplicate(dp2, dp2.getKeyIndices());
-				int dResult2 = pCol2 != null ? rsComparator.compare(pCol2, col2) : -1;
-				assert(dResult2 != 0);
-
-				if (dResult2 > 0 && joinNode.getCollation() != Attitude.IGNORE) {
-					log.error("Wrong collation found.");
-					rsComparator.error(log, pCol2);
-					rsComparator.error(log, col2);
-					CollationException e = new CollationException(String.format(collationError, joinNode.getSqlQueries().get(1).getDataSource(), firstTarget));
-					switch (joinNode.getCollation()) {
-					case DUMP:
-						log.error("Wrong collation found", e);
-						break;
-					case FAIL:
-						throw e;
-					default:
-						assert(false);
-						break;
+		// Join the deferred rows with the rows of the hash table
+		for (Map.Entry<HashJoinKey, List<DataProviderRow>> entry : probeMatches.entrySet()) {
+			List<DataProviderRow> matches = entry.getValue();
+			if (matches.size() > 1) {
+				// The build side row with the same key is left unmatched as in the merge join
+				for (int i=0; i < matches.size(); i++) {
+					hdp[probe].setCurrentRow(matches.get(i), true, i);
+					for (JoinLayout joinLayout : layouts) {
+						joinLayout.dumpDuplicate(probe);
 					}
 				}
-				pCol2 = col2;
-				
+				continue;
+			}
+			DataProviderRow buildRow = hashTable.remove(entry.getKey());
+			hdp[probe].setCurrentRow(matches.get(0), false, 0);
+			if (buildRow != null) {
+				hdp[build].setCurrentRow(buildRow, false, 0);
+				boolean[] cmpArray = rsComparator.compareColumnsAsDataSource(columnComparators, hdp1, hdp2);
+				int rowDiffs = MiscUtils.countFalses(cmpArray);
 				for (JoinLayout joinLayout : layouts) {
-					joinLayout.processRow(otherColumnCount, trueArray, JoinResultType.RIGHT);
+					joinLayout.processRow(rowDiffs, cmpArray, JoinResultType.INNER);
 				}
-				hasNext2 = dp2.next();
-				boolean stillProcessing = false;
+			} else {
 				for (JoinLayout joinLayout : layouts) {
-					if (!joinLayout.isOverLimit()) {
-						stillProcessing = true;
-						break;
-					}
-				}
-				if (!stillProcessing) {
-					hasNext1 = false;
-					hasNext2 = false;
-					break;
+					joinLayout.processRow(otherColumnCount, trueArray, nonMatchedType[probe]);
 				}
 			}
-
-			result = new ResultStatus();
+			if (isOverLimit(layouts)) {
+				return;
+			}
+		}
+		
+		// Process the rows from the build side that were not matched
+		for (DataProviderRow row : hashTable.values()) {
+			hdp[build].setCurrentRow(row, false, 0);
 			for (JoinLayout joinLayout : layouts) {
-				result.merge(joinLayout.finish());
+				joinLayout.processRow(otherColumnCount, trueArray, nonMatchedType[build]);
+			}
+			if (isOverLimit(layouts)) {
+				return;
 			}
 		}
-		finally {
-			if (exec1 != null) {
-				exec1.cleanup();
+		for (List<DataProviderRow> duplicates : duplicateRows.values()) {
+			for (int i=0; i < duplicates.size(); i++) {
+				hdp[build].setCurrentRow(duplicates.get(i), true, i);
+				for (JoinLayout joinLayout : layouts) {
+					joinLayout.dumpDuplicate(build);
+				}
 			}
-			if (exec2 != null) {
-				exec2.cleanup();
+		}
+	}
+	
+	/**
+	 * @param layouts the layouts to check
+	 * @return true if all the specified layouts are over their limits
+	 */
+	protected boolean isOverLimit(List<JoinLayout> layouts) {
+		for (JoinLayout joinLayout : layouts) {
+			if (!joinLayout.isOverLimit()) {
+				return false;
 			}
 		}
-		result.info(log, "JOIN COMPARISON");
-		return result;
+		return true;
 	}
 
 	/**
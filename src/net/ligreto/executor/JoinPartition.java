@@ -0,0 +1,747 @@
+package net.ligreto.executor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.ExecutionContext;
+import net.ligreto.data.BufferedDataProvider;
+import net.ligreto.data.DataProvider;
+import net.ligreto.data.SortingDataProvider;
+import net.ligreto.data.SqlExecutionThread;
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.executor.ddl.DataTypeDialect;
+import net.ligreto.executor.layouts.JoinLayout;
+import net.ligreto.executor.layouts.JoinLayout.JoinResultType;
+import net.ligreto.executor.layouts.JoinRowEvent;
+import net.ligreto.parser.nodes.JoinNode;
+import net.ligreto.parser.nodes.SqlNode;
+import net.ligreto.parser.nodes.JoinNode.SortingStrategy;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The single key range of the partitioned join processed in the separate execution thread.
+ *
+ * The key space of the first key column is split into ranges and each range is queried
+ * from both data sources by the separate range-filtered query pair. The merge join of each range
+ * is done in its own thread and the produced rows are recorded into the memory buffer which is
+ * spilled into the temporary file when full, so the partitions never wait for each other.
+ * The rows are then replayed into the join layouts partition by partition once the partition
+ * is processed, so the layouts receive the rows in the global key order. The instances of this
+ * class should be used as follows:
+ * <pre>
+ * JoinPartition p1 = new JoinPartition(...);
+ * JoinPartition p2 = new JoinPartition(...);
+ * p1.start();
+ * p2.start();
+ * try {
+ *     p1.replay(...);
+ *     p2.replay(...);
+ * } finally {
+ *     p1.cancel();
+ *     p2.cancel();
+ *     p1.join();
+ *     p2.join();
+ *     p1.cleanup();
+ *     p2.cleanup();
+ * }
+ * </pre>
+ *
+ * The rows with the same key value have to fall into the same range in both data sources,
+ * so both data sources have to compare the values of the first key column the same way.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class JoinPartition extends Thread {
+
+	/** The number of sampled key values per partition used to determine the partition bounds. */
+	public static final int SAMPLES_PER_PARTITION = 100;
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(JoinPartition.class);
+
+	/**
+	 * The layout recording the rows processed by the merge join into the buffer
+	 * of the partition instead of the report output.
+	 */
+	protected class RecordingJoinLayout extends JoinLayout {
+
+		/** The SQL data types of the columns of the first data provider. */
+		protected int[] columnTypes1;
+
+		/** The SQL data types of the columns of the second data provider. */
+		protected int[] columnTypes2;
+
+		/** Creates the recording layout. */
+		protected RecordingJoinLayout() {
+			super(null, null);
+		}
+
+		@Override
+		public void setDataProviders(DataProvider dp1, DataProvider dp2) {
+			super.setDataProviders(dp1, dp2);
+			try {
+				columnTypes1 = JoinRowEvent.getColumnTypes(dp1);
+				columnTypes2 = JoinRowEvent.getColumnTypes(dp2);
+			} catch (DataException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		public boolean processRow(int rowDiffs, boolean[] cmpArray, JoinResultType resultType) throws LigretoException, IOException {
+			record(JoinRowEvent.createRowEvent(dp1, columnTypes1, dp2, columnTypes2, rowDiffs, cmpArray, resultType, keySources));
+			return true;
+		}
+
+		@Override
+		public void dumpDuplicate(int dataSourceIndex) throws DataException, IOException, LigretoException {
+			if (dataSourceIndex == 0) {
+				record(JoinRowEvent.createDuplicateEvent(dp1, columnTypes1, dataSourceIndex));
+			} else {
+				record(JoinRowEvent.createDuplicateEvent(dp2, columnTypes2, dataSourceIndex));
+			}
+		}
+
+		@Override
+		public boolean isOverLimit() {
+			return cancelled;
+		}
+
+		/**
+		 * Does nothing; the header is dumped by the layouts the rows are replayed into.
+		 */
+		@Override
+		public void dumpHeader() {
+		}
+
+		/**
+		 * Does nothing; the rows are recorded by {@link #processRow} and dumped
+		 * by the layouts they are replayed into.
+		 */
+		@Override
+		public void dumpRow(int rowDiffs, boolean[] highlightArray, JoinResultType resultType) {
+		}
+	}
+
+	/** The executor providing the merge join implementation. */
+	protected JoinExecutor executor;
+
+	/** The join node being processed. */
+	protected JoinNode joinNode;
+
+	/** The index of the partition. */
+	protected int index;
+
+	/** The data provider of the first data source within the key range. */
+	protected DataProvider dp1;
+
+	/** The data provider of the second data source within the key range. */
+	protected DataProvider dp2;
+
+	/** The comparator which settings should be used in this thread. */
+	protected LigretoComparator comparator;
+
+	/** The columns to be compared. */
+	protected int[] columns;
+
+	/** The highlight array used for non-matched rows. */
+	protected boolean[] trueArray;
+
+	/** The number of non-key columns. */
+	protected int otherColumnCount;
+
+	/** The first target used for error messages. */
+	protected String firstTarget;
+
+	/** The recorded rows not yet spilled into the temporary file. */
+	protected List<JoinRowEvent> buffer = new ArrayList<JoinRowEvent>();
+
+	/** The temporary file holding the spilled rows or null if no rows were spilled. */
+	protected File spillFile = null;
+
+	/** The stream writing the spilled rows. */
+	protected DataOutputStream spillOutput = null;
+
+	/** The number of rows spilled into the temporary file. */
+	protected long spilledCount = 0;
+
+	/** Indicates whether the processing of the partition was cancelled. */
+	protected volatile boolean cancelled = false;
+
+	/** The number of rows recorded. */
+	protected long rowCount = 0;
+
+	/** The time in milliseconds spent by the partition processing. */
+	protected long processingTime = 0;
+
+	/** The throwable object that was caught during the thread execution. */
+	protected Throwable throwable = null;
+
+	/**
+	 * Creates the partition thread. The created thread is not started.
+	 *
+	 * @param executor the executor providing the merge join implementation
+	 * @param joinNode the join node being processed
+	 * @param index the index of the partition
+	 * @param dp1 the data provider of the first data source within the key range
+	 * @param dp2 the data provider of the second data source within the key range
+	 * @param comparator the comparator which settings should be used in this thread
+	 * @param columns the columns to be compared
+	 * @param trueArray the highlight array used for non-matched rows
+	 * @param otherColumnCount the number of non-key columns
+	 * @param firstTarget the first target used for error messages
+	 */
+	public JoinPartition(JoinExecutor executor, JoinNode joinNode, int index, DataProvider dp1, DataProvider dp2,
+			LigretoComparator comparator, int[] columns, boolean[] trueArray, int otherColumnCount, String firstTarget) {
+		super();
+		this.executor = executor;
+		this.joinNode = joinNode;
+		this.index = index;
+		this.dp1 = dp1;
+		this.dp2 = dp2;
+		this.comparator = comparator;
+		this.columns = columns;
+		this.trueArray = trueArray;
+		this.otherColumnCount = otherColumnCount;
+		this.firstTarget = firstTarget;
+	}
+
+	/**
+	 * Process the merge join of the partition. This method is called by {@link #start()}.
+	 */
+	@Override
+	public void run() {
+		long startTime = System.currentTimeMillis();
+		LigretoComparator threadComparator = new LigretoComparator(comparator);
+		try {
+			dp1.setComparator(threadComparator);
+			dp2.setComparator(threadComparator);
+			DataProvider mdp1 = dp1;
+			DataProvider mdp2 = dp2;
+			if (joinNode.getSortingStrategy() == SortingStrategy.INTERNAL) {
+				long sortBufferSize = joinNode.getLigretoNode().getLigretoParameters().getSortBufferSize() * 1024L;
+				SortingDataProvider sdp1 = new SortingDataProvider(dp1, dp1.getOriginalKeyIndices(), sortBufferSize);
+				SortingDataProvider sdp2 = new SortingDataProvider(dp2, dp2.getOriginalKeyIndices(), sortBufferSize);
+				sdp1.setFanIn(joinNode.getLigretoNode().getLigretoParameters().getSortFanIn());
+				sdp2.setFanIn(joinNode.getLigretoNode().getLigretoParameters().getSortFanIn());
+				sdp1.prepareData();
+				sdp2.prepareData();
+				mdp1 = sdp1;
+				mdp2 = sdp2;
+			}
+			RecordingJoinLayout recordingLayout = new RecordingJoinLayout();
+			recordingLayout.setDataProviders(mdp1, mdp2);
+			List<JoinLayout> layouts = new ArrayList<JoinLayout>(1);
+			layouts.add(recordingLayout);
+			executor.processMergeJoin(joinNode, mdp1, mdp2, layouts, columns, trueArray, otherColumnCount, firstTarget);
+		} catch (Throwable t) {
+			throwable = t;
+		} finally {
+			threadComparator.release();
+			if (spillOutput != null) {
+				try {
+					spillOutput.close();
+				} catch (IOException e) {
+					if (throwable == null) {
+						throwable = e;
+					}
+				}
+			}
+			processingTime = System.currentTimeMillis() - startTime;
+		}
+	}
+
+	/**
+	 * Stores the row event into the buffer. The buffer is spilled into the temporary file
+	 * when it is full. The events are not stored any more after the processing is cancelled.
+	 *
+	 * @param event the event to be stored
+	 * @throws LigretoException if the buffer could not be spilled
+	 */
+	protected void record(JoinRowEvent event) throws LigretoException {
+		if (cancelled) {
+			return;
+		}
+		buffer.add(event);
+		rowCount++;
+		if (buffer.size() >= joinNode.getLigretoNode().getLigretoParameters().getPartitionBufferSize()) {
+			spill();
+		}
+	}
+
+	/**
+	 * Writes the buffered row events into the temporary file and clears the buffer.
+	 *
+	 * @throws LigretoException if the events could not be written
+	 */
+	protected void spill() throws LigretoException {
+		try {
+			if (spillOutput == null) {
+				spillFile = File.createTempFile("ligreto", ".part");
+				spillFile.deleteOnExit();
+				spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+			}
+			for (JoinRowEvent event : buffer) {
+				event.write(spillOutput);
+			}
+		} catch (IOException e) {
+			throw new DataException("Could not write the rows of the partition " + (index + 1) + " to the temporary file: " + spillFile, e);
+		}
+		spilledCount += buffer.size();
+		buffer.clear();
+	}
+
+	/**
+	 * Replays the rows recorded by this partition into the specified layouts. The method waits
+	 * for the partition to be processed first and it returns after all the rows of the partition
+	 * are processed or after all the layouts are over their limits.
+	 *
+	 * @param bdp1 the data provider of the first data source the layouts read the rows from
+	 * @param bdp2 the data provider of the second data source the layouts read the rows from
+	 * @param layouts the layouts to process the rows
+	 * @return false if all the layouts are over their limits and no more rows should be processed
+	 * @throws LigretoException if the partition processing failed
+	 * @throws IOException if the output could not be written
+	 */
+	public boolean replay(BufferedDataProvider bdp1, BufferedDataProvider bdp2, List<JoinLayout> layouts) throws LigretoException, IOException {
+		try {
+			join();
+		} catch (InterruptedException e) {
+			throw new LigretoException("Execution interrupted.", e);
+		}
+		if (throwable != null) {
+			throw new LigretoException("Error while processing the partition " + (index + 1) + " of the join.", throwable);
+		}
+		if (spillFile != null) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+			try {
+				for (long r=0; r < spilledCount; r++) {
+					if (!replay(JoinRowEvent.read(in, bdp1, bdp2), bdp1, bdp2, layouts)) {
+						return false;
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+		for (JoinRowEvent event : buffer) {
+			if (!replay(event, bdp1, bdp2, layouts)) {
+				return false;
+			}
+		}
+		log.info("Partition " + (index + 1) + " of the join processed " + rowCount + " rows in " + processingTime
+				+ " ms; spilled " + spilledCount + " rows.");
+		return true;
+	}
+
+	/**
+	 * Replays the single row event into the specified layouts.
+	 *
+	 * @param event the event to replay
+	 * @param bdp1 the data provider of the first data source the layouts read the rows from
+	 * @param bdp2 the data provider of the second data source the layouts read the rows from
+	 * @param layouts the layouts to process the rows
+	 * @return false if all the layouts are over their limits and no more rows should be processed
+	 * @throws LigretoException if any error occurred during the processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected boolean replay(JoinRowEvent event, BufferedDataProvider bdp1, BufferedDataProvider bdp2, List<JoinLayout> layouts) throws LigretoException, IOException {
+		event.position(bdp1, bdp2);
+		boolean stillProcessing = false;
+		for (JoinLayout joinLayout : layouts) {
+			event.replay(joinLayout);
+			if (!joinLayout.isOverLimit()) {
+				stillProcessing = true;
+			}
+		}
+		return stillProcessing;
+	}
+
+	/**
+	 * Cancels the processing of the partition. The thread will finish as soon as possible
+	 * without recording any more rows.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Releases the recorded rows and deletes the temporary file. It has to be called
+	 * after the thread finished.
+	 */
+	public void cleanup() {
+		buffer.clear();
+		if (spillFile != null && !spillFile.delete()) {
+			log.warn("Could not delete the temporary file: " + spillFile.getAbsolutePath());
+		}
+		spillFile = null;
+	}
+
+	/**
+	 * @return the number of rows recorded by the partition
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the time in milliseconds spent by the partition processing
+	 */
+	public long getProcessingTime() {
+		return processingTime;
+	}
+
+	/**
+	 * Provides the access to the throwable object that was thrown during the thread execution.
+	 *
+	 * @return the throwable caught during the thread execution.
+	 */
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	/**
+	 * Builds the query returning the rows of the specified partition only.
+	 *
+	 * @param query the original query
+	 * @param column the label of the first key column in the query result
+	 * @param bounds the SQL literals splitting the first key column into ranges
+	 * @param partition the index of the partition
+	 * @param key the key column indices used for sorting or null if the rows should not be sorted
+	 * @return the range-filtered query
+	 */
+	public static String getPartitionQuery(String query, String column, List<String> bounds, int partition, int[] key) {
+		String quotedColumn = "\"" + column.replace("\"", "\"\"") + "\"";
+		StringBuilder qry = new StringBuilder("select * from (");
+		qry.append(query);
+		qry.append(") ligreto_part where ");
+		if (partition == 0) {
+			qry.append("(" + quotedColumn + " is null or " + quotedColumn + " < " + bounds.get(0) + ")");
+		} else if (partition == bounds.size()) {
+			qry.append(quotedColumn + " >= " + bounds.get(partition - 1));
+		} else {
+			qry.append("(" + quotedColumn + " >= " + bounds.get(partition - 1) + " and " + quotedColumn + " < " + bounds.get(partition) + ")");
+		}
+		if (key != null && key.length > 0) {
+			qry.append(" order by ");
+			for (int i = 0; i < key.length; i++) {
+				qry.append(key[i]);
+				qry.append(" nulls first,");
+			}
+			qry.deleteCharAt(qry.length() - 1);
+		}
+		return qry.toString();
+	}
+
+	/**
+	 * Determines the label of the specified column of the query result.
+	 *
+	 * @param executionContext the context of the execution run
+	 * @param sqlNode the query
+	 * @param column the column index
+	 * @return the column label
+	 * @throws LigretoException if the query could not be executed
+	 * @throws SQLException if database related problems occurred
+	 */
+	public static String getColumnLabel(ExecutionContext executionContext, SqlNode sqlNode, int column) throws LigretoException, SQLException {
+		String query = "select * from (" + sqlNode.getQuery() + ") ligreto_meta where 1=0";
+		SqlExecutionThread exec = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlNode.getDataSource(), query, SqlNode.QueryType.QUERY);
+		try {
+			exec.run();
+			exec.throwExceptions();
+			ResultSetMetaData rsmd = exec.getResultSet().getMetaData();
+			if (column > rsmd.getColumnCount()) {
+				throw new LigretoException("Index in \"key\" is out of the range. It is \""
+						+ column + "\" and should be \"" + rsmd.getColumnCount() + "\" the largest.");
+			}
+			return rsmd.getColumnLabel(column);
+		} finally {
+			exec.cleanup();
+		}
+	}
+
+	/**
+	 * Determines the partition bounds of the specified column. The bounds of the numeric column
+	 * split the range between its minimal and maximal value evenly, so only the single row
+	 * of the aggregate query is fetched and the partitions are balanced if the values are
+	 * distributed evenly. The bounds of other columns are determined by {@link #sampleBounds}
+	 * using the number of their values counted by the same aggregate query.
+	 *
+	 * @param executionContext the context of the execution run
+	 * @param sqlNode the query to get the bounds for
+	 * @param column the label of the column to split
+	 * @param partitions the requested number of partitions
+	 * @return the SQL literals splitting the column into ranges
+	 * @throws LigretoException if the query could not be executed or the column type is not supported
+	 * @throws SQLException if database related problems occurred
+	 */
+	public static List<String> getBounds(ExecutionContext executionContext, SqlNode sqlNode, String column, int partitions) throws LigretoException, SQLException {
+		String quotedColumn = "\"" + column.replace("\"", "\"\"") + "\"";
+		String query = "select min(" + quotedColumn + "), max(" + quotedColumn + "), count(" + quotedColumn + ") from ("
+				+ sqlNode.getQuery() + ") ligreto_range";
+		SqlExecutionThread exec = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlNode.getDataSource(), query, SqlNode.QueryType.QUERY);
+		boolean numeric = true;
+		BigDecimal min = null;
+		BigDecimal max = null;
+		long valueCount = 0;
+		int scale = 0;
+		DataTypeDialect dialect;
+		try {
+			exec.run();
+			exec.throwExceptions();
+			ResultSet rs = exec.getResultSet();
+			dialect = DataTypeDialect.getInstance(rs.getStatement().getConnection());
+			switch (rs.getMetaData().getColumnType(1)) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+				scale = 0;
+				break;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				scale = rs.getMetaData().getScale(1);
+				break;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				scale = -1;
+				break;
+			default:
+				numeric = false;
+				break;
+			}
+			if (rs.next()) {
+				valueCount = rs.getLong(3);
+				if (numeric && rs.getObject(1) != null) {
+					min = new BigDecimal(rs.getObject(1).toString());
+					max = new BigDecimal(rs.getObject(2).toString());
+				}
+			}
+		} finally {
+			exec.cleanup();
+		}
+		if (!numeric) {
+			// The connection of the aggregate query is released before the column is sampled
+			return sampleBounds(executionContext, sqlNode, column, partitions, valueCount, dialect);
+		} else if (min == null) {
+			return new ArrayList<String>();
+		}
+
+		List<String> bounds = new ArrayList<String>();
+		String previous = null;
+		BigDecimal range = max.subtract(min);
+		for (int i=1; i < partitions; i++) {
+			BigDecimal value = min.add(range.multiply(BigDecimal.valueOf(i)).divide(BigDecimal.valueOf(partitions), MathContext.DECIMAL64));
+			String bound;
+			if (scale >= 0) {
+				bound = value.setScale(scale, RoundingMode.FLOOR).toPlainString();
+			} else {
+				bound = value.stripTrailingZeros().toPlainString();
+			}
+			if (!bound.equals(previous)) {
+				bounds.add(bound);
+				previous = bound;
+			}
+		}
+		log.info("The values of column \"" + column + "\" on \"" + sqlNode.getDataSource() + "\" range from "
+				+ min.toPlainString() + " to " + max.toPlainString() + "; partition bounds: " + bounds);
+		return bounds;
+	}
+
+	/**
+	 * Determines the partition bounds of the column which range could not be split by {@link #getBounds}.
+	 * The bounds are computed by the database if the dialect of the data source provides
+	 * the query for it, so only the bounds are fetched. Otherwise or if the query fails,
+	 * the ordered values of the column are sampled by {@link #readSample}. The database
+	 * picks the random sample of the rows if the dialect provides the random function
+	 * and there are more values than the sample size, so only the sample is ordered
+	 * and fetched. As the last resort all the ordered values are read to get the sample.
+	 * The returned list could have less bounds than requested if the values are not distinct.
+	 *
+	 * @param executionContext the context of the execution run
+	 * @param sqlNode the query to be sampled
+	 * @param column the label of the column to sample
+	 * @param partitions the requested number of partitions
+	 * @param valueCount the number of the non-null values of the column
+	 * @param dialect the dialect of the data source
+	 * @return the SQL literals splitting the column into ranges
+	 * @throws LigretoException if the query could not be executed or the column type is not supported
+	 * @throws SQLException if database related problems occurred
+	 */
+	public static List<String> sampleBounds(ExecutionContext executionContext, SqlNode sqlNode, String column, int partitions,
+			long valueCount, DataTypeDialect dialect) throws LigretoException, SQLException {
+		String quotedColumn = "\"" + column.replace("\"", "\"\"") + "\"";
+		String query = sqlNode.getQuery().toString();
+		String boundsQuery = dialect.getPartitionBoundsQuery(query, quotedColumn, partitions);
+		if (boundsQuery != null) {
+			try {
+				List<String> values = readValues(executionContext, sqlNode, boundsQuery, column, Integer.MAX_VALUE);
+				// Each of the values is the bound already
+				List<String> bounds = toBounds(values, values.size() + 1);
+				log.info("The database computed the partition bounds of column \"" + column + "\" on \""
+						+ sqlNode.getDataSource() + "\": " + bounds);
+				return bounds;
+			} catch (LigretoException e) {
+				log.info("The database could not compute the partition bounds; the values of column \"" + column + "\" are sampled.");
+				log.debug("The partition bounds query failed.", e);
+			}
+		}
+
+		int sampleSize = partitions * SAMPLES_PER_PARTITION;
+		String sampleQuery = "select " + quotedColumn + " from (" + query + ") ligreto_sample where " + quotedColumn + " is not null";
+		String orderBy = " order by 1";
+		String random = dialect.getRandomFunction();
+		if (random != null && valueCount > sampleSize) {
+			// Twice the sample size is requested, so the sample is rarely smaller than the sample size
+			BigDecimal fraction = BigDecimal.valueOf(2.0 * sampleSize / valueCount).round(MathContext.DECIMAL32);
+			try {
+				List<String> values = readValues(executionContext, sqlNode, sampleQuery + " and " + random + " < "
+						+ fraction.toPlainString() + orderBy, column, sampleSize);
+				List<String> bounds = toBounds(values, partitions);
+				log.info("Sampled " + values.size() + " of " + valueCount + " values of column \"" + column
+						+ "\" on \"" + sqlNode.getDataSource() + "\" by the database; partition bounds: " + bounds);
+				return bounds;
+			} catch (LigretoException e) {
+				log.info("The database could not sample the values of column \"" + column + "\"; all the values are read.");
+				log.debug("The sample query failed.", e);
+			}
+		}
+		List<String> values = readValues(executionContext, sqlNode, sampleQuery + orderBy, column, sampleSize);
+		List<String> bounds = toBounds(values, partitions);
+		log.info("Sampled " + values.size() + " of " + valueCount + " values of column \"" + column
+				+ "\" on \"" + sqlNode.getDataSource() + "\"; partition bounds: " + bounds);
+		return bounds;
+	}
+
+	/**
+	 * Reads the ordered values of the first column of the query result converted into the SQL literals.
+	 * The reservoir sampling is used if there are more values than the sample size, so the query result
+	 * is read only once and the sample keeps the order of the values.
+	 *
+	 * @param executionContext the context of the execution run
+	 * @param sqlNode the query which data source is used
+	 * @param query the query to be executed
+	 * @param column the column label used in error messages
+	 * @param sampleSize the maximal number of the values returned
+	 * @return the SQL literals of the ordered values
+	 * @throws LigretoException if the query could not be executed or the column type is not supported
+	 * @throws SQLException if database related problems occurred
+	 */
+	protected static List<String> readValues(ExecutionContext executionContext, SqlNode sqlNode, String query, String column, int sampleSize) throws LigretoException, SQLException {
+		SqlExecutionThread exec = SqlExecutionThread.getInstance(executionContext.getDatabase(), sqlNode.getDataSource(), query, SqlNode.QueryType.QUERY);
+		exec.setFetchSize(executionContext.getLigretoParameters().getFetchSize());
+		try {
+			exec.run();
+			exec.throwExceptions();
+			ResultSet rs = exec.getResultSet();
+			int columnType = rs.getMetaData().getColumnType(1);
+
+			// The sample keeps the row number, so the sampled values could be ordered back
+			Random random = new Random(sampleSize);
+			List<Long> sampleIndices = new ArrayList<Long>();
+			List<String> sampleValues = new ArrayList<String>();
+			long rowCount = 0;
+			while (rs.next()) {
+				if (sampleValues.size() < sampleSize) {
+					sampleIndices.add(rowCount);
+					sampleValues.add(toLiteral(columnType, rs.getObject(1), column));
+				} else {
+					long r = (long) (random.nextDouble() * (rowCount + 1));
+					if (r < sampleSize) {
+						sampleIndices.set((int) r, rowCount);
+						sampleValues.set((int) r, toLiteral(columnType, rs.getObject(1), column));
+					}
+				}
+				rowCount++;
+			}
+			List<Long> orderedIndices = new ArrayList<Long>(sampleIndices);
+			Collections.sort(orderedIndices);
+			String[] ordered = new String[sampleValues.size()];
+			for (int i=0; i < ordered.length; i++) {
+				ordered[Collections.binarySearch(orderedIndices, sampleIndices.get(i))] = sampleValues.get(i);
+			}
+			return Arrays.asList(ordered);
+		} finally {
+			exec.cleanup();
+		}
+	}
+
+	/**
+	 * Picks the partition bounds from the ordered values skipping the repeated bounds.
+	 *
+	 * @param values the SQL literals of the ordered values
+	 * @param partitions the requested number of partitions
+	 * @return the SQL literals splitting the column into ranges
+	 */
+	protected static List<String> toBounds(List<String> values, int partitions) {
+		List<String> bounds = new ArrayList<String>();
+		String previous = null;
+		for (int i=1; i < partitions && !values.isEmpty(); i++) {
+			String bound = values.get((int) ((long) i * values.size() / partitions));
+			if (!bound.equals(previous)) {
+				bounds.add(bound);
+				previous = bound;
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Converts the sampled value into the SQL literal.
+	 *
+	 * @param columnType the SQL data type of the value
+	 * @param value the value
+	 * @param column the column label used in error messages
+	 * @return the SQL literal
+	 * @throws LigretoException if the data type is not supported
+	 */
+	protected static String toLiteral(int columnType, Object value, String column) throws LigretoException {
+		switch (columnType) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return value.toString();
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return ((BigDecimal) value).toPlainString();
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+			return "'" + value.toString().replace("'", "''") + "'";
+		default:
+			throw new LigretoException("The partition bounds could not be sampled for the data type of column \""
+					+ column + "\"; use \"partition-bounds\" attribute.");
+		}
+	}
+}
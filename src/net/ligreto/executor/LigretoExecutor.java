@@ -9,7 +9,7 @@ import java.util.Iterator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import net.ligreto.Database;
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.builders.BuilderInterface;
 import net.ligreto.builders.ReportBuilder;
@@ -33,35 +33,38 @@ public class LigretoExecutor extends Executor {
 	
 	public LigretoExecutor(LigretoNode aLigretoNode) {
 		ligretoNode = aLigretoNode;
+		executionContext = new ExecutionContext(ligretoNode);
 	}
 	
 	@Override
 	public ResultStatus execute() throws LigretoException {
 		ResultStatus result = new ResultStatus();
-		Database.getInstance(ligretoNode);
-		result.merge(executeParams());
-		result.merge(executeSQLs());
-		result.merge(executePTPs());
-		result.merge(executeReports());
+		try {
+			result.merge(executeParams());
+			result.merge(executeSQLs());
+			result.merge(executePTPs());
+			result.merge(executeReports());
+		} finally {
+			executionContext.close();
+		}
 		result.info(log, "LIGRETO");
-		Database.dropInstance();
 		return result;
 	}
 	
 	public ResultStatus executeParams() throws LigretoException {
-		ParamExecutor paramExecutor = new ParamExecutor();
+		ParamExecutor paramExecutor = new ParamExecutor(executionContext);
 		paramExecutor.setParamNodes(ligretoNode.params());
 		return paramExecutor.execute();
 	}
 	
 	public ResultStatus executePTPs() throws LigretoException {
-		PtpExecutor ptpExecutor = new PtpExecutor(ligretoNode);
+		PtpExecutor ptpExecutor = new PtpExecutor(executionContext);
 		ptpExecutor.setPtpNodes(ligretoNode.ptps());
 		return ptpExecutor.execute();
 	}
 	
 	public ResultStatus executeSQLs() throws LigretoException {
-		SqlExecutor sqlExecutor = new SqlExecutor();
+		SqlExecutor sqlExecutor = new SqlExecutor(executionContext);
 		sqlExecutor.setSqlNodes(ligretoNode.sqlQueries());
 		return sqlExecutor.execute();
 	}
@@ -85,12 +88,12 @@ public class LigretoExecutor extends Executor {
 			reportBuilder.start();
 
 			// Prepare the SQL executor
-			SqlExecutor sqlExecutor = new SqlExecutor();
+			SqlExecutor sqlExecutor = new SqlExecutor(executionContext);
 			sqlExecutor.setReportBuilder(reportBuilder);
 			sqlExecutor.setCallBack(sqlExecutor);
 		
 			// Prepare the join / comparison / reconciliation executor
-			JoinExecutor joinExecutor = new JoinExecutor();
+			JoinExecutor joinExecutor = new JoinExecutor(executionContext);
 			joinExecutor.setReportBuilder(reportBuilder);
 			joinExecutor.setCallBack(joinExecutor);
 
@@ -0,0 +1,128 @@
+package net.ligreto.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The loader inserting the transferred rows into the Oracle table by the direct-path array inserts
+ * using the <code>APPEND_VALUES</code> hint. The rows inserted by the direct path could not be
+ * accessed in the same transaction, so each batch of rows is committed.
+ *
+ * The table is switched to <code>NOLOGGING</code> mode for the time of the load if it was created
+ * by the transfer; the logging mode of the already existing tables is not changed. The database
+ * might not allow the mode change or it might ignore it if the logging is forced.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class OracleBulkLoader extends BulkLoader {
+
+	/** The number of rows inserted by a single batch if the batch size of the target is lower. */
+	public static final int MIN_BATCH_SIZE = 1000;
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(OracleBulkLoader.class);
+
+	/** The connection to the target data source. */
+	protected Connection cnn;
+
+	/** The name of the target table. */
+	protected String table;
+
+	/** Indicates whether the table was switched to the NOLOGGING mode. */
+	protected boolean nologging = false;
+
+	/** The writer inserting the rows. */
+	protected PtpWriter writer;
+
+	/**
+	 * Creates the loader of the specified table.
+	 *
+	 * @param cnn the connection to the target data source owned by the caller
+	 * @param table the name of the target table
+	 * @param insertQry the insert statement of the transfer
+	 * @param columnBinders the binders of the inserted columns
+	 * @param batchSize the number of rows inserted by a single batch; at least {@link #MIN_BATCH_SIZE} rows are used
+	 * @param tableCreated whether the table was created by the transfer
+	 * @throws SQLException if the insert statement could not be prepared
+	 */
+	public OracleBulkLoader(Connection cnn, String table, String insertQry, ColumnBinder[] columnBinders, int batchSize, boolean tableCreated) throws SQLException {
+		this.cnn = cnn;
+		this.table = table;
+		if (batchSize < MIN_BATCH_SIZE) {
+			batchSize = MIN_BATCH_SIZE;
+		}
+		if (tableCreated) {
+			nologging = alterLogging("nologging");
+		}
+		String directPathQry = insertQry.replaceFirst("^insert into ", "insert /*+ APPEND_VALUES */ into ");
+		writer = new PtpWriter("ptp-bulk-loader", cnn, directPathQry, columnBinders, batchSize, batchSize);
+	}
+
+	/**
+	 * Changes the logging mode of the target table.
+	 *
+	 * @param mode the logging mode
+	 * @return true if the mode was changed
+	 */
+	protected boolean alterLogging(String mode) {
+		Statement stmt = null;
+		try {
+			stmt = cnn.createStatement();
+			stmt.execute("alter table " + table + " " + mode);
+			log.info("Table " + table + " switched to " + mode.toUpperCase() + " mode.");
+			return true;
+		} catch (SQLException e) {
+			log.info("Table " + table + " could not be switched to " + mode.toUpperCase() + " mode: " + e.getMessage());
+			return false;
+		} finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException e) {
+					log.debug("Failed to close the statement.", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void write(Object[] row, long rowNumber) throws LigretoException {
+		writer.write(row, rowNumber);
+		rowCount = writer.getRowCount();
+		committedRowCount = writer.getCommittedRowCount();
+	}
+
+	@Override
+	public void flush() throws LigretoException {
+		writer.flush();
+		committedRowCount = writer.getCommittedRowCount();
+	}
+
+	/**
+	 * Closes the insert statement and restores the logging mode of the table.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			writer.rollback();
+			writer.close();
+		} finally {
+			if (nologging) {
+				alterLogging("logging");
+				nologging = false;
+			}
+		}
+	}
+
+	@Override
+	public String getMethod() {
+		return "direct-path inserts";
+	}
+}
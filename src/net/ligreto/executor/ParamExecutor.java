@@ -10,6 +10,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import net.ligreto.Database;
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.exceptions.LigretoException;
 import net.ligreto.parser.nodes.ParamNode;
@@ -26,6 +27,13 @@ public class ParamExecutor extends Executor {
 	/** Iterable object holding the SQL nodes to be processed. */ 
 	protected Iterable<ParamNode> paramNodes;
 	
+	/**
+	 * @param executionContext the context of the execution run
+	 */
+	public ParamExecutor(ExecutionContext executionContext) {
+		super(executionContext);
+	}
+	
 	public ResultStatus execute(ParamNode paramNode) throws LigretoException {
 		ResultStatus result = new ResultStatus();
 		try {
@@ -34,7 +42,7 @@ public class ParamExecutor extends Executor {
 			CallableStatement cstm = null;
 			ResultSet rs = null;
 			try {
-				cnn = Database.getInstance().getConnection(paramNode.getDataSource());
+				cnn = executionContext.getDatabase().getConnection(paramNode.getDataSource());
 				String qry = paramNode.getQuery().toString();
 				try {
 					switch (paramNode.getQueryType()) {
@@ -0,0 +1,243 @@
+package net.ligreto.executor;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The checkpoint of the PTP transfer allowing to resume the failed transfer. The checkpoint
+ * holds the number of the source rows committed into the target table and the key of the last
+ * committed row. It is kept in the {@link PtpStateStore} together with the fingerprint of the
+ * source query, so the transfer is not resumed if the query or the target changed.
+ *
+ * The writers of the transfer publish their committed positions and the thread reading
+ * the source rows checks them by {@link #isDue()} regularly. The checkpoint is stored only
+ * when all the rows up to the position are committed by all the writers. The rows are passed
+ * to the writers in the order of the source rows, so the lowest position committed by all
+ * the writers is such a position.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class PtpCheckpoint {
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(PtpCheckpoint.class);
+
+	/** The position of the last committed row. */
+	public static class Position {
+		/** The number of the row in the source result set. */
+		protected long rowNumber;
+
+		/** The row values. */
+		protected Object[] row;
+
+		/**
+		 * @param rowNumber the number of the row in the source result set
+		 * @param row the row values
+		 */
+		public Position(long rowNumber, Object[] row) {
+			this.rowNumber = rowNumber;
+			this.row = row;
+		}
+	}
+
+	/** The store holding the checkpoint. */
+	protected PtpStateStore stateStore;
+
+	/** The prefix of the keys of the checkpoint in the state store. */
+	protected String prefix;
+
+	/** The fingerprint of the transfer. */
+	protected String fingerprint;
+
+	/** The index of the key column in the row values or -1 if only the row number is stored. */
+	protected int keyIndex = -1;
+
+	/** The writers of the transfer. */
+	protected PtpWriter[] writers;
+
+	/** The number of rows of the stored checkpoint. */
+	protected long savedRowNumber = 0;
+
+	/** The position committed by all the writers found by {@link #isDue()}. */
+	protected Position duePosition = null;
+
+	/** The number of rows of the checkpoint the transfer was resumed from. */
+	protected long resumedRowNumber = 0;
+
+	/** The key of the last row of the checkpoint the transfer was resumed from or null. */
+	protected PtpWatermark resumedKey = null;
+
+	/** The watermark value of the checkpoint the transfer was resumed from or null. */
+	protected PtpWatermark resumedWatermark = null;
+
+	/**
+	 * @param stateStore the store holding the checkpoint
+	 * @param prefix the prefix of the keys of the checkpoint in the state store
+	 * @param fingerprint the fingerprint of the transfer
+	 */
+	public PtpCheckpoint(PtpStateStore stateStore, String prefix, String fingerprint) {
+		this.stateStore = stateStore;
+		this.prefix = prefix;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Computes the fingerprint of the transfer description.
+	 *
+	 * @param parts the parts of the transfer description, e.g. the data sources, the query and the target table
+	 * @return the hexadecimal fingerprint
+	 * @throws LigretoException if the fingerprint could not be computed
+	 */
+	public static String fingerprint(String... parts) throws LigretoException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (String part : parts) {
+				if (part != null) {
+					digest.update(part.getBytes("UTF-8"));
+				}
+				digest.update((byte) 0);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new LigretoException("Failed to compute the fingerprint of the transfer.", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new LigretoException("Failed to compute the fingerprint of the transfer.", e);
+		}
+	}
+
+	/**
+	 * Loads the stored checkpoint to resume the transfer from.
+	 *
+	 * @return true if the checkpoint was found
+	 * @throws LigretoException if the stored checkpoint belongs to the different transfer
+	 */
+	public boolean load() throws LigretoException {
+		String storedFingerprint = stateStore.getProperty(prefix + "fingerprint");
+		if (storedFingerprint == null) {
+			return false;
+		}
+		if (!storedFingerprint.equals(fingerprint)) {
+			throw new LigretoException("The checkpoint was stored for the different query or target; remove it from "
+				+ stateStore.getFile().getPath() + " to start the transfer from the beginning.");
+		}
+		try {
+			resumedRowNumber = Long.parseLong(stateStore.getProperty(prefix + "rows"));
+		} catch (NumberFormatException e) {
+			throw new LigretoException("Invalid number of rows of the checkpoint: " + stateStore.getProperty(prefix + "rows"), e);
+		}
+		resumedKey = PtpWatermark.parse(stateStore.getProperty(prefix + "key"));
+		resumedWatermark = PtpWatermark.parse(stateStore.getProperty(prefix + "watermark"));
+		savedRowNumber = resumedRowNumber;
+		return true;
+	}
+
+	/**
+	 * Starts tracking the positions committed by the writers.
+	 *
+	 * @param writers the writers of the transfer
+	 * @param keyIndex the index of the key column in the row values or -1 if only the row number is stored
+	 */
+	public void track(PtpWriter[] writers, int keyIndex) {
+		this.writers = writers;
+		this.keyIndex = keyIndex;
+	}
+
+	/**
+	 * Checks whether all the writers committed the rows after the stored checkpoint.
+	 *
+	 * @return true if the new checkpoint should be stored by {@link #save(PtpWatermark)}
+	 */
+	public boolean isDue() {
+		Position position = null;
+		for (int i=0; i < writers.length; i++) {
+			Position committed = writers[i].getCommittedPosition();
+			if (committed == null) {
+				return false;
+			}
+			if (position == null || committed.rowNumber < position.rowNumber) {
+				position = committed;
+			}
+		}
+		if (position.rowNumber <= savedRowNumber) {
+			return false;
+		}
+		duePosition = position;
+		return true;
+	}
+
+	/**
+	 * Stores the checkpoint found by {@link #isDue()}.
+	 *
+	 * @param watermark the highest watermark value read so far or null
+	 * @throws LigretoException if the checkpoint could not be stored
+	 */
+	public void save(PtpWatermark watermark) throws LigretoException {
+		Map<String, String> values = new HashMap<String, String>();
+		values.put(prefix + "fingerprint", fingerprint);
+		values.put(prefix + "rows", Long.toString(duePosition.rowNumber));
+		if (keyIndex >= 0) {
+			PtpWatermark key = PtpWatermark.valueOf(duePosition.row[keyIndex]);
+			if (key == null) {
+				throw new LigretoException("The checkpoint key column contains the null value in the row " + duePosition.rowNumber + ".");
+			}
+			values.put(prefix + "key", key.toString());
+		}
+		if (watermark != null) {
+			values.put(prefix + "watermark", watermark.toString());
+		}
+		stateStore.setProperties(values);
+		savedRowNumber = duePosition.rowNumber;
+		log.debug("Stored the checkpoint after " + savedRowNumber + " rows.");
+	}
+
+	/**
+	 * Removes the checkpoint once the transfer is finished.
+	 *
+	 * @throws LigretoException if the checkpoint could not be removed
+	 */
+	public void remove() throws LigretoException {
+		stateStore.removeProperties(prefix);
+	}
+
+	/**
+	 * @return the number of rows of the stored checkpoint
+	 */
+	public long getSavedRowNumber() {
+		return savedRowNumber;
+	}
+
+	/**
+	 * @return the number of rows of the checkpoint the transfer was resumed from
+	 */
+	public long getResumedRowNumber() {
+		return resumedRowNumber;
+	}
+
+	/**
+	 * @return the key of the last row of the checkpoint the transfer was resumed from or null
+	 */
+	public PtpWatermark getResumedKey() {
+		return resumedKey;
+	}
+
+	/**
+	 * @return the watermark value of the checkpoint the transfer was resumed from or null
+	 */
+	public PtpWatermark getResumedWatermark() {
+		return resumedWatermark;
+	}
+}
@@ -2,31 +2,27 @@ package net.ligreto.executor;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Types;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import net.ligreto.Database;
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.exceptions.LigretoException;
 import net.ligreto.executor.ddl.DataTypeDialect;
-import net.ligreto.parser.nodes.LigretoNode;
 import net.ligreto.parser.nodes.PtpNode;
 import net.ligreto.parser.nodes.SqlNode;
 import net.ligreto.parser.nodes.TargetNode;
 import net.ligreto.parser.nodes.TransferNode;
-import net.ligreto.util.DataProviderUtils;
-import net.ligreto.util.MiscUtils;
 import net.pcal.sqlsheet.XlsResultSet;
 
 public class PtpExecutor extends Executor {
@@ -43,8 +39,71 @@ public class PtpExecutor extends Executor {
 	/** The generated "create table" query for the target according the select result set. */
 	protected String createQry;
 	
-	/** The prepared statement for the insertion part of the data transfer process. */
-	protected PreparedStatement insertStmt;
+	/** The binders of the transferred columns resolved by {@link #prepareTarget(TargetNode, ResultSet)}. */
+	protected ColumnBinder[] columnBinders;
+	
+	/** The names of the transferred columns. */
+	protected String[] columnNames;
+	
+	/** Indicates whether the target table was created by the transfer. */
+	protected boolean tableCreated;
+	
+	/** The generated "delete" query removing the target rows replaced by the transferred rows or null. */
+	protected String deleteQry;
+	
+	/** The indices of the key columns of the replaced or merged rows in the row values. */
+	protected int[] keyIndexes;
+	
+	/** Indicates whether the transferred rows are merged into the target table. */
+	protected boolean merge;
+	
+	/** The generated "update" query of the changed rows with the same key as the merged rows or null. */
+	protected String updateQry;
+	
+	/** The binders of the parameters of the "update" query. */
+	protected ColumnBinder[] updateBinders;
+	
+	/** The indices of the row values bound by the update binders. */
+	protected int[] updateColumns;
+	
+	/** The indices of the parameters of the "update" query bound to the null flags of the compared columns. */
+	protected int[] nullFlagParams;
+	
+	/** The indices of the row values which null flags are bound. */
+	protected int[] nullFlagColumns;
+	
+	/** The key of the watermark of the incremental transfer in the state store or null for the full transfer. */
+	protected String watermarkKey;
+	
+	/** The watermark of the previous run of the incremental transfer or null if all the rows are transferred. */
+	protected PtpWatermark watermark;
+	
+	/** Indicates whether the rows not newer than the watermark are skipped by the executor instead of the query. */
+	protected boolean filterWatermark;
+	
+	/** The index of the watermark column in the row values or -1 for the full transfer. */
+	protected int watermarkIndex;
+	
+	/** The highest value of the watermark column transferred by the current run. */
+	protected Object watermarkValue;
+	
+	/** The number of rows skipped by the incremental transfer or -1 if they were not counted. */
+	protected long skippedRowCount;
+	
+	/** The checkpoint of the transfer or null if the checkpoints are not stored. */
+	protected PtpCheckpoint checkpoint;
+	
+	/** Indicates whether the transfer continues from the stored checkpoint. */
+	protected boolean resumed;
+	
+	/** The number of rows transferred before the checkpoint the transfer continues from. */
+	protected long resumedRowCount;
+	
+	/** The number of rows transferred before the checkpoint which are skipped while reading the source. */
+	protected long resumeSkipRows;
+	
+	/** The index of the checkpoint key column in the row values or -1 if the checkpoints use the row numbers. */
+	protected int checkpointKeyIndex;
 	
 	/** The connection to the target data source. */
 	protected Connection tgtCnn;
@@ -52,9 +111,6 @@ public class PtpExecutor extends Executor {
 	/** The data type dialect to use for DDL statements. */
 	protected DataTypeDialect dataTypeDialect;
 	
-	/** The excel date format. */
-	protected final DateFormat excelDateFormat;
-	
 	@Override
 	public ResultStatus execute() throws LigretoException {
 		ResultStatus result = new ResultStatus();
@@ -67,10 +123,10 @@ public class PtpExecutor extends Executor {
 	/**
 	 * The constructor used to construct the executor instance.
 	 * 
-	 * @param ligretoNode
+	 * @param executionContext the context of the execution run
 	 */
-	public PtpExecutor(LigretoNode ligretoNode) {
-		excelDateFormat = new SimpleDateFormat(ligretoNode.getLigretoParameters().getXlsxJdbcDateFormat());
+	public PtpExecutor(ExecutionContext executionContext) {
+		super(executionContext);
 	}
 	
 	/**
@@ -83,7 +139,7 @@ public class PtpExecutor extends Executor {
 		ResultStatus result = new ResultStatus();
 		try {
 			// Do pre-processing
-			SqlExecutor sqlExecutor = new SqlExecutor();
+			SqlExecutor sqlExecutor = new SqlExecutor(executionContext);
 			if (ptpNode.getPreprocessNode() != null) {
 				log.info("Running transfer pre-processing.");
 				sqlExecutor.setSqlNodes(ptpNode.getPreprocessNode().sqlQueries());
@@ -116,21 +172,58 @@ public class PtpExecutor extends Executor {
 		try {
 			Connection cnn = null;
 			Statement stm = null;
+			PreparedStatement pstm = null;
 			CallableStatement cstm = null;
 			ResultSet rs = null;
 			try {
-				cnn = Database.getInstance().getConnection(sqlNode.getDataSource());
+				cnn = executionContext.getDatabase().getConnection(sqlNode.getDataSource());
 				String qry = sqlNode.getQuery().toString();
 				stm = cnn.createStatement();
+				prepareWatermark(transferNode);
+				prepareCheckpoint(transferNode);
 				
 				switch (sqlNode.getQueryType()) {
 				case QUERY:
+					List<PtpWatermark> parameters = new ArrayList<PtpWatermark>();
+					if (watermark != null) {
+						// Counting the skipped rows runs the source query once more, so it is done only for debugging
+						skippedRowCount = log.isDebugEnabled() ? countSkippedRows(cnn, qry, transferNode.getWatermark()) : -1;
+						qry = "select * from (" + qry + ") ligreto_src where " + transferNode.getWatermark() + " > ?";
+						parameters.add(watermark);
+						log.info("Transferring the rows newer than " + watermark + ".");
+					}
+					if (checkpoint != null && transferNode.getCheckpointKey() != null) {
+						String checkpointKey = transferNode.getCheckpointKey();
+						if (resumed && checkpoint.getResumedKey() != null) {
+							qry = "select * from (" + qry + ") ligreto_chk where " + checkpointKey + " > ? order by " + checkpointKey;
+							parameters.add(checkpoint.getResumedKey());
+							log.info("Resuming the transfer after the key " + checkpoint.getResumedKey() + ".");
+						} else {
+							qry = "select * from (" + qry + ") ligreto_chk order by " + checkpointKey;
+						}
+					} else if (resumed) {
+						resumeSkipRows = resumedRowCount;
+					}
+					if (!parameters.isEmpty()) {
+						log.info("Executing the SQL query on \"" + sqlNode.getDataSource() + "\" data source:");
+						log.info(qry);
+						pstm = cnn.prepareStatement(qry);
+						for (int i=0; i < parameters.size(); i++) {
+							parameters.get(i).bind(pstm, i + 1);
+						}
+						rs = pstm.executeQuery();
+						break;
+					}
 					log.info("Executing the SQL query on \"" + sqlNode.getDataSource() + "\" data source:");
 					log.info(qry);
 					stm = cnn.createStatement();
 					rs = stm.executeQuery(qry);
 					break;
 				case CALL:
+					filterWatermark = watermark != null;
+					if (resumed) {
+						resumeSkipRows = resumedRowCount;
+					}
 					log.info("Executing the SQL callable statement on \"" + sqlNode.getDataSource() + "\" data source:");
 					log.info(qry);
 					cstm = cnn.prepareCall(qry);
@@ -144,26 +237,49 @@ public class PtpExecutor extends Executor {
 				
 				if (targetNode.getCommitInterval() > 1) {
 					log.info("Using commit interval: " + targetNode.getCommitInterval());
-					tgtCnn.setAutoCommit(false);
-					int insCnt = 0;
-					while (rs.next()) {
-						result.addRow();
-						transferRow(rs);
-						if (++insCnt == targetNode.getCommitInterval()) {
-							tgtCnn.commit();
-							insCnt = 0;
-						}
+				}
+				if (targetNode.getBatchSize() > 1) {
+					log.info("Using batch size: " + targetNode.getBatchSize());
+				}
+				if (resumeSkipRows > 0) {
+					log.info("Resuming the transfer after " + resumeSkipRows + " rows, which are skipped.");
+				}
+				BulkLoader bulkLoader = null;
+				if (targetNode.isBulkLoad() && (deleteQry != null || merge)) {
+					log.info("Bulk load could not replace the rows with the same key; using the standard inserts.");
+				} else if (targetNode.isBulkLoad() && checkpoint != null) {
+					log.info("Bulk load does not store the checkpoints; using the standard inserts.");
+				} else if (targetNode.isBulkLoad()) {
+					bulkLoader = dataTypeDialect.createBulkLoader(tgtCnn, targetNode, insertQry, columnNames, columnBinders, tableCreated);
+					if (bulkLoader == null) {
+						log.info("Bulk load is not supported by the \"" + targetNode.getDataSource() + "\" data source; using the standard inserts.");
 					}
-					tgtCnn.commit();
+				}
+				int parallelism = transferNode.getParallelism();
+				if (checkpoint != null && checkpointKeyIndex < 0 && parallelism > 1) {
+					log.info("The checkpoints without the key column require the single writer thread.");
+					parallelism = 1;
+				}
+				if (bulkLoader != null) {
+					transferBulk(bulkLoader, rs, result);
+				} else if (parallelism > 1) {
+					transferPipelined(targetNode, rs, parallelism, result);
+				} else if (transferNode.isPipelined()) {
+					transferPipelined(targetNode, rs, 1, result);
 				} else {
-					tgtCnn.setAutoCommit(true);
-					while (rs.next()) {
-						result.addRow();
-						transferRow(rs);
-					}
+					transferSerial(targetNode, rs, result);
+				}
+				storeWatermark();
+				if (checkpoint != null) {
+					checkpoint.remove();
 				}
 			} finally {
+				if (pstm != null) {
+					pstm.close();
+				}
 				Database.close(cnn, stm, cstm, rs);
+				Database.close(tgtCnn, null, null);
+				tgtCnn = null;
 			}
 			result.info(log, "TRANSFER");
 		} catch (SQLException e) {
@@ -176,97 +292,464 @@ public class PtpExecutor extends Executor {
 		return result;
 	}
 
-	protected void transferRow(ResultSet rs) throws SQLException, LigretoException, ParseException {
-		ResultSetMetaData rsmd = rs.getMetaData();
-		for (int i=1; i <= rsmd.getColumnCount(); i++) {
-			int columnType = rsmd.getColumnType(i);
-			switch (columnType) {
-			case Types.BIGINT:
-				insertStmt.setLong(i, rs.getLong(i));
-				break;
-			case Types.BOOLEAN:
-				insertStmt.setBoolean(i, rs.getBoolean(i));
-				break;
-			case Types.CHAR: 
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.DATE:
-				if (rs instanceof XlsResultSet) {
-					String dateString = rs.getString(i);
-					if (MiscUtils.isNotEmpty(dateString)) {
-						Date dateValue = new Date(excelDateFormat.parse(dateString).getTime());
-						insertStmt.setDate(i, dateValue);
-					} else {
-						insertStmt.setDate(i, null);						
-					}
+	/**
+	 * Inserts the rows of the result set into the target table over the target connection.
+	 * 
+	 * @param targetNode the target of the transfer
+	 * @param rs the result set of the source query
+	 * @param result the result status counting the transferred rows
+	 * @throws SQLException if the source rows could not be read
+	 * @throws LigretoException if the rows could not be inserted
+	 * @throws ParseException if the excel date could not be parsed
+	 */
+	protected void transferSerial(TargetNode targetNode, ResultSet rs, ResultStatus result) throws SQLException, LigretoException, ParseException {
+		PtpWriter writer = new PtpWriter("ptp-writer", tgtCnn, insertQry, columnBinders, targetNode.getCommitInterval(), targetNode.getBatchSize());
+		boolean success = false;
+		try {
+			if (deleteQry != null) {
+				writer.setDeleteStatement(deleteQry, keyIndexes);
+			}
+			if (merge) {
+				writer.setMergeStatement(updateQry, updateBinders, updateColumns, nullFlagParams, nullFlagColumns);
+			}
+			if (checkpoint != null) {
+				checkpoint.track(new PtpWriter[] {writer}, checkpointKeyIndex);
+			}
+			long startTime = System.currentTimeMillis();
+			long rowNumber = 0;
+			Object[] row;
+			while ((row = nextRow(rs)) != null) {
+				result.addRow();
+				writer.write(row, resumedRowCount + ++rowNumber);
+				if (checkpoint != null && checkpoint.isDue()) {
+					checkpoint.save(getWatermark());
+				}
+			}
+			writer.flush();
+			long millis = System.currentTimeMillis() - startTime;
+			log.info("Transferred " + rowNumber + " rows in " + millis + " ms ("
+				+ (millis > 0 ? rowNumber * 1000 / millis : rowNumber) + " rows/s).");
+			if (deleteQry != null) {
+				log.info("Replaced " + writer.getDeletedRowCount() + " rows with the same key.");
+			}
+			if (merge) {
+				logMergeCounts(new PtpWriter[] {writer});
+			}
+			success = true;
+		} finally {
+			if (!success && checkpoint != null) {
+				saveFinalCheckpoint();
+			}
+			writer.close();
+		}
+	}
+
+	/**
+	 * Loads the rows of the result set into the target table by the native bulk load of the target database.
+	 * The rows are loaded by the current thread regardless of the parallelism of the transfer, since
+	 * the bulk load usually locks the whole table.
+	 * 
+	 * @param bulkLoader the loader created by the data type dialect
+	 * @param rs the result set of the source query
+	 * @param result the result status counting the transferred rows
+	 * @throws SQLException if the source rows could not be read
+	 * @throws LigretoException if the rows could not be loaded
+	 * @throws ParseException if the excel date could not be parsed
+	 */
+	protected void transferBulk(BulkLoader bulkLoader, ResultSet rs, ResultStatus result) throws SQLException, LigretoException, ParseException {
+		log.info("Using bulk load by " + bulkLoader.getMethod() + ".");
+		boolean success = false;
+		try {
+			long startTime = System.currentTimeMillis();
+			long rowNumber = 0;
+			Object[] row;
+			while ((row = nextRow(rs)) != null) {
+				result.addRow();
+				bulkLoader.write(row, ++rowNumber);
+			}
+			bulkLoader.flush();
+			long millis = System.currentTimeMillis() - startTime;
+			bulkLoader.info(log);
+			log.info("Transferred " + rowNumber + " rows in " + millis + " ms ("
+				+ (millis > 0 ? rowNumber * 1000 / millis : rowNumber) + " rows/s).");
+			success = true;
+		} finally {
+			if (!success) {
+				log.info("Bulk load committed " + bulkLoader.getCommittedRowCount()
+					+ " rows before the transfer failed; the committed rows are kept in the target table.");
+			}
+			bulkLoader.close();
+		}
+	}
+
+	/**
+	 * Inserts the rows of the result set into the target table by the specified number of writer threads.
+	 * The rows are read and converted by the current thread and passed to the writers in chunks
+	 * in the round-robin fashion, so the source is read while the writers insert the previous rows.
+	 * The first writer uses the target connection and the other writers use their own connections.
+	 * Each writer commits its rows on its own. If any of the writers fails, the reading stops,
+	 * the other writers are cancelled and their uncommitted rows are rolled back.
+	 * 
+	 * @param targetNode the target of the transfer
+	 * @param rs the result set of the source query
+	 * @param parallelism the number of writer threads; the single writer thread just pipelines the transfer
+	 * @param result the result status counting the transferred rows
+	 * @throws SQLException if the source rows could not be read
+	 * @throws LigretoException if the rows could not be inserted
+	 * @throws ParseException if the excel date could not be parsed
+	 * @throws ClassNotFoundException if the database driver was not found
+	 */
+	protected void transferPipelined(TargetNode targetNode, ResultSet rs, int parallelism, ResultStatus result) throws SQLException, LigretoException, ParseException, ClassNotFoundException {
+		log.info("Using " + parallelism + " writer thread" + (parallelism > 1 ? "s." : "."));
+		Connection[] cnns = new Connection[parallelism];
+		PtpWriter[] writers = new PtpWriter[parallelism];
+		boolean success = false;
+		try {
+			for (int i=0; i < parallelism; i++) {
+				if (i > 0) {
+					cnns[i] = executionContext.getDatabase().getConnection(targetNode.getDataSource());
 				} else {
-					insertStmt.setDate(i, rs.getDate(i));
+					cnns[i] = tgtCnn;
+				}
+				writers[i] = new PtpWriter("ptp-writer-" + (i + 1), cnns[i], insertQry, columnBinders, targetNode.getCommitInterval(), targetNode.getBatchSize());
+				if (deleteQry != null) {
+					writers[i].setDeleteStatement(deleteQry, keyIndexes);
+				}
+				if (merge) {
+					writers[i].setMergeStatement(updateQry, updateBinders, updateColumns, nullFlagParams, nullFlagColumns);
+				}
+				writers[i].start();
+			}
+			if (checkpoint != null) {
+				checkpoint.track(writers, checkpointKeyIndex);
+			}
+			long startTime = System.currentTimeMillis();
+			long rowNumber = 0;
+			int writer = 0;
+			PtpWriter.Chunk chunk = new PtpWriter.Chunk(resumedRowCount + 1, PtpWriter.CHUNK_SIZE);
+			Object[] row;
+			while ((row = nextRow(rs)) != null) {
+				result.addRow();
+				rowNumber++;
+				if (chunk.add(row)) {
+					put(writers, writer, chunk);
+					writer = (writer + 1) % parallelism;
+					chunk = new PtpWriter.Chunk(resumedRowCount + rowNumber + 1, PtpWriter.CHUNK_SIZE);
+					if (checkpoint != null && checkpoint.isDue()) {
+						checkpoint.save(getWatermark());
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				put(writers, writer, chunk);
+			}
+			for (int i=0; i < parallelism; i++) {
+				writers[i].throwExceptions();
+			}
+			for (int i=0; i < parallelism; i++) {
+				writers[i].finish();
+			}
+			long millis = System.currentTimeMillis() - startTime;
+			for (int i=0; i < parallelism; i++) {
+				writers[i].info(log);
+			}
+			log.info("Transferred " + rowNumber + " rows in " + millis + " ms ("
+				+ (millis > 0 ? rowNumber * 1000 / millis : rowNumber) + " rows/s) by " + parallelism + " writer thread"
+				+ (parallelism > 1 ? "s." : "."));
+			if (merge) {
+				logMergeCounts(writers);
+			}
+			success = true;
+		} finally {
+			for (int i=0; i < parallelism; i++) {
+				if (writers[i] != null) {
+					writers[i].cancel();
+				}
+			}
+			if (!success && checkpoint != null) {
+				saveFinalCheckpoint();
+			}
+			for (int i=0; i < parallelism; i++) {
+				if (writers[i] != null) {
+					if (!success) {
+						log.info("Writer " + writers[i].getName() + " committed " + writers[i].getCommittedRowCount()
+							+ " rows before the transfer failed; the committed rows are kept in the target table.");
+					}
+					writers[i].close();
+				}
+				if (i > 0) {
+					Database.close(cnns[i], null, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the checkpoint of the rows committed by the writers after the reading of the source
+	 * stopped, so the rows committed by the writers while the source was not read anymore are
+	 * not transferred again. The failure is only logged not to hide the failure of the transfer.
+	 */
+	protected void saveFinalCheckpoint() {
+		try {
+			if (checkpoint.isDue()) {
+				checkpoint.save(getWatermark());
+			}
+			if (checkpoint.getSavedRowNumber() > 0) {
+				log.info("The transfer could be resumed from the checkpoint after " + checkpoint.getSavedRowNumber() + " rows.");
+			}
+		} catch (LigretoException e) {
+			log.error("Failed to store the checkpoint of the transfer.", e);
+		}
+	}
+
+	/**
+	 * Reports the numbers of the inserted, updated and unchanged rows merged by all the writers.
+	 * 
+	 * @param writers the writers of the transfer
+	 */
+	protected void logMergeCounts(PtpWriter[] writers) {
+		long rows = 0;
+		long inserted = 0;
+		long updated = 0;
+		for (int i=0; i < writers.length; i++) {
+			if (writers[i].isMergeCountsUnknown()) {
+				log.info("The database did not report the numbers of the merged rows.");
+				return;
+			}
+			rows += writers[i].getRowCount();
+			inserted += writers[i].getInsertedRowCount();
+			updated += writers[i].getUpdatedRowCount();
+		}
+		log.info("Merged " + rows + " rows: inserted " + inserted + ", updated " + updated + ", unchanged " + (rows - inserted - updated) + ".");
+	}
+
+	/**
+	 * Passes the chunk of rows to the writer. The failure of any writer is reported before the chunk is passed.
+	 * 
+	 * @param writers all the writers of the transfer
+	 * @param writer the index of the writer to pass the chunk to
+	 * @param chunk the chunk of rows
+	 * @throws LigretoException if any of the writers failed
+	 */
+	protected void put(PtpWriter[] writers, int writer, PtpWriter.Chunk chunk) throws LigretoException {
+		for (int i=0; i < writers.length; i++) {
+			writers[i].throwExceptions();
+		}
+		writers[writer].put(chunk);
+	}
+
+	/**
+	 * Reads the next row of the result set which should be transferred. The rows not newer than
+	 * the watermark are skipped if they are not filtered by the query. The highest value
+	 * of the watermark column is tracked for the incremental transfer. The rows transferred
+	 * before the checkpoint are skipped if the resumed transfer could not filter them by the key.
+	 * 
+	 * @param rs the result set
+	 * @return the row values or null if there are no more rows
+	 * @throws SQLException if the values could not be read
+	 * @throws LigretoException if any of the column types is not supported
+	 * @throws ParseException if the excel date could not be parsed
+	 */
+	@SuppressWarnings("unchecked")
+	protected Object[] nextRow(ResultSet rs) throws SQLException, LigretoException, ParseException {
+		while (rs.next()) {
+			Object[] row = readRow(rs);
+			if (watermarkIndex >= 0) {
+				Object value = row[watermarkIndex];
+				if (filterWatermark && !watermark.isOlder(value)) {
+					skippedRowCount++;
+					continue;
+				}
+				if (value != null && (watermarkValue == null || ((Comparable<Object>) value).compareTo(watermarkValue) > 0)) {
+					watermarkValue = value;
 				}
-				break;
-			case Types.DECIMAL: 
-				insertStmt.setBigDecimal(i, rs.getBigDecimal(i));
-				break;
-			case Types.DOUBLE: 
-				insertStmt.setDouble(i, rs.getDouble(i));
-				break;
-			case Types.FLOAT: 
-				insertStmt.setFloat(i, rs.getFloat(i));
-				break;
-			case Types.INTEGER: 
-				insertStmt.setInt(i, rs.getInt(i));
-				break;
-			case Types.LONGNVARCHAR: 
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.LONGVARCHAR: 
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.NCHAR: 
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.NUMERIC: 
-				insertStmt.setBigDecimal(i, rs.getBigDecimal(i));
-				break;
-			case Types.NVARCHAR: 
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.REAL:
-				insertStmt.setFloat(i, rs.getFloat(i));
-				break;
-			case Types.SMALLINT: 
-				insertStmt.setShort(i, rs.getShort(i));
-				break;
-			case Types.TIMESTAMP:
-				insertStmt.setTimestamp(i, rs.getTimestamp(i));
-				break;
-			case Types.TINYINT:
-				insertStmt.setShort(i, rs.getShort(i));
-				break;
-			case Types.VARCHAR:
-				insertStmt.setString(i, rs.getString(i));
-				break;
-			case Types.ARRAY: 
-			case Types.BINARY: 
-			case Types.BIT: 
-			case Types.BLOB: 
-			case Types.CLOB: 
-			case Types.DATALINK:
-			case Types.DISTINCT: 
-			case Types.JAVA_OBJECT:
-			case Types.LONGVARBINARY: 
-			case Types.NCLOB: 
-			case Types.OTHER:
-			case Types.REF: 
-			case Types.ROWID: 
-			case Types.SQLXML: 
-			case Types.STRUCT: 
-			case Types.TIME: 
-			case Types.VARBINARY: 
-			default:
-				throw new LigretoException("Unsupported data type: " + DataProviderUtils.getJdbcTypeName(columnType));
-			}
-		}
-		insertStmt.execute();
+			}
+			if (resumeSkipRows > 0) {
+				resumeSkipRows--;
+				continue;
+			}
+			return row;
+		}
+		return null;
+	}
+
+	/**
+	 * Loads the watermark of the previous run if the transfer is incremental. The watermark
+	 * is not used if the target table is re-created or truncated, since all the rows have
+	 * to be transferred again.
+	 * 
+	 * @param transferNode the transfer
+	 * @throws LigretoException if the watermark could not be loaded
+	 */
+	protected void prepareWatermark(TransferNode transferNode) throws LigretoException {
+		TargetNode targetNode = transferNode.getTargetNode();
+		watermarkKey = null;
+		watermark = null;
+		filterWatermark = false;
+		watermarkIndex = -1;
+		watermarkValue = null;
+		skippedRowCount = 0;
+		if (transferNode.getWatermark() == null) {
+			return;
+		}
+		watermarkKey = "watermark." + targetNode.getDataSource() + "." + targetNode.getTable() + "." + transferNode.getWatermark();
+		if (targetNode.isRecreate() || targetNode.isTruncate()) {
+			log.info("The target table is emptied, so all the rows are transferred regardless of the watermark.");
+			return;
+		}
+		watermark = PtpWatermark.parse(executionContext.getPtpStateStore().getProperty(watermarkKey));
+		if (watermark == null) {
+			log.info("No watermark stored for " + targetNode.getTable() + ", so all the rows are transferred.");
+		}
+	}
+
+	/**
+	 * @return the highest value of the watermark column transferred by the current run including
+	 *         the rows transferred before the checkpoint the transfer continues from or null
+	 * @throws LigretoException if the watermark column type is not supported
+	 */
+	protected PtpWatermark getWatermark() throws LigretoException {
+		PtpWatermark current = PtpWatermark.valueOf(watermarkValue);
+		if (checkpoint != null && checkpoint.getResumedWatermark() != null) {
+			if (current == null || checkpoint.getResumedWatermark().compareTo(current) > 0) {
+				return checkpoint.getResumedWatermark();
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Creates the checkpoint of the transfer if the checkpoints should be stored and loads
+	 * the stored checkpoint if the transfer should be resumed. The checkpoints are stored at commits,
+	 * so they are not used with the auto commit.
+	 * 
+	 * @param transferNode the transfer
+	 * @throws LigretoException if the stored checkpoint belongs to the different transfer
+	 */
+	protected void prepareCheckpoint(TransferNode transferNode) throws LigretoException {
+		TargetNode targetNode = transferNode.getTargetNode();
+		SqlNode sqlNode = transferNode.getSqlNode();
+		checkpoint = null;
+		resumed = false;
+		resumedRowCount = 0;
+		resumeSkipRows = 0;
+		checkpointKeyIndex = -1;
+		if (!transferNode.isCheckpoint()) {
+			return;
+		}
+		if (targetNode.getCommitInterval() <= 1) {
+			log.info("The checkpoints are stored at commits, so they are not used without the commit interval.");
+			return;
+		}
+		String fingerprint = PtpCheckpoint.fingerprint(sqlNode.getDataSource(), sqlNode.getQuery().toString(),
+			targetNode.getDataSource(), targetNode.getTable(), transferNode.getCheckpointKey(), transferNode.getWatermark());
+		checkpoint = new PtpCheckpoint(executionContext.getPtpStateStore(), "checkpoint." + targetNode.getDataSource() + "." + targetNode.getTable() + ".", fingerprint);
+		if (transferNode.isResume()) {
+			resumed = checkpoint.load();
+			if (resumed) {
+				resumedRowCount = checkpoint.getResumedRowNumber();
+				log.info("Resuming the transfer from the checkpoint after " + resumedRowCount + " committed rows.");
+			} else {
+				log.info("No checkpoint stored for " + targetNode.getTable() + ", so the transfer starts from the beginning.");
+			}
+		}
+	}
+
+	/**
+	 * Deletes the target rows after the key of the checkpoint the transfer continues from.
+	 * Such rows could be committed by the other writer threads after the checkpoint was stored.
+	 * 
+	 * @param targetNode the target of the transfer
+	 * @throws SQLException if the rows could not be deleted
+	 */
+	protected void deleteAfterCheckpoint(TargetNode targetNode) throws SQLException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("delete from ");
+		sb.append(targetNode.getTable());
+		sb.append(" where ");
+		if (targetNode.getTransferNode().isQuoteColumnNames()) {
+			sb.append('"');
+			sb.append(columnNames[checkpointKeyIndex]);
+			sb.append('"');
+		} else {
+			sb.append(columnNames[checkpointKeyIndex]);
+		}
+		sb.append(" > ?");
+		PreparedStatement pstm = tgtCnn.prepareStatement(sb.toString());
+		try {
+			checkpoint.getResumedKey().bind(pstm, 1);
+			int deleted = pstm.executeUpdate();
+			log.info("Deleted " + deleted + " rows after the key of the checkpoint from the table: " + targetNode.getTable());
+		} finally {
+			pstm.close();
+		}
+	}
+
+	/**
+	 * Counts the rows of the query which are not newer than the watermark. The count needs
+	 * the additional scan of the source, so it is used only if the debug logging is enabled.
+	 * 
+	 * @param cnn the connection to the source data source
+	 * @param qry the source query
+	 * @param watermarkColumn the watermark column
+	 * @return the number of rows skipped by the incremental transfer
+	 * @throws SQLException if the rows could not be counted
+	 */
+	protected long countSkippedRows(Connection cnn, String qry, String watermarkColumn) throws SQLException {
+		String countQry = "select count(*) from (" + qry + ") ligreto_src where " + watermarkColumn + " <= ? or " + watermarkColumn + " is null";
+		log.debug("Counting the rows skipped by the incremental transfer:");
+		log.debug(countQry);
+		PreparedStatement pstm = cnn.prepareStatement(countQry);
+		try {
+			watermark.bind(pstm, 1);
+			ResultSet rs = pstm.executeQuery();
+			try {
+				rs.next();
+				return rs.getLong(1);
+			} finally {
+				rs.close();
+			}
+		} finally {
+			pstm.close();
+		}
+	}
+
+	/**
+	 * Reports the rows skipped by the incremental transfer if they were counted and stores the highest
+	 * transferred value of the watermark column. The watermark of the previous run is kept if no rows
+	 * were transferred.
+	 * 
+	 * @throws LigretoException if the watermark could not be stored
+	 */
+	protected void storeWatermark() throws LigretoException {
+		if (watermarkKey == null) {
+			return;
+		}
+		if (skippedRowCount >= 0) {
+			log.info("Skipped " + skippedRowCount + " rows not newer than the watermark.");
+		}
+		PtpWatermark newWatermark = getWatermark();
+		if (newWatermark != null) {
+			executionContext.getPtpStateStore().setProperty(watermarkKey, newWatermark.toString());
+			log.info("Stored the watermark " + newWatermark + " for the next transfer.");
+		}
+	}
+
+	/**
+	 * Reads the values of the current row of the result set by the column binders.
+	 * 
+	 * @param rs the result set positioned on the row
+	 * @return the row values
+	 * @throws SQLException if the values could not be read
+	 * @throws LigretoException if any of the column types is not supported
+	 * @throws ParseException if the excel date could not be parsed
+	 */
+	protected Object[] readRow(ResultSet rs) throws SQLException, LigretoException, ParseException {
+		Object[] values = new Object[columnBinders.length];
+		for (int i=0; i < columnBinders.length; i++) {
+			values[i] = columnBinders[i].read(rs);
+		}
+		return values;
 	}
 
 	protected void generateCreateTableQuery(TargetNode targetNode, ResultSet rs) throws SQLException, LigretoException {
@@ -296,6 +779,198 @@ public class PtpExecutor extends Executor {
 		log.debug(createQry);
 	}
 
+	/**
+	 * Generates the query deleting the target rows with the same key as the transferred row
+	 * if the key columns of the target are specified.
+	 * 
+	 * @param targetNode the target of the transfer
+	 * @throws LigretoException if any of the key columns is not transferred
+	 */
+	protected void generateDeleteQuery(TargetNode targetNode) throws LigretoException {
+		deleteQry = null;
+		keyIndexes = null;
+		String[] keyColumns = targetNode.getKeyColumns();
+		if (keyColumns == null || targetNode.isMerge()) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("delete from ");
+		sb.append(targetNode.getTable());
+		sb.append(" where ");
+		resolveKeyIndexes(keyColumns);
+		for (int i=0; i < keyColumns.length; i++) {
+			if (i > 0) {
+				sb.append(" and ");
+			}
+			if (targetNode.getTransferNode().isQuoteColumnNames()) {
+				sb.append('"');
+				sb.append(columnNames[keyIndexes[i]]);
+				sb.append('"');
+			} else {
+				sb.append(columnNames[keyIndexes[i]]);
+			}
+			sb.append(" = ?");
+		}
+		deleteQry = sb.toString();
+		log.debug("delete query generated from the key columns:");
+		log.debug(deleteQry);
+	}
+
+	/**
+	 * Generates the queries merging the transferred rows into the target table if the rows should be merged.
+	 * The changed rows with the same key are updated by the "update" query and the rows with the new keys
+	 * are inserted by the dialect specific query inserting only the missing rows, which replaces
+	 * the "insert" query of the transfer. The "update" query compares the null flags of the values
+	 * besides the values themselves, so the changes from and to the null values are updated too.
+	 * 
+	 * @param targetNode the target of the transfer
+	 * @param rsmd the metadata of the source result set
+	 * @param excelDatePattern the pattern of the dates read from the excel sheets as strings or null
+	 * @throws SQLException if the metadata of the target table could not be read
+	 * @throws LigretoException if the key columns are not specified or they are not transferred
+	 */
+	protected void generateMergeQueries(TargetNode targetNode, ResultSetMetaData rsmd, String excelDatePattern) throws SQLException, LigretoException {
+		merge = targetNode.isMerge();
+		updateQry = null;
+		updateBinders = null;
+		updateColumns = null;
+		nullFlagParams = null;
+		nullFlagColumns = null;
+		if (!merge) {
+			return;
+		}
+		String[] keyColumns = targetNode.getKeyColumns();
+		if (keyColumns == null) {
+			throw new LigretoException("The merge into the table " + targetNode.getTable() + " requires the keyColumns of the target.");
+		}
+		resolveKeyIndexes(keyColumns);
+		boolean quote = targetNode.getTransferNode().isQuoteColumnNames();
+		String[] names = new String[columnNames.length];
+		boolean[] isKey = new boolean[columnNames.length];
+		for (int i=0; i < columnNames.length; i++) {
+			names[i] = quote ? '"' + columnNames[i] + '"' : columnNames[i];
+		}
+		for (int i=0; i < keyIndexes.length; i++) {
+			isKey[keyIndexes[i]] = true;
+		}
+
+		// The parameters are cast to the types of the target columns by some dialects
+		String[] columnTypes = new String[columnNames.length];
+		Statement stm = tgtCnn.createStatement();
+		try {
+			ResultSet trs = stm.executeQuery("select * from " + targetNode.getTable() + " where 1 = 0");
+			try {
+				ResultSetMetaData tmd = trs.getMetaData();
+				for (int i=0; i < columnNames.length; i++) {
+					for (int j = 1; j <= tmd.getColumnCount(); j++) {
+						if (quote ? columnNames[i].equals(tmd.getColumnName(j)) : columnNames[i].equalsIgnoreCase(tmd.getColumnName(j))) {
+							columnTypes[i] = dataTypeDialect.getTypeDeclaration(tmd, j);
+							break;
+						}
+					}
+					if (columnTypes[i] == null) {
+						throw new LigretoException("The transferred column is not in the target table: " + columnNames[i]);
+					}
+				}
+			} finally {
+				trs.close();
+			}
+		} finally {
+			stm.close();
+		}
+		insertQry = dataTypeDialect.getInsertMissingQuery(targetNode.getTable(), names, columnTypes, keyIndexes);
+		log.debug("insert query of the missing merged rows:");
+		log.debug(insertQry);
+
+		int updatedColumnCount = columnNames.length - keyIndexes.length;
+		if (updatedColumnCount == 0) {
+			return;
+		}
+		updateBinders = new ColumnBinder[2 * updatedColumnCount + keyIndexes.length];
+		updateColumns = new int[updateBinders.length];
+		nullFlagParams = new int[updatedColumnCount];
+		nullFlagColumns = new int[updatedColumnCount];
+		int param = 0;
+		int binder = 0;
+		int flag = 0;
+		StringBuilder sb = new StringBuilder();
+		sb.append("update ");
+		sb.append(targetNode.getTable());
+		sb.append(" set ");
+		for (int i=0; i < columnNames.length; i++) {
+			if (!isKey[i]) {
+				if (param > 0) {
+					sb.append(", ");
+				}
+				sb.append(names[i]);
+				sb.append(" = ?");
+				updateBinders[binder] = ColumnBinder.create(rsmd.getColumnType(i + 1), ++param, excelDatePattern);
+				updateColumns[binder++] = i;
+			}
+		}
+		sb.append(" where ");
+		for (int i=0; i < keyIndexes.length; i++) {
+			sb.append(names[keyIndexes[i]]);
+			sb.append(" = ? and ");
+			updateBinders[binder] = ColumnBinder.create(rsmd.getColumnType(keyIndexes[i] + 1), ++param, excelDatePattern);
+			updateColumns[binder++] = keyIndexes[i];
+		}
+		sb.append("(");
+		boolean first = true;
+		for (int i=0; i < columnNames.length; i++) {
+			if (!isKey[i]) {
+				if (!first) {
+					sb.append(" or ");
+				}
+				first = false;
+				sb.append(names[i]);
+				sb.append(" <> ? or (case when ");
+				sb.append(names[i]);
+				sb.append(" is null then 1 else 0 end) <> ?");
+				updateBinders[binder] = ColumnBinder.create(rsmd.getColumnType(i + 1), ++param, excelDatePattern);
+				updateColumns[binder++] = i;
+				nullFlagParams[flag] = ++param;
+				nullFlagColumns[flag++] = i;
+			}
+		}
+		sb.append(")");
+		updateQry = sb.toString();
+		log.debug("update query of the changed merged rows:");
+		log.debug(updateQry);
+	}
+
+	/**
+	 * Resolves the indices of the key columns in the row values.
+	 * 
+	 * @param keyColumns the names of the key columns
+	 * @throws LigretoException if any of the key columns is not transferred
+	 */
+	protected void resolveKeyIndexes(String[] keyColumns) throws LigretoException {
+		keyIndexes = new int[keyColumns.length];
+		for (int i=0; i < keyColumns.length; i++) {
+			keyIndexes[i] = getColumnIndex(keyColumns[i]);
+			if (keyIndexes[i] < 0) {
+				throw new LigretoException("The key column is not in the transferred columns: " + keyColumns[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param columnName the name of the column, possibly quoted
+	 * @return the index of the transferred column in the row values or -1 if the column is not transferred
+	 */
+	protected int getColumnIndex(String columnName) {
+		if (columnName.length() > 1 && columnName.startsWith("\"") && columnName.endsWith("\"")) {
+			columnName = columnName.substring(1, columnName.length() - 1);
+		}
+		for (int i=0; i < columnNames.length; i++) {
+			if (columnNames[i].equalsIgnoreCase(columnName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * This function will prepare the target and could do the following:
 	 * <ul>
@@ -320,7 +995,9 @@ public class PtpExecutor extends Executor {
 			sb.append("insert into ");
 			sb.append(targetNode.getTable());
 			sb.append(" (");
+			columnNames = new String[rsmd.getColumnCount()];
 			for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+				columnNames[i - 1] = rsmd.getColumnName(i);
 				if (targetNode.getTransferNode().isQuoteColumnNames()) {
 					sb.append('"');
 					sb.append(rsmd.getColumnName(i));					
@@ -343,12 +1020,13 @@ public class PtpExecutor extends Executor {
 			
 
 			// Get the target connection
-			tgtCnn = Database.getInstance().getConnection(targetNode.getDataSource());
+			tgtCnn = executionContext.getDatabase().getConnection(targetNode.getDataSource());
 			tgtCnn.setAutoCommit(true);
 			dataTypeDialect = DataTypeDialect.getInstance(tgtCnn);
 
 			boolean tableExists = true;
 			boolean createTable = targetNode.isCreate();
+			tableCreated = false;
 			Statement stm = tgtCnn.createStatement();
 			
 			try {
@@ -356,7 +1034,9 @@ public class PtpExecutor extends Executor {
 			} catch (SQLException e) {
 				tableExists = false;
 			}
-			if (targetNode.isRecreate()) {
+			if (resumed && (targetNode.isRecreate() || targetNode.isTruncate())) {
+				log.info("Resuming the transfer, so the table is neither re-created nor truncated: " + targetNode.getTable());
+			} else if (targetNode.isRecreate()) {
 				try {
 					log.info("Dropping the already existing table: " + targetNode.getTable());
 					stm.execute("drop table " + targetNode.getTable());
@@ -370,12 +1050,37 @@ public class PtpExecutor extends Executor {
 				generateCreateTableQuery(targetNode, rs);
 				log.info("Creating the table according the query result: " + targetNode.getTable());
 				stm.execute(createQry);
+				tableCreated = true;
 			}
-			if (targetNode.isTruncate()) {
+			if (targetNode.isTruncate() && !resumed) {
 				log.info("Truncating the table: " + targetNode.getTable());
 				stm.execute("truncate table " + targetNode.getTable());
 			}
-			insertStmt = tgtCnn.prepareStatement(insertQry);
+			String excelDatePattern = null;
+			if (rs instanceof XlsResultSet) {
+				excelDatePattern = executionContext.getLigretoParameters().getXlsxJdbcDateFormat();
+			}
+			columnBinders = new ColumnBinder[rsmd.getColumnCount()];
+			for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+				columnBinders[i - 1] = ColumnBinder.create(rsmd.getColumnType(i), i, excelDatePattern);
+			}
+			generateDeleteQuery(targetNode);
+			generateMergeQueries(targetNode, rsmd, excelDatePattern);
+			if (targetNode.getTransferNode().getWatermark() != null) {
+				watermarkIndex = getColumnIndex(targetNode.getTransferNode().getWatermark());
+				if (watermarkIndex < 0) {
+					throw new LigretoException("The watermark column is not in the transferred columns: " + targetNode.getTransferNode().getWatermark());
+				}
+			}
+			if (checkpoint != null && targetNode.getTransferNode().getCheckpointKey() != null) {
+				checkpointKeyIndex = getColumnIndex(targetNode.getTransferNode().getCheckpointKey());
+				if (checkpointKeyIndex < 0) {
+					throw new LigretoException("The checkpoint key column is not in the transferred columns: " + targetNode.getTransferNode().getCheckpointKey());
+				}
+				if (resumed && checkpoint.getResumedKey() != null) {
+					deleteAfterCheckpoint(targetNode);
+				}
+			}
 		} catch (SQLException e) {
 			throw new LigretoException("Database error on data source: " + targetNode.getDataSource(), e);
 		}
@@ -0,0 +1,178 @@
+package net.ligreto.executor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The local store of the state of the PTP transfers kept between the ligreto runs,
+ * like the high-water marks of the incremental transfers. The state is stored
+ * in the properties file specified by the <code>ligreto.ptpStateFile</code> parameter.
+ *
+ * The file is read when the state is accessed for the first time and it is rewritten
+ * each time the state changes. The new content is written into the temporary file first
+ * which then replaces the original file, so the interrupted run does not leave
+ * the corrupted state behind.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class PtpStateStore {
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(PtpStateStore.class);
+
+	/** The file holding the state. */
+	protected File file;
+
+	/** The state loaded from the file. */
+	protected Properties properties = null;
+
+	/**
+	 * @param fileName the name of the file holding the state
+	 */
+	public PtpStateStore(String fileName) {
+		file = new File(fileName);
+	}
+
+	/**
+	 * Loads the state from the file if it was not loaded yet. The empty state is used
+	 * if the file does not exist.
+	 *
+	 * @throws LigretoException if the file could not be read
+	 */
+	protected void load() throws LigretoException {
+		if (properties != null) {
+			return;
+		}
+		Properties loaded = new Properties();
+		if (file.exists()) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				loaded.load(in);
+			} catch (IOException e) {
+				throw new LigretoException("Failed to read the PTP state file: " + file.getPath(), e);
+			} finally {
+				close(in);
+			}
+			log.debug("Loaded the PTP state from the file: " + file.getPath());
+		}
+		properties = loaded;
+	}
+
+	/**
+	 * Writes the state into the temporary file and replaces the state file by it.
+	 *
+	 * @throws LigretoException if the file could not be written
+	 */
+	protected void save() throws LigretoException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tmpFile);
+			properties.store(out, "Ligreto PTP transfer state");
+		} catch (IOException e) {
+			throw new LigretoException("Failed to write the PTP state file: " + tmpFile.getPath(), e);
+		} finally {
+			close(out);
+		}
+		if (!tmpFile.renameTo(file)) {
+			// The rename does not replace the existing file on some platforms
+			if (!file.delete() || !tmpFile.renameTo(file)) {
+				throw new LigretoException("Failed to replace the PTP state file: " + file.getPath());
+			}
+		}
+	}
+
+	/**
+	 * @param key the key of the state
+	 * @return the stored value or null if there is no value stored
+	 * @throws LigretoException if the state file could not be read
+	 */
+	public synchronized String getProperty(String key) throws LigretoException {
+		load();
+		return properties.getProperty(key);
+	}
+
+	/**
+	 * Stores the value and writes the state file.
+	 *
+	 * @param key the key of the state
+	 * @param value the value to store
+	 * @throws LigretoException if the state file could not be read or written
+	 */
+	public synchronized void setProperty(String key, String value) throws LigretoException {
+		load();
+		properties.setProperty(key, value);
+		save();
+	}
+
+	/**
+	 * Stores all the values at once and writes the state file.
+	 *
+	 * @param values the values to store by their keys
+	 * @throws LigretoException if the state file could not be read or written
+	 */
+	public synchronized void setProperties(Map<String, String> values) throws LigretoException {
+		load();
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			properties.setProperty(entry.getKey(), entry.getValue());
+		}
+		save();
+	}
+
+	/**
+	 * Removes all the values with the keys starting by the prefix and writes the state file
+	 * if any value was removed.
+	 *
+	 * @param prefix the prefix of the keys to remove
+	 * @throws LigretoException if the state file could not be read or written
+	 */
+	public synchronized void removeProperties(String prefix) throws LigretoException {
+		load();
+		boolean removed = false;
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(prefix)) {
+				properties.remove(key);
+				removed = true;
+			}
+		}
+		if (removed) {
+			save();
+		}
+	}
+
+	/**
+	 * Closes the stream ignoring the errors.
+	 *
+	 * @param stream the stream to close or null
+	 */
+	protected static void close(Closeable stream) {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				log.debug("Failed to close the PTP state file.", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the file holding the state
+	 */
+	public File getFile() {
+		return file;
+	}
+}
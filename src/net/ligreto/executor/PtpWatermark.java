@@ -0,0 +1,161 @@
+package net.ligreto.executor;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The high-water mark of the incremental PTP transfer. It holds the highest value
+ * of the watermark column transferred so far. The watermark is stored in the
+ * {@link PtpStateStore} as the string prefixed by its type, e.g.
+ * <code>timestamp:2012-03-04 05:06:07.0</code> or <code>number:1234</code>.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class PtpWatermark implements Comparable<PtpWatermark> {
+
+	/** The type of the timestamp watermarks. */
+	protected static final String TIMESTAMP = "timestamp";
+
+	/** The type of the date watermarks. */
+	protected static final String DATE = "date";
+
+	/** The type of the numeric watermarks. */
+	protected static final String NUMBER = "number";
+
+	/** The type of the character watermarks. */
+	protected static final String STRING = "string";
+
+	/** The type of the watermark. */
+	protected String type;
+
+	/** The value of the watermark normalized according its type. */
+	protected Object value;
+
+	/**
+	 * @param type the type of the watermark
+	 * @param value the value normalized according the type
+	 */
+	protected PtpWatermark(String type, Comparable<?> value) {
+		this.type = type;
+		this.value = value;
+	}
+
+	/**
+	 * Creates the watermark holding the column value.
+	 *
+	 * @param value the value of the watermark column as read by the column binder
+	 * @return the watermark or null if the value is null
+	 * @throws LigretoException if the column type could not be used as the watermark
+	 */
+	public static PtpWatermark valueOf(Object value) throws LigretoException {
+		if (value == null) {
+			return null;
+		} else if (value instanceof Timestamp) {
+			return new PtpWatermark(TIMESTAMP, (Timestamp) value);
+		} else if (value instanceof Date) {
+			return new PtpWatermark(DATE, (Date) value);
+		} else if (value instanceof BigDecimal) {
+			return new PtpWatermark(NUMBER, (BigDecimal) value);
+		} else if (value instanceof Number) {
+			return new PtpWatermark(NUMBER, new BigDecimal(value.toString()));
+		} else if (value instanceof String) {
+			return new PtpWatermark(STRING, (String) value);
+		}
+		throw new LigretoException("Unsupported data type of the watermark column: " + value.getClass().getName());
+	}
+
+	/**
+	 * Parses the watermark stored by {@link #toString()}.
+	 *
+	 * @param str the stored watermark or null
+	 * @return the watermark or null if the string is null
+	 * @throws LigretoException if the string is not the valid watermark
+	 */
+	public static PtpWatermark parse(String str) throws LigretoException {
+		if (str == null) {
+			return null;
+		}
+		int colon = str.indexOf(':');
+		if (colon < 0) {
+			throw new LigretoException("Invalid watermark: " + str);
+		}
+		String type = str.substring(0, colon);
+		String text = str.substring(colon + 1);
+		try {
+			if (TIMESTAMP.equals(type)) {
+				return new PtpWatermark(TIMESTAMP, Timestamp.valueOf(text));
+			} else if (DATE.equals(type)) {
+				return new PtpWatermark(DATE, Date.valueOf(text));
+			} else if (NUMBER.equals(type)) {
+				return new PtpWatermark(NUMBER, new BigDecimal(text));
+			} else if (STRING.equals(type)) {
+				return new PtpWatermark(STRING, text);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new LigretoException("Invalid watermark: " + str, e);
+		}
+		throw new LigretoException("Invalid watermark type: " + str);
+	}
+
+	/**
+	 * Binds the watermark value to the parameter of the statement.
+	 *
+	 * @param stmt the statement
+	 * @param index the index of the parameter
+	 * @throws SQLException if the value could not be bound
+	 */
+	public void bind(PreparedStatement stmt, int index) throws SQLException {
+		if (TIMESTAMP.equals(type)) {
+			stmt.setTimestamp(index, (Timestamp) value);
+		} else if (DATE.equals(type)) {
+			stmt.setDate(index, (Date) value);
+		} else if (NUMBER.equals(type)) {
+			stmt.setBigDecimal(index, (BigDecimal) value);
+		} else {
+			stmt.setString(index, (String) value);
+		}
+	}
+
+	/**
+	 * @param columnValue the value of the watermark column as read by the column binder
+	 * @return true if the value is higher than the watermark; the null values are never newer
+	 * @throws LigretoException if the value type does not match the watermark type
+	 */
+	public boolean isOlder(Object columnValue) throws LigretoException {
+		PtpWatermark other = valueOf(columnValue);
+		try {
+			return other != null && compareTo(other) < 0;
+		} catch (ClassCastException e) {
+			throw new LigretoException("The watermark column value does not match the stored watermark: " + this, e);
+		}
+	}
+
+	/**
+	 * @throws ClassCastException if the types of the watermarks do not match
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public int compareTo(PtpWatermark other) {
+		if (!type.equals(other.type)) {
+			throw new ClassCastException("The " + type + " watermark could not be compared to the " + other.type + " value.");
+		}
+		return ((Comparable<Object>) value).compareTo(other.value);
+	}
+
+	/**
+	 * @return the watermark in the format accepted by {@link #parse(String)}
+	 */
+	@Override
+	public String toString() {
+		if (NUMBER.equals(type)) {
+			return type + ":" + ((BigDecimal) value).toPlainString();
+		}
+		return type + ":" + value.toString();
+	}
+}
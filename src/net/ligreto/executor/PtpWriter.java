@@ -0,0 +1,661 @@
+package net.ligreto.executor;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.exceptions.LigretoException;
+
+/**
+ * The writer inserting the transferred rows into the target table over its own connection.
+ *
+ * The writer could be used directly by the thread reading the source rows by calling
+ * {@link #write(Object[], long)} and {@link #flush()}. It could also run as the separate
+ * thread inserting the chunks of rows passed by {@link #put(Chunk)} in which case
+ * the instances should be used as follows:
+ * <pre>
+ * PtpWriter writer = new PtpWriter(...);
+ * writer.start();
+ * try {
+ *     // pass the rows by writer.put(chunk)
+ *     writer.finish();
+ * } finally {
+ *     writer.cancel();
+ * }
+ * </pre>
+ *
+ * Each writer has its own commit cycle, so the rows committed by the writer are kept
+ * even if the other writers of the same transfer fail.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class PtpWriter extends Thread {
+
+	/** The number of rows passed to the writer thread at once. */
+	public static final int CHUNK_SIZE = 100;
+
+	/** The number of chunks queued for the writer thread. */
+	public static final int QUEUE_CAPACITY = 4;
+
+	/** The time in milliseconds to wait for the free space in the queue before checking for failures. */
+	protected static final long OFFER_TIMEOUT = 100;
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(PtpWriter.class);
+
+	/** The chunk of the consecutive source rows. */
+	public static class Chunk {
+		/** The number of the first row of the chunk in the source result set. */
+		protected long firstRow;
+
+		/** The row values. */
+		protected Object[][] rows;
+
+		/** The number of rows in the chunk. */
+		protected int size = 0;
+
+		/**
+		 * @param firstRow the number of the first row of the chunk in the source result set
+		 * @param capacity the maximal number of rows in the chunk
+		 */
+		public Chunk(long firstRow, int capacity) {
+			this.firstRow = firstRow;
+			this.rows = new Object[capacity][];
+		}
+
+		/**
+		 * @param row the row values to add
+		 * @return true if the chunk is full
+		 */
+		public boolean add(Object[] row) {
+			rows[size++] = row;
+			return size == rows.length;
+		}
+
+		/**
+		 * @return true if the chunk has no rows
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+	}
+
+	/** The chunk marking the end of the rows. */
+	protected static final Chunk END = new Chunk(0, 0);
+
+	/** The connection to the target data source. */
+	protected Connection cnn;
+
+	/** The insert statement. */
+	protected PreparedStatement insertStmt;
+
+	/** The statement deleting the rows replaced by the inserted rows or null if the rows are not replaced. */
+	protected PreparedStatement deleteStmt = null;
+
+	/** The indices of the key columns in the row values bound to the delete statement. */
+	protected int[] keyIndexes;
+
+	/** Indicates whether the rows are merged into the target table. */
+	protected boolean merge = false;
+
+	/** The statement updating the changed rows with the same key as the merged rows or null if there is nothing to update. */
+	protected PreparedStatement updateStmt = null;
+
+	/** The binders of the parameters of the update statement. */
+	protected ColumnBinder[] updateBinders;
+
+	/** The indices of the row values bound by the update binders. */
+	protected int[] updateColumns;
+
+	/** The indices of the parameters of the update statement bound to the null flags. */
+	protected int[] nullFlagParams;
+
+	/** The indices of the row values which null flags are bound. */
+	protected int[] nullFlagColumns;
+
+	/** The binders of the inserted columns. */
+	protected ColumnBinder[] columnBinders;
+
+	/** The number of rows inserted before commit; the auto commit is used if lower than 2. */
+	protected int commitInterval;
+
+	/** The number of rows inserted by a single batch; batches are not used if lower than 2. */
+	protected int batchSize;
+
+	/** The numbers of the rows of the current batch in the source result set. */
+	protected long[] batchRowNumbers;
+
+	/** The number of rows added into the current batch. */
+	protected int batchRows = 0;
+
+	/** The number of rows inserted since the last commit. */
+	protected int uncommittedRows = 0;
+
+	/** The queue of the rows to be inserted by the writer thread. */
+	protected BlockingQueue<Chunk> queue;
+
+	/** The throwable object that was caught during the thread execution. */
+	protected volatile Throwable throwable = null;
+
+	/** Indicates whether the end of the rows was already queued. */
+	protected boolean ended = false;
+
+	/** The number of rows written. */
+	protected long rowCount = 0;
+
+	/** The number of rows written and committed. */
+	protected volatile long committedRowCount = 0;
+
+	/** The number of rows deleted since they were replaced by the written rows. */
+	protected long deletedRowCount = 0;
+
+	/** The number of the merged rows which were inserted. */
+	protected long insertedRowCount = 0;
+
+	/** The number of the merged rows which updated the changed rows. */
+	protected long updatedRowCount = 0;
+
+	/** Indicates whether the database did not report the numbers of the merged rows. */
+	protected boolean mergeCountsUnknown = false;
+
+	/** The values of the last written row. */
+	protected Object[] lastRow = null;
+
+	/** The number of the last written row in the source result set. */
+	protected long lastRowNumber = 0;
+
+	/** The position of the last row committed by the explicit commit. */
+	protected volatile PtpCheckpoint.Position committedPosition = null;
+
+	/** The time when the writer started writing in milliseconds. */
+	protected long startTime = 0;
+
+	/** The time when the writer finished writing in milliseconds. */
+	protected long endTime = 0;
+
+	/** The time the writer spent writing in milliseconds. */
+	protected long writeMillis = 0;
+
+	/** The number of times the reader waited for the free space in the queue. */
+	protected long stalls = 0;
+
+	/**
+	 * Creates the writer and prepares its insert statement. The thread is not started.
+	 *
+	 * @param name the name of the writer used for the thread and the log messages
+	 * @param cnn the connection to the target data source owned by the caller
+	 * @param insertQry the insert statement
+	 * @param columnBinders the binders of the inserted columns
+	 * @param commitInterval the number of rows inserted before commit; the auto commit is used if lower than 2
+	 * @param batchSize the number of rows inserted by a single batch; batches are not used if lower than 2
+	 * @throws SQLException if the statement could not be prepared
+	 */
+	public PtpWriter(String name, Connection cnn, String insertQry, ColumnBinder[] columnBinders, int commitInterval, int batchSize) throws SQLException {
+		super(name);
+		this.cnn = cnn;
+		this.columnBinders = columnBinders;
+		this.commitInterval = commitInterval;
+		this.batchSize = batchSize;
+		if (batchSize > 1) {
+			batchRowNumbers = new long[batchSize];
+		}
+		cnn.setAutoCommit(commitInterval <= 1);
+		insertStmt = cnn.prepareStatement(insertQry);
+		setDaemon(true);
+	}
+
+	/**
+	 * Prepares the statement deleting the rows replaced by the inserted rows. The rows having the same key
+	 * as the inserted row are deleted before the row is inserted, so the changed rows are replaced.
+	 * The method has to be called before any row is written.
+	 *
+	 * @param deleteQry the delete statement with the parameters for the key columns
+	 * @param keyIndexes the indices of the key columns in the row values in the order of the parameters
+	 * @throws SQLException if the statement could not be prepared
+	 */
+	public void setDeleteStatement(String deleteQry, int[] keyIndexes) throws SQLException {
+		this.deleteStmt = cnn.prepareStatement(deleteQry);
+		this.keyIndexes = keyIndexes;
+	}
+
+	/**
+	 * Switches the writer to merge the rows into the target table. The rows are merged by executing
+	 * the statement updating the changed rows with the same key first and the insert statement after it,
+	 * which has to insert the row only if the row with the same key does not exist. The method has
+	 * to be called before any row is written.
+	 *
+	 * @param updateQry the update statement or null if the rows have only the key columns
+	 * @param updateBinders the binders of the parameters of the update statement
+	 * @param updateColumns the indices of the row values bound by the update binders
+	 * @param nullFlagParams the indices of the parameters of the update statement bound to the null flags
+	 * @param nullFlagColumns the indices of the row values which null flags are bound
+	 * @throws SQLException if the statement could not be prepared
+	 */
+	public void setMergeStatement(String updateQry, ColumnBinder[] updateBinders, int[] updateColumns, int[] nullFlagParams, int[] nullFlagColumns) throws SQLException {
+		this.merge = true;
+		if (updateQry != null) {
+			this.updateStmt = cnn.prepareStatement(updateQry);
+		}
+		this.updateBinders = updateBinders;
+		this.updateColumns = updateColumns;
+		this.nullFlagParams = nullFlagParams;
+		this.nullFlagColumns = nullFlagColumns;
+	}
+
+	/**
+	 * Binds the row values to the parameters of the statement.
+	 *
+	 * @param stmt the statement
+	 * @param columnBinders the binders of the columns
+	 * @param values the row values read by the binders
+	 * @throws SQLException if any of the values could not be bound
+	 */
+	public static void bindRow(PreparedStatement stmt, ColumnBinder[] columnBinders, Object[] values) throws SQLException {
+		for (int i=0; i < columnBinders.length; i++) {
+			columnBinders[i].bind(stmt, values[i]);
+		}
+	}
+
+	/**
+	 * Inserts the row into the target table. The row is added into the current batch if the batches
+	 * are used and the batch is executed once it is full. The rows are committed once the commit
+	 * interval is reached.
+	 *
+	 * @param row the row values
+	 * @param rowNumber the number of the row in the source result set
+	 * @throws LigretoException if the row could not be inserted
+	 */
+	public void write(Object[] row, long rowNumber) throws LigretoException {
+		try {
+			if (deleteStmt != null) {
+				for (int i=0; i < keyIndexes.length; i++) {
+					deleteStmt.setObject(i + 1, row[keyIndexes[i]]);
+				}
+				if (batchSize > 1) {
+					deleteStmt.addBatch();
+				} else {
+					deletedRowCount += deleteStmt.executeUpdate();
+				}
+			}
+			if (updateStmt != null) {
+				for (int i=0; i < updateBinders.length; i++) {
+					updateBinders[i].bind(updateStmt, row[updateColumns[i]]);
+				}
+				for (int i=0; i < nullFlagParams.length; i++) {
+					ColumnBinder.bindNullFlag(updateStmt, nullFlagParams[i], row[nullFlagColumns[i]]);
+				}
+				if (batchSize > 1) {
+					updateStmt.addBatch();
+				}
+			}
+			bindRow(insertStmt, columnBinders, row);
+			if (batchSize > 1) {
+				insertStmt.addBatch();
+				batchRowNumbers[batchRows] = rowNumber;
+				if (++batchRows == batchSize) {
+					executeBatch();
+				}
+			} else if (merge) {
+				int updated = updateStmt != null ? updateStmt.executeUpdate() : 0;
+				if (updated > 0) {
+					updatedRowCount += updated;
+				} else {
+					insertedRowCount += insertStmt.executeUpdate();
+				}
+			} else {
+				insertStmt.execute();
+			}
+			rowCount++;
+			lastRow = row;
+			lastRowNumber = rowNumber;
+			if (commitInterval <= 1 && batchSize <= 1) {
+				committedRowCount = rowCount;
+			} else if (commitInterval > 1 && ++uncommittedRows == commitInterval) {
+				executeBatch();
+				cnn.commit();
+				committedRowCount = rowCount;
+				committedPosition = new PtpCheckpoint.Position(lastRowNumber, lastRow);
+				uncommittedRows = 0;
+			}
+		} catch (SQLException e) {
+			throw new LigretoException("Failed to insert the row " + rowNumber + " into the target table.", e);
+		}
+	}
+
+	/**
+	 * Executes the rows added into the current batch.
+	 *
+	 * @throws LigretoException if any row of the batch could not be inserted
+	 */
+	protected void executeBatch() throws LigretoException {
+		if (batchRows == 0) {
+			return;
+		}
+		long firstRow = batchRowNumbers[0];
+		long lastRow = batchRowNumbers[batchRows - 1];
+		try {
+			if (deleteStmt != null) {
+				executeDeleteBatch(firstRow, lastRow);
+			}
+			if (merge) {
+				if (updateStmt != null) {
+					updatedRowCount += countRows(executeUpdateBatch(firstRow, lastRow));
+				}
+				insertedRowCount += countRows(insertStmt.executeBatch());
+			} else {
+				insertStmt.executeBatch();
+			}
+			if (commitInterval <= 1) {
+				committedRowCount += batchRows;
+			}
+		} catch (BatchUpdateException e) {
+			// The drivers either stop at the first failed row or mark the failed rows
+			int[] updateCounts = e.getUpdateCounts();
+			int failedIndex = updateCounts != null ? updateCounts.length : 0;
+			if (updateCounts != null) {
+				for (int i=0; i < updateCounts.length; i++) {
+					if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+						failedIndex = i;
+						break;
+					}
+				}
+			}
+			if (failedIndex >= batchRows) {
+				throw new LigretoException("Failed to insert the batch of rows " + firstRow + " to " + lastRow + " into the target table.", e);
+			}
+			throw new LigretoException("Failed to insert the row " + batchRowNumbers[failedIndex] + " of the batch of rows "
+				+ firstRow + " to " + lastRow + " into the target table.", e);
+		} catch (SQLException e) {
+			throw new LigretoException("Failed to insert the batch of rows " + firstRow + " to " + lastRow + " into the target table.", e);
+		} finally {
+			batchRows = 0;
+		}
+	}
+
+	/**
+	 * Deletes the rows replaced by the rows of the current batch.
+	 *
+	 * @param firstRow the number of the first row of the batch
+	 * @param lastRow the number of the last row of the batch
+	 * @throws LigretoException if the rows could not be deleted
+	 */
+	protected void executeDeleteBatch(long firstRow, long lastRow) throws LigretoException {
+		try {
+			int[] updateCounts = deleteStmt.executeBatch();
+			for (int i=0; i < updateCounts.length; i++) {
+				if (updateCounts[i] > 0) {
+					deletedRowCount += updateCounts[i];
+				}
+			}
+		} catch (SQLException e) {
+			throw new LigretoException("Failed to delete the rows replaced by the batch of rows " + firstRow + " to " + lastRow + " from the target table.", e);
+		}
+	}
+
+	/**
+	 * Updates the changed rows with the same key as the rows of the current batch.
+	 *
+	 * @param firstRow the number of the first row of the batch
+	 * @param lastRow the number of the last row of the batch
+	 * @return the update counts of the batch
+	 * @throws LigretoException if the rows could not be updated
+	 */
+	protected int[] executeUpdateBatch(long firstRow, long lastRow) throws LigretoException {
+		try {
+			return updateStmt.executeBatch();
+		} catch (SQLException e) {
+			throw new LigretoException("Failed to update the rows merged by the batch of rows " + firstRow + " to " + lastRow + " in the target table.", e);
+		}
+	}
+
+	/**
+	 * Sums the update counts of the batch. Some drivers do not report the counts of the rows
+	 * affected by each statement of the batch, in which case the merge counts are unknown.
+	 *
+	 * @param updateCounts the update counts of the batch
+	 * @return the number of the affected rows
+	 */
+	protected long countRows(int[] updateCounts) {
+		long count = 0;
+		for (int i=0; i < updateCounts.length; i++) {
+			if (updateCounts[i] > 0) {
+				count += updateCounts[i];
+			} else if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+				mergeCountsUnknown = true;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Executes the pending batch and commits the inserted rows.
+	 *
+	 * @throws LigretoException if the rows could not be inserted or committed
+	 */
+	public void flush() throws LigretoException {
+		executeBatch();
+		if (commitInterval > 1) {
+			try {
+				cnn.commit();
+				committedRowCount = rowCount;
+				if (lastRow != null) {
+					committedPosition = new PtpCheckpoint.Position(lastRowNumber, lastRow);
+				}
+				uncommittedRows = 0;
+			} catch (SQLException e) {
+				throw new LigretoException("Failed to commit the rows inserted into the target table.", e);
+			}
+		}
+	}
+
+	/**
+	 * Rolls back the rows which were not committed yet.
+	 */
+	protected void rollback() {
+		if (commitInterval > 1) {
+			try {
+				cnn.rollback();
+			} catch (SQLException e) {
+				log.debug("Failed to roll back the rows inserted by " + getName() + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Closes the insert statement. The connection is not closed.
+	 *
+	 * @throws SQLException if the statement could not be closed
+	 */
+	public void close() throws SQLException {
+		insertStmt.close();
+		if (deleteStmt != null) {
+			deleteStmt.close();
+		}
+		if (updateStmt != null) {
+			updateStmt.close();
+		}
+	}
+
+	@Override
+	public void run() {
+		startTime = System.currentTimeMillis();
+		try {
+			while (true) {
+				Chunk chunk = queue.take();
+				if (chunk == END) {
+					break;
+				}
+				long chunkStart = System.currentTimeMillis();
+				for (int i=0; i < chunk.size; i++) {
+					write(chunk.rows[i], chunk.firstRow + i);
+				}
+				writeMillis += System.currentTimeMillis() - chunkStart;
+			}
+			flush();
+		} catch (InterruptedException e) {
+			rollback();
+		} catch (Throwable t) {
+			throwable = t;
+			rollback();
+		} finally {
+			endTime = System.currentTimeMillis();
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		queue = new ArrayBlockingQueue<Chunk>(QUEUE_CAPACITY);
+		super.start();
+	}
+
+	/**
+	 * Puts the chunk of rows into the queue of the writer thread. The method waits for the free space
+	 * in the queue.
+	 *
+	 * @param chunk the chunk to be queued
+	 * @throws LigretoException if the writer thread failed or the execution was interrupted
+	 */
+	public void put(Chunk chunk) throws LigretoException {
+		try {
+			if (queue.offer(chunk)) {
+				return;
+			}
+			stalls++;
+			while (!queue.offer(chunk, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				throwExceptions();
+				if (!isAlive()) {
+					throw new LigretoException("The writer thread is not running.");
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new LigretoException("Execution interrupted.", e);
+		}
+	}
+
+	/**
+	 * Waits until the writer thread inserts and commits all the queued rows.
+	 *
+	 * @throws LigretoException if the writer thread failed or the execution was interrupted
+	 */
+	public void finish() throws LigretoException {
+		if (!ended) {
+			put(END);
+			ended = true;
+			try {
+				join();
+			} catch (InterruptedException e) {
+				throw new LigretoException("Execution interrupted.", e);
+			}
+		}
+		throwExceptions();
+	}
+
+	/**
+	 * Stops the writer thread without inserting the queued rows and waits for its termination.
+	 * The rows which were not committed yet are rolled back.
+	 */
+	public void cancel() {
+		interrupt();
+		try {
+			join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the writer thread failed
+	 */
+	public boolean hasFailed() {
+		return throwable != null;
+	}
+
+	/**
+	 * This function will throw the exception in the current thread that was caught
+	 * during the insertion of the rows.
+	 *
+	 * @throws LigretoException if the throwable object was caught during the processing
+	 */
+	public void throwExceptions() throws LigretoException {
+		if (throwable != null) {
+			throw new LigretoException("Error in " + getName() + " writing into the target table.", throwable);
+		}
+	}
+
+	/**
+	 * @return the number of rows written
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the number of rows written and committed
+	 */
+	public long getCommittedRowCount() {
+		return committedRowCount;
+	}
+
+	/**
+	 * @return the position of the last row committed by the explicit commit or null if no rows were committed yet
+	 */
+	public PtpCheckpoint.Position getCommittedPosition() {
+		return committedPosition;
+	}
+
+	/**
+	 * @return the number of rows deleted since they were replaced by the written rows
+	 */
+	public long getDeletedRowCount() {
+		return deletedRowCount;
+	}
+
+	/**
+	 * @return the number of the merged rows which were inserted
+	 */
+	public long getInsertedRowCount() {
+		return insertedRowCount;
+	}
+
+	/**
+	 * @return the number of the merged rows which updated the changed rows
+	 */
+	public long getUpdatedRowCount() {
+		return updatedRowCount;
+	}
+
+	/**
+	 * @return true if the database did not report the numbers of the merged rows
+	 */
+	public boolean isMergeCountsUnknown() {
+		return mergeCountsUnknown;
+	}
+
+	/**
+	 * Logs the throughput of the writer thread.
+	 *
+	 * @param log the log to use
+	 */
+	public void info(Log log) {
+		long millis = endTime - startTime;
+		log.info("Writer " + getName() + " inserted " + rowCount + " rows in " + millis + " ms ("
+			+ (millis > 0 ? rowCount * 1000 / millis : rowCount) + " rows/s); busy for " + writeMillis
+			+ " ms; reader waited " + stalls + " times for the writer.");
+		if (deleteStmt != null) {
+			log.info("Writer " + getName() + " replaced " + deletedRowCount + " rows.");
+		}
+		if (merge && !mergeCountsUnknown) {
+			log.info("Writer " + getName() + " inserted " + insertedRowCount + ", updated " + updatedRowCount
+				+ " and kept " + (rowCount - insertedRowCount - updatedRowCount) + " unchanged rows.");
+		}
+	}
+}
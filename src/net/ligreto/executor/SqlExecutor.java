@@ -10,6 +10,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import net.ligreto.Database;
+import net.ligreto.ExecutionContext;
 import net.ligreto.ResultStatus;
 import net.ligreto.builders.BuilderInterface;
 import net.ligreto.builders.BuilderInterface.OutputStyle;
@@ -45,6 +46,13 @@ public class SqlExecutor extends Executor implements SqlResultCallBack {
 	/** The list of column indices to be excluded. */
 	protected int[] excl = new int[0];
 	
+	/**
+	 * @param executionContext the context of the execution run
+	 */
+	public SqlExecutor(ExecutionContext executionContext) {
+		super(executionContext);
+	}
+	
 	@Override
 	public boolean prepareProcessing(SqlNode sqlNode, DataProvider dp) throws Exception {
 		// Go to the next SQL query if we do not have the target defined
@@ -90,7 +98,7 @@ public class SqlExecutor extends Executor implements SqlResultCallBack {
 			CallableStatement cstm = null;
 			ResultSet rs = null;
 			try {
-				cnn = Database.getInstance().getConnection(sqlNode.getDataSource());
+				cnn = executionContext.getDatabase().getConnection(sqlNode.getDataSource());
 				String qry = sqlNode.getQuery().toString();
 				try {
 					switch (sqlNode.getQueryType()) {
@@ -128,7 +136,7 @@ public class SqlExecutor extends Executor implements SqlResultCallBack {
 						
 						// Create the data provider and process the result
 						boolean empty = true;
-						DataProvider dp = new ResultSetDataProvider(rs, new int[0], excl);
+						DataProvider dp = new ResultSetDataProvider(rs, new int[0], excl, executionContext.getComparator());
 						if (callBack.prepareProcessing(sqlNode, dp)) {
 							while (dp.next()) {
 								empty = false;
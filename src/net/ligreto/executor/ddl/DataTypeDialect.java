@@ -9,6 +9,9 @@ import java.sql.SQLException;
 import java.sql.Types;
 
 import net.ligreto.exceptions.LigretoException;
+import net.ligreto.executor.BulkLoader;
+import net.ligreto.executor.ColumnBinder;
+import net.ligreto.parser.nodes.TargetNode;
 import net.ligreto.util.DataProviderUtils;
 
 /**
@@ -29,19 +32,145 @@ public class DataTypeDialect {
 	}
 	
 	/**
+	 * The dialect is determined by the database product name, since the connection
+	 * could be wrapped by the connection pool.
+	 * 
 	 * @param cnn the connection the dialect should correspond to
 	 * @return the data
+	 * @throws SQLException if the database metadata could not be read
 	 */
-	public static DataTypeDialect getInstance(Connection cnn) {
-		if (cnn.getClass().getName().startsWith("oracle.jdbc")) {
+	public static DataTypeDialect getInstance(Connection cnn) throws SQLException {
+		String productName = cnn.getMetaData().getDatabaseProductName();
+		if (productName != null && productName.startsWith("Oracle")) {
 			return OracleDataTypeDialect.getInstance();
-		} else if (cnn.getClass().getName().startsWith("org.apache.derby")) {
+		} else if (productName != null && productName.startsWith("Apache Derby")) {
 			return DerbyDataTypeDialect.getInstance();
 		} else {
 			return getInstance();
 		}
 	}
 	
+	/**
+	 * Creates the loader using the native bulk load facility of the database. The bulk load
+	 * is not supported by default and the standard inserts should be used.
+	 * 
+	 * @param cnn the connection to the target data source
+	 * @param targetNode the target of the transfer
+	 * @param insertQry the insert statement of the transfer
+	 * @param columnNames the names of the transferred columns
+	 * @param columnBinders the binders of the transferred columns
+	 * @param tableCreated whether the target table was created by the transfer
+	 * @return the bulk loader or null if the bulk load is not supported
+	 * @throws SQLException if the loader could not be created
+	 * @throws LigretoException if the loader could not be created
+	 */
+	public BulkLoader createBulkLoader(Connection cnn, TargetNode targetNode, String insertQry, String[] columnNames, ColumnBinder[] columnBinders, boolean tableCreated) throws SQLException, LigretoException {
+		return null;
+	}
+	
+	/**
+	 * Generates the query computing the partition bounds of the column by the database. The query
+	 * returns the largest value of each partition but the last one in the order of the values,
+	 * so only the bounds are fetched. The default query uses the standard NTILE window function.
+	 * 
+	 * @param query the query which result is partitioned
+	 * @param column the quoted label of the partitioned column
+	 * @param partitions the requested number of partitions
+	 * @return the query or null if the database could not compute the bounds
+	 */
+	public String getPartitionBoundsQuery(String query, String column, int partitions) {
+		return "select max(" + column + ") from (select " + column + ", ntile(" + partitions + ") over (order by "
+				+ column + ") ligreto_tile from (" + query + ") ligreto_sample where " + column
+				+ " is not null) ligreto_tiles where ligreto_tile < " + partitions
+				+ " group by ligreto_tile order by ligreto_tile";
+	}
+	
+	/**
+	 * Provides the function returning the random number between 0 and 1 evaluated for each row,
+	 * which is used to sample the rows by the database.
+	 * 
+	 * @return the function call or null if the rows could not be sampled by the database
+	 */
+	public String getRandomFunction() {
+		return null;
+	}
+	
+	/**
+	 * Generates the statement inserting the transferred row only if the target table does not contain
+	 * the row with the same key. The parameters of the statement are the values of all the columns
+	 * in the order of the transferred columns. The statement inserts the rows selected from the derived
+	 * table of the parameters, which needs the parameters to be cast to the target column types.
+	 * 
+	 * @param table the name of the target table
+	 * @param columnNames the names of the transferred columns, quoted if needed
+	 * @param columnTypes the type declarations of the transferred columns in the target table
+	 * @param keyIndexes the indices of the key columns in the transferred columns
+	 * @return the insert statement
+	 */
+	public String getInsertMissingQuery(String table, String[] columnNames, String[] columnTypes, int[] keyIndexes) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("insert into ");
+		sb.append(table);
+		sb.append(" (");
+		appendColumns(sb, null, columnNames);
+		sb.append(") select * from (select ");
+		for (int i=0; i < columnNames.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("cast(? as ");
+			sb.append(columnTypes[i]);
+			sb.append(") ");
+			sb.append(columnNames[i]);
+		}
+		sb.append(" from (values (0)) ligreto_dummy) ligreto_src where not exists (select 1 from ");
+		sb.append(table);
+		sb.append(" ligreto_tgt where ");
+		appendKeyCondition(sb, columnNames, keyIndexes);
+		sb.append(")");
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the comma separated list of the column names.
+	 * 
+	 * @param sb the buffer to append to
+	 * @param alias the alias qualifying the columns or null
+	 * @param columnNames the names of the columns
+	 */
+	protected static void appendColumns(StringBuilder sb, String alias, String[] columnNames) {
+		for (int i=0; i < columnNames.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			if (alias != null) {
+				sb.append(alias);
+				sb.append('.');
+			}
+			sb.append(columnNames[i]);
+		}
+	}
+
+	/**
+	 * Appends the condition matching the key columns of the <code>ligreto_tgt</code>
+	 * and <code>ligreto_src</code> tables.
+	 * 
+	 * @param sb the buffer to append to
+	 * @param columnNames the names of the transferred columns
+	 * @param keyIndexes the indices of the key columns in the transferred columns
+	 */
+	protected static void appendKeyCondition(StringBuilder sb, String[] columnNames, int[] keyIndexes) {
+		for (int i=0; i < keyIndexes.length; i++) {
+			if (i > 0) {
+				sb.append(" and ");
+			}
+			sb.append("ligreto_tgt.");
+			sb.append(columnNames[keyIndexes[i]]);
+			sb.append(" = ligreto_src.");
+			sb.append(columnNames[keyIndexes[i]]);
+		}
+	}
+
 	/**
 	 * The default constructor.
 	 */
@@ -1,8 +1,15 @@
 package net.ligreto.executor.ddl;
 
+import java.sql.Connection;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.executor.BulkLoader;
+import net.ligreto.executor.ColumnBinder;
+import net.ligreto.executor.DerbyBulkLoader;
+import net.ligreto.parser.nodes.TargetNode;
+
 /**
  * 
  * @author Julius Stroffek
@@ -55,4 +62,30 @@ public class DerbyDataTypeDialect extends DataTypeDialect {
 			return "varchar(8192)";
 		}
 	}
+
+	/**
+	 * Derby does not support the NTILE window function.
+	 */
+	@Override
+	public String getPartitionBoundsQuery(String query, String column, int partitions) {
+		return null;
+	}
+	
+	@Override
+	public String getRandomFunction() {
+		return "random()";
+	}
+
+	/**
+	 * The import procedure reads the file by the database engine, so the bulk load
+	 * is supported only by the embedded driver.
+	 */
+	@Override
+	public BulkLoader createBulkLoader(Connection cnn, TargetNode targetNode, String insertQry, String[] columnNames, ColumnBinder[] columnBinders, boolean tableCreated) throws SQLException, LigretoException {
+		String driverName = cnn.getMetaData().getDriverName();
+		if (driverName == null || driverName.indexOf("Embedded") < 0) {
+			return null;
+		}
+		return new DerbyBulkLoader(cnn, targetNode.getTable(), columnNames, targetNode.getTransferNode().isQuoteColumnNames(), targetNode.getCommitInterval());
+	}
 }
@@ -1,8 +1,14 @@
 package net.ligreto.executor.ddl;
 
+import java.sql.Connection;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
+import net.ligreto.executor.BulkLoader;
+import net.ligreto.executor.ColumnBinder;
+import net.ligreto.executor.OracleBulkLoader;
+import net.ligreto.parser.nodes.TargetNode;
+
 /**
  * 
  * @author Julius Stroffek
@@ -73,4 +79,36 @@ public class OracleDataTypeDialect extends DataTypeDialect {
 			return "varchar2(3980)";
 		}
 	}	
+
+	@Override
+	public BulkLoader createBulkLoader(Connection cnn, TargetNode targetNode, String insertQry, String[] columnNames, ColumnBinder[] columnBinders, boolean tableCreated) throws SQLException {
+		return new OracleBulkLoader(cnn, targetNode.getTable(), insertQry, columnBinders, targetNode.getBatchSize(), tableCreated);
+	}
+
+	/**
+	 * The rows are inserted by the <code>MERGE</code> statement having only the <code>WHEN NOT MATCHED</code>
+	 * clause, which does not need the parameters to be cast.
+	 */
+	@Override
+	public String getInsertMissingQuery(String table, String[] columnNames, String[] columnTypes, int[] keyIndexes) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("merge into ");
+		sb.append(table);
+		sb.append(" ligreto_tgt using (select ");
+		for (int i=0; i < columnNames.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("? ");
+			sb.append(columnNames[i]);
+		}
+		sb.append(" from dual) ligreto_src on (");
+		appendKeyCondition(sb, columnNames, keyIndexes);
+		sb.append(") when not matched then insert (");
+		appendColumns(sb, null, columnNames);
+		sb.append(") values (");
+		appendColumns(sb, "ligreto_src", columnNames);
+		sb.append(")");
+		return sb.toString();
+	}
 }
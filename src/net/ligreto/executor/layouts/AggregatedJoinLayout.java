@@ -1,6 +1,7 @@
 package net.ligreto.executor.layouts;
 
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.TreeSet;
 
@@ -151,7 +152,13 @@ public class AggregatedJoinLayout extends JoinLayout {
 	@Override
 	public ResultStatus finish() throws IOException, DataException, LigretoException {
 		// We will sort the result according group-by columns by creating a tree set
-		TreeSet<Row> treeSet = new TreeSet<Row>(aggregationMap.keySet());
+		TreeSet<Row> treeSet = new TreeSet<Row>(new Comparator<Row>() {
+			@Override
+			public int compare(Row row1, Row row2) {
+				return row1.compareTo(row2, comparator);
+			}
+		});
+		treeSet.addAll(aggregationMap.keySet());
 		for (Row f : treeSet) {
 			AggregationResult result = aggregationMap.get(f);
 			for (int i=0; i < result.getColumnCount(); i++) {
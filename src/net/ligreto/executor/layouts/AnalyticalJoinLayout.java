@@ -139,9 +139,9 @@ public class AnalyticalJoinLayout extends JoinLayout {
 				for (int i=0; i < cols1.length; i++) {
 					if (cols1[i] != null || o.cols1[i] != null) {
 						if (cols1[i] != null) {
-							result = cols1[i].compareTo(o.cols1[i]);
+							result = cols1[i].compareTo(o.cols1[i], comparator);
 						} else {
-							result = -o.cols1[i].compareTo(cols1[i]);
+							result = -o.cols1[i].compareTo(cols1[i], comparator);
 						}
 					}
 					if (result != 0) {
@@ -149,9 +149,9 @@ public class AnalyticalJoinLayout extends JoinLayout {
 					}
 					if (cols2[i] != null || o.cols2[i] != null) {
 						if (cols2[i] != null) {
-							result = cols2[i].compareTo(o.cols2[i]);
+							result = cols2[i].compareTo(o.cols2[i], comparator);
 						} else {
-							result = -o.cols2[i].compareTo(cols2[i]);
+							result = -o.cols2[i].compareTo(cols2[i], comparator);
 						}
 					}
 					if (result != 0) {
@@ -0,0 +1,316 @@
+package net.ligreto.executor.layouts;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.ligreto.ResultStatus;
+import net.ligreto.data.BufferedDataProvider;
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.util.LigretoComparator;
+
+/**
+ * The layout passing the rows to the wrapped layout processed by the separate thread.
+ *
+ * The join processing creates the immutable {@link JoinRowEvent} for each row and puts it into
+ * the bounded queue of the layout thread. The join processing waits if the queue is full, so
+ * the slowest layout thread limits the memory used. The layouts writing into the targets of
+ * the same document share the same layout thread, since the document could not be modified
+ * by several threads at once and the layouts writing into the same target have to produce
+ * the rows in the same order as without the layout threads. The wrapped layout reads the rows
+ * from its own buffered data providers positioned on the rows of the event.
+ *
+ * The instances of this class should be used as follows:
+ * <pre>
+ * AsyncJoinLayout.LayoutThread thread = new AsyncJoinLayout.LayoutThread(queueSize, comparator);
+ * JoinLayout layout = new AsyncJoinLayout(joinLayout, thread);
+ * thread.start();
+ * try {
+ *     // process the rows by the layout
+ *     layout.finish();
+ * } finally {
+ *     thread.cancel();
+ * }
+ * </pre>
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class AsyncJoinLayout extends JoinLayout {
+
+	/** The time in milliseconds to wait for the free space in the queue before checking for failures. */
+	protected static final long OFFER_TIMEOUT = 100;
+
+	/** The logger instance for the class. */
+	private static Log log = LogFactory.getLog(AsyncJoinLayout.class);
+
+	/** The row event queued for the specific layout. */
+	protected static class QueuedEvent {
+		/** The layout to process the event. */
+		protected AsyncJoinLayout layout;
+
+		/** The row event. */
+		protected JoinRowEvent event;
+
+		/**
+		 * @param layout the layout to process the event
+		 * @param event the row event
+		 */
+		protected QueuedEvent(AsyncJoinLayout layout, JoinRowEvent event) {
+			this.layout = layout;
+			this.event = event;
+		}
+	}
+
+	/** The event marking the end of the rows. */
+	protected static final QueuedEvent END = new QueuedEvent(null, JoinRowEvent.END);
+
+	/** The thread processing the rows queued for the layouts. */
+	public static class LayoutThread extends Thread {
+
+		/** The queue of the rows to be processed. */
+		protected BlockingQueue<QueuedEvent> queue;
+
+		/** The comparator owned by this thread. */
+		protected LigretoComparator comparator;
+
+		/** The throwable object that was caught during the thread execution. */
+		protected volatile Throwable throwable = null;
+
+		/** Indicates whether the end of the rows was already queued. */
+		protected boolean ended = false;
+
+		/** The number of rows processed. */
+		protected long rowCount = 0;
+
+		/** The number of times the join processing waited for the free space in the queue. */
+		protected long stalls = 0;
+
+		/**
+		 * Creates the layout thread. The created thread is not started.
+		 *
+		 * @param queueSize the number of rows that could be queued
+		 * @param comparator the comparator which settings should be used in this thread
+		 */
+		public LayoutThread(int queueSize, LigretoComparator comparator) {
+			super("ligreto-layout");
+			this.queue = new ArrayBlockingQueue<QueuedEvent>(queueSize);
+			this.comparator = new LigretoComparator(comparator);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					QueuedEvent queuedEvent = queue.take();
+					if (queuedEvent == END) {
+						break;
+					}
+					queuedEvent.layout.processEvent(queuedEvent.event);
+					rowCount++;
+				}
+			} catch (Throwable t) {
+				throwable = t;
+			} finally {
+				comparator.release();
+			}
+		}
+
+		/**
+		 * Puts the event into the queue. The method waits for the free space in the queue.
+		 *
+		 * @param queuedEvent the event to be queued
+		 * @throws LigretoException if the layout thread failed or the execution was interrupted
+		 */
+		protected void put(QueuedEvent queuedEvent) throws LigretoException {
+			try {
+				if (queue.offer(queuedEvent)) {
+					return;
+				}
+				stalls++;
+				while (!queue.offer(queuedEvent, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					throwExceptions();
+					if (!isAlive()) {
+						throw new LigretoException("The layout thread is not running.");
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new LigretoException("Execution interrupted.", e);
+			}
+		}
+
+		/**
+		 * Waits until all the queued rows are processed. The method has to be called before the layouts
+		 * processed by this thread are finished.
+		 *
+		 * @throws LigretoException if the layout thread failed or the execution was interrupted
+		 */
+		public void finish() throws LigretoException {
+			if (!ended) {
+				put(END);
+				ended = true;
+				try {
+					join();
+				} catch (InterruptedException e) {
+					throw new LigretoException("Execution interrupted.", e);
+				}
+				log.info("Layout thread processed " + rowCount + " rows; join processing waited " + stalls + " times for the layouts.");
+			}
+			throwExceptions();
+		}
+
+		/**
+		 * Stops the thread without processing the queued rows and waits for its termination.
+		 */
+		public void cancel() {
+			interrupt();
+			try {
+				join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * This method will throw the exception in the current thread that was caught
+		 * during the processing of the rows.
+		 *
+		 * @throws LigretoException if the throwable object was caught during the processing
+		 */
+		public void throwExceptions() throws LigretoException {
+			if (throwable != null) {
+				throw new LigretoException("Error while processing the layout rows.", throwable);
+			}
+		}
+	}
+
+	/** The wrapped layout. */
+	protected JoinLayout joinLayout;
+
+	/** The thread processing the rows of the layout. */
+	protected LayoutThread layoutThread;
+
+	/** The data provider of the first data source the wrapped layout reads the rows from. */
+	protected BufferedDataProvider bdp1;
+
+	/** The data provider of the second data source the wrapped layout reads the rows from. */
+	protected BufferedDataProvider bdp2;
+
+	/** The SQL data types of the columns of the first data provider. */
+	protected int[] columnTypes1;
+
+	/** The SQL data types of the columns of the second data provider. */
+	protected int[] columnTypes2;
+
+	/** Indicates whether the wrapped layout is over its limit. */
+	protected volatile boolean overLimit = false;
+
+	/**
+	 * Creates the layout passing the rows to the specified layout processed by the specified thread.
+	 * The wrapped layout has to be already started; its header could be dumped
+	 * before wrapping or through this layout.
+	 *
+	 * @param joinLayout the layout to wrap
+	 * @param layoutThread the thread to process the rows of the layout
+	 * @throws DataException if any data access error occurred
+	 */
+	public AsyncJoinLayout(JoinLayout joinLayout, LayoutThread layoutThread) throws DataException {
+		super(joinLayout.targetBuilder, joinLayout.ligretoParameters);
+		this.joinLayout = joinLayout;
+		this.layoutThread = layoutThread;
+		joinNode = joinLayout.joinNode;
+		layoutNode = joinLayout.layoutNode;
+		resultStatus = joinLayout.resultStatus;
+		dp1 = joinLayout.dp1;
+		dp2 = joinLayout.dp2;
+		columnTypes1 = JoinRowEvent.getColumnTypes(dp1);
+		columnTypes2 = JoinRowEvent.getColumnTypes(dp2);
+		bdp1 = new BufferedDataProvider(dp1);
+		bdp2 = new BufferedDataProvider(dp2);
+		joinLayout.setDataProviders(bdp1, bdp2);
+		comparator = joinLayout.comparator;
+		joinLayout.setComparator(layoutThread.comparator);
+		overLimit = joinLayout.isOverLimit();
+	}
+
+	/**
+	 * Processes the event by the wrapped layout. The method is called by the layout thread.
+	 *
+	 * @param event the event to be processed
+	 * @throws LigretoException if any error occurred during the processing
+	 * @throws IOException if the output could not be written
+	 */
+	protected void processEvent(JoinRowEvent event) throws LigretoException, IOException {
+		event.position(bdp1, bdp2);
+		event.replay(joinLayout);
+		overLimit = joinLayout.isOverLimit();
+	}
+
+	@Override
+	public boolean processRow(int rowDiffs, boolean[] cmpArray, JoinResultType resultType) throws LigretoException, IOException {
+		if (overLimit) {
+			return false;
+		}
+		layoutThread.put(new QueuedEvent(this, JoinRowEvent.createRowEvent(dp1, columnTypes1, dp2, columnTypes2, rowDiffs, cmpArray, resultType, keySources)));
+		return true;
+	}
+
+	@Override
+	public void dumpDuplicate(int dataSourceIndex) throws DataException, IOException, LigretoException {
+		JoinRowEvent event;
+		if (dataSourceIndex == 0) {
+			event = JoinRowEvent.createDuplicateEvent(dp1, columnTypes1, dataSourceIndex);
+		} else {
+			event = JoinRowEvent.createDuplicateEvent(dp2, columnTypes2, dataSourceIndex);
+		}
+		layoutThread.put(new QueuedEvent(this, event));
+	}
+
+	/**
+	 * @return true if the wrapped layout reached its limit; the value is updated
+	 *         as the layout thread processes the queued rows
+	 */
+	@Override
+	public boolean isOverLimit() {
+		return overLimit;
+	}
+
+	/**
+	 * Queues the header to be dumped by the wrapped layout in the layout thread.
+	 */
+	@Override
+	public void dumpHeader() throws LigretoException {
+		layoutThread.put(new QueuedEvent(this, JoinRowEvent.createHeaderEvent()));
+	}
+
+	/**
+	 * Queues the row to be dumped by the wrapped layout in the layout thread.
+	 */
+	@Override
+	public void dumpRow(int rowDiffs, boolean[] highlightArray, JoinResultType resultType) throws LigretoException {
+		layoutThread.put(new QueuedEvent(this, JoinRowEvent.createDumpEvent(dp1, columnTypes1, dp2, columnTypes2, rowDiffs, highlightArray, resultType, keySources)));
+	}
+
+	/**
+	 * Waits until the layout thread processes all the queued rows and then finishes
+	 * the wrapped layout.
+	 */
+	@Override
+	public ResultStatus finish() throws IOException, LigretoException {
+		layoutThread.finish();
+		return joinLayout.finish();
+	}
+
+	/**
+	 * @return the wrapped layout
+	 */
+	public JoinLayout getJoinLayout() {
+		return joinLayout;
+	}
+}
@@ -18,6 +18,7 @@ import net.ligreto.executor.ResultExecutor;
 import net.ligreto.parser.nodes.JoinNode;
 import net.ligreto.parser.nodes.LayoutNode;
 import net.ligreto.parser.nodes.LayoutNode.LayoutType;
+import net.ligreto.util.LigretoComparator;
 import net.ligreto.util.MiscUtils;
 
 /**
@@ -67,10 +68,19 @@ public abstract class JoinLayout {
 	
 	/** The second data provider. */
 	protected DataProvider dp2 = null;
+	
+	/** Indicates which of all the joined data sources contain the key of the current row; null for join of two data sources. */
+	protected boolean[] keySources = null;
+	
+	/** Indicates whether the layout was told which of all the joined data sources contain the keys. */
+	protected boolean keySourcesKnown = false;
 			
 	/** The global ligreto parameters. */
 	protected LigretoParameters ligretoParameters;
 	
+	/** The comparator owned by the thread processing the rows of the layout. */
+	protected LigretoComparator comparator = null;
+	
 	/** The number of rows that are equal. */
 	protected int equalRowCount = 0;
 	
@@ -101,6 +111,9 @@ public abstract class JoinLayout {
 	/** The number of rows that have not matched from the 2nd data source. */
 	protected int nonMatchingRowsSrc2 = 0;
 	
+	/** The number of rows having the key in all the joined data sources; counted only if the key sources are known. */
+	protected int allSourcesRowCount = 0;
+	
 	/** The number of column differences across all the rows. */
 	protected int columnDifferences = 0;
 	
@@ -440,6 +453,9 @@ public abstract class JoinLayout {
 			throw new IllegalArgumentException("Unexpected value of JoinType.");
 		}
 		totalRowCount++;
+		if (keySources != null && MiscUtils.countFalses(keySources) == 0) {
+			allSourcesRowCount++;
+		}
 		columnDifferences += rowDiffs;
 		if (resultType != JoinResultType.INNER || rowDiffs > 0) {
 			differentRowCount++;
@@ -638,6 +654,30 @@ public abstract class JoinLayout {
 		this.dp2 = dp2;
 	}
 	
+	/**
+	 * @return the indicators which of all the joined data sources contain the key of the current row
+	 */
+	public boolean[] getKeySources() {
+		return keySources;
+	}
+	
+	/**
+	 * @param keySources the indicators which of all the joined data sources contain the key of the current row
+	 */
+	public void setKeySources(boolean[] keySources) {
+		this.keySources = keySources;
+		if (keySources != null) {
+			keySourcesKnown = true;
+		}
+	}
+	
+	/**
+	 * @param comparator the comparator owned by the thread processing the rows of the layout
+	 */
+	public void setComparator(LigretoComparator comparator) {
+		this.comparator = comparator;
+	}
+	
 	/**
 	 * @param ligretoParameters the ligretoParameters to set
 	 */
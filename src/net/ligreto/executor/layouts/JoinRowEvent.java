@@ -0,0 +1,302 @@
+package net.ligreto.executor.layouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.ligreto.data.BufferedDataProvider;
+import net.ligreto.data.DataProvider;
+import net.ligreto.data.DataProviderRow;
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.executor.layouts.JoinLayout.JoinResultType;
+
+/**
+ * The immutable copy of the row produced by the join processing.
+ *
+ * The event holds the values of the rows from both data sources together with the comparison
+ * results, so the row could be processed by the layout later in a different thread. The layout
+ * reads the row values from the buffered data providers positioned on the rows of the event.
+ * The event could be written into the temporary file and read back by {@link #write} and {@link #read}.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class JoinRowEvent {
+
+	/** The event marking the end of the rows. */
+	public static final JoinRowEvent END = new JoinRowEvent();
+
+	/** Indicates whether the event dumps the header instead of the row. */
+	protected boolean header;
+
+	/** Indicates whether the row is dumped without being filtered by the layout. */
+	protected boolean dump;
+
+	/** The result type of the row or null if the row is the duplicate. */
+	protected JoinResultType resultType;
+
+	/** The data source index of the duplicate row. */
+	protected int duplicateSource;
+
+	/** The index within the set of duplicate rows. */
+	protected int indexInDuplicates;
+
+	/** The number of differences in the row. */
+	protected int rowDiffs;
+
+	/** The columns to be highlighted. */
+	protected boolean[] cmpArray;
+
+	/** The indicators which of all the joined data sources contain the key of the row or null. */
+	protected boolean[] keySources;
+
+	/** The row from the first data source or null. */
+	protected DataProviderRow row1;
+
+	/** The row from the second data source or null. */
+	protected DataProviderRow row2;
+
+	/** Only the factory methods could create the instances. */
+	protected JoinRowEvent() {
+	}
+
+	/**
+	 * Creates the event from the current rows of the data providers.
+	 *
+	 * @param dp1 the first data provider
+	 * @param columnTypes1 the SQL data types of the columns of the first data provider
+	 * @param dp2 the second data provider
+	 * @param columnTypes2 the SQL data types of the columns of the second data provider
+	 * @param rowDiffs the number of differences in the row
+	 * @param cmpArray the columns to be highlighted; the array must not be modified later
+	 * @param resultType the result type of the row
+	 * @param keySources the indicators which of all the joined data sources contain the key of the row or null;
+	 *                   the array must not be modified later
+	 * @return the created event
+	 * @throws DataException if any data access error occurred
+	 */
+	public static JoinRowEvent createRowEvent(DataProvider dp1, int[] columnTypes1, DataProvider dp2, int[] columnTypes2,
+			int rowDiffs, boolean[] cmpArray, JoinResultType resultType, boolean[] keySources) throws DataException {
+		JoinRowEvent event = new JoinRowEvent();
+		event.resultType = resultType;
+		event.rowDiffs = rowDiffs;
+		event.cmpArray = cmpArray;
+		event.keySources = keySources;
+		if (resultType != JoinResultType.RIGHT) {
+			event.row1 = new DataProviderRow(columnTypes1, dp1, dp1.getKeyIndices());
+		}
+		if (resultType != JoinResultType.LEFT) {
+			event.row2 = new DataProviderRow(columnTypes2, dp2, dp2.getKeyIndices());
+		}
+		return event;
+	}
+
+	/**
+	 * Creates the event from the current rows of the data providers which are dumped
+	 * by the layout without being filtered.
+	 *
+	 * @param dp1 the first data provider
+	 * @param columnTypes1 the SQL data types of the columns of the first data provider
+	 * @param dp2 the second data provider
+	 * @param columnTypes2 the SQL data types of the columns of the second data provider
+	 * @param rowDiffs the number of differences in the row
+	 * @param highlightArray the columns to be highlighted; the array must not be modified later
+	 * @param resultType the result type of the row
+	 * @param keySources the indicators which of all the joined data sources contain the key of the row or null
+	 * @return the created event
+	 * @throws DataException if any data access error occurred
+	 */
+	public static JoinRowEvent createDumpEvent(DataProvider dp1, int[] columnTypes1, DataProvider dp2, int[] columnTypes2,
+			int rowDiffs, boolean[] highlightArray, JoinResultType resultType, boolean[] keySources) throws DataException {
+		JoinRowEvent event = createRowEvent(dp1, columnTypes1, dp2, columnTypes2, rowDiffs, highlightArray, resultType, keySources);
+		event.dump = true;
+		return event;
+	}
+
+	/**
+	 * @return the event dumping the header of the layout
+	 */
+	public static JoinRowEvent createHeaderEvent() {
+		JoinRowEvent event = new JoinRowEvent();
+		event.header = true;
+		return event;
+	}
+
+	/**
+	 * Creates the event from the current row of the data provider having the duplicate key.
+	 *
+	 * @param dp the data provider of the duplicate row
+	 * @param columnTypes the SQL data types of the columns of the data provider
+	 * @param dataSourceIndex the index of data source that the duplicate belongs to
+	 * @return the created event
+	 * @throws DataException if any data access error occurred
+	 */
+	public static JoinRowEvent createDuplicateEvent(DataProvider dp, int[] columnTypes, int dataSourceIndex) throws DataException {
+		JoinRowEvent event = new JoinRowEvent();
+		event.duplicateSource = dataSourceIndex;
+		event.indexInDuplicates = dp.getIndexInDuplicates();
+		DataProviderRow row = new DataProviderRow(columnTypes, dp, dp.getKeyIndices());
+		if (dataSourceIndex == 0) {
+			event.row1 = row;
+		} else {
+			event.row2 = row;
+		}
+		return event;
+	}
+
+	/**
+	 * Positions the data providers on the rows of the event.
+	 *
+	 * @param bdp1 the first data provider the layouts read the rows from
+	 * @param bdp2 the second data provider the layouts read the rows from
+	 */
+	public void position(BufferedDataProvider bdp1, BufferedDataProvider bdp2) {
+		if (header) {
+			return;
+		}
+		if (resultType == null) {
+			if (duplicateSource == 0) {
+				bdp1.setCurrentRow(row1, true, indexInDuplicates);
+			} else {
+				bdp2.setCurrentRow(row2, true, indexInDuplicates);
+			}
+			return;
+		}
+		if (row1 != null) {
+			bdp1.setCurrentRow(row1, false, 0);
+		}
+		if (row2 != null) {
+			bdp2.setCurrentRow(row2, false, 0);
+		}
+	}
+
+	/**
+	 * Processes the event by the layout. The data providers of the layout have to be
+	 * positioned by {@link #position} first.
+	 *
+	 * @param joinLayout the layout to process the event
+	 * @throws LigretoException if any error occurred during the processing
+	 * @throws IOException if the output could not be written
+	 */
+	public void replay(JoinLayout joinLayout) throws LigretoException, IOException {
+		if (header) {
+			joinLayout.dumpHeader();
+		} else if (resultType == null) {
+			joinLayout.dumpDuplicate(duplicateSource);
+		} else {
+			if (keySources != null) {
+				joinLayout.setKeySources(keySources);
+			}
+			if (dump) {
+				joinLayout.dumpRow(rowDiffs, cmpArray, resultType);
+			} else {
+				joinLayout.processRow(rowDiffs, cmpArray, resultType);
+			}
+		}
+	}
+
+	/**
+	 * Writes the event into the specified output.
+	 *
+	 * @param out the output to write the event to
+	 * @throws IOException if the event could not be written
+	 * @throws DataException if the row contains value of unsupported type
+	 */
+	public void write(DataOutput out) throws IOException, DataException {
+		out.writeBoolean(header);
+		out.writeBoolean(dump);
+		out.writeByte(resultType == null ? -1 : resultType.ordinal());
+		out.writeByte(duplicateSource);
+		out.writeInt(indexInDuplicates);
+		out.writeInt(rowDiffs);
+		writeFlags(out, cmpArray);
+		writeFlags(out, keySources);
+		out.writeBoolean(row1 != null);
+		if (row1 != null) {
+			row1.write(out);
+		}
+		out.writeBoolean(row2 != null);
+		if (row2 != null) {
+			row2.write(out);
+		}
+	}
+
+	/**
+	 * Reads the event previously written by {@link #write} method.
+	 *
+	 * @param in the input to read the event from
+	 * @param bdp1 the first data provider the rows of the event belong to
+	 * @param bdp2 the second data provider the rows of the event belong to
+	 * @return the event read
+	 * @throws IOException if the event could not be read
+	 * @throws DataException if the data read are corrupted
+	 */
+	public static JoinRowEvent read(DataInput in, BufferedDataProvider bdp1, BufferedDataProvider bdp2) throws IOException, DataException {
+		JoinRowEvent event = new JoinRowEvent();
+		event.header = in.readBoolean();
+		event.dump = in.readBoolean();
+		byte resultType = in.readByte();
+		event.resultType = resultType < 0 ? null : JoinResultType.values()[resultType];
+		event.duplicateSource = in.readByte();
+		event.indexInDuplicates = in.readInt();
+		event.rowDiffs = in.readInt();
+		event.cmpArray = readFlags(in);
+		event.keySources = readFlags(in);
+		if (in.readBoolean()) {
+			event.row1 = bdp1.readRow(in);
+		}
+		if (in.readBoolean()) {
+			event.row2 = bdp2.readRow(in);
+		}
+		return event;
+	}
+
+	/**
+	 * Writes the array of flags which could be null.
+	 *
+	 * @param out the output to write the flags to
+	 * @param flags the flags to write or null
+	 * @throws IOException if the flags could not be written
+	 */
+	protected static void writeFlags(DataOutput out, boolean[] flags) throws IOException {
+		out.writeInt(flags == null ? -1 : flags.length);
+		if (flags != null) {
+			for (int i=0; i < flags.length; i++) {
+				out.writeBoolean(flags[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the array of flags written by {@link #writeFlags} method.
+	 *
+	 * @param in the input to read the flags from
+	 * @return the flags read or null
+	 * @throws IOException if the flags could not be read
+	 */
+	protected static boolean[] readFlags(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		boolean[] flags = new boolean[length];
+		for (int i=0; i < length; i++) {
+			flags[i] = in.readBoolean();
+		}
+		return flags;
+	}
+
+	/**
+	 * @param dp the data provider
+	 * @return the SQL data types of the columns of the data provider
+	 * @throws DataException if any data access error occurred
+	 */
+	public static int[] getColumnTypes(DataProvider dp) throws DataException {
+		int[] columnTypes = new int[dp.getColumnCount()];
+		for (int i=0; i < columnTypes.length; i++) {
+			columnTypes[i] = dp.getColumnType(i+1);
+		}
+		return columnTypes;
+	}
+}
@@ -123,6 +123,15 @@ public class SummaryJoinLayout extends JoinLayout {
 			}
 		}
 		
+		if (keySourcesKnown) {
+			// The join of more data sources tells which of them contain the key of each row
+			targetBuilder.nextRow();
+			targetBuilder.dumpCell(0, "Rows in All Data Sources", OutputStyle.ROW_HEADER);
+			targetBuilder.shiftPosition(1);
+			targetBuilder.dumpCell(0, allSourcesRowCount, OutputFormat.DEFAULT);
+			targetBuilder.dumpCell(1, allSourcesRowCount/(double)totalRowCount, OutputFormat.PERCENTAGE_2_DECIMAL_DIGITS);
+		}
+		
 		targetBuilder.nextRow();
 		targetBuilder.dumpCell(0, "(" + dp1.getCaption() +") - Total Rows", OutputStyle.ROW_HEADER);
 		targetBuilder.shiftPosition(1);
@@ -400,6 +400,26 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 				} else if ("param".equals(localName)) {
 					dataSource.setParameter(getAttributeValue(atts, "name"), getAttributeValueWithParams(atts, "value"));
 					objectStack.push(ObjectType.NONE);
+				} else if ("pool".equals(localName)) {
+					if (getAttributeValue(atts, "enabled") != null) {
+						dataSource.setPoolEnabled(getAttributeValue(atts, "enabled"));
+					}
+					if (getAttributeValue(atts, "min") != null) {
+						dataSource.setPoolMinSize(getAttributeValueWithParams(atts, "min"));
+					}
+					if (getAttributeValue(atts, "max") != null) {
+						dataSource.setPoolMaxSize(getAttributeValueWithParams(atts, "max"));
+					}
+					if (getAttributeValue(atts, "idle-timeout") != null) {
+						dataSource.setPoolIdleTimeout(getAttributeValueWithParams(atts, "idle-timeout"));
+					}
+					if (getAttributeValue(atts, "wait-timeout") != null) {
+						dataSource.setPoolWaitTimeout(getAttributeValueWithParams(atts, "wait-timeout"));
+					}
+					if (getAttributeValue(atts, "validation-query") != null) {
+						dataSource.setPoolValidationQuery(getAttributeValueWithParams(atts, "validation-query"));
+					}
+					objectStack.push(ObjectType.NONE);
 				} else if ("init".equals(localName)) {
 					objectStack.push(ObjectType.INIT);
 				} else {
@@ -499,6 +519,12 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 					if (getAttributeValue(atts, "duplicates") != null) {
 						join.setDuplicates(getAttributeValue(atts, "duplicates"));
 					}
+					if (getAttributeValue(atts, "partitions") != null) {
+						join.setPartitions(getAttributeValue(atts, "partitions"));
+					}
+					if (getAttributeValue(atts, "partition-bounds") != null) {
+						join.setPartitionBounds(getAttributeValue(atts, "partition-bounds"));
+					}
 				} else if ("join".equals(localName)) {
 					log.warn("Use of <join> node is deprecated and might not work in the future releases.");
 					log.warn("Please use <comparison> node instead.");
@@ -521,6 +547,12 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 					if (getAttributeValue(atts, "duplicates") != null) {
 						join.setDuplicates(getAttributeValue(atts, "duplicates"));
 					}
+					if (getAttributeValue(atts, "partitions") != null) {
+						join.setPartitions(getAttributeValue(atts, "partitions"));
+					}
+					if (getAttributeValue(atts, "partition-bounds") != null) {
+						join.setPartitionBounds(getAttributeValue(atts, "partition-bounds"));
+					}
 					if (getAttributeValue(atts, "target") != null) {
 						log.warn("Use of 'target' attribute in <join> node is deprecated and might not work in the future releases.");
 						log.warn("Please use <layout> node instead.");
@@ -569,10 +601,6 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 				break;
 			case JOIN:
 				if ("sql".equals(localName)) {
-					if (join.getSqlQueries().size() > 1) {
-						throw new SAXException(new LigretoException(
-								"There could be only two sql queries specified for the join."));
-					}
 					objectStack.push(ObjectType.JOIN_SQL);
 					sql = new SqlNode(ligretoNode);
 					if (getAttributeValue(atts, "data-source") != null) {
@@ -631,6 +659,9 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 					if (getAttributeValue(atts, "append") != null) {
 						layout.setAppend(getAttributeValue(atts, "append"));
 					}
+					if (getAttributeValue(atts, "sources") != null) {
+						layout.setSources(getAttributeValue(atts, "sources"));
+					}
 					layout.setResult(getAttributeValue(atts, "result"));
 				}
 				break;
@@ -739,6 +770,12 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 					ptpTransfer = new TransferNode(ligretoNode);
 					ptpTransfer.setQuoteColumnNames(getAttributeValue(atts, "quote_column_names"));
 					ptpTransfer.setResult(getAttributeValue(atts, "result"));
+					ptpTransfer.setParallelism(getAttributeValue(atts, "parallelism"));
+					ptpTransfer.setPipelined(getAttributeValue(atts, "pipelined"));
+					ptpTransfer.setWatermark(getAttributeValue(atts, "watermark"));
+					ptpTransfer.setCheckpoint(getAttributeValue(atts, "checkpoint"));
+					ptpTransfer.setCheckpointKey(getAttributeValue(atts, "checkpoint-key"));
+					ptpTransfer.setResume(getAttributeValue(atts, "resume"));
 					ptpNode.addTransferNode(ptpTransfer);
 				} else if ("postprocess".equals(localName)) {
 					objectStack.push(ObjectType.PTP_POSTPROCESS);
@@ -786,6 +823,18 @@ public class SAXContentHandler implements ContentHandler, DTDHandler, ErrorHandl
 					if (getAttributeValue(atts, "commitInterval") != null) {
 						ptpTarget.setCommitInterval(getAttributeValue(atts, "commitInterval"));
 					}
+					if (getAttributeValue(atts, "batchSize") != null) {
+						ptpTarget.setBatchSize(getAttributeValue(atts, "batchSize"));
+					}
+					if (getAttributeValue(atts, "bulkLoad") != null) {
+						ptpTarget.setBulkLoad(getAttributeValue(atts, "bulkLoad"));
+					}
+					if (getAttributeValue(atts, "keyColumns") != null) {
+						ptpTarget.setKeyColumns(getAttributeValue(atts, "keyColumns"));
+					}
+					if (getAttributeValue(atts, "merge") != null) {
+						ptpTarget.setMerge(getAttributeValue(atts, "merge"));
+					}
 					ptpTransfer.setTargetNode(ptpTarget);
 				} else if ("sql".equals(localName)) {
 					objectStack.push(ObjectType.PTP_TRANSFER_SQL);
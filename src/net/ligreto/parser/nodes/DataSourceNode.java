@@ -4,6 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import net.ligreto.exceptions.InvalidValueException;
+import net.ligreto.util.MiscUtils;
+
 /**
  * This class holds the configuration related to data source.
  * 
@@ -19,6 +22,28 @@ public class DataSourceNode extends Node {
 	protected Properties parameters;
 	protected List<SqlNode> sqlQueries = new ArrayList<SqlNode>();
 	
+	/**
+	 * Indicates whether the connections to the data source are pooled. The pooling is disabled
+	 * by default since the session state changed by the queries is visible to the next user
+	 * of the pooled connection.
+	 */
+	protected boolean poolEnabled = false;
+	
+	/** The number of connections opened when the pool is first used. */
+	protected int poolMinSize = 0;
+	
+	/** The maximal number of open connections; 0 means unlimited. */
+	protected int poolMaxSize = 0;
+	
+	/** The time in seconds after which the idle pooled connections are closed; 0 keeps them open. */
+	protected int poolIdleTimeout = 300;
+	
+	/** The time in seconds to wait for the free pooled connection; 0 waits forever. */
+	protected int poolWaitTimeout = 60;
+	
+	/** The query validating the pooled connection before it is reused or null. */
+	protected String poolValidationQuery = null;
+	
 	/**
 	 * Creates the instance of DataSourceNode class.
 	 */
@@ -111,4 +136,89 @@ public class DataSourceNode extends Node {
 	public Iterable<SqlNode> sqlQueries() {
 		return sqlQueries;
 	}
+
+	/**
+	 * @return true if the connections to the data source are pooled
+	 */
+	public boolean isPoolEnabled() {
+		return poolEnabled;
+	}
+
+	/**
+	 * @param poolEnabled the string value indicating whether the connections are pooled
+	 * @throws InvalidValueException if the value is not a valid boolean value
+	 */
+	public void setPoolEnabled(String poolEnabled) throws InvalidValueException {
+		this.poolEnabled = MiscUtils.parseBoolean(poolEnabled);
+	}
+
+	/**
+	 * @return the number of connections opened when the pool is first used
+	 */
+	public int getPoolMinSize() {
+		return poolMinSize;
+	}
+
+	/**
+	 * @param poolMinSize the number of connections to parse and set
+	 */
+	public void setPoolMinSize(String poolMinSize) {
+		this.poolMinSize = Integer.parseInt(poolMinSize);
+	}
+
+	/**
+	 * @return the maximal number of open connections; 0 means unlimited
+	 */
+	public int getPoolMaxSize() {
+		return poolMaxSize;
+	}
+
+	/**
+	 * @param poolMaxSize the number of connections to parse and set
+	 */
+	public void setPoolMaxSize(String poolMaxSize) {
+		this.poolMaxSize = Integer.parseInt(poolMaxSize);
+	}
+
+	/**
+	 * @return the time in seconds after which the idle pooled connections are closed
+	 */
+	public int getPoolIdleTimeout() {
+		return poolIdleTimeout;
+	}
+
+	/**
+	 * @param poolIdleTimeout the time in seconds to parse and set
+	 */
+	public void setPoolIdleTimeout(String poolIdleTimeout) {
+		this.poolIdleTimeout = Integer.parseInt(poolIdleTimeout);
+	}
+
+	/**
+	 * @return the time in seconds to wait for the free pooled connection
+	 */
+	public int getPoolWaitTimeout() {
+		return poolWaitTimeout;
+	}
+
+	/**
+	 * @param poolWaitTimeout the time in seconds to parse and set
+	 */
+	public void setPoolWaitTimeout(String poolWaitTimeout) {
+		this.poolWaitTimeout = Integer.parseInt(poolWaitTimeout);
+	}
+
+	/**
+	 * @return the query validating the pooled connection before it is reused or null
+	 */
+	public String getPoolValidationQuery() {
+		return poolValidationQuery;
+	}
+
+	/**
+	 * @param poolValidationQuery the query validating the pooled connection before it is reused
+	 */
+	public void setPoolValidationQuery(String poolValidationQuery) {
+		this.poolValidationQuery = poolValidationQuery;
+	}
 }
@@ -11,7 +11,7 @@ import java.util.List;
  *
  */
 public class JoinNode extends Node {
-	public enum SortingStrategy {INTERNAL, EXTERNAL};
+	public enum SortingStrategy {INTERNAL, EXTERNAL, HASH};
 	public enum DuplicatesStrategy {FAIL, PROCESS};
 	protected List<SqlNode> sqlQueries = new ArrayList<SqlNode>();
 	protected List<LayoutNode> layouts = new ArrayList<LayoutNode>();
@@ -22,8 +22,11 @@ public class JoinNode extends Node {
 	protected SortingStrategy sortingStrategy = SortingStrategy.EXTERNAL;
 	protected ReportNode reportNode;
 	protected Attitude collation = Attitude.FAIL;
+	protected boolean collationSampled = false;
 	protected DuplicatesStrategy duplicates = DuplicatesStrategy.FAIL;
 	protected int orderNumber;
+	protected int partitions = 1;
+	protected String partitionBounds;
 	
 	public JoinNode(LigretoNode ligretoNode) {
 		super(ligretoNode);
@@ -166,6 +169,8 @@ public class JoinNode extends Node {
 			this.sortingStrategy = SortingStrategy.INTERNAL;
 		} else if ("external".equals(sortingStrategy)) {
 			this.sortingStrategy = SortingStrategy.EXTERNAL;			
+		} else if ("hash".equals(sortingStrategy)) {
+			this.sortingStrategy = SortingStrategy.HASH;
 		} else {
 			throw new IllegalArgumentException("The sort could not be \"" + sortingStrategy + "\"");
 		}
@@ -177,20 +182,33 @@ public class JoinNode extends Node {
 
 	public void setCollation(Attitude collation) {
 		this.collation = collation;
+		this.collationSampled = false;
 	}
 	
 	public void setCollation(String collation) {
+		collationSampled = false;
 		if ("ignore".equals(collation)) {
 			this.collation = Attitude.IGNORE;
 		} else if ("dump".equals(collation)) {
 			this.collation = Attitude.DUMP;
 		} else if ("fail".equals(collation)) {
 			this.collation = Attitude.FAIL;
+		} else if ("sample".equals(collation)) {
+			this.collation = Attitude.FAIL;
+			collationSampled = true;
 		} else {
 			throw new IllegalArgumentException("Wrong value specified as attitude in case of collation errors: " + collation);
 		}
 	}
 
+	/**
+	 * @return true if only every N-th row is checked for the collation errors; the collation
+	 *         errors found cause the failure
+	 */
+	public boolean isCollationSampled() {
+		return collationSampled;
+	}
+
 	public DuplicatesStrategy getDuplicates() {
 		return duplicates;
 	}
@@ -208,6 +226,74 @@ public class JoinNode extends Node {
 			throw new IllegalArgumentException("Wrong value specified as attitude in case of collation errors: " + collation);
 		}
 	}
+
+	/**
+	 * @return the number of key ranges the join should be split into
+	 */
+	public int getPartitions() {
+		return partitions;
+	}
+
+	/**
+	 * @param partitions the number of key ranges the join should be split into
+	 */
+	public void setPartitions(int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("The number of partitions has to be a positive number: " + partitions);
+		}
+		this.partitions = partitions;
+	}
+
+	/**
+	 * @param partitions the number of key ranges the join should be split into
+	 */
+	public void setPartitions(String partitions) {
+		try {
+			setPartitions(Integer.parseInt(ligretoNode.substituteParams(partitions).trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Wrong value specified as the number of partitions: " + partitions, e);
+		}
+	}
+
+	/**
+	 * @param partitionBounds the comma separated list of SQL literals splitting the first key column into ranges
+	 */
+	public void setPartitionBounds(String partitionBounds) {
+		this.partitionBounds = partitionBounds;
+	}
+
+	/**
+	 * Splits the partition bounds on commas outside of the quoted string literals.
+	 * 
+	 * @return the list of SQL literals splitting the first key column into ranges or null if not specified
+	 */
+	public List<String> getPartitionBounds() {
+		if (partitionBounds == null) {
+			return null;
+		}
+		List<String> result = new ArrayList<String>();
+		String bounds = ligretoNode.substituteParams(partitionBounds);
+		StringBuilder bound = new StringBuilder();
+		boolean quoted = false;
+		for (int i=0; i < bounds.length(); i++) {
+			char c = bounds.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (c == ',' && !quoted) {
+				if (bound.toString().trim().length() > 0) {
+					result.add(bound.toString().trim());
+				}
+				bound.setLength(0);
+				continue;
+			}
+			bound.append(c);
+		}
+		if (bound.toString().trim().length() > 0) {
+			result.add(bound.toString().trim());
+		}
+		return result;
+	}
+
 	public void addLayout(LayoutNode layout) {
 		layouts.add(layout);
 	}
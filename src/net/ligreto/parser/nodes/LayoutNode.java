@@ -33,6 +33,7 @@ public class LayoutNode extends Node {
 	protected String groupBy;
 	protected ResultNode resultNode;
 	protected Integer limit = null;
+	protected String sources;
 	
 	public LayoutNode(LigretoNode ligretoNode) {
 		super(ligretoNode);
@@ -325,6 +326,34 @@ public class LayoutNode extends Node {
 		}
 	}
 
+	/**
+	 * @param sources the comma separated pair of query indices compared by the layout
+	 */
+	public void setSources(String sources) {
+		this.sources = sources;
+	}
+
+	/**
+	 * @return the pair of query indices (starting from 1) compared by the layout
+	 */
+	public int[] getSources() {
+		if (sources == null) {
+			return new int[] {1, 2};
+		}
+		String[] sValues = ligretoNode.substituteParams(sources).split(",");
+		if (sValues.length != 2) {
+			throw new IllegalArgumentException("The layout has to compare exactly two sources: " + sources);
+		}
+		int values[] = new int[sValues.length];
+		for (int i=0; i < values.length; i++) {
+			values[i] = Integer.parseInt(sValues[i].trim());
+		}
+		if (values[0] < 1 || values[1] < 1 || values[0] == values[1]) {
+			throw new IllegalArgumentException("The layout has to compare two different sources: " + sources);
+		}
+		return values;
+	}
+
 	/**
 	 * @return the result node
 	 */
@@ -12,7 +12,7 @@ import net.ligreto.util.MiscUtils;
  *
  */
 public class ReportNode extends Node {
-	public enum ReportType {EXCEL, EXCELSTREAM, HTML, TEX, XML};
+	public enum ReportType {EXCEL, EXCELSTREAM, HTML, TEX, XML, CSV};
 	
 	protected String name;
 	protected String template;
@@ -39,6 +39,8 @@ public class ReportNode extends Node {
 			this.reportType = ReportType.TEX;
 		} else if ("xml".equalsIgnoreCase(reportType)) {
 			this.reportType = ReportType.XML;
+		} else if ("csv".equalsIgnoreCase(reportType)) {
+			this.reportType = ReportType.CSV;
 		} else {
 			throw new ReportException("Unknown report type: \"" + reportType + "\".");
 		}
@@ -12,6 +12,10 @@ public class TargetNode extends Node {
 	protected boolean recreate = false;
 	protected boolean truncate = false;
 	protected int commitInterval = 1;
+	protected int batchSize = 1;
+	protected boolean bulkLoad = false;
+	protected String[] keyColumns = null;
+	protected boolean merge = false;
 	
 	public TargetNode(LigretoNode aLigretoNode, TransferNode aTransferNode) {
 		super(aLigretoNode);
@@ -143,4 +147,95 @@ public class TargetNode extends Node {
 		this.commitInterval = Integer.parseInt(commitInterval);
 	}
 
+	/**
+	 * @return the number of rows inserted by a single batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize the number of rows inserted by a single batch
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param batchSize the batch size to parse and set
+	 */
+	public void setBatchSize(String batchSize) {
+		this.batchSize = Integer.parseInt(batchSize);
+	}
+
+	/**
+	 * @return whether the native bulk load of the target database should be used
+	 */
+	public boolean isBulkLoad() {
+		return bulkLoad;
+	}
+
+	/**
+	 * @param bulkLoad whether the native bulk load of the target database should be used
+	 */
+	public void setBulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+	}
+
+	/**
+	 * Parses the string value into <code>bulkLoad</code> field
+	 * @param bulkLoad The string value to parse
+	 * @throws InvalidValueException 
+	 */
+	public void setBulkLoad(String bulkLoad) throws InvalidValueException {
+		this.bulkLoad = MiscUtils.parseBoolean(bulkLoad);
+	}
+
+	/**
+	 * @return the names of the key columns of the rows replaced by the transfer or null if the rows are just inserted
+	 */
+	public String[] getKeyColumns() {
+		return keyColumns;
+	}
+
+	/**
+	 * @param keyColumns the names of the key columns of the rows replaced by the transfer
+	 */
+	public void setKeyColumns(String[] keyColumns) {
+		this.keyColumns = keyColumns;
+	}
+
+	/**
+	 * @param keyColumns the comma separated list of the key columns to parse and set
+	 */
+	public void setKeyColumns(String keyColumns) {
+		String[] columns = keyColumns.split(",");
+		for (int i=0; i < columns.length; i++) {
+			columns[i] = columns[i].trim();
+		}
+		this.keyColumns = columns;
+	}
+
+	/**
+	 * @return whether the rows with the same key should be updated instead of being replaced
+	 */
+	public boolean isMerge() {
+		return merge;
+	}
+
+	/**
+	 * @param merge whether the rows with the same key should be updated instead of being replaced
+	 */
+	public void setMerge(boolean merge) {
+		this.merge = merge;
+	}
+
+	/**
+	 * Parses the string value into <code>merge</code> field
+	 * @param merge The string value to parse
+	 * @throws InvalidValueException 
+	 */
+	public void setMerge(String merge) throws InvalidValueException {
+		this.merge = MiscUtils.parseBoolean(merge);
+	}
 }
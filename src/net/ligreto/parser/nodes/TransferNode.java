@@ -9,6 +9,12 @@ public class TransferNode extends Node {
 	protected SqlNode sqlNode;
 	protected boolean quoteColumnNames;
 	protected boolean result;
+	protected int parallelism = 1;
+	protected boolean pipelined = true;
+	protected String watermark = null;
+	protected boolean checkpoint = false;
+	protected String checkpointKey = null;
+	protected boolean resume = false;
 	
 	public TransferNode(LigretoNode aLigretoNode) {
 		super(aLigretoNode);
@@ -93,4 +99,107 @@ public class TransferNode extends Node {
 			this.quoteColumnNames = false;
 		}
 	}
+
+	/**
+	 * @return the number of writer threads inserting the rows into the target
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param parallelism the number of writer threads to parse and set
+	 */
+	public void setParallelism(String parallelism) {
+		if (parallelism != null) {
+			this.parallelism = Integer.parseInt(parallelism);
+		} else {
+			this.parallelism = 1;
+		}
+	}
+
+	/**
+	 * @return true if the rows are inserted by the writer thread while the source is read
+	 */
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * @param pipelined the pipelined flag to set parsed to boolean
+	 * @throws InvalidValueException 
+	 */
+	public void setPipelined(String pipelined) throws InvalidValueException {
+		if (pipelined != null) {
+			this.pipelined = MiscUtils.parseBoolean(pipelined);
+		} else {
+			this.pipelined = true;
+		}
+	}
+
+	/**
+	 * @return the name of the watermark column of the incremental transfer or null if all the rows are transferred
+	 */
+	public String getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * @param watermark the name of the watermark column of the incremental transfer
+	 */
+	public void setWatermark(String watermark) {
+		this.watermark = watermark;
+	}
+
+	/**
+	 * @return true if the checkpoints of the transfer should be stored at each commit
+	 */
+	public boolean isCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @param checkpoint the checkpoint flag to set parsed to boolean
+	 * @throws InvalidValueException 
+	 */
+	public void setCheckpoint(String checkpoint) throws InvalidValueException {
+		if (checkpoint != null) {
+			this.checkpoint = MiscUtils.parseBoolean(checkpoint);
+		} else {
+			this.checkpoint = false;
+		}
+	}
+
+	/**
+	 * @return the name of the unique key column the source rows are ordered by for the checkpoints or null
+	 */
+	public String getCheckpointKey() {
+		return checkpointKey;
+	}
+
+	/**
+	 * @param checkpointKey the name of the unique key column the source rows are ordered by for the checkpoints
+	 */
+	public void setCheckpointKey(String checkpointKey) {
+		this.checkpointKey = checkpointKey;
+	}
+
+	/**
+	 * @return true if the transfer should continue from the stored checkpoint
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * @param resume the resume flag to set parsed to boolean
+	 * @throws InvalidValueException 
+	 */
+	public void setResume(String resume) throws InvalidValueException {
+		if (resume != null) {
+			this.resume = MiscUtils.parseBoolean(resume);
+		} else {
+			this.resume = false;
+		}
+	}
 }
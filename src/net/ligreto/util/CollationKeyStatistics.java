@@ -0,0 +1,140 @@
+package net.ligreto.util;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * The statistics of the precomputed collation keys. Each {@link LigretoComparator} instance
+ * counts into its own statistics object, so the counting does not need any synchronization,
+ * and the counts are added into the statistics of the template instance when the instance
+ * is dropped.
+ *
+ * The time saved is estimated from the sampled comparisons where both the collation keys
+ * and the collator were used to compare the same values.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public class CollationKeyStatistics {
+
+	/** Every SAMPLE_INTERVAL-th comparison is timed also by the collator. */
+	protected static final int SAMPLE_INTERVAL = 256;
+
+	/** The statistics the counts are added into or null. */
+	protected CollationKeyStatistics parent;
+
+	/** The number of collation keys computed. */
+	protected long keysComputed = 0;
+
+	/** The time spent computing the collation keys in nanoseconds. */
+	protected long computeNanos = 0;
+
+	/** The number of comparisons done by the collation keys. */
+	protected long hits = 0;
+
+	/** The number of comparisons done by the collator since the collation keys were not available. */
+	protected long misses = 0;
+
+	/** The number of sampled comparisons. */
+	protected long samples = 0;
+
+	/** The time of the sampled comparisons done by the collation keys in nanoseconds. */
+	protected long sampledKeyNanos = 0;
+
+	/** The time of the sampled comparisons done by the collator in nanoseconds. */
+	protected long sampledCollatorNanos = 0;
+
+	/**
+	 * Creates the statistics.
+	 *
+	 * @param parent the statistics the counts are added into by {@link #flush()} or null
+	 */
+	public CollationKeyStatistics(CollationKeyStatistics parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @param nanos the time spent computing the collation key
+	 */
+	public void keyComputed(long nanos) {
+		keysComputed++;
+		computeNanos += nanos;
+	}
+
+	/**
+	 * Counts the comparison done by the collation keys.
+	 *
+	 * @return true if the comparison should be timed also by the collator
+	 */
+	public boolean hit() {
+		return ++hits % SAMPLE_INTERVAL == 0;
+	}
+
+	/** Counts the comparison done by the collator. */
+	public void miss() {
+		misses++;
+	}
+
+	/**
+	 * @param keyNanos the time of the comparison done by the collation keys
+	 * @param collatorNanos the time of the comparison of the same values done by the collator
+	 */
+	public void sample(long keyNanos, long collatorNanos) {
+		samples++;
+		sampledKeyNanos += keyNanos;
+		sampledCollatorNanos += collatorNanos;
+	}
+
+	/**
+	 * Adds the counts into the parent statistics and resets them.
+	 */
+	public void flush() {
+		if (parent == null) {
+			return;
+		}
+		synchronized (parent) {
+			parent.keysComputed += keysComputed;
+			parent.computeNanos += computeNanos;
+			parent.hits += hits;
+			parent.misses += misses;
+			parent.samples += samples;
+			parent.sampledKeyNanos += sampledKeyNanos;
+			parent.sampledCollatorNanos += sampledCollatorNanos;
+		}
+		keysComputed = 0;
+		computeNanos = 0;
+		hits = 0;
+		misses = 0;
+		samples = 0;
+		sampledKeyNanos = 0;
+		sampledCollatorNanos = 0;
+	}
+
+	/**
+	 * @return the ratio of the comparisons done by the collation keys
+	 */
+	public synchronized double getHitRate() {
+		return hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+	}
+
+	/**
+	 * @return the estimated time saved by the collation keys in nanoseconds including
+	 *         the time spent computing them; it is negative if the keys did not pay off
+	 */
+	public synchronized long getEstimatedNanosSaved() {
+		if (samples == 0) {
+			return -computeNanos;
+		}
+		return (sampledCollatorNanos - sampledKeyNanos) * hits / samples - computeNanos;
+	}
+
+	/**
+	 * Logs the statistics.
+	 *
+	 * @param log the log to use
+	 */
+	public synchronized void info(Log log) {
+		log.info("Collation keys computed: " + keysComputed + " in " + computeNanos / 1000000 + " ms; "
+				+ "comparisons by keys: " + hits + "; by collator: " + misses + "; hit rate: "
+				+ Math.round(getHitRate() * 100) + "%; estimated time saved: " + getEstimatedNanosSaved() / 1000000 + " ms");
+	}
+}
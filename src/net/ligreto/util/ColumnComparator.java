@@ -0,0 +1,263 @@
+package net.ligreto.util;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Comparator;
+
+import net.ligreto.data.DataProvider;
+import net.ligreto.exceptions.DataException;
+import net.ligreto.exceptions.DataTypeMismatchException;
+
+/**
+ * The comparator of the pair of columns bound to the column indices and specialized for
+ * the column data types. The instances are created by {@link LigretoComparator#compile}
+ * once the column types are known, so the comparison of each row does not need to dispatch
+ * on the data type and the values are read by the typed getters of the data provider;
+ * the numeric values are read as primitives.
+ * The comparison results are the same as of {@link LigretoComparator#compare(DataProvider, int, DataProvider, int)}.
+ *
+ * @author Julius Stroffek
+ *
+ */
+public abstract class ColumnComparator {
+
+	/** The comparator providing the null ordering. */
+	protected LigretoComparator ligretoComparator;
+
+	/** The index of the column in the first data provider. */
+	protected int index1;
+
+	/** The index of the column in the second data provider. */
+	protected int index2;
+
+	/**
+	 * @param ligretoComparator the comparator providing the null ordering
+	 * @param index1 the index of the column in the first data provider
+	 * @param index2 the index of the column in the second data provider
+	 */
+	protected ColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+		this.ligretoComparator = ligretoComparator;
+		this.index1 = index1;
+		this.index2 = index2;
+	}
+
+	/**
+	 * Compares the column values of the current rows of the data providers.
+	 *
+	 * @param dp1 the first data provider
+	 * @param dp2 the second data provider
+	 * @return -1, 0 or 1 if the first value is lower, equal or greater than the second value
+	 * @throws DataException if any data access error occurred
+	 * @throws DataTypeMismatchException if the values could not be compared
+	 */
+	public abstract int compare(DataProvider dp1, DataProvider dp2) throws DataException, DataTypeMismatchException;
+
+	/**
+	 * Creates the comparator for the specified columns.
+	 *
+	 * @param ligretoComparator the comparator which settings should be used
+	 * @param comparator the collator used for the string comparisons or null
+	 * @param dp1 the first data provider
+	 * @param index1 the index of the column in the first data provider
+	 * @param dp2 the second data provider
+	 * @param index2 the index of the column in the second data provider
+	 * @return the comparator specialized for the column types
+	 * @throws DataException if any data access error occurred
+	 */
+	public static ColumnComparator create(LigretoComparator ligretoComparator, Comparator<Object> comparator,
+			DataProvider dp1, int index1, DataProvider dp2, int index2) throws DataException {
+		int columnType = dp1.getColumnType(index1);
+		if (columnType != dp2.getColumnType(index2)) {
+			return new GenericColumnComparator(ligretoComparator, index1, index2);
+		}
+		switch (columnType) {
+		case Types.BIGINT:
+			return new LongColumnComparator(ligretoComparator, index1, index2);
+		case Types.INTEGER:
+			return new IntegerColumnComparator(ligretoComparator, index1, index2);
+		case Types.DOUBLE:
+		case Types.FLOAT:
+			return new DoubleColumnComparator(ligretoComparator, index1, index2);
+		case Types.TIMESTAMP:
+			return new TimestampColumnComparator(ligretoComparator, index1, index2);
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return new BigDecimalColumnComparator(ligretoComparator, index1, index2);
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+			if (ligretoComparator.usesCollationKeys()
+					&& MiscUtils.arrayContains(dp1.getKeyIndices(), index1)
+					&& MiscUtils.arrayContains(dp2.getKeyIndices(), index2)) {
+				return new CollationKeyColumnComparator(ligretoComparator, index1, index2);
+			}
+			if (comparator != null) {
+				return new CollatorColumnComparator(ligretoComparator, comparator, index1, index2);
+			}
+			return new StringColumnComparator(ligretoComparator, index1, index2);
+		default:
+			return new GenericColumnComparator(ligretoComparator, index1, index2);
+		}
+	}
+
+	/** The comparator of the BIGINT columns. */
+	protected static class LongColumnComparator extends ColumnComparator {
+		protected LongColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			long value1 = dp1.getLongValue(index1);
+			boolean null1 = dp1.wasNull();
+			long value2 = dp2.getLongValue(index2);
+			boolean null2 = dp2.wasNull();
+			if (null1 || null2) {
+				return ligretoComparator.compareNulls(null1, null2);
+			}
+			return ligretoComparator.compare(value1, value2);
+		}
+	}
+
+	/** The comparator of the INTEGER columns. */
+	protected static class IntegerColumnComparator extends ColumnComparator {
+		protected IntegerColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			int value1 = dp1.getIntValue(index1);
+			boolean null1 = dp1.wasNull();
+			int value2 = dp2.getIntValue(index2);
+			boolean null2 = dp2.wasNull();
+			if (null1 || null2) {
+				return ligretoComparator.compareNulls(null1, null2);
+			}
+			return ligretoComparator.compare((long) value1, (long) value2);
+		}
+	}
+
+	/** The comparator of the DOUBLE and FLOAT columns. */
+	protected static class DoubleColumnComparator extends ColumnComparator {
+		protected DoubleColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			double value1 = dp1.getDoubleValue(index1);
+			boolean null1 = dp1.wasNull();
+			double value2 = dp2.getDoubleValue(index2);
+			boolean null2 = dp2.wasNull();
+			if (null1 || null2) {
+				return ligretoComparator.compareNulls(null1, null2);
+			}
+			return ligretoComparator.compare(value1, value2);
+		}
+	}
+
+	/** The comparator of the TIMESTAMP columns. */
+	protected static class TimestampColumnComparator extends ColumnComparator {
+		protected TimestampColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			Timestamp value1 = dp1.getTimestamp(index1);
+			Timestamp value2 = dp2.getTimestamp(index2);
+			if (value1 == null || value2 == null) {
+				return ligretoComparator.compareNulls(value1 == null, value2 == null);
+			}
+			return ligretoComparator.compare(value1, value2);
+		}
+	}
+
+	/** The comparator of the DECIMAL and NUMERIC columns. */
+	protected static class BigDecimalColumnComparator extends ColumnComparator {
+		protected BigDecimalColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			BigDecimal value1 = dp1.getBigDecimal(index1);
+			BigDecimal value2 = dp2.getBigDecimal(index2);
+			if (value1 == null || value2 == null) {
+				return ligretoComparator.compareNulls(value1 == null, value2 == null);
+			}
+			return value1.compareTo(value2);
+		}
+	}
+
+	/** The comparator of the character columns compared by their trimmed values. */
+	protected static class StringColumnComparator extends ColumnComparator {
+		protected StringColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			String value1 = dp1.getString(index1);
+			String value2 = dp2.getString(index2);
+			if (value1 == null || value2 == null) {
+				return ligretoComparator.compareNulls(value1 == null, value2 == null);
+			}
+			int result = value1.trim().compareTo(value2.trim());
+			if (result > 0) {
+				return 1;
+			} else if (result < 0) {
+				return -1;
+			}
+			return 0;
+		}
+	}
+
+	/** The comparator of the character columns compared by the collator. */
+	protected static class CollatorColumnComparator extends ColumnComparator {
+		/** The collator used for the comparisons. */
+		protected Comparator<Object> comparator;
+
+		protected CollatorColumnComparator(LigretoComparator ligretoComparator, Comparator<Object> comparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+			this.comparator = comparator;
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			String value1 = dp1.getString(index1);
+			String value2 = dp2.getString(index2);
+			if (value1 == null || value2 == null) {
+				return ligretoComparator.compareNulls(value1 == null, value2 == null);
+			}
+			return comparator.compare(value1.trim(), value2.trim());
+		}
+	}
+
+	/** The comparator of the character key columns compared by their precomputed collation keys. */
+	protected static class CollationKeyColumnComparator extends ColumnComparator {
+		protected CollationKeyColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException {
+			return ligretoComparator.compare(dp1.getString(index1), dp1.getCollationKey(index1), dp2.getString(index2), dp2.getCollationKey(index2));
+		}
+	}
+
+	/** The comparator of the columns of other or different types using the generic comparison. */
+	protected static class GenericColumnComparator extends ColumnComparator {
+		protected GenericColumnComparator(LigretoComparator ligretoComparator, int index1, int index2) {
+			super(ligretoComparator, index1, index2);
+		}
+
+		@Override
+		public int compare(DataProvider dp1, DataProvider dp2) throws DataException, DataTypeMismatchException {
+			return ligretoComparator.compare(dp1, index1, dp2, index2);
+		}
+	}
+}
@@ -3,9 +3,9 @@ package net.ligreto.util;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.Comparator;
-import java.util.Hashtable;
-import java.util.Map;
 
 import org.apache.commons.logging.Log;
 
@@ -20,8 +20,9 @@ import net.ligreto.exceptions.LigretoException;
  * Provides the compare functions for the whole ligreto code. It is important to keep
  * the ordering (collating) the same across various functions.
  * 
- * The class holds separate instance for each thread as each thread might be running
- * different ligreto operations at the same time. The ordering could be adjusted by
+ * The instance is passed explicitly to the code comparing the data and it should be used
+ * only by a single thread. The worker threads use their own copies created by
+ * {@link #LigretoComparator(LigretoComparator)}. The ordering could be adjusted by
  * the user in the configuration file and it could change during processing the same
  * configuration.
  * 
@@ -39,49 +40,51 @@ public class LigretoComparator {
 	/** The collator object used for comparisons. */
 	protected Comparator<Object> comparator;
 	
-	/** The map holding instances for the threads. */
-	private static Map<Long, LigretoComparator> instanceMap = new Hashtable<Long, LigretoComparator>();
-	
 	/** The ligreto global parameters. */
 	protected LigretoParameters ligretoParameters = null;
 	
-	/** Only static method could create instances. */
-	private LigretoComparator() {
-	}
+	/** The statistics of the precomputed collation keys; null if the collation keys are not used. */
+	protected CollationKeyStatistics collationKeyStatistics = null;
 	
 	/**
-	 * @return The instance for the thread in which the function was called.
+	 * Creates the comparator with the default settings.
+	 * 
+	 * @param ligretoParameters the ligreto global parameters
 	 */
-	public static LigretoComparator getInstance(LigretoParameters ligretoParameters) {
-		long threadId = Thread.currentThread().getId();
-		LigretoComparator instance = instanceMap.get(threadId);
-		if (instance == null) {
-			instance = new LigretoComparator();
-			instanceMap.put(threadId, instance);
-		}
-		instance.ligretoParameters = ligretoParameters;
-		return instance;
+	public LigretoComparator(LigretoParameters ligretoParameters) {
+		this.ligretoParameters = ligretoParameters;
 	}
 	
 	/**
-	 * @return The instance for the thread in which the function was called.
+	 * Creates the comparator with the same settings as the specified instance. This is used
+	 * to compare the data in the worker threads the same way as in the thread that created them.
+	 * The created instance counts the collation key statistics into its own object which is added
+	 * into the statistics of the template by {@link #release()}.
+	 * 
+	 * @param template the instance which settings should be used
 	 */
-	public static LigretoComparator getInstance() {
-		long threadId = Thread.currentThread().getId();
-		LigretoComparator instance = instanceMap.get(threadId);
-		if (instance == null) {
-			throw new RuntimeException("LigretoComparator was not previously created. Use getInstance(LigretoParameters) to create the object first.");
+	public LigretoComparator(LigretoComparator template) {
+		this.ligretoParameters = template.ligretoParameters;
+		this.nullOrdering = template.nullOrdering;
+		if (template.comparator instanceof Collator) {
+			// The collator implementations are not designed for concurrent use
+			this.comparator = (Collator) ((Collator) template.comparator).clone();
+		} else {
+			this.comparator = template.comparator;
+		}
+		if (template.collationKeyStatistics != null) {
+			this.collationKeyStatistics = new CollationKeyStatistics(template.collationKeyStatistics);
 		}
-		return instance;
 	}
 	
 	/**
-	 * It will drop the comparator instance that is stored for the thread
-	 * in which the function was called.
+	 * Adds the statistics counted by this instance into the statistics of the instance
+	 * it was created from. It should be called when the thread using the instance finishes.
 	 */
-	public static void dropInstance() {
-		long threadId = Thread.currentThread().getId();
-		instanceMap.remove(threadId);
+	public void release() {
+		if (collationKeyStatistics != null) {
+			collationKeyStatistics.flush();
+		}
 	}
 	
 	/**
@@ -92,6 +95,53 @@ public class LigretoComparator {
 		this.comparator = comparator;
 	}
 
+	/**
+	 * @return the collator used for the string comparisons or null
+	 */
+	public Comparator<Object> getComparator() {
+		return comparator;
+	}
+
+	/**
+	 * Enables the precomputed collation keys of the string key columns. The collation keys
+	 * could be used only if the comparator is the collator.
+	 * 
+	 * @param collationKeyStatistics the statistics to count into; null disables the collation keys
+	 */
+	public void setCollationKeyStatistics(CollationKeyStatistics collationKeyStatistics) {
+		this.collationKeyStatistics = collationKeyStatistics;
+	}
+
+	/**
+	 * @return the statistics of the precomputed collation keys; null if the collation keys are not used
+	 */
+	public CollationKeyStatistics getCollationKeyStatistics() {
+		return collationKeyStatistics;
+	}
+
+	/**
+	 * @return true if the collation keys should be precomputed for the string key columns
+	 */
+	public boolean usesCollationKeys() {
+		return collationKeyStatistics != null && comparator instanceof Collator;
+	}
+
+	/**
+	 * Computes the collation key of the specified value.
+	 * 
+	 * @param value the value
+	 * @return the collation key of the trimmed value or null if the collation keys are not used
+	 */
+	public CollationKey getCollationKey(String value) {
+		if (value == null || !usesCollationKeys()) {
+			return null;
+		}
+		long start = System.nanoTime();
+		CollationKey key = ((Collator) comparator).getCollationKey(value.trim());
+		collationKeyStatistics.keyComputed(System.nanoTime() - start);
+		return key;
+	}
+
 	/**
 	 * Determines whether the first entry should be lower or higher than the second entry
 	 * based on the current null ordering policy. If both values are null or both values
@@ -159,6 +209,41 @@ public class LigretoComparator {
 		}
 	}
 	
+	/**
+	 * Compares the strings by their precomputed collation keys if both are available.
+	 * Otherwise, the strings are compared by {@link #compare(String, String)}.
+	 * 
+	 * @param s1 the first string
+	 * @param key1 the collation key of the first string or null
+	 * @param s2 the second string
+	 * @param key2 the collation key of the second string or null
+	 * @return -1, 0 or 1 if the first string is lower, equal or greater than the second string
+	 */
+	public int compare(String s1, CollationKey key1, String s2, CollationKey key2) {
+		if (key1 == null || key2 == null || collationKeyStatistics == null) {
+			if (collationKeyStatistics != null && s1 != null && s2 != null) {
+				collationKeyStatistics.miss();
+			}
+			return compare(s1, s2);
+		}
+		int result;
+		if (collationKeyStatistics.hit()) {
+			long start = System.nanoTime();
+			result = key1.compareTo(key2);
+			long keyEnd = System.nanoTime();
+			comparator.compare(s1.trim(), s2.trim());
+			collationKeyStatistics.sample(keyEnd - start, System.nanoTime() - keyEnd);
+		} else {
+			result = key1.compareTo(key2);
+		}
+		if (result > 0) {
+			return 1;
+		} else if (result < 0) {
+			return -1;
+		}
+		return 0;
+	}
+	
 	public int compareKeys(DataProvider dp1, int[] columns1, DataProvider dp2, int[] columns2) throws DataException, DataTypeMismatchException {
 		assert(columns1.length == columns2.length);
 		
@@ -181,6 +266,45 @@ public class LigretoComparator {
 		return result;
 	}
 
+	/**
+	 * Creates the comparators of the specified column pairs specialized for their data types.
+	 * The comparators use the settings of this instance at the time of the call.
+	 * 
+	 * @param dp1 the first data provider
+	 * @param columns1 the column indices of the first data provider
+	 * @param dp2 the second data provider
+	 * @param columns2 the column indices of the second data provider
+	 * @return the comparator for each pair of columns
+	 * @throws DataException if any data access error occurred
+	 */
+	public ColumnComparator[] compile(DataProvider dp1, int[] columns1, DataProvider dp2, int[] columns2) throws DataException {
+		assert(columns1.length == columns2.length);
+		
+		ColumnComparator[] result = new ColumnComparator[columns1.length];
+		for (int i=0; i < columns1.length; i++) {
+			result[i] = ColumnComparator.create(this, comparator, dp1, columns1[i], dp2, columns2[i]);
+		}
+		return result;
+	}
+	
+	public int compareKeys(ColumnComparator[] comparators, DataProvider dp1, DataProvider dp2) throws DataException, DataTypeMismatchException {
+		int cResult;
+		for (int i=0; i < comparators.length; i++) {
+			cResult = comparators[i].compare(dp1, dp2);
+			if (cResult != 0)
+				return cResult;
+		}
+		return 0;
+	}
+
+	public boolean[] compareColumnsAsDataSource(ColumnComparator[] comparators, DataProvider dp1, DataProvider dp2) throws DataException, DataTypeMismatchException {
+		boolean[] result = new boolean[comparators.length];
+		for (int i=0; i < comparators.length; i++) {
+			result[i] = (comparators[i].compare(dp1, dp2) == 0);
+		}
+		return result;
+	}
+
 	public static Field[] duplicate(DataProvider dp, int[] on) throws DataException {
 		if (on == null) {
 			return new Field[0];
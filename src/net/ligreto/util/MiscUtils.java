@@ -209,4 +209,24 @@ public class MiscUtils {
 	public static boolean isNotEmpty(String value) {
 		return value != null && !"".equals(value.trim());
 	}
+
+	/**
+	 * @param number the positive number
+	 * @return the English ordinal of the number, e.g. "1st", "2nd", "3rd", "4th"
+	 */
+	public static String ordinal(int number) {
+		if (number % 100 >= 11 && number % 100 <= 13) {
+			return number + "th";
+		}
+		switch (number % 10) {
+		case 1:
+			return number + "st";
+		case 2:
+			return number + "nd";
+		case 3:
+			return number + "rd";
+		default:
+			return number + "th";
+		}
+	}
 }
@@ -15,9 +15,26 @@ import org.junit.runners.Suite.SuiteClasses;
 	DuplicateLayoutTest.class,
 	Excel97ReportTest.class,
 	ExcludeColumnsTest.class,	
+	HashJoinTest.class,
+	PartitionedJoinTest.class,
+	MultiJoinTest.class,
+	PrefetchTest.class,
+	AsyncLayoutTest.class,
+	CollationKeysTest.class,
 	InternalSortTest.class,
 	PtpReportTest.class,
-	StrictTypesTest.class
+	StrictTypesTest.class,
+	ConnectionPoolTest.class,
+	PtpIncrementalTest.class,
+	PtpCheckpointTest.class,
+	PtpMergeTest.class,
+	PtpFailureTest.class,
+	PtpBulkLoadTest.class,
+	PtpNullTest.class,
+	CsvReportTest.class,
+	XmlReportTest.class,
+	StreamAutoSizeTest.class,
+	ExcelShardTest.class
 })
 public class AllTests {
 	/**
@@ -89,6 +89,28 @@ public class ComparisonReportTest {
 		Assert.assertTrue(exceptionThrown);
 	}
 	
+	@Test
+	public void testWrongCollationSampled() throws SAXException, IOException, ClassNotFoundException, SQLException, LigretoException {
+		LigretoNode ligreto = Parser.parse("wrongcollationsamplereport.xml");
+		LigretoExecutor executor = new LigretoExecutor(ligreto);
+		
+		boolean exceptionThrown = false;
+		try {
+			executor.execute();
+		} catch (LigretoException e) {
+			Throwable c1 = e.getCause();
+			Throwable c2 = c1.getCause();
+			
+			// Check that we got the right exception with the proper cause
+			if (c2 instanceof CollationException) {
+				exceptionThrown = true;
+			} else {
+				throw e;
+			}
+		}
+		Assert.assertTrue(exceptionThrown);
+	}
+	
 	@Test
 	public void testConnectionResolver() throws SAXException, IOException, ClassNotFoundException, SQLException, LigretoException {
 		String reportName = "joinreport";
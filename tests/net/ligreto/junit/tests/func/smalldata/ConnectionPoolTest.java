@@ -0,0 +1,106 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import net.ligreto.Database;
+import net.ligreto.exceptions.DataSourceException;
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.parser.Parser;
+import net.ligreto.parser.nodes.LigretoNode;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class ConnectionPoolTest {
+	@Test
+	public void testConnectionPool() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("poolreport", true);
+	}
+
+	@Test
+	public void testConnectionReuse() throws SAXException, IOException, LigretoException, ClassNotFoundException, SQLException {
+		Connection cnn = DriverManager.getConnection("jdbc:derby:db1");
+		Statement stm = cnn.createStatement();
+		try {
+			stm.execute("drop table pool_init_log");
+		} catch (SQLException e) {
+			// The table does not exist yet
+		}
+		stm.execute("create table pool_init_log (id int)");
+
+		LigretoNode ligreto = Parser.parse("poollimit.xml");
+		Database database = new Database(ligreto);
+		try {
+			// The closed connection is reused and the init SQL is not executed again
+			Connection first = database.getConnection("Source1");
+			int isolation = first.getTransactionIsolation();
+			first.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+			first.setReadOnly(true);
+			first.close();
+			Connection second = database.getConnection("Source1");
+			Assert.assertEquals(1, countInits(stm));
+
+			// The reused connection has the state of the initialized connection
+			Assert.assertEquals(isolation, second.getTransactionIsolation());
+			Assert.assertFalse(second.isReadOnly());
+
+			// The second connection in use at once opens the second physical connection
+			Connection third = database.getConnection("Source1");
+			Assert.assertEquals(2, countInits(stm));
+
+			// The pool at its limit fails after the wait timeout
+			long start = System.currentTimeMillis();
+			try {
+				database.getConnection("Source1");
+				Assert.fail("The pool at its limit should fail after the wait timeout.");
+			} catch (DataSourceException e) {
+				Assert.assertTrue(e.getMessage(), e.getMessage().contains("all 2 connections"));
+			}
+			Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+
+			// The connection returned into the pool is handed out again
+			third.close();
+			Connection fourth = database.getConnection("Source1");
+			Assert.assertEquals(2, countInits(stm));
+			fourth.close();
+			second.close();
+		} finally {
+			database.close();
+			stm.close();
+			cnn.close();
+		}
+	}
+
+	@Test
+	public void testPoolLimit() throws SAXException, IOException {
+		try {
+			TestUtil.generateReport("poollimitreport");
+			Assert.fail("The comparison needs two connections while the pool allows one.");
+		} catch (LigretoException e) {
+			// expected, the second query could not get the connection
+			Throwable cause = e;
+			while (cause != null && !(cause instanceof DataSourceException)) {
+				cause = cause.getCause();
+			}
+			Assert.assertNotNull("The failure should be caused by the pool limit.", cause);
+			Assert.assertTrue(cause.getMessage(), cause.getMessage().contains("all 1 connections"));
+		}
+	}
+
+	protected int countInits(Statement stm) throws SQLException {
+		ResultSet rs = stm.executeQuery("select count(*) from pool_init_log");
+		try {
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			rs.close();
+		}
+	}
+}
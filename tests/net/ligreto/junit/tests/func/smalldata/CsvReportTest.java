@@ -0,0 +1,28 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.util.Assert;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class CsvReportTest {
+	@Test
+	public void testCsvReport() throws SAXException, IOException, LigretoException {
+		Assert.assertTrue(TestUtil.generateReport("csvreport").isAccepted());
+		TestUtil.compareCsvReport("csvreport.csv", "csvreport.csv");
+		TestUtil.compareCsvReport("csvreport_detailed.csv", "csvreport_detailed.csv");
+		TestUtil.compareCsvReport("csvreport_values.csv", "csvreport_values.csv");
+	}
+
+	@Test
+	public void testCsvGzipReport() throws SAXException, IOException, LigretoException {
+		Assert.assertTrue(TestUtil.generateReport("csvgzipreport").isAccepted());
+		TestUtil.compareCsvReport("csvgzipreport.csv.gz", "csvreport.csv");
+		TestUtil.compareCsvReport("csvgzipreport_detailed.csv.gz", "csvreport_detailed.csv");
+		TestUtil.compareCsvReport("csvgzipreport_values.csv.gz", "csvreport_values.csv");
+	}
+}
@@ -0,0 +1,64 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.util.Assert;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class ExcelShardTest {
+	@Before
+	public void setUp() {
+		System.setProperty("excel97", "yes");
+	}
+	
+	@After
+	public void tearDown() {
+		System.clearProperty("excel97");
+	}
+	
+	protected static Workbook readWorkbook(String fileName) throws IOException {
+		FileInputStream in = new FileInputStream(fileName);
+		try {
+			return new HSSFWorkbook(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	protected static void checkRows(Sheet sheet, int baseRow, int baseCol, int... ids) {
+		String name = sheet.getSheetName();
+		Assert.assertTrue(sheet.getLastRowNum() == baseRow + ids.length, "Unexpected last row of the sheet " + name + ": " + sheet.getLastRowNum());
+		Assert.assertTrue("ID".equals(sheet.getRow(baseRow).getCell(baseCol).getStringCellValue()), "The header is not repeated on the sheet " + name);
+		for (int i = 0; i < ids.length; i++) {
+			double id = sheet.getRow(baseRow + i + 1).getCell(baseCol).getNumericCellValue();
+			Assert.assertTrue(id == ids[i], "Unexpected ID " + id + " on the sheet " + name);
+		}
+	}
+	
+	@Test
+	public void testExcelShards() throws SAXException, IOException, LigretoException {
+		Assert.assertTrue(TestUtil.generateReport("excelshardreport").isAccepted());
+		
+		// The sheets are split by 5 rows
+		Workbook first = readWorkbook("excelshardreport.xls");
+		Assert.assertTrue(first.getNumberOfSheets() == 3, "Unexpected number of sheets: " + first.getNumberOfSheets());
+		checkRows(first.getSheet("Data"), 0, 0, 1, 2, 3, 5);
+		checkRows(first.getSheet("Data (2)"), 0, 0, 7, 8);
+		checkRows(first.getSheet("More"), 1, 1, 1, 2, 3);
+		
+		// The workbook is split after 12 rows
+		Workbook second = readWorkbook("excelshardreport_2.xls");
+		Assert.assertTrue(second.getNumberOfSheets() == 1, "Unexpected number of sheets: " + second.getNumberOfSheets());
+		checkRows(second.getSheet("More"), 1, 1, 5, 7, 8);
+	}
+}
@@ -0,0 +1,28 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.util.Assert;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class HashJoinTest {
+	@Test
+	public void testHashJoin() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("hashjoinreport", true);
+	}
+
+	@Test
+	public void testHashJoinDuplicates() throws SAXException, IOException, LigretoException {
+		// The hash join produces the same result as the merge join for the duplicates of the keys
+		// in the hash table; the duplicates of the other keys of the streamed side are not detected
+		Assert.assertTrue(TestUtil.generateReport("hashduplicatereport").isAccepted());
+		TestUtil.compareCsvReport("hashduplicatereport.csv", "hashduplicatereport.csv");
+		TestUtil.compareCsvReport("hashduplicatereport_hash1.csv", "hashduplicatereport_hash1.csv");
+		TestUtil.compareCsvReport("hashduplicatereport_merge2.csv", "hashduplicatereport_merge2.csv");
+		TestUtil.compareCsvReport("hashduplicatereport_hash2.csv", "hashduplicatereport_hash2.csv");
+	}
+}
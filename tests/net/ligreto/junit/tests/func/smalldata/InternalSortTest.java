@@ -13,4 +13,9 @@ public class InternalSortTest {
 	public void testInternalSort() throws SAXException, IOException, LigretoException {
 		TestUtil.testReport("internalsortreport", true);
 	}
+
+	@Test
+	public void testSpillingInternalSort() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("spillsortreport", true);
+	}
 }
@@ -0,0 +1,27 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class MultiJoinTest {
+	@Test
+	public void testMultiJoin() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("multijoinreport", true);
+	}
+
+	@Test
+	public void testMultiJoinAsync() throws SAXException, IOException, LigretoException {
+		// The layouts processed by the layout threads are told the same key sources
+		TestUtil.testHtmlReport("multijoinasyncreport", "multijoinreport", true);
+	}
+
+	@Test
+	public void testMultiJoinTypes() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("multijointypesreport", true);
+	}
+}
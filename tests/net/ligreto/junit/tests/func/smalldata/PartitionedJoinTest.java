@@ -0,0 +1,22 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PartitionedJoinTest {
+	@Test
+	public void testPartitionedJoin() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("partitionedjoinreport", true);
+	}
+
+	@Test
+	public void testPartitionSpill() throws SAXException, IOException, LigretoException {
+		// The rows of all the partitions are spilled into the temporary files
+		TestUtil.testHtmlReport("partitionspillreport", "partitionedjoinreport", true);
+	}
+}
@@ -0,0 +1,16 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PrefetchTest {
+	@Test
+	public void testPrefetch() throws SAXException, IOException, LigretoException {
+		TestUtil.testHtmlReport("prefetchreport", true);
+	}
+}
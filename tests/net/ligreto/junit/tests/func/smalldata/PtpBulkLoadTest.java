@@ -0,0 +1,19 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PtpBulkLoadTest {
+	@Test
+	public void testBulkLoad() throws SAXException, IOException, SQLException, LigretoException {
+		TestUtil.testHtmlReport("ptpbulkload", true);
+		Assert.assertEquals(5, PtpFailureTest.countRows("bulk_table"));
+	}
+}
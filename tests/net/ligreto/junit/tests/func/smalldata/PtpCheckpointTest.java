@@ -0,0 +1,23 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PtpCheckpointTest {
+	@Test
+	public void testPtpCheckpoint() throws SAXException, IOException, LigretoException {
+		try {
+			TestUtil.generateReport("ptpcheckpointfail");
+			Assert.fail("The transfer should fail on the check constraint.");
+		} catch (LigretoException e) {
+			// expected, the checkpoint is stored
+		}
+		TestUtil.testHtmlReport("ptpcheckpointreport", true);
+	}
+}
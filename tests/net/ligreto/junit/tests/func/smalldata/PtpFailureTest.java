@@ -0,0 +1,80 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PtpFailureTest {
+	@Test
+	public void testBatchFailure() throws SAXException, IOException, SQLException {
+		try {
+			TestUtil.generateReport("ptpbatchfail");
+			Assert.fail("The transfer should fail on the check constraint.");
+		} catch (LigretoException e) {
+			assertCause(e, "Failed to insert the row 6 of the batch of rows 5 to 6 into the target table.");
+		}
+		// The batches committed before the failed one are kept
+		Assert.assertEquals(4, countRows("batch_table"));
+	}
+
+	@Test
+	public void testSerialFailure() throws SAXException, IOException, SQLException {
+		try {
+			TestUtil.generateReport("ptpserialfail");
+			Assert.fail("The transfer should fail on the check constraint.");
+		} catch (LigretoException e) {
+			assertCause(e, "Failed to insert the row 6 of the batch of rows 5 to 6 into the target table.");
+		}
+		Assert.assertEquals(4, countRows("batch_table"));
+	}
+
+	@Test
+	public void testParallelFailure() throws SAXException, IOException, SQLException {
+		try {
+			TestUtil.generateReport("ptpparallelfail");
+			Assert.fail("The transfer should fail on the check constraint.");
+		} catch (LigretoException e) {
+			assertCause(e, "Error in ptp-writer-2 writing into the target table.");
+			assertCause(e, "Failed to insert the row 151 of the batch of rows 151 to 160 into the target table.");
+		}
+		// The other writer is stopped and its uncommitted rows are rolled back
+		Assert.assertEquals(0, countRows("parallel_table"));
+	}
+
+	/**
+	 * Checks that the exception or any of its causes has the specified message.
+	 */
+	protected static void assertCause(Throwable e, String message) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (message.equals(cause.getMessage())) {
+				return;
+			}
+		}
+		throw new AssertionError("Expected the failure \"" + message + "\" but got: " + e);
+	}
+
+	/**
+	 * @return the number of rows in the table of the PTP target database
+	 */
+	protected static int countRows(String table) throws SQLException {
+		Connection cnn = DriverManager.getConnection("jdbc:derby:db4ptp");
+		try {
+			Statement stm = cnn.createStatement();
+			ResultSet rs = stm.executeQuery("select count(*) from " + table);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			cnn.close();
+		}
+	}
+}
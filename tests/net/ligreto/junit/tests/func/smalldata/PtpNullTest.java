@@ -0,0 +1,42 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class PtpNullTest {
+	@Test
+	public void testNullValues() throws SAXException, IOException, SQLException, LigretoException {
+		TestUtil.testHtmlReport("ptpnulls", true);
+		// The null values are not transferred as zeros
+		Assert.assertEquals(1, countRows("small_value is null and int_value is null and big_value is null"
+				+ " and double_value is null and real_value is null"));
+		Assert.assertEquals(1, countRows("small_value = 0 and int_value = 0 and big_value = 0"
+				+ " and double_value = 0 and real_value = 0"));
+	}
+
+	/**
+	 * @return the number of the transferred rows matching the condition
+	 */
+	protected static int countRows(String condition) throws SQLException {
+		Connection cnn = DriverManager.getConnection("jdbc:derby:db4ptp");
+		try {
+			Statement stm = cnn.createStatement();
+			ResultSet rs = stm.executeQuery("select count(*) from null_table where " + condition);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			cnn.close();
+		}
+	}
+}
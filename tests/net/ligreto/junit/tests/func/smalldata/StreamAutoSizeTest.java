@@ -0,0 +1,40 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.util.Assert;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class StreamAutoSizeTest {
+	@Test
+	public void testStreamAutoSize() throws SAXException, IOException, LigretoException {
+		Assert.assertTrue(TestUtil.generateReport("streamautosizereport").isAccepted());
+		FileInputStream in = new FileInputStream("streamautosizereport.xlsx");
+		try {
+			XSSFWorkbook wb = new XSSFWorkbook(in);
+			
+			// All the rows are kept when flushed by the small windows
+			Sheet table = wb.getSheet("Table");
+			Assert.assertTrue(table.getLastRowNum() == 12, "Unexpected last row: " + table.getLastRowNum());
+			Assert.assertTrue(table.getRow(12).getCell(0).getNumericCellValue() == 8, "The last row is not the row with ID 8.");
+			for (int i = 0; i < 4; i++) {
+				Assert.assertTrue(table.getColumnWidth(i) > 1024, "Column " + i + " is not auto-sized.");
+			}
+			Assert.assertTrue(table.getColumnWidth(1) > table.getColumnWidth(0), "The header column FIRST_NAME is not wider than ID.");
+			
+			// The columns are sized by the widest text and limited by the maximal width
+			Sheet texts = wb.getSheet("Texts");
+			Assert.assertTrue(texts.getColumnWidth(1) < texts.getColumnWidth(3), "The date column is not wider than the short text.");
+			Assert.assertTrue(texts.getColumnWidth(2) == 20480, "The long text column is not limited: " + texts.getColumnWidth(2));
+		} finally {
+			in.close();
+		}
+	}
+}
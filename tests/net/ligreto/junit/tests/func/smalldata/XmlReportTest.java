@@ -0,0 +1,19 @@
+package net.ligreto.junit.tests.func.smalldata;
+
+import java.io.IOException;
+
+import net.ligreto.exceptions.LigretoException;
+import net.ligreto.junit.util.TestUtil;
+import net.ligreto.util.Assert;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class XmlReportTest {
+	@Test
+	public void testXmlReport() throws SAXException, IOException, LigretoException {
+		Assert.assertTrue(TestUtil.generateReport("xmlreport").isAccepted());
+		TestUtil.validateXmlReport("xmlreport.xml");
+		TestUtil.compareCsvReport("xmlreport.xml", "xmlreport.xml");
+	}
+}
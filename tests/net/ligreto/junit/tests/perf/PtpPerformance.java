@@ -84,4 +84,34 @@ public class PtpPerformance {
 		TestUtil.storePerfResults("transfer (commit 1)", rowCount, endStamp - startStamp);
 	}
 
+	@Test
+	public void testBatch() throws Exception {
+		LigretoNode ligreto = Parser.parse("ptpbatchperf.xml");
+		LigretoExecutor executor = new LigretoExecutor(ligreto);
+		long startStamp = System.currentTimeMillis();
+		executor.execute();
+		long endStamp = System.currentTimeMillis();
+		TestUtil.storePerfResults("transfer (batch 1000)", rowCount, endStamp - startStamp);
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		LigretoNode ligreto = Parser.parse("ptpparallelperf.xml");
+		LigretoExecutor executor = new LigretoExecutor(ligreto);
+		long startStamp = System.currentTimeMillis();
+		executor.execute();
+		long endStamp = System.currentTimeMillis();
+		TestUtil.storePerfResults("transfer (batch 1000, 4 writers)", rowCount, endStamp - startStamp);
+	}
+
+	@Test
+	public void testBulk() throws Exception {
+		LigretoNode ligreto = Parser.parse("ptpbulkperf.xml");
+		LigretoExecutor executor = new LigretoExecutor(ligreto);
+		long startStamp = System.currentTimeMillis();
+		executor.execute();
+		long endStamp = System.currentTimeMillis();
+		TestUtil.storePerfResults("transfer (bulk load)", rowCount, endStamp - startStamp);
+	}
+
 }
@@ -13,6 +13,7 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({
+	HashJoinKeyTest.class
 })
 public class AllTests {
 	/**
@@ -0,0 +1,82 @@
+package net.ligreto.junit.tests.unit;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import net.ligreto.LigretoParameters;
+import net.ligreto.data.DataProviderRow;
+import net.ligreto.data.HashJoinKey;
+import net.ligreto.util.LigretoComparator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashJoinKeyTest {
+
+	protected static HashJoinKey key(int type, Object value, boolean asString, LigretoComparator comparator) {
+		DataProviderRow row = new DataProviderRow(new int[] {type}, new Object[] {value}, new int[] {1});
+		return new HashJoinKey(row, new boolean[] {asString}, comparator);
+	}
+
+	protected static LigretoComparator comparator(Comparator<Object> stringComparator) {
+		LigretoComparator comparator = new LigretoComparator(new LigretoParameters());
+		comparator.setComparator(stringComparator);
+		return comparator;
+	}
+
+	protected static void assertSame(HashJoinKey key1, HashJoinKey key2) {
+		Assert.assertEquals(key1.hashCode(), key2.hashCode());
+		Assert.assertTrue(key1.equals(key2));
+	}
+
+	@Test
+	public void testDistinctHashCodes() {
+		Collator collator = Collator.getInstance(new Locale("en"));
+		collator.setDecomposition(Collator.FULL_DECOMPOSITION);
+		LigretoComparator[] comparators = {comparator(null), comparator(collator)};
+		for (LigretoComparator comparator : comparators) {
+			Set<Integer> hashCodes = new HashSet<Integer>();
+			for (int i=0; i < 100; i++) {
+				hashCodes.add(key(Types.INTEGER, i, false, comparator).hashCode());
+				hashCodes.add(key(Types.BIGINT, 1000L + i, false, comparator).hashCode());
+				hashCodes.add(key(Types.DECIMAL, new BigDecimal("0.5").add(BigDecimal.valueOf(2000 + i)), false, comparator).hashCode());
+				hashCodes.add(key(Types.DOUBLE, 3000.25 + i, false, comparator).hashCode());
+				hashCodes.add(key(Types.VARCHAR, "value " + i, false, comparator).hashCode());
+				hashCodes.add(key(Types.CLOB, "text " + i, false, comparator).hashCode());
+				hashCodes.add(key(Types.INTEGER, 4000 + i, true, comparator).hashCode());
+			}
+			Assert.assertTrue("Too many hash collisions: " + hashCodes.size(), hashCodes.size() > 690);
+		}
+	}
+
+	@Test
+	public void testEqualKeys() {
+		Collator collator = Collator.getInstance(new Locale("en"));
+		collator.setDecomposition(Collator.FULL_DECOMPOSITION);
+		LigretoComparator[] comparators = {comparator(null), comparator(collator)};
+		for (LigretoComparator comparator : comparators) {
+			assertSame(key(Types.DECIMAL, new BigDecimal("1.0"), false, comparator), key(Types.DECIMAL, new BigDecimal("1.00"), false, comparator));
+			assertSame(key(Types.DECIMAL, new BigDecimal("0.00"), false, comparator), key(Types.DECIMAL, BigDecimal.ZERO, false, comparator));
+			assertSame(key(Types.DOUBLE, 0.0, false, comparator), key(Types.DOUBLE, -0.0, false, comparator));
+			assertSame(key(Types.VARCHAR, "abc  ", false, comparator), key(Types.VARCHAR, "abc", false, comparator));
+			assertSame(key(Types.INTEGER, null, false, comparator), key(Types.INTEGER, null, false, comparator));
+		}
+		// The composed and decomposed characters are equal for the collator
+		assertSame(key(Types.VARCHAR, "\u00e9", false, comparators[1]), key(Types.VARCHAR, "e\u0301", false, comparators[1]));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsupportedComparator() {
+		Comparator<Object> comparator = new Comparator<Object>() {
+			public int compare(Object o1, Object o2) {
+				return o1.toString().compareToIgnoreCase(o2.toString());
+			}
+		};
+		key(Types.VARCHAR, "abc", false, comparator(comparator));
+	}
+}
@@ -4,10 +4,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import net.ligreto.ResultStatus;
 import net.ligreto.exceptions.LigretoException;
@@ -17,6 +24,7 @@ import net.ligreto.parser.nodes.LigretoNode;
 import net.ligreto.util.Assert;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
@@ -214,4 +222,55 @@ public class TestUtil {
 	public static void testHtmlReport(String reportName) throws SAXException, IOException, LigretoException {
 		testHtmlReport(reportName, true);
 	}
+
+	/**
+	 * This file will compare the generated CSV file with the same file in the 'desired' report directory.
+	 * The generated files compressed by gzip are decompressed before the comparison.
+	 * 
+	 * @param fileName the name of the generated file
+	 * @param desiredFileName the name of the desired file without the '.gz' extension
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static void compareCsvReport(String fileName, String desiredFileName) throws FileNotFoundException, IOException {
+		String desiredReportFile = "desired/" + desiredFileName;
+
+		log.info("Comparing reports... ");
+		log.info("Generated report file: " + fileName);
+		log.info("Desired report file: " + desiredReportFile);
+
+		InputStream generated = new FileInputStream(fileName);
+		InputStream desired = new FileInputStream(desiredReportFile);
+		boolean result;
+		try {
+			if (fileName.endsWith(".gz")) {
+				generated = new GZIPInputStream(generated);
+			}
+			result = IOUtils.contentEquals(generated, desired);
+		} finally {
+			generated.close();
+			desired.close();
+		}
+		if (result) {
+			log.info("Files match.");
+		} else {
+			log.error("Files differ!");
+			log.error("Generated report file: " + fileName);
+			log.error("Desired report file: " + desiredReportFile);
+			Assert.assertTrue(false, "Report differs: " + fileName);
+		}
+	}
+
+	public static void validateXmlReport(String fileName) throws IOException, SAXException {
+		log.info("Validating report file: " + fileName);
+		InputStream schemaStream = TestUtil.class.getClassLoader().getResourceAsStream("resources/ligretoreport.xsd");
+		try {
+			SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			Schema schema = factory.newSchema(new StreamSource(schemaStream));
+			schema.newValidator().validate(new StreamSource(new File(fileName)));
+		} finally {
+			schemaStream.close();
+		}
+		log.info("Report is valid.");
+	}
 }